@@ -4,25 +4,117 @@ package nl.tudelft.alg.MipSolverGurobi;
 import gurobi.GRB;
 import gurobi.GRBCallback;
 import gurobi.GRBException;
+import gurobi.GRBLinExpr;
+import gurobi.GRBVar;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+import nl.tudelft.alg.MipSolverCore.Separation;
+import nl.tudelft.alg.MipSolverCore.SolveEvents;
+import nl.tudelft.alg.MipSolverCore.SolverException;
 
+/**
+ * Callback for the Gurobi optimization. It reports the new incumbents (CB_MIPSOL) and the progress of the search (CB_MIP)
+ * to the events of the solve, and aborts the optimization when a solution reaches the objective bound.
+ * With a separation, it adds the violated constraints of the new solutions as lazy constraints (CB_MIPSOL),
+ * and those of the fractional node relaxations as cuts (CB_MIPNODE).
+ */
 public class Callback extends GRBCallback {
 	double objBound;
+	SolveEvents events;
+	GRBVar[] vars;
+	boolean minimize;
+	Separation separation;
+	// The exception of the separation, which aborted the optimization
+	SolverException error;
 	
 	public Callback(double objBound) {
 		this.objBound = objBound;
 	}
+	
+	/**
+	 * Create a callback that reports the events of a solve
+	 * @param events the events of the solve
+	 * @param vars the variables of the model, of which the values are reported if the listener needs them
+	 * @param minimize true if the objective is minimized
+	 */
+	public Callback(SolveEvents events, GRBVar[] vars, boolean minimize) {
+		this(Double.NEGATIVE_INFINITY);
+		this.events = events;
+		this.vars = vars;
+		this.minimize = minimize;
+	}
+
+	/**
+	 * Separate the solutions and, if the separator separates fractional points, the node relaxations of the search.
+	 * This needs the LazyConstraints parameter, and the PreCrush parameter for the cuts.
+	 * @param separation the separation of the solve
+	 */
+	public void setSeparation(Separation separation) {
+		this.separation = separation;
+	}
 
 	@Override
 	protected void callback() {
 		try {
 			if (where == GRB.CB_MIPSOL) {
+				// a solution that violates a lazy constraint is rejected, and is no incumbent
+				if (separation != null && separate(getSolution(vars), true))
+					return;
 				double  obj = getDoubleInfo(GRB.CB_MIPSOL_OBJ);
+				if (events != null)
+					events.incumbent(obj, events.needsValues() ? getSolution(vars) : null, minimize);
 				if (obj <= objBound) 
 					abort();
+	        } else if (where == GRB.CB_MIP && events != null) {
+	        	double best = getDoubleInfo(GRB.CB_MIP_OBJBST);
+	        	double bound = getDoubleInfo(GRB.CB_MIP_OBJBND);
+	        	long nodes = (long) getDoubleInfo(GRB.CB_MIP_NODCNT);
+	        	events.progress(nodes, toValue(best), toValue(bound), false);
+	        } else if (where == GRB.CB_MIPNODE && separation != null && separation.separatesFractional()
+	        		&& getIntInfo(GRB.CB_MIPNODE_STATUS) == GRB.Status.OPTIMAL) {
+	        	separate(getNodeRel(vars), false);
 	        }
 		} catch (GRBException e) {
 			System.out.println("Error during callback");
 			e.printStackTrace();
 		}
-	}	     
+	}
+	
+	/**
+	 * Separate a point, and add the violated constraints as lazy constraints or cuts
+	 * @param x the value of every variable
+	 * @param candidate true for a solution, false for a node relaxation
+	 * @return true if a constraint was added
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	private boolean separate(double[] x, boolean candidate) throws GRBException {
+		ModelMatrix rows;
+		try {
+			rows = separation.separate(x, candidate);
+		} catch (SolverException e) {
+			error = e;
+			abort();
+			return true;
+		}
+		if (rows == null) return false;
+		int[] start = rows.getRowStarts();
+		int[] colIndex = rows.getColumnIndices();
+		double[] values = rows.getValues();
+		for (int i = 0; i < rows.getRows(); i++) {
+			GRBLinExpr expr = new GRBLinExpr();
+			for (int k = start[i]; k < start[i+1]; k++)
+				expr.addTerm(values[k], vars[colIndex[k]]);
+			char sense = GurobiModelBuilder.GRBcomparator(rows.getSenses()[i]);
+			if (candidate) addLazy(expr, sense, rows.getRhs()[i]);
+			else addCut(expr, sense, rows.getRhs()[i]);
+		}
+		return true;
+	}
+
+	/**
+	 * @param value an objective value or bound of Gurobi
+	 * @return the value, or NaN if it is infinite (there is no incumbent or bound yet)
+	 */
+	static double toValue(double value) {
+		return Math.abs(value) >= GRB.INFINITY ? Double.NaN : value;
+	}
 }
@@ -0,0 +1,63 @@
+package nl.tudelft.alg.MipSolverGurobi;
+
+import gurobi.GRBConstr;
+import gurobi.GRBException;
+import gurobi.GRBLinExpr;
+import gurobi.GRBModel;
+import gurobi.GRBVar;
+
+/**
+ * Forwards the bulk model operations to a Gurobi model, and counts them
+ */
+public class GRBModelAdapter implements IGurobiModel {
+	final GRBModel model;
+	long calls;
+
+	public GRBModelAdapter(GRBModel model) {
+		this.model = model;
+	}
+
+	@Override
+	public GRBVar[] addVars(double[] lb, double[] ub, double[] obj, char[] type, String[] names) throws GRBException {
+		calls++;
+		return model.addVars(lb, ub, obj, type, names);
+	}
+
+	/**
+	 * Add the constraints with one addConstrs call, after adding the terms of every constraint with one addTerms call
+	 */
+	@Override
+	public GRBConstr[] addConstrs(GRBVar[] vars, int[] starts, int[] columns, double[] coeffs, char[] senses, double[] rhs, 
+			String[] names) throws GRBException {
+		GRBVar[] termVars = new GRBVar[columns.length];
+		for(int k=0; k<columns.length; k++)
+			termVars[k] = vars[columns[k]];
+		GRBLinExpr[] lhs = new GRBLinExpr[senses.length];
+		for(int i=0; i<senses.length; i++) {
+			lhs[i] = new GRBLinExpr();
+			lhs[i].addTerms(coeffs, termVars, starts[i], starts[i+1] - starts[i]);
+		}
+		calls++;
+		return model.addConstrs(lhs, senses, rhs, names);
+	}
+
+	@Override
+	public void update() throws GRBException {
+		calls++;
+		model.update();
+	}
+
+	/**
+	 * @return the number of operations that were forwarded to the gurobi model
+	 */
+	public long getCalls() {
+		return calls;
+	}
+
+	/**
+	 * @return the gurobi model
+	 */
+	public GRBModel getModel() {
+		return model;
+	}
+}
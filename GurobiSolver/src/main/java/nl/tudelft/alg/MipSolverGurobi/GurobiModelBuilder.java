@@ -0,0 +1,156 @@
+package nl.tudelft.alg.MipSolverGurobi;
+
+import java.util.Arrays;
+
+import gurobi.GRB;
+import gurobi.GRBConstr;
+import gurobi.GRBException;
+import gurobi.GRBVar;
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+import nl.tudelft.alg.MipSolverCore.VarType;
+
+/**
+ * Adds the variables and constraints of a compiled MIP model to a Gurobi model, using the bulk array operations.
+ * The constraints are added in batches, to limit the number of expressions that are alive at the same time.
+ */
+public class GurobiModelBuilder {
+	public static final int DEFAULT_BATCH_SIZE = 10000;
+	final IGurobiModel model;
+	final ModelMatrix matrix;
+	int batchSize;
+	boolean relaxed;
+	boolean useNames;
+
+	/**
+	 * Create a builder
+	 * @param model the gurobi model to add the variables and constraints to
+	 * @param matrix the compiled mip model
+	 */
+	public GurobiModelBuilder(IGurobiModel model, ModelMatrix matrix) {
+		this.model = model;
+		this.matrix = matrix;
+		this.batchSize = DEFAULT_BATCH_SIZE;
+		this.relaxed = false;
+		this.useNames = true;
+	}
+
+	/**
+	 * @param value the number of constraints to add per addConstrs call
+	 * @return this builder
+	 */
+	public GurobiModelBuilder setBatchSize(int value) {
+		assert value > 0;
+		this.batchSize = value;
+		return this;
+	}
+
+	/**
+	 * @param value true to add the integer variables as continuous variables
+	 * @return this builder
+	 */
+	public GurobiModelBuilder setRelaxed(boolean value) {
+		this.relaxed = value;
+		return this;
+	}
+
+	/**
+	 * @param value false to skip the names of the variables and constraints
+	 * @return this builder
+	 */
+	public GurobiModelBuilder setUseNames(boolean value) {
+		this.useNames = value;
+		return this;
+	}
+
+	/**
+	 * @param j the column index
+	 * @return the Gurobi type of column j
+	 */
+	private char getType(int j) {
+		if(relaxed || !matrix.isInteger(j)) return GRB.CONTINUOUS;
+		return matrix.getTypes()[j] == VarType.Binary ? GRB.BINARY : GRB.INTEGER;
+	}
+
+	/**
+	 * Add all the columns of the compiled model with a single addVars call
+	 * @return the gurobi variables, indexed by column index
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	public GRBVar[] addVariables() throws GRBException {
+		int n = matrix.getColumns();
+		char[] types = new char[n];
+		for(int j=0; j<n; j++)
+			types[j] = getType(j);
+		GRBVar[] vars = model.addVars(matrix.getLowerBounds(), matrix.getUpperBounds(), null, types,
+				useNames ? matrix.getColumnNames() : null);
+		model.update();
+		return vars;
+	}
+
+	/**
+	 * Add the columns first, first+1, ... of the compiled model with a single addVars call, 
+	 * including their objective coefficients
+	 * @param first the first column to add
+	 * @return the new gurobi variables
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	public GRBVar[] addVariables(int first) throws GRBException {
+		int n = matrix.getColumns();
+		char[] types = new char[n - first];
+		for(int j=first; j<n; j++)
+			types[j-first] = getType(j);
+		return model.addVars(Arrays.copyOfRange(matrix.getLowerBounds(), first, n),
+				Arrays.copyOfRange(matrix.getUpperBounds(), first, n),
+				Arrays.copyOfRange(matrix.getObjective(), first, n), types,
+				useNames ? Arrays.copyOfRange(matrix.getColumnNames(), first, n) : null);
+	}
+
+	/**
+	 * Add all the rows of the compiled model, with one addConstrs call per batch of rows
+	 * @param vars the gurobi variables, indexed by column index
+	 * @return the gurobi constraints, indexed by row index
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	public GRBConstr[] addConstraints(GRBVar[] vars) throws GRBException {
+		int nRows = matrix.getRows();
+		int[] start = matrix.getRowStarts();
+		int[] colIndex = matrix.getColumnIndices();
+		double[] values = matrix.getValues();
+		CMP[] senses = matrix.getSenses();
+		double[] rhs = matrix.getRhs();
+		String[] names = useNames ? matrix.getRowNames() : null;
+		GRBConstr[] constrs = new GRBConstr[nRows];
+		for(int first=0; first<nRows; first+=batchSize) {
+			int last = Math.min(nRows, first + batchSize);
+			int size = last - first;
+			int base = start[first];
+			// the terms of all the rows in this batch, with the row starts relative to the batch
+			int[] batchStarts = new int[size + 1];
+			char[] batchSenses = new char[size];
+			for(int i=first; i<last; i++) {
+				batchStarts[i-first] = start[i] - base;
+				batchSenses[i-first] = GRBcomparator(senses[i]);
+			}
+			batchStarts[size] = start[last] - base;
+			GRBConstr[] added = model.addConstrs(vars, batchStarts, Arrays.copyOfRange(colIndex, base, start[last]),
+					Arrays.copyOfRange(values, base, start[last]), batchSenses, Arrays.copyOfRange(rhs, first, last),
+					names == null ? null : Arrays.copyOfRange(names, first, last));
+			System.arraycopy(added, 0, constrs, first, size);
+		}
+		return constrs;
+	}
+
+	/**
+	 * Get the Gurobi comparator
+	 * @param cmp the comparator
+	 * @return the gurobi comparator
+	 */
+	static char GRBcomparator(CMP cmp) {
+		switch(cmp) {
+		case SMALLEREQ: return GRB.LESS_EQUAL;
+		case LARGEREQ: return GRB.GREATER_EQUAL;
+		default: return GRB.EQUAL;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package nl.tudelft.alg.MipSolverGurobi;
+
+import gurobi.GRBConstr;
+import gurobi.GRBException;
+import gurobi.GRBVar;
+
+/**
+ * The bulk operations of a Gurobi model that are used to build a model.
+ * GRBModelAdapter implements them for a real GRBModel. A fake implementation can be used to test
+ * the model construction without a Gurobi license, which is why the constraints are passed as arrays of column indices
+ * instead of Gurobi expressions.
+ */
+public interface IGurobiModel {
+
+	/**
+	 * Add variables to the model
+	 * @param lb the lower bounds
+	 * @param ub the upper bounds
+	 * @param obj the objective coefficients
+	 * @param type the variable types (GRB.CONTINUOUS, GRB.BINARY, GRB.INTEGER)
+	 * @param names the variable names, or null for default names
+	 * @return the new variables
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	public GRBVar[] addVars(double[] lb, double[] ub, double[] obj, char[] type, String[] names) throws GRBException;
+
+	/**
+	 * Add linear constraints to the model. The terms of all the constraints are stored in shared arrays:
+	 * constraint i has the terms k = starts[i], ..., starts[i+1]-1, with coefficient coeffs[k] for variable vars[columns[k]].
+	 * @param vars the variables of the model, indexed by column index
+	 * @param starts the index of the first term of every constraint, followed by the number of terms
+	 * @param columns the column indices of the terms
+	 * @param coeffs the coefficients of the terms
+	 * @param senses the senses (GRB.LESS_EQUAL, GRB.EQUAL, GRB.GREATER_EQUAL)
+	 * @param rhs the right hand side values
+	 * @param names the constraint names, or null for default names
+	 * @return the new constraints
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	public GRBConstr[] addConstrs(GRBVar[] vars, int[] starts, int[] columns, double[] coeffs, char[] senses, double[] rhs, 
+			String[] names) throws GRBException;
+
+	/**
+	 * Process the pending model modifications
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	public void update() throws GRBException;
+}
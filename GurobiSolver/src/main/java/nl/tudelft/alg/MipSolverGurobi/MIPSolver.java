@@ -1,8 +1,9 @@
 package nl.tudelft.alg.MipSolverGurobi;
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.stream.IntStream;
 
@@ -15,55 +16,138 @@ import gurobi.GRBLinExpr;
 import gurobi.GRBModel;
 import gurobi.GRBQuadExpr;
 import gurobi.GRBVar;
-import nl.tudelft.alg.MipSolverCore.CMP;
-import nl.tudelft.alg.MipSolverCore.Constraint;
+import nl.tudelft.alg.MipSolverCore.Basis;
 import nl.tudelft.alg.MipSolverCore.Exp;
 import nl.tudelft.alg.MipSolverCore.IMIPSolver;
 import nl.tudelft.alg.MipSolverCore.IModel;
 import nl.tudelft.alg.MipSolverCore.InfeasibleException;
 import nl.tudelft.alg.MipSolverCore.LinExp;
 import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.ModelChanges;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+import nl.tudelft.alg.MipSolverCore.Presolve;
 import nl.tudelft.alg.MipSolverCore.QuadExp;
+import nl.tudelft.alg.MipSolverCore.Separation;
+import nl.tudelft.alg.MipSolverCore.Separator;
+import nl.tudelft.alg.MipSolverCore.SolveEvents;
+import nl.tudelft.alg.MipSolverCore.SolveListener;
+import nl.tudelft.alg.MipSolverCore.SolveMetrics;
+import nl.tudelft.alg.MipSolverCore.SolveMetrics.Phase;
 import nl.tudelft.alg.MipSolverCore.SolverException;
-import nl.tudelft.alg.MipSolverCore.VarType;
 import nl.tudelft.alg.MipSolverCore.Variable;
 import nl.tudelft.alg.MipSolverCore.VariablePair;
+import nl.tudelft.alg.MipSolverCore.VariableRegistry;
 
+/**
+ * A mip solver that uses Gurobi. Every instance has its own Gurobi environment, so the parameters of one instance do
+ * not affect the others, and instances can be used from different threads. An instance itself is not thread-safe,
+ * except that terminate can be called from another thread.
+ */
 public class MIPSolver implements IMIPSolver {
-	static GRBEnv env;
 	static final boolean DEBUG = true;
+	GRBEnv env;
+	String logFile;
 	GRBModel model;
-	Map<Variable, GRBVar> varMap;
+	VariableRegistry registry;
+	GRBVar[] grbVars;
+	List<GRBConstr> grbConstrs;
 	MIP mipInstance;
+	ModelMatrix matrix;
 	boolean minimize = true;
 	boolean solveAsLP = false;
+	boolean builtAsLP = false;
 	double mipgap = 1e-4;
+	boolean warmStart = false;
+	boolean startPending = false;
+	Map<Variable, Double> mipStart;
+	Basis basis, lastBasis;
+	boolean presolve = false;
+	boolean builtPresolve = false;
+	boolean useNames = true;
+	// The environment parameters, which are set again when dispose has released the environment
+	boolean logToConsole = DEBUG;
+	boolean unboundInfo = DEBUG;
+	// Print the debug output of the core, such as the presolve summary (see setDebug)
+	boolean debug = false;
+	Presolve presolved;
+	SolveMetrics metrics;
+	// The number of calls to Gurobi since the start of the current phase, for the metrics
+	long calls;
+	// The model that is being optimized, which terminate interrupts
+	volatile GRBModel optimizing;
+	volatile boolean terminated;
+	// True if resetTerminate was called for the next solve, which then keeps the terminate flag
+	boolean terminateReset;
+	// True if the last optimize solved an LP, so the model has its duals
+	boolean lpSolved;
+	SolveListener listener;
+	Separator separator;
+	// The separation of the running solve, which terminate stops
+	volatile Separation separation;
 	
 	public MIPSolver() throws SolverException {
-    	if(env == null) {
-			try {
-				env = new GRBEnv("mip1.log");
-				resetParams();
-			} catch (GRBException e) {
-				throw new SolverException(e);
-			}
+		this("mip1.log");
+	}
+	
+	/**
+	 * Create a Gurobi solver with its own environment
+	 * @param logFile the log file of the environment
+	 * @throws SolverException when the environment cannot be created
+	 */
+	public MIPSolver(String logFile) throws SolverException {
+		this.logFile = logFile;
+		createEnv();
+	}
+	
+	/**
+	 * Create the Gurobi environment of this solver, if it does not exist
+	 * @throws SolverException when the environment cannot be created
+	 */
+	private void createEnv() throws SolverException {
+		if(env != null) return;
+		try {
+			env = new GRBEnv(logFile);
+			resetParams();
+		} catch (GRBException e) {
+			throw new SolverException(e);
 		}
-    }
+	}
     
+	private void debug(String s) {
+		if(debug) System.out.println(s);
+	}
+
 	/**
-	 * Reset the Gurobi environment parameters
+	 * Reset the Gurobi environment parameters to the settings of this solver
 	 */
-	private static void resetParams() throws GRBException {
+	private void resetParams() throws GRBException {
 		env.resetParams();
-		env.set(GRB.IntParam.LogToConsole, DEBUG ? 1 : 0);
-		env.set(GRB.IntParam.InfUnbdInfo, DEBUG ? 1 : 0);
+		env.set(GRB.IntParam.LogToConsole, logToConsole ? 1 : 0);
+		env.set(GRB.IntParam.InfUnbdInfo, unboundInfo ? 1 : 0);
+		if(solveAsLP) {
+			env.set(GRB.DoubleParam.Heuristics, 0.0);
+			env.set(GRB.IntParam.Cuts, 0);
+			env.set(GRB.IntParam.Presolve, 0);
+		}
     }
     
 
 	@Override
 	public void build(IModel mipInstance) throws SolverException {
 		assert (mipInstance instanceof MIP);
+		long start = metrics == null ? 0 : System.nanoTime();
+		calls = 0;
+		lpSolved = false;
 		this.mipInstance = (MIP) mipInstance;
+		matrix = ModelMatrix.compile(this.mipInstance);
+		// the separated rows refer to the columns of the model
+		presolved = presolve && separator == null ? Presolve.apply(this.mipInstance, matrix, minimize) : null;
+		builtPresolve = presolve;
+		if(presolved != null) {
+			debug(presolved.toString());
+			matrix = presolved.getReducedMatrix();
+		}
+		createEnv();
 		try {
 			if(model!=null) model.dispose();
 			model = new GRBModel(env);
@@ -71,54 +155,139 @@ public class MIPSolver implements IMIPSolver {
 			model.set(GRB.DoubleParam.MIPGap, mipgap);
 			model.set(GRB.DoubleParam.TimeLimit, this.mipInstance.getTimeLimit());
 			
-			addVariables();
+			calls += 5;
+			registry = this.mipInstance.getVariableRegistry();
+			GRBModelAdapter adapter = new GRBModelAdapter(model);
+			GurobiModelBuilder builder = new GurobiModelBuilder(adapter, matrix)
+					.setRelaxed(solveAsLP).setUseNames(useNames);
+			grbVars = builder.addVariables();
 	
-			setObjectiveFunction();
+			setObjective();
 	
-			// Add constraints
-			for(Constraint c: this.mipInstance.getConstraints()) {
-				addConstraint(model, c);
-			}
+			grbConstrs = new ArrayList<GRBConstr>(Arrays.asList(builder.addConstraints(grbVars)));
 			for(Variable[] sos: this.mipInstance.getSOSs()) {
 				double[] w = IntStream.range(0, sos.length).mapToDouble(i -> i).toArray();
 				model.addSOS(getVars(sos), w, GRB.SOS_TYPE2);
 			}
-						
+			calls += adapter.getCalls() + this.mipInstance.getSOSs().size();
+			builtAsLP = solveAsLP;
+			this.mipInstance.getChanges().reset(this, this.mipInstance);
+			if(metrics != null) {
+				metrics.size(this, matrix.getRows(), matrix.getColumns(), matrix.getNonzeros());
+				report(Phase.Build, start);
+			}
 		} catch (GRBException e) {
 			throw new SolverException("Gurobi error " + e.getErrorCode() + ": " + e.getMessage(), e);
 
 		}
 	}
 	
-	/**
-	 * Add the variables to the gurobi model from the mip model
-	 */
-	private void addVariables() throws GRBException {
-		// Create variables
-		varMap = new HashMap<Variable, GRBVar>();
-		for(Variable v: mipInstance.getVars()) {
-			GRBVar var;
-			if (v.getType() == VarType.PositiveContinuous)
-				var = model.addVar(0, Double.POSITIVE_INFINITY, 0.0, GRB.CONTINUOUS, v.getName());
-			else if (v.getType() == VarType.NegativeContinuous)
-				var = model.addVar(Double.NEGATIVE_INFINITY, 0.0, 0.0, GRB.CONTINUOUS, v.getName());
-			else if (v.getType() == VarType.Binary && !solveAsLP)
-				var = model.addVar(0.0, 1.0, 0.0, GRB.BINARY, v.getName());
-			else if (v.getType() == VarType.BinaryContinuous || (v.getType() == VarType.Binary && solveAsLP))
-				var = model.addVar(0.0, 1.0, 0.0, GRB.CONTINUOUS, v.getName());
-			else
-				var = model.addVar(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0.0, GRB.CONTINUOUS, v.getName());
-			varMap.put(v, var);
+	@Override
+	public void update(IModel mipInstance) throws SolverException {
+		assert (mipInstance instanceof MIP);
+		MIP mip = (MIP) mipInstance;
+		ModelChanges changes = mip.getChanges();
+		if(mip != this.mipInstance || model == null || builtAsLP != solveAsLP || builtPresolve != presolve
+				|| presolved != null || !changes.isTrackedFor(this)) {
+			build(mip);
+			return;
+		}
+		long start = metrics == null ? 0 : System.nanoTime();
+		calls = 0;
+		lpSolved = false;
+		try {
+			model.set(GRB.DoubleParam.TimeLimit, mip.getTimeLimit());
+			// Changed right hand sides, by row index of the built model
+			for(int i: changes.getChangedRows())
+				grbConstrs.get(i).set(GRB.DoubleAttr.RHS, changes.getRowConstraint(i).getRhs());
+			calls += 1 + changes.getChangedRows().length;
+			// Removed rows, the coefficients of added columns refer to the rows of the built model
+			List<GRBConstr> builtConstrs = grbConstrs;
+			int[] removed = changes.getRemovedRows();
+			if(removed.length > 0) {
+				List<GRBConstr> kept = new ArrayList<GRBConstr>(grbConstrs.size() - removed.length);
+				for(int i=0, k=0; i<grbConstrs.size(); i++) {
+					if(k < removed.length && removed[k] == i) {
+						model.remove(grbConstrs.get(i));
+						k++;
+					} else kept.add(grbConstrs.get(i));
+				}
+				grbConstrs = kept;
+				calls += removed.length;
+			}
+			// New columns and rows
+			ModelMatrix added = ModelMatrix.compile(mip, changes.getAddedConstraints(mip));
+			GRBModelAdapter adapter = new GRBModelAdapter(model);
+			GurobiModelBuilder builder = new GurobiModelBuilder(adapter, added)
+					.setRelaxed(solveAsLP).setUseNames(useNames);
+			int built = changes.getBuiltColumns();
+			if(added.getColumns() > built) {
+				GRBVar[] vs = builder.addVariables(built);
+				grbVars = Arrays.copyOf(grbVars, added.getColumns());
+				System.arraycopy(vs, 0, grbVars, built, vs.length);
+			}
+			// Coefficients of the columns that were added with MIP.addColumn in the remaining built rows
+			for(int k=0; k<changes.getAddedColumns().size(); k++) {
+				int[] rows = changes.getAddedColumnRows(k);
+				GRBConstr[] cs = new GRBConstr[rows.length];
+				GRBVar[] vs = new GRBVar[rows.length];
+				GRBVar v = grbVars[registry.indexOf(changes.getAddedColumns().get(k))];
+				for(int t=0; t<rows.length; t++) {
+					cs[t] = builtConstrs.get(rows[t]);
+					vs[t] = v;
+				}
+				model.chgCoeffs(cs, vs, changes.getAddedColumnValues(k));
+				calls++;
+			}
+			grbConstrs.addAll(Arrays.asList(builder.addConstraints(grbVars)));
+			calls += adapter.getCalls();
+			// Objective
+			if(changes.isObjectiveChanged()) {
+				setObjectiveFunction();
+			} else {
+				LinExp obj = (LinExp) mip.getObjectiveFunction();
+				for(Variable v: changes.getChangedObjectiveVariables()) {
+					int j = registry.indexOf(v);
+					if(j >= 0) grbVars[j].set(GRB.DoubleAttr.Obj, obj.getCoefficient(v));
+				}
+				calls += changes.getChangedObjectiveVariables().size();
+			}
+			// Bounds
+			for(Variable v: changes.getChangedBoundVariables()) {
+				int j = registry.indexOf(v);
+				if(j < 0) continue;
+				grbVars[j].set(GRB.DoubleAttr.LB, mip.getLowerBound(v));
+				grbVars[j].set(GRB.DoubleAttr.UB, mip.getUpperBound(v));
+				calls += 2;
+			}
+			changes.reset(this, mip);
+			if(metrics != null) report(Phase.Update, start);
+		} catch (GRBException e) {
+			throw new SolverException("Gurobi error " + e.getErrorCode() + ": " + e.getMessage(), e);
 		}
-		// Integrate new variables
-		model.update();
 	}
-
-
+	
 	@Override
 	public void setObjectiveFunction() throws SolverException {
-		GRBExpr obj = createExpr(mipInstance.getObjectiveFunction());
+		// the presolve depends on the objective
+		if(presolved != null) build(mipInstance);
+		else setObjective();
+	}
+	
+	/**
+	 * Set the objective of the Gurobi model, from the objective of the model, or from the presolved model
+	 * @throws SolverException when an exception occurs in gurobi
+	 */
+	private void setObjective() throws SolverException {
+		GRBExpr obj;
+		if(presolved != null) {
+			GRBLinExpr linear = new GRBLinExpr();
+			linear.addTerms(matrix.getObjective(), grbVars);
+			linear.addConstant(matrix.getObjectiveConstant());
+			obj = linear;
+		} else obj = createExpr(mipInstance.getObjectiveFunction());
 		try {
+			calls++;
 			if(minimize)
 				model.setObjective(obj, GRB.MINIMIZE);
 			else
@@ -128,8 +297,14 @@ public class MIPSolver implements IMIPSolver {
 		}
 	}
 	
+	/**
+	 * Set the Gurobi console output, and the debug output of the solver itself (off by default)
+	 */
 	@Override
 	public void setDebug(boolean value) throws SolverException {
+		logToConsole = value;
+		debug = value;
+		createEnv();
 		try {
 			env.set(GRB.IntParam.LogToConsole, value ? 1 : 0);
 		} catch (GRBException e) {
@@ -141,7 +316,7 @@ public class MIPSolver implements IMIPSolver {
 	public void setMipGap(double value) throws SolverException {
 		mipgap = value;
 		try {
-			model.getEnv().set(GRB.DoubleParam.MIPGap, value);
+			if(model != null) model.getEnv().set(GRB.DoubleParam.MIPGap, value);
 		} catch (GRBException e) {
 			throw new SolverException(e);
 		}
@@ -155,24 +330,74 @@ public class MIPSolver implements IMIPSolver {
 	@Override
 	public void setSolveAsLP(boolean value) throws SolverException {
 		solveAsLP = value;
+		createEnv();
 		try {
-			if(value) {
-				env.set(GRB.DoubleParam.Heuristics, 0.0);
-				env.set(GRB.IntParam.Cuts, 0);
-				env.set(GRB.IntParam.Presolve, 0);
-			} else {
-				resetParams();
-			}
+			resetParams();
 		} catch (GRBException e) {
 			throw new SolverException(e);
 		}
 	}
 	
+	@Override
+	public void setPresolve(boolean value) {
+		presolve = value;
+	}
+
+	/**
+	 * Set whether the Gurobi variables and constraints get names. Without names, Gurobi uses its default names C0, R0, ...
+	 * @param value true to set the names, false to skip them
+	 */
+	@Override
+	public void setUseNames(boolean value) {
+		useNames = value;
+	}
+
+	/**
+	 * Set the separator. The model is then optimized with the LazyConstraints parameter, and is not presolved by the core.
+	 * @param separator the separator, or null to remove it
+	 */
+	@Override
+	public void setSeparator(Separator separator) {
+		this.separator = separator;
+	}
+	
+	@Override
+	public void setMetrics(SolveMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public SolveMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the listener of the solve events, which is called from a Gurobi callback during the optimization
+	 * @param listener the listener, or null to remove it
+	 */
+	@Override
+	public void setSolveListener(SolveListener listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Report the Gurobi calls and the time of a phase to the metrics listener
+	 * @param phase the phase
+	 * @param start the start time of the phase, in nanoseconds
+	 */
+	private void report(Phase phase, long start) {
+		metrics.nativeCalls(this, phase, calls);
+		metrics.time(this, phase, System.nanoTime() - start);
+		calls = 0;
+	}
+	
 	/**
 	 * Turn on the Gurobi feature to get extra output when a model is infeasible or unbounded
 	 * @param value true to turn on, or false to turn off
 	 */
-	public static void setUnboundInfo(boolean value) throws SolverException {
+	public void setUnboundInfo(boolean value) throws SolverException {
+		unboundInfo = value;
+		createEnv();
 		try {
 			env.set(GRB.IntParam.InfUnbdInfo, value ? 1 : 0);
 		} catch (GRBException e) {
@@ -189,6 +414,19 @@ public class MIPSolver implements IMIPSolver {
 		}
 	}
 	
+	/**
+	 * The duals are the Pi attribute of the constraints, which Gurobi only has after solving an LP
+	 */
+	@Override
+	public double[] getDuals() throws SolverException {
+		if(!lpSolved || presolved != null) return null;
+		try {
+			return model.get(GRB.DoubleAttr.Pi, grbConstrs.toArray(new GRBConstr[grbConstrs.size()]));
+		} catch (GRBException e) {
+			throw new SolverException("Gurobi error " + e.getErrorCode() + ": " + e.getMessage(), e);
+		}
+	}
+	
 	/**
 	 * Print the unbounded variables
 	 * @throws SolverException when an exception occurs in Gurobi
@@ -211,11 +449,161 @@ public class MIPSolver implements IMIPSolver {
 		}
 	}
 
+	@Override
+	public void setWarmStart(boolean value) {
+		warmStart = value;
+		if(!value) lastBasis = null;
+	}
+	
+	@Override
+	public void setMipStart(Map<Variable, Double> start) {
+		mipStart = start;
+		startPending = true;
+	}
+	
+	@Override
+	public Basis getBasis() {
+		if(model == null) return null;
+		try {
+			GRBConstr[] constrs = grbConstrs.toArray(new GRBConstr[grbConstrs.size()]);
+			int[] vbasis = model.get(GRB.IntAttr.VBasis, grbVars);
+			int[] cbasis = model.get(GRB.IntAttr.CBasis, constrs);
+			return new Basis(toStatus(vbasis), toStatus(cbasis));
+		} catch (GRBException e) {
+			return null; //PASS no basis is available, for example after solving a MIP
+		}
+	}
+	
+	@Override
+	public void setBasis(Basis basis) {
+		this.basis = basis;
+	}
+	
+	/**
+	 * Convert Gurobi basis codes to basis statuses
+	 * @param codes the Gurobi VBasis or CBasis values
+	 * @return the basis statuses
+	 */
+	private static Basis.Status[] toStatus(int[] codes) {
+		Basis.Status[] status = new Basis.Status[codes.length];
+		for(int i=0; i<codes.length; i++) {
+			switch(codes[i]) {
+			case GRB.BASIC: status[i] = Basis.Status.Basic; break;
+			case GRB.NONBASIC_LOWER: status[i] = Basis.Status.AtLower; break;
+			case GRB.NONBASIC_UPPER: status[i] = Basis.Status.AtUpper; break;
+			default: status[i] = Basis.Status.Free;
+			}
+		}
+		return status;
+	}
+	
+	/**
+	 * Convert basis statuses to Gurobi basis codes
+	 * @param status the basis statuses
+	 * @return the Gurobi VBasis or CBasis values
+	 */
+	private static int[] toCodes(Basis.Status[] status) {
+		int[] codes = new int[status.length];
+		for(int i=0; i<status.length; i++) {
+			switch(status[i]) {
+			case Basic: codes[i] = GRB.BASIC; break;
+			case AtLower: codes[i] = GRB.NONBASIC_LOWER; break;
+			case AtUpper: codes[i] = GRB.NONBASIC_UPPER; break;
+			default: codes[i] = GRB.SUPERBASIC;
+			}
+		}
+		return codes;
+	}
+	
+	/**
+	 * Pass the MIP start and the starting basis to Gurobi, if they are set or warm starts are enabled
+	 * @throws GRBException when an exception occurs in Gurobi
+	 */
+	private void applyWarmStart() throws GRBException {
+		if(startPending || warmStart) {
+			double[] start = mipInstance.getStartValues(startPending ? mipStart : null);
+			if(presolved != null) start = presolved.reduce(start);
+			for(int j=0; j<start.length; j++)
+				if(Double.isNaN(start[j])) start[j] = GRB.UNDEFINED;
+			model.set(GRB.DoubleAttr.Start, grbVars, start);
+			calls++;
+			startPending = false;
+			mipStart = null;
+		}
+		Basis b = basis != null ? basis : lastBasis;
+		if(b != null && b.fits(grbVars.length, grbConstrs.size())) {
+			GRBConstr[] constrs = grbConstrs.toArray(new GRBConstr[grbConstrs.size()]);
+			model.set(GRB.IntAttr.VBasis, grbVars, toCodes(b.getColumnStatus()));
+			model.set(GRB.IntAttr.CBasis, constrs, toCodes(b.getRowStatus()));
+			calls += 2;
+		}
+		basis = null;
+	}
+	
+	/**
+	 * Solve the model. With a separator, the violated constraints are added in a callback of the search.
+	 * Models without integer columns have no search, and are solved again until their solution violates no
+	 * separated constraint.
+	 */
 	@Override
 	public double solve() throws SolverException, InfeasibleException {
+		if(!terminateReset) terminated = false;
+		terminateReset = false;
+		if(separator == null) return optimize(null);
+		if(presolved != null) build(mipInstance);
+		Separation s = new Separation(mipInstance, separator);
+		separation = s;
+		if(terminated) s.stop();
 		try {
-			model.optimize();
+			if(builtAsLP || !matrix.hasIntegers()) return s.solve(this, () -> optimize(null));
+			return optimize(s);
+		} finally {
+			separation = null;
+			s.addToModel();
+			debug(s.toString());
+		}
+	}
+
+	/**
+	 * Optimize the model, and set the solution in the variables
+	 * @param separation the separation of the search, or null
+	 * @return the objective value
+	 * @throws SolverException when an exception occurs during solving, or the optimization was terminated without a solution
+	 * @throws InfeasibleException when the model is infeasible or unbounded
+	 */
+	private double optimize(Separation separation) throws SolverException, InfeasibleException {
+		if(presolved != null && presolved.isInfeasible())
+			throw new InfeasibleException("Model is infeasible (presolve)");
+		long start = metrics == null ? 0 : System.nanoTime();
+		calls = 0;
+		lpSolved = false;
+		try {
+			applyWarmStart();
+			optimizing = model;
+			if(terminated)
+				throw new SolverException("Terminated by application");
+			SolveEvents events = listener == null ? null : new SolveEvents(this, listener, presolved);
+			Callback callback = events == null && separation == null ? null : new Callback(events, grbVars, minimize);
+			if(separation != null) {
+				callback.setSeparation(separation);
+				model.set(GRB.IntParam.LazyConstraints, 1);
+				if(separation.separatesFractional()) model.set(GRB.IntParam.PreCrush, 1);
+				calls += 2;
+			}
+			if(callback != null) model.setCallback(callback);
+			try {
+				model.optimize();
+			} finally {
+				optimizing = null;
+				if(callback != null) model.setCallback(null);
+				if(separation != null) {
+					model.set(GRB.IntParam.LazyConstraints, 0);
+					model.set(GRB.IntParam.PreCrush, 0);
+				}
+			}
+			if(callback != null && callback.error != null) throw callback.error;
 			int optimstatus = model.get(GRB.IntAttr.Status);
+			calls += 2;
 			if (optimstatus == GRB.Status.INF_OR_UNBD) {
 				throw new InfeasibleException("Model is infeasible or unbounded");
 			} else if (optimstatus == GRB.Status.INFEASIBLE) {
@@ -229,19 +617,47 @@ public class MIPSolver implements IMIPSolver {
 					throw new InfeasibleException("Model is unbounded");
 				model.set(GRB.IntParam.PreDual, 0);
 				model.set(GRB.IntParam.DualReductions, 0);
-				return solve();
+				return optimize(separation);
+			}
+			if (optimstatus == GRB.Status.INTERRUPTED && model.get(GRB.IntAttr.SolCount) == 0) {
+				throw new SolverException("Terminated by application without a solution");
 			}
 			if (optimstatus == GRB.Status.TIME_LIMIT) {
 				System.out.println("Time limit reached with mip gap " + model.get(GRB.DoubleAttr.MIPGap));
 			}
+			double gap = Double.NaN;
 			try {
-				mipInstance.setMipGap(model.get(GRB.DoubleAttr.MIPGap));
+				gap = model.get(GRB.DoubleAttr.MIPGap);
+				mipInstance.setMipGap(gap);
 			} catch (GRBException e) {} //PASS model contains no integer variables, and therefore has no MIPGap
-			for (Variable v : mipInstance.getVars()) {
-				v.setSolution(varMap.get(v).get(GRB.DoubleAttr.X));
+			calls++;
+			lpSolved = Double.isNaN(gap);
+			if(events != null && !Double.isNaN(gap)) {
+				double obj = model.get(GRB.IntAttr.SolCount) > 0 ? model.get(GRB.DoubleAttr.ObjVal) : Double.NaN;
+				events.progress((long) model.get(GRB.DoubleAttr.NodeCount), obj, model.get(GRB.DoubleAttr.ObjBound), true);
+			}
+			if(metrics != null) {
+				// like the gap, the node count is only defined for models with integer variables
+				long nodes = Double.isNaN(gap) ? -1 : (long) model.get(GRB.DoubleAttr.NodeCount);
+				long iterations = (long) model.get(GRB.DoubleAttr.IterCount);
+				calls += Double.isNaN(gap) ? 1 : 2;
+				report(Phase.Optimize, start);
+				metrics.progress(this, iterations, nodes, gap);
+				start = System.nanoTime();
+			}
+			double[] x = model.get(GRB.DoubleAttr.X, grbVars);
+			if(presolved != null) x = presolved.postsolve(x);
+			mipInstance.setSolution(x);
+			double obj = model.get(GRB.DoubleAttr.ObjVal);
+			if(metrics != null) {
+				calls = 2;
+				report(Phase.Extract, start);
+				start = System.nanoTime();
 			}
 			mipInstance.writeSolution();
-			return model.get(GRB.DoubleAttr.ObjVal);
+			if(metrics != null) metrics.time(this, Phase.WriteSolution, System.nanoTime() - start);
+			if(warmStart) lastBasis = getBasis();
+			return obj;
 		} catch (GRBException e) {
 			throw new SolverException("Exception in solving the model. Gurobi error " + e.getErrorCode() + ": " + e.getMessage(), e);
 		} catch (InfeasibleException e) {
@@ -283,22 +699,6 @@ public class MIPSolver implements IMIPSolver {
 		
 	}
 	
-	/**
-	 * Add a constraint to the gurobi model
-	 * @param m the gurobi model
-	 * @param c the constraint to be added
-	 * @return the resulting gurobi constraint
-	 * @throws SolverException when an exception occurs in Gurobi, 
-	 * or when a variable in a constraint does not exist
-	 */
-	private GRBConstr addConstraint(GRBModel m, Constraint c) throws SolverException {
-		try {
-			return m.addConstr(createLinExpr(c.getLeft()), GRBcomparator(c.getComparator()), createLinExpr(c.getRight()), c.getName());
-		} catch(GRBException e) {
-			throw new SolverException("Exception in adding constraint " + c, e);
-		}
-	}
-	
 	/**
 	 * Create a Gurobi expression
 	 * @param exp the expression to transform into a gurobi expression
@@ -320,11 +720,13 @@ public class MIPSolver implements IMIPSolver {
 	 */
 	private GRBLinExpr createLinExpr(LinExp exp) throws SolverException {
 		GRBLinExpr grbLinExpr = new GRBLinExpr();
-		for(Variable v: exp.getVariables()) {
-			if(varMap.containsKey(v))
-				grbLinExpr.addTerm(exp.get(v), varMap.get(v));
+		for(int i=0; i<exp.size(); i++) {
+			Variable v = exp.getVariableAt(i);
+			int index = registry.indexOf(v);
+			if(index >= 0)
+				grbLinExpr.addTerm(exp.getCoefficientAt(i), grbVars[index]);
 			else if(v == Variable.CONST)
-				grbLinExpr.addConstant(exp.get(v));
+				grbLinExpr.addConstant(exp.getCoefficientAt(i));
 			else
 				throw new SolverException("adding unknown variable " + v.getName() + " in " + exp.toString());
 		}	
@@ -337,8 +739,9 @@ public class MIPSolver implements IMIPSolver {
 	 * @return the gurobi variable
 	 */
 	private GRBVar getVar(Variable v) {
-		if(varMap.containsKey(v))
-			return varMap.get(v);
+		int index = registry.indexOf(v);
+		if(index >= 0)
+			return grbVars[index];
 		return null;
 	}
 	
@@ -361,7 +764,7 @@ public class MIPSolver implements IMIPSolver {
 		GRBQuadExpr grbQuadExpr = new GRBQuadExpr();
 		for(VariablePair v: exp.getVariablePairs()) {
 			if(!v.isConstant()) {
-				GRBVar[] vars = v.getVariables().stream().map(w -> varMap.get(w)).toArray(GRBVar[]::new);
+				GRBVar[] vars = v.getVariables().stream().map(w -> getVar(w)).toArray(GRBVar[]::new);
 				if(vars.length == 1)
 					grbQuadExpr.addTerm(exp.get(v), vars[0]);
 				else
@@ -372,19 +775,6 @@ public class MIPSolver implements IMIPSolver {
 		return grbQuadExpr;
 	}
 	
-	/**
-	 * Get the Gurobi comparator
-	 * @param cmp the comparator
-	 * @return the gurobi comparator
-	 */
-	private char GRBcomparator(CMP cmp) {
-		switch(cmp) {
-		case SMALLEREQ: return GRB.LESS_EQUAL;
-		case LARGEREQ: return GRB.GREATER_EQUAL;
-		default: return GRB.EQUAL;
-		}
-	}
-	
 	/**
 	 * Get the gurobi model
 	 */
@@ -393,9 +783,9 @@ public class MIPSolver implements IMIPSolver {
 	}
 	
 	/**
-	 * Get the gurobi environment
+	 * Get the gurobi environment of this solver
 	 */
-	public static GRBEnv getEnv() {
+	public GRBEnv getEnv() {
 		return env;
 	}
 	
@@ -409,21 +799,74 @@ public class MIPSolver implements IMIPSolver {
 		}
 	}
 
+	@Override
+	public void reset() throws SolverException {
+		minimize = true;
+		setMipGap(1e-4);
+		setWarmStart(false);
+		mipStart = null;
+		startPending = false;
+		basis = null;
+		presolve = false;
+		useNames = true;
+		separator = null;
+		listener = null;
+		metrics = null;
+		logToConsole = DEBUG;
+		debug = false;
+		solveAsLP = false;
+		createEnv();
+		try {
+			resetParams();
+		} catch (GRBException e) {
+			throw new SolverException(e);
+		}
+	}
+
+	@Override
+	public void resetTerminate() {
+		terminated = false;
+		terminateReset = true;
+	}
+
+	/**
+	 * Terminate the optimization from another thread with GRBModel.terminate. The solve then returns the 
+	 * incumbent, or throws a SolverException if there is none.
+	 */
+	@Override
+	public void terminate() {
+		terminated = true;
+		Separation s = separation;
+		if(s != null) s.stop();
+		GRBModel m = optimizing;
+		if(m != null) m.terminate();
+	}
+
+	/**
+	 * Dispose the model and the environment. The environment is created again when a new model is built,
+	 * with the parameters that were set on this solver.
+	 */
 	@Override
 	public void dispose() {
 		if(model!= null)
 			model.dispose();
+		model = null;
+		if(env != null) {
+			try {
+				env.dispose();
+			} catch (GRBException e) {} //PASS the environment is released anyway
+		}
+		env = null;
 	}
 
 	@Override
 	public void setLogFile(String mipLogFile) throws SolverException {
+		logFile = mipLogFile;
 		try {
-   		if(env != null) 
-   			env.set(GRB.StringParam.LogFile, mipLogFile);
-   		else {
-   			env = new GRBEnv(mipLogFile);
-   			resetParams();
-   		}
+			if(env != null) 
+				env.set(GRB.StringParam.LogFile, mipLogFile);
+			else 
+				createEnv();
 		} catch (GRBException e) {
 			throw new SolverException(e);
 		}
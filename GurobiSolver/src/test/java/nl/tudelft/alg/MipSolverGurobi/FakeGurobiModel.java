@@ -0,0 +1,71 @@
+package nl.tudelft.alg.MipSolverGurobi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gurobi.GRBConstr;
+import gurobi.GRBVar;
+
+/**
+ * A Gurobi model that records the arrays of the bulk operations, to test the model construction without Gurobi.
+ * The returned variables and constraints are null.
+ */
+public class FakeGurobiModel implements IGurobiModel {
+
+	/**
+	 * The arguments of an addVars call
+	 */
+	static class AddVars {
+		double[] lb, ub, obj;
+		char[] type;
+		String[] names;
+	}
+
+	/**
+	 * The arguments of an addConstrs call
+	 */
+	static class AddConstrs {
+		GRBVar[] vars;
+		int[] starts, columns;
+		double[] coeffs;
+		char[] senses;
+		double[] rhs;
+		String[] names;
+	}
+
+	final List<AddVars> addVars = new ArrayList<AddVars>();
+	final List<AddConstrs> addConstrs = new ArrayList<AddConstrs>();
+	int updates;
+
+	@Override
+	public GRBVar[] addVars(double[] lb, double[] ub, double[] obj, char[] type, String[] names) {
+		AddVars call = new AddVars();
+		call.lb = lb;
+		call.ub = ub;
+		call.obj = obj;
+		call.type = type;
+		call.names = names;
+		addVars.add(call);
+		return new GRBVar[type.length];
+	}
+
+	@Override
+	public GRBConstr[] addConstrs(GRBVar[] vars, int[] starts, int[] columns, double[] coeffs, char[] senses, double[] rhs,
+			String[] names) {
+		AddConstrs call = new AddConstrs();
+		call.vars = vars;
+		call.starts = starts;
+		call.columns = columns;
+		call.coeffs = coeffs;
+		call.senses = senses;
+		call.rhs = rhs;
+		call.names = names;
+		addConstrs.add(call);
+		return new GRBConstr[senses.length];
+	}
+
+	@Override
+	public void update() {
+		updates++;
+	}
+}
@@ -0,0 +1,137 @@
+package nl.tudelft.alg.MipSolverGurobi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import gurobi.GRB;
+import gurobi.GRBException;
+import gurobi.GRBVar;
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+import nl.tudelft.alg.MipSolverCore.SolverException;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * Checks the arrays that GurobiModelBuilder passes to the bulk operations of the Gurobi model
+ */
+public class GurobiModelBuilderTest {
+
+	/**
+	 * A model with a binary, an integer and a continuous column and three rows
+	 */
+	static class SmallMIP extends MIP {
+		Variable x0, x1, x2;
+
+		@Override
+		protected void initiliazeVars() {
+			x0 = new Variable("x0", VarType.Binary);
+			x1 = new Variable("x1", VarType.Integer, 0, 5);
+			x2 = new Variable("x2", VarType.PositiveContinuous);
+		}
+
+		@Override
+		protected void setVars() {
+			addVars(x0, x1, x2);
+		}
+
+		@Override
+		protected void setConstraints() {
+			addConstraint(new LinExp().addTerm(x0, 1).addTerm(x1, 2), new LinExp().addTerm(4), CMP.SMALLEREQ, "c0");
+			addConstraint(new LinExp().addTerm(x1, 1).addTerm(x2, -1), new LinExp().addTerm(1), CMP.LARGEREQ, "c1");
+			addConstraint(new LinExp().addTerm(x0, 1).addTerm(x2, 1), new LinExp().addTerm(2), CMP.EQ, "c2");
+		}
+
+		@Override
+		protected void setObjectiveFunction() {
+			objectiveFunction = new LinExp().addTerm(x0, 1).addTerm(x1, 2).addTerm(x2, 3);
+		}
+
+		@Override
+		public void writeSolution() {}
+
+		@Override
+		public void printSolution() {}
+	}
+
+	ModelMatrix matrix;
+	FakeGurobiModel model;
+
+	@Before
+	public void setUp() throws SolverException {
+		SmallMIP mip = new SmallMIP();
+		mip.initialize(null);
+		matrix = ModelMatrix.compile(mip);
+		model = new FakeGurobiModel();
+	}
+
+	@Test
+	public void testAddVariables() throws GRBException {
+		new GurobiModelBuilder(model, matrix).addVariables();
+		assertEquals(1, model.addVars.size());
+		assertEquals(1, model.updates);
+		FakeGurobiModel.AddVars call = model.addVars.get(0);
+		assertArrayEquals(new double[] {0, 0, 0}, call.lb, 0);
+		assertArrayEquals(new double[] {1, 5, ModelMatrix.getUpperBound(VarType.PositiveContinuous)}, call.ub, 0);
+		assertNull(call.obj);
+		assertArrayEquals(new char[] {GRB.BINARY, GRB.INTEGER, GRB.CONTINUOUS}, call.type);
+		assertArrayEquals(new String[] {"x0", "x1", "x2"}, call.names);
+	}
+
+	@Test
+	public void testAddVariableRange() throws GRBException {
+		new GurobiModelBuilder(model, matrix).addVariables(1);
+		FakeGurobiModel.AddVars call = model.addVars.get(0);
+		assertArrayEquals(new double[] {0, 0}, call.lb, 0);
+		assertArrayEquals(new double[] {5, ModelMatrix.getUpperBound(VarType.PositiveContinuous)}, call.ub, 0);
+		assertArrayEquals(new double[] {2, 3}, call.obj, 0);
+		assertArrayEquals(new char[] {GRB.INTEGER, GRB.CONTINUOUS}, call.type);
+		assertArrayEquals(new String[] {"x1", "x2"}, call.names);
+	}
+
+	@Test
+	public void testAddConstraintBatches() throws GRBException {
+		GRBVar[] vars = new GRBVar[3];
+		new GurobiModelBuilder(model, matrix).setBatchSize(2).addConstraints(vars);
+		assertEquals(2, model.addConstrs.size());
+		FakeGurobiModel.AddConstrs first = model.addConstrs.get(0);
+		assertSame(vars, first.vars);
+		assertArrayEquals(new int[] {0, 2, 4}, first.starts);
+		assertArrayEquals(new int[] {0, 1, 1, 2}, first.columns);
+		assertArrayEquals(new double[] {1, 2, 1, -1}, first.coeffs, 0);
+		assertArrayEquals(new char[] {GRB.LESS_EQUAL, GRB.GREATER_EQUAL}, first.senses);
+		assertArrayEquals(new double[] {4, 1}, first.rhs, 0);
+		assertArrayEquals(new String[] {"c0", "c1"}, first.names);
+		// the starts of the second batch are relative to its first term
+		FakeGurobiModel.AddConstrs second = model.addConstrs.get(1);
+		assertArrayEquals(new int[] {0, 2}, second.starts);
+		assertArrayEquals(new int[] {0, 2}, second.columns);
+		assertArrayEquals(new double[] {1, 1}, second.coeffs, 0);
+		assertArrayEquals(new char[] {GRB.EQUAL}, second.senses);
+		assertArrayEquals(new double[] {2}, second.rhs, 0);
+		assertArrayEquals(new String[] {"c2"}, second.names);
+	}
+
+	@Test
+	public void testWithoutNames() throws GRBException {
+		GurobiModelBuilder builder = new GurobiModelBuilder(model, matrix).setUseNames(false);
+		builder.addConstraints(builder.addVariables());
+		assertNull(model.addVars.get(0).names);
+		assertNull(model.addConstrs.get(0).names);
+	}
+
+	@Test
+	public void testRelaxed() throws GRBException {
+		new GurobiModelBuilder(model, matrix).setRelaxed(true).addVariables();
+		assertArrayEquals(new char[] {GRB.CONTINUOUS, GRB.CONTINUOUS, GRB.CONTINUOUS}, model.addVars.get(0).type);
+		assertArrayEquals(new double[] {1, 5, ModelMatrix.getUpperBound(VarType.PositiveContinuous)}, 
+				model.addVars.get(0).ub, 0);
+	}
+}
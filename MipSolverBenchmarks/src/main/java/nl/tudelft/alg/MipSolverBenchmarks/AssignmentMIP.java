@@ -0,0 +1,87 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.Random;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * A generated assignment problem: assign n agents to n tasks at minimum cost
+ */
+public class AssignmentMIP extends MIP {
+	final int n;
+	final double[][] cost;
+	Variable[][] x;
+	double[][] assignment;
+
+	/**
+	 * Create an assignment problem with random costs
+	 * @param n the number of agents and tasks
+	 * @param seed the random seed for the costs
+	 */
+	public AssignmentMIP(int n, long seed) {
+		this.n = n;
+		Random random = new Random(seed);
+		cost = new double[n][n];
+		for(int i=0; i<n; i++)
+			for(int j=0; j<n; j++)
+				cost[i][j] = 1 + random.nextInt(100);
+	}
+
+	@Override
+	protected void initiliazeVars() {
+		x = (Variable[][]) newVarArray("x", VarType.Binary, n, n);
+	}
+
+	@Override
+	protected void setVars() {
+		addVars(x);
+	}
+
+	@Override
+	protected void setConstraints() {
+		for(int i=0; i<n; i++) {
+			LinExp left = new LinExp();
+			for(int j=0; j<n; j++)
+				left.addTerm(x[i][j]);
+			addConstraint(left, new LinExp(1), CMP.EQ, "agent_" + i);
+		}
+		for(int j=0; j<n; j++) {
+			LinExp left = new LinExp();
+			for(int i=0; i<n; i++)
+				left.addTerm(x[i][j]);
+			addConstraint(left, new LinExp(1), CMP.EQ, "task_" + j);
+		}
+	}
+
+	@Override
+	protected void setObjectiveFunction() {
+		LinExp obj = new LinExp();
+		for(int i=0; i<n; i++)
+			for(int j=0; j<n; j++)
+				obj.addTerm(x[i][j], cost[i][j]);
+		objectiveFunction = obj;
+	}
+
+	/**
+	 * @return the assignment variables, by agent and task
+	 */
+	public Variable[][] getX() {
+		return x;
+	}
+
+	@Override
+	public void writeSolution() {
+		assignment = getValues(x);
+	}
+
+	@Override
+	public void printSolution() {
+		for(int i=0; i<n; i++)
+			for(int j=0; j<n; j++)
+				if(assignment[i][j] > 0.5) System.out.println(i + " -> " + j);
+	}
+}
@@ -0,0 +1,23 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which reports the allocation rate (gc.alloc.rate) and the bytes allocated 
+ * per operation (gc.alloc.rate.norm) next to the time of every benchmark.
+ * The first argument is an optional regular expression to select benchmarks, for example "ExpressionBenchmark".
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "nl.tudelft.alg.MipSolverBenchmarks")
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
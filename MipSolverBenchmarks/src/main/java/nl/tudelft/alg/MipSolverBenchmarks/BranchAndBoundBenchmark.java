@@ -0,0 +1,63 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.SolverException;
+import nl.tudelft.alg.MipSolverJava.JavaSolver;
+
+/**
+ * Scaling of the parallel branch and bound of the Java solver from 1 to 8 threads, on generated knapsack problems
+ * (which need many nodes). Besides the solve time, the number of nodes is reported, so the node throughput
+ * is the number of nodes divided by the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class BranchAndBoundBenchmark {
+	@Param({"1", "2", "4", "8"})
+	int threads;
+	@Param({"60", "100"})
+	int size;
+
+	/**
+	 * The number of branch and bound nodes, reported next to the time
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Nodes {
+		public long nodes;
+	}
+
+	@Benchmark
+	public double solve(Nodes counter) throws SolverException {
+		KnapsackMIP mip = new KnapsackMIP(size, 42);
+		JavaSolver solver = new JavaSolver();
+		try {
+			solver.setThreads(threads);
+			solver.setMipGap(0);
+			solver.setMinimize(false);
+			mip.initialize(solver);
+			solver.build(mip);
+			double obj = solver.solve();
+			counter.nodes += solver.getNodeCount();
+			return obj;
+		} finally {
+			solver.dispose();
+		}
+	}
+}
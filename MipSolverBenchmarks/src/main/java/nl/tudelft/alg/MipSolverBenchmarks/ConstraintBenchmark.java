@@ -0,0 +1,57 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+
+/**
+ * Measures constraint creation through MIP.addConstraint and MIP.fixVariable, on an initialized assignment model
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+public class ConstraintBenchmark {
+	@Param({"100", "300"})
+	int size;
+	AssignmentMIP mip;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+		mip = new AssignmentMIP(size, 42);
+		mip.initialize(null);
+	}
+
+	@Benchmark
+	public AssignmentMIP addConstraints() {
+		for(int i=0; i<size; i++) {
+			LinExp left = new LinExp();
+			for(int j=0; j<size; j++)
+				left.addTerm(mip.getX()[i][j], j);
+			mip.addConstraint(left, new LinExp(size), CMP.SMALLEREQ, "extra_" + i);
+		}
+		return mip;
+	}
+
+	@Benchmark
+	public AssignmentMIP fixVariables() {
+		mip.fixVariables(0, (Object) mip.getX());
+		return mip;
+	}
+}
@@ -0,0 +1,83 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * Measures building linear expressions: the varargs constructor, term by term, and summing expressions with addLinExp
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ExpressionBenchmark {
+	static final int PARTS = 10;
+	@Param({"10", "100", "1000"})
+	int size;
+	Variable[] vars;
+	double[] coefs;
+	Object[] terms;
+	LinExp[] parts;
+
+	@Setup
+	public void setup() {
+		vars = new Variable[size];
+		coefs = new double[size];
+		terms = new Object[2*size];
+		for(int i=0; i<size; i++) {
+			vars[i] = new Variable("x_" + i, VarType.PositiveContinuous);
+			coefs[i] = i + 1;
+			terms[2*i] = coefs[i];
+			terms[2*i+1] = vars[i];
+		}
+		// PARTS overlapping expressions of size variables each
+		parts = new LinExp[PARTS];
+		for(int p=0; p<PARTS; p++) {
+			parts[p] = new LinExp();
+			for(int i=0; i<size; i++)
+				parts[p].addTerm(vars[(i * 7 + p) % size], coefs[i]);
+		}
+	}
+
+	@Benchmark
+	public LinExp varargsConstructor() {
+		LinExp e = new LinExp(terms);
+		e.size(); // merge the terms
+		return e;
+	}
+
+	@Benchmark
+	public LinExp addTerms() {
+		LinExp e = new LinExp();
+		for(int i=0; i<size; i++)
+			e.addTerm(vars[i], coefs[i]);
+		e.size(); // merge the terms
+		return e;
+	}
+
+	@Benchmark
+	public LinExp addLinExp() {
+		LinExp e = new LinExp();
+		for(LinExp part: parts)
+			e.addLinExp(part);
+		e.size(); // merge the terms
+		return e;
+	}
+}
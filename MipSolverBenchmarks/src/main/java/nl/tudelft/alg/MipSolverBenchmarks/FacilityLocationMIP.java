@@ -0,0 +1,93 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.Random;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * A generated uncapacitated facility location problem: open facilities and serve every customer from an open facility,
+ * at minimum opening and service cost. Facilities and customers are random points in the unit square.
+ */
+public class FacilityLocationMIP extends MIP {
+	final int m, n;
+	final double[] openCost;
+	final double[][] serviceCost;
+	Variable[] y;
+	Variable[][] x;
+	double[] open;
+
+	/**
+	 * @param m the number of facilities
+	 * @param n the number of customers
+	 * @param seed the random seed
+	 */
+	public FacilityLocationMIP(int m, int n, long seed) {
+		this.m = m;
+		this.n = n;
+		Random random = new Random(seed);
+		double[][] facilities = new double[m][2];
+		openCost = new double[m];
+		for(int i=0; i<m; i++) {
+			facilities[i][0] = random.nextDouble();
+			facilities[i][1] = random.nextDouble();
+			openCost[i] = 5 + random.nextInt(16);
+		}
+		serviceCost = new double[m][n];
+		for(int j=0; j<n; j++) {
+			double cx = random.nextDouble(), cy = random.nextDouble();
+			for(int i=0; i<m; i++)
+				serviceCost[i][j] = 10 * Math.hypot(facilities[i][0] - cx, facilities[i][1] - cy);
+		}
+	}
+
+	@Override
+	protected void initiliazeVars() {
+		y = (Variable[]) newVarArray("y", VarType.Binary, m);
+		x = (Variable[][]) newVarArray("x", VarType.BinaryContinuous, m, n);
+	}
+
+	@Override
+	protected void setVars() {
+		addVars(y);
+		addVars(x);
+	}
+
+	@Override
+	protected void setConstraints() {
+		for(int j=0; j<n; j++) {
+			LinExp left = new LinExp();
+			for(int i=0; i<m; i++)
+				left.addTerm(x[i][j]);
+			addConstraint(left, new LinExp(1), CMP.EQ, "serve_" + j);
+		}
+		for(int i=0; i<m; i++)
+			for(int j=0; j<n; j++)
+				addConstraint(new LinExp(x[i][j]), new LinExp(y[i]), CMP.SMALLEREQ, "open_" + i + "_" + j);
+	}
+
+	@Override
+	protected void setObjectiveFunction() {
+		LinExp obj = new LinExp();
+		for(int i=0; i<m; i++) {
+			obj.addTerm(y[i], openCost[i]);
+			for(int j=0; j<n; j++)
+				obj.addTerm(x[i][j], serviceCost[i][j]);
+		}
+		objectiveFunction = obj;
+	}
+
+	@Override
+	public void writeSolution() {
+		open = getValues(y);
+	}
+
+	@Override
+	public void printSolution() {
+		for(int i=0; i<m; i++)
+			if(open[i] > 0.5) System.out.println("facility " + i);
+	}
+}
@@ -0,0 +1,65 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import nl.tudelft.alg.MipSolverCore.LRModel;
+import nl.tudelft.alg.MipSolverCore.LRProblem;
+import nl.tudelft.alg.MipSolverCore.MIP;
+
+/**
+ * A lagrangian relaxation of a GAP: the assignment constraints are relaxed, which leaves one knapsack subproblem per agent.
+ * The subproblem models are reused in every iteration, so that the solver only updates their objective.
+ */
+public class GAPLRModel extends LRModel<GAPProblem> {
+	final int iterations;
+	GAPLagrangian relax;
+	GAPSubproblem[] subproblems;
+	GAPMaster master;
+
+	/**
+	 * @param problem the GAP
+	 * @param iterations the maximum number of lagrangian iterations
+	 */
+	public GAPLRModel(GAPProblem problem, int iterations) {
+		super(problem);
+		this.iterations = iterations;
+	}
+
+	@Override
+	public int getNSubproblems() {
+		return problem.nAgents;
+	}
+
+	/**
+	 * The knapsack constraints of the subproblems do not depend on the multipliers, only their objective does
+	 */
+	@Override
+	public boolean isObjectiveOnlyUpdate() {
+		return true;
+	}
+
+	@Override
+	public MIP getSubproblemModel(int e, LRProblem<GAPProblem> problem) {
+		if(subproblems == null)
+			subproblems = new GAPSubproblem[getNSubproblems()];
+		if(subproblems[e] == null)
+			subproblems[e] = new GAPSubproblem(relax, e);
+		return subproblems[e];
+	}
+
+	@Override
+	public MIP getMasterProblemModel(LRProblem<GAPProblem> problem) {
+		master = new GAPMaster(relax);
+		return master;
+	}
+
+	@Override
+	public LRProblem<GAPProblem> getLagrangianProblem() {
+		if(relax == null)
+			relax = new GAPLagrangian(this, iterations);
+		return relax;
+	}
+
+	@Override
+	public void printSolution() {
+		if(master != null) master.printSolution();
+	}
+}
@@ -0,0 +1,74 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import nl.tudelft.alg.MipSolverCore.LRProblem;
+
+/**
+ * The lagrangian relaxation of the assignment constraints of a GAP, with one multiplier per job.
+ * The multipliers are updated with subgradient steps.
+ */
+public class GAPLagrangian extends LRProblem<GAPProblem> {
+	final double[] lambda;
+	final double[][] assigned;
+
+	/**
+	 * @param instance the lagrangian model
+	 * @param iterations the maximum number of iterations
+	 */
+	public GAPLagrangian(GAPLRModel instance, int iterations) {
+		super(instance);
+		lambda = new double[problem.nJobs];
+		assigned = new double[problem.nAgents][problem.nJobs];
+		maxIter = iterations;
+		gap = new double[maxIter];
+		upobject = new double[maxIter];
+		lowobject = new double[maxIter];
+		// Start with the multipliers at the cheapest assignment of every job, and a trivial upper bound
+		for(int j=0; j<problem.nJobs; j++) {
+			double min = Double.MAX_VALUE, max = 0;
+			for(int k=0; k<problem.nAgents; k++) {
+				min = Math.min(min, problem.cost[k][j]);
+				max = Math.max(max, problem.cost[k][j]);
+			}
+			lambda[j] = min;
+			bestObj += max;
+		}
+	}
+
+	/**
+	 * @return the GAP
+	 */
+	public GAPProblem getProblem() {
+		return problem;
+	}
+
+	/**
+	 * @param k the agent
+	 * @param j the job
+	 * @return the reduced cost of assigning job j to agent k
+	 */
+	public double getReducedCost(int k, int j) {
+		return problem.cost[k][j] - lambda[j];
+	}
+
+	@Override
+	public void addTolowerObj() {
+		for(int j=0; j<problem.nJobs; j++)
+			lowerObj += lambda[j];
+	}
+
+	@Override
+	public void updateMultipliers() {
+		double[] g = new double[problem.nJobs];
+		double norm = 0;
+		for(int j=0; j<problem.nJobs; j++) {
+			g[j] = 1;
+			for(int k=0; k<problem.nAgents; k++)
+				g[j] -= assigned[k][j];
+			norm += g[j] * g[j];
+		}
+		if(norm == 0) return;
+		double step = maxStep * (bestObj - lowerObj) / norm;
+		for(int j=0; j<problem.nJobs; j++)
+			lambda[j] += step * g[j];
+	}
+}
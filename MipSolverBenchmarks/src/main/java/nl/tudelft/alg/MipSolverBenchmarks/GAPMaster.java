@@ -0,0 +1,97 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * The master problem of the GAP lagrangian relaxation: a repair heuristic that solves the GAP restricted to the
+ * assignments chosen by the subproblems and the two cheapest agents of every job.
+ * Unassigned jobs are allowed at a high penalty, so the master problem is always feasible.
+ */
+public class GAPMaster extends MIP {
+	static final double PENALTY = 1e4;
+	final GAPProblem problem;
+	final GAPLagrangian relax;
+	Variable[][] x;
+	Variable[] unassigned;
+
+	public GAPMaster(GAPLagrangian relax) {
+		this.relax = relax;
+		this.problem = relax.getProblem();
+	}
+
+	@Override
+	protected void initiliazeVars() {
+		x = new Variable[problem.nAgents][problem.nJobs];
+		for(int j=0; j<problem.nJobs; j++) {
+			int first = -1, second = -1;
+			for(int k=0; k<problem.nAgents; k++) {
+				if(first < 0 || problem.cost[k][j] < problem.cost[first][j]) {
+					second = first;
+					first = k;
+				} else if(second < 0 || problem.cost[k][j] < problem.cost[second][j])
+					second = k;
+			}
+			for(int k=0; k<problem.nAgents; k++)
+				if(k == first || k == second || relax.assigned[k][j] > 0.5)
+					x[k][j] = new Variable("x_" + k + "_" + j, VarType.Binary);
+		}
+		unassigned = (Variable[]) newVarArray("u", VarType.BinaryContinuous, problem.nJobs);
+	}
+
+	@Override
+	protected void setVars() {
+		addVars(x);
+		addVars(unassigned);
+	}
+
+	@Override
+	protected void setConstraints() {
+		for(int j=0; j<problem.nJobs; j++) {
+			LinExp left = new LinExp(unassigned[j]);
+			for(int k=0; k<problem.nAgents; k++)
+				if(x[k][j] != null) left.addTerm(x[k][j]);
+			addConstraint(left, new LinExp(1), CMP.EQ, "job_" + j);
+		}
+		for(int k=0; k<problem.nAgents; k++) {
+			LinExp left = new LinExp();
+			for(int j=0; j<problem.nJobs; j++)
+				if(x[k][j] != null) left.addTerm(x[k][j], problem.weight[k][j]);
+			addConstraint(left, new LinExp(problem.capacity[k]), CMP.SMALLEREQ, "capacity_" + k);
+		}
+	}
+
+	@Override
+	protected void setObjectiveFunction() {
+		LinExp obj = new LinExp();
+		for(int j=0; j<problem.nJobs; j++) {
+			obj.addTerm(unassigned[j], PENALTY);
+			for(int k=0; k<problem.nAgents; k++)
+				if(x[k][j] != null) obj.addTerm(x[k][j], problem.cost[k][j]);
+		}
+		objectiveFunction = obj;
+	}
+
+	@Override
+	public void writeSolution() {
+		double cost = 0;
+		for(int j=0; j<problem.nJobs; j++) {
+			if(unassigned[j].getValue() > 0.5) return;
+			for(int k=0; k<problem.nAgents; k++)
+				if(x[k][j] != null && x[k][j].getValue() > 0.5) cost += problem.cost[k][j];
+		}
+		relax.setUPObj(cost);
+		if(cost < relax.getBestSolution())
+			relax.setBestSolution(cost);
+	}
+
+	@Override
+	public void printSolution() {
+		for(int k=0; k<problem.nAgents; k++)
+			for(int j=0; j<problem.nJobs; j++)
+				if(x[k][j] != null && x[k][j].getValue() > 0.5) System.out.println(k + " -> " + j);
+	}
+}
@@ -0,0 +1,47 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.Random;
+
+import nl.tudelft.alg.MipSolverCore.IProblem;
+
+/**
+ * A generated generalized assignment problem (GAP): assign every job to one agent at minimum cost,
+ * such that the total weight of the jobs of an agent does not exceed its capacity
+ */
+public class GAPProblem implements IProblem {
+	final int nAgents, nJobs;
+	final double[][] cost, weight;
+	final double[] capacity;
+
+	/**
+	 * Create a GAP with random costs and weights, and capacities of 80% of the average load per agent
+	 * @param nAgents the number of agents
+	 * @param nJobs the number of jobs
+	 * @param seed the random seed
+	 */
+	public GAPProblem(int nAgents, int nJobs, long seed) {
+		this.nAgents = nAgents;
+		this.nJobs = nJobs;
+		Random random = new Random(seed);
+		cost = new double[nAgents][nJobs];
+		weight = new double[nAgents][nJobs];
+		capacity = new double[nAgents];
+		for(int k=0; k<nAgents; k++) {
+			double load = 0;
+			for(int j=0; j<nJobs; j++) {
+				cost[k][j] = 10 + random.nextInt(41);
+				weight[k][j] = 5 + random.nextInt(21);
+				load += weight[k][j];
+			}
+			capacity[k] = Math.floor(0.8 * load / nAgents);
+		}
+	}
+
+	public int getNAgents() {
+		return nAgents;
+	}
+
+	public int getNJobs() {
+		return nJobs;
+	}
+}
@@ -0,0 +1,69 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * The lagrangian subproblem of one agent of a GAP: a knapsack problem with the reduced costs as objective
+ */
+public class GAPSubproblem extends MIP {
+	final GAPProblem problem;
+	final GAPLagrangian relax;
+	final int k;
+	Variable[] y;
+
+	/**
+	 * @param relax the lagrangian problem
+	 * @param k the agent
+	 */
+	public GAPSubproblem(GAPLagrangian relax, int k) {
+		this.relax = relax;
+		this.problem = relax.getProblem();
+		this.k = k;
+	}
+
+	@Override
+	protected void initiliazeVars() {
+		y = (Variable[]) newVarArray("y_" + k, VarType.Binary, problem.nJobs);
+	}
+
+	@Override
+	protected void setVars() {
+		addVars(y);
+	}
+
+	@Override
+	protected void setConstraints() {
+		LinExp left = new LinExp();
+		for(int j=0; j<problem.nJobs; j++)
+			left.addTerm(y[j], problem.weight[k][j]);
+		addConstraint(left, new LinExp(problem.capacity[k]), CMP.SMALLEREQ, "capacity_" + k);
+	}
+
+	@Override
+	protected void setObjectiveFunction() {
+		LinExp obj = new LinExp();
+		for(int j=0; j<problem.nJobs; j++)
+			obj.addTerm(y[j], relax.getReducedCost(k, j));
+		objectiveFunction = obj;
+	}
+
+	@Override
+	public void writeSolution() {
+		double obj = 0;
+		for(int j=0; j<problem.nJobs; j++) {
+			relax.assigned[k][j] = Math.round(y[j].getValue());
+			obj += relax.getReducedCost(k, j) * relax.assigned[k][j];
+		}
+		relax.setLBObjPerSubproblem(k, obj);
+	}
+
+	@Override
+	public void printSolution() {
+		for(int j=0; j<problem.nJobs; j++)
+			if(relax.assigned[k][j] > 0.5) System.out.println(k + " -> " + j);
+	}
+}
@@ -0,0 +1,57 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.SolverException;
+import nl.tudelft.alg.MipSolverGLPK.GLPKSolver;
+
+/**
+ * Measures the hand-off of a model to GLPK: GLPKSolver.build on an initialized assignment model,
+ * with and without names
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GLPKBuildBenchmark {
+	@Param({"100", "300", "1000"})
+	int size;
+	@Param({"true", "false"})
+	boolean useNames;
+	AssignmentMIP mip;
+	GLPKSolver solver;
+
+	@Setup
+	public void setup() {
+		mip = new AssignmentMIP(size, 42);
+		mip.initialize(null);
+		solver = new GLPKSolver();
+		solver.setUseNames(useNames);
+	}
+
+	@TearDown
+	public void tearDown() {
+		solver.dispose();
+	}
+
+	@Benchmark
+	public GLPKSolver build() throws SolverException {
+		solver.build(mip);
+		return solver;
+	}
+}
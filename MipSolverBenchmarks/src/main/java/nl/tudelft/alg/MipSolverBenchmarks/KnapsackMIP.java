@@ -0,0 +1,78 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.Random;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * A generated knapsack problem: select items of maximum profit within the capacity.
+ * The profit is maximized, so the solver should be set to maximize.
+ */
+public class KnapsackMIP extends MIP {
+	final int n;
+	final double[] profit, weight;
+	final double capacity;
+	Variable[] x;
+	double[] selected;
+
+	/**
+	 * Create a knapsack problem with random profits and weights, and a capacity of half the total weight
+	 * @param n the number of items
+	 * @param seed the random seed
+	 */
+	public KnapsackMIP(int n, long seed) {
+		this.n = n;
+		Random random = new Random(seed);
+		profit = new double[n];
+		weight = new double[n];
+		double total = 0;
+		for(int i=0; i<n; i++) {
+			weight[i] = 10 + random.nextInt(91);
+			// correlated profits make the instances harder
+			profit[i] = weight[i] + random.nextInt(21);
+			total += weight[i];
+		}
+		capacity = Math.floor(total / 2);
+	}
+
+	@Override
+	protected void initiliazeVars() {
+		x = (Variable[]) newVarArray("x", VarType.Binary, n);
+	}
+
+	@Override
+	protected void setVars() {
+		addVars(x);
+	}
+
+	@Override
+	protected void setConstraints() {
+		LinExp left = new LinExp();
+		for(int i=0; i<n; i++)
+			left.addTerm(x[i], weight[i]);
+		addConstraint(left, new LinExp(capacity), CMP.SMALLEREQ, "capacity");
+	}
+
+	@Override
+	protected void setObjectiveFunction() {
+		LinExp obj = new LinExp();
+		for(int i=0; i<n; i++)
+			obj.addTerm(x[i], profit[i]);
+		objectiveFunction = obj;
+	}
+
+	@Override
+	public void writeSolution() {
+		selected = getValues(x);
+	}
+
+	@Override
+	public void printSolution() {
+		for(int i=0; i<n; i++)
+			if(selected[i] > 0.5) System.out.println("item " + i);
+	}
+}
@@ -0,0 +1,53 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.LRSolver;
+import nl.tudelft.alg.MipSolverCore.SolverException;
+import nl.tudelft.alg.MipSolverGLPK.GLPKSolver;
+
+/**
+ * Compares repeated lagrangian iterations on a GAP with and without warm starts (GLPK backend).
+ * With warm starts, every knapsack subproblem starts from its previous solution and LP basis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LRWarmStartBenchmark {
+	@Param({"10"})
+	int agents;
+	@Param({"100"})
+	int jobs;
+	@Param({"20"})
+	int iterations;
+	@Param({"false", "true"})
+	boolean warmStart;
+
+	@Benchmark
+	public double lagrangianRelaxation() throws SolverException {
+		GAPLRModel model = new GAPLRModel(new GAPProblem(agents, jobs, 42), iterations);
+		GLPKSolver glpk = new GLPKSolver();
+		LRSolver<GAPProblem> solver = new LRSolver<GAPProblem>(glpk);
+		try {
+			solver.setWarmStart(warmStart);
+			solver.build(model);
+			return solver.solve();
+		} finally {
+			solver.dispose();
+		}
+	}
+}
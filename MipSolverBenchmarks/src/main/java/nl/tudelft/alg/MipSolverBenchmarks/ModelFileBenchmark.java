@@ -0,0 +1,128 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.FileMIP;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.ModelReader;
+import nl.tudelft.alg.MipSolverCore.ModelSnapshot;
+import nl.tudelft.alg.MipSolverCore.ModelWriter;
+import nl.tudelft.alg.MipSolverCore.SolverException;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * Measures the time to write and read a model with 200,000 columns, 100,000 rows and a million nonzeros in the LP
+ * and MPS formats, in the MPS format with gzip, and as a binary snapshot.
+ * The coefficients have at most two decimals, like most coefficients in instance libraries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ModelFileBenchmark {
+	@Param({"lp", "mps", "mps.gz", "snap"})
+	String format;
+	SparseMIP mip;
+	File file;
+
+	/**
+	 * A model with random sparse rows of binary, integer and continuous columns
+	 */
+	static class SparseMIP extends MIP {
+		final int columns, rows, rowSize;
+		final Random random;
+		Variable[] x;
+
+		SparseMIP(int columns, int rows, int rowSize, long seed) {
+			this.columns = columns;
+			this.rows = rows;
+			this.rowSize = rowSize;
+			this.random = new Random(seed);
+		}
+
+		@Override
+		protected void initiliazeVars() {
+			x = new Variable[columns];
+			for(int j=0; j<columns; j++) {
+				VarType type = j % 3 == 0 ? VarType.Binary : j % 3 == 1 ? VarType.Integer : VarType.PositiveContinuous;
+				x[j] = type == VarType.Integer ? new Variable("x" + j, type, 0, 10) : new Variable("x" + j, type);
+			}
+		}
+
+		@Override
+		protected void setVars() {
+			addVars(x);
+		}
+
+		@Override
+		protected void setConstraints() {
+			CMP[] senses = CMP.values();
+			for(int i=0; i<rows; i++) {
+				LinExp left = new LinExp();
+				for(int k=0; k<rowSize; k++)
+					left.addTerm(x[random.nextInt(columns)], random.nextInt(2000) / 100.0);
+				addConstraint(left, new LinExp().addTerm(random.nextInt(100)), senses[i % senses.length], "c" + i);
+			}
+		}
+
+		@Override
+		protected void setObjectiveFunction() {
+			LinExp obj = new LinExp();
+			for(int j=0; j<columns; j++)
+				obj.addTerm(x[j], random.nextInt(200) / 10.0 - 10);
+			objectiveFunction = obj;
+		}
+
+		@Override
+		public void writeSolution() {}
+
+		@Override
+		public void printSolution() {}
+	}
+
+	@Setup
+	public void setup() throws IOException, SolverException {
+		mip = new SparseMIP(200000, 100000, 10, 42);
+		mip.initialize(null);
+		file = File.createTempFile("model", "." + format);
+		write();
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public void write() throws SolverException {
+		if(format.equals("snap")) new ModelSnapshot(mip).write(file.getPath());
+		else new ModelWriter(mip).write(file.getPath());
+	}
+
+	@Benchmark
+	public FileMIP read() throws SolverException {
+		if(format.equals("snap")) return ModelSnapshot.read(file.getPath());
+		return new ModelReader().read(file.getPath());
+	}
+}
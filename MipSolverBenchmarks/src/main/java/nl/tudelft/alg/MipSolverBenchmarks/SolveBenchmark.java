@@ -0,0 +1,61 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.SolverException;
+import nl.tudelft.alg.MipSolverGLPK.GLPKSolver;
+
+/**
+ * End-to-end solve of generated instances with GLPK: model construction, build and solve.
+ * The size is the number of items (knapsack), agents and tasks (assignment) or customers (facility location, 
+ * with a tenth as many facilities).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class SolveBenchmark {
+	@Param({"knapsack", "assignment", "facility"})
+	String problem;
+	@Param({"50", "200"})
+	int size;
+
+	/**
+	 * @return a new instance of the problem
+	 */
+	private MIP createModel() {
+		switch(problem) {
+		case "knapsack": return new KnapsackMIP(size, 42);
+		case "assignment": return new AssignmentMIP(size, 42);
+		default: return new FacilityLocationMIP(Math.max(1, size / 10), size, 42);
+		}
+	}
+
+	@Benchmark
+	public double solve() throws SolverException {
+		MIP mip = createModel();
+		GLPKSolver solver = new GLPKSolver();
+		try {
+			solver.setMinimize(!problem.equals("knapsack"));
+			mip.initialize(solver);
+			solver.build(mip);
+			return solver.solve();
+		} finally {
+			solver.dispose();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package nl.tudelft.alg.MipSolverBenchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.tudelft.alg.MipSolverCore.Constraint;
+import nl.tudelft.alg.MipSolverCore.LinExp;
+import nl.tudelft.alg.MipSolverCore.VarType;
+import nl.tudelft.alg.MipSolverCore.Variable;
+import nl.tudelft.alg.MipSolverCore.VariableRegistry;
+
+/**
+ * Compares the column lookup of the solvers before and after the variable registry.
+ * Before, the solvers kept a map from Variable to column, which hashed and compared the name and type of the variable.
+ * Now, the column index is read from the variable and checked against the registry of the model.
+ * Run buildModel on both versions of the code base to compare the model build time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class VariableLookupBenchmark {
+	@Param({"100", "300", "1000"})
+	int size;
+	AssignmentMIP mip;
+
+	@Setup
+	public void setup() {
+		mip = new AssignmentMIP(size, 42);
+		mip.initialize(null);
+	}
+
+	/**
+	 * The key the solvers used before: the name and type of the variable
+	 */
+	static class NameKey {
+		final String name;
+		final VarType type;
+
+		NameKey(Variable v) {
+			this.name = v.getName();
+			this.type = v.getType();
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 + name.hashCode()) + type.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof NameKey)) return false;
+			NameKey other = (NameKey) obj;
+			return name.equals(other.name) && type == other.type;
+		}
+	}
+
+	@Benchmark
+	public AssignmentMIP buildModel() {
+		AssignmentMIP m = new AssignmentMIP(size, 42);
+		m.initialize(null);
+		return m;
+	}
+
+	@Benchmark
+	public long columnsByNameMap() {
+		Map<NameKey, Integer> columns = new HashMap<NameKey, Integer>();
+		int i = 0;
+		for(Variable v: mip.getVars())
+			columns.put(new NameKey(v), i++);
+		long sum = 0;
+		for(Constraint c: mip.getConstraints()) {
+			for(Variable v: c.getLeft().getVariables())
+				sum += columns.get(new NameKey(v));
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long columnsByRegistry() {
+		VariableRegistry registry = mip.getVariableRegistry();
+		long sum = 0;
+		for(Constraint c: mip.getConstraints()) {
+			LinExp left = c.getLeft();
+			for(int i=0; i<left.size(); i++)
+				sum += registry.indexOf(left.getVariableAt(i));
+		}
+		return sum;
+	}
+}
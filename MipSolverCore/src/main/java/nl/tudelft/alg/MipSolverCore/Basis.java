@@ -0,0 +1,61 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.Arrays;
+
+/**
+ * An LP basis: the status of every column (variable) and every row (constraint) of a model.
+ * The status of a row refers to its slack variable.
+ */
+public class Basis {
+
+	public enum Status {
+		Basic,
+		AtLower,
+		AtUpper,
+		Free
+	}
+
+	final Status[] columns;
+	final Status[] rows;
+
+	/**
+	 * Create a basis
+	 * @param columns the status of every column, by column index
+	 * @param rows the status of every row, by row index
+	 */
+	public Basis(Status[] columns, Status[] rows) {
+		this.columns = columns;
+		this.rows = rows;
+	}
+
+	/**
+	 * @return the status of every column, by column index
+	 */
+	public Status[] getColumnStatus() {
+		return columns;
+	}
+
+	/**
+	 * @return the status of every row, by row index
+	 */
+	public Status[] getRowStatus() {
+		return rows;
+	}
+
+	/**
+	 * @param nColumns the number of columns of a model
+	 * @param nRows the number of rows of a model
+	 * @return true if this basis has the dimensions of the model
+	 */
+	public boolean fits(int nColumns, int nRows) {
+		return columns.length == nColumns && rows.length == nRows;
+	}
+
+	/**
+	 * @return the number of basic columns and rows, which equals the number of rows for a valid basis
+	 */
+	public int getBasicCount() {
+		return (int) (Arrays.stream(columns).filter(s -> s == Status.Basic).count() 
+				+ Arrays.stream(rows).filter(s -> s == Status.Basic).count());
+	}
+}
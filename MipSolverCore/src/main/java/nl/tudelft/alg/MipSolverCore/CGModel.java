@@ -0,0 +1,113 @@
+package nl.tudelft.alg.MipSolverCore;
+
+
+/**
+ * A column generation (Dantzig-Wolfe) model: a restricted master problem with a subset of the columns,
+ * and pricing subproblems that find the columns with an improving reduced cost for the duals of the master problem
+ * @param <P> the problem class to be solved
+ */
+public abstract class CGModel<P extends IProblem> implements IModel {
+	protected P problem;
+	double timeLimit, pricingTimeLimit, integerTimeLimit;
+
+	public CGModel(P problem) {
+		this.problem = problem;
+		this.timeLimit = Double.MAX_VALUE;
+		this.pricingTimeLimit = Double.MAX_VALUE;
+		this.integerTimeLimit = Double.MAX_VALUE;
+	}
+
+	/**
+	 * @return the problem
+	 */
+	public P getProblem() {
+		return problem;
+	}
+
+	@Override
+	public void initialize(ISolver solver) {}
+
+	@Override
+	public boolean isSolvable() {
+		return true;
+	}
+
+	/**
+	 * Get the restricted master problem with its initial columns. The master problem should be feasible with these columns,
+	 * for example with artificial columns with a high cost. New columns are added to it with MIP.addColumn.
+	 * @return the mip model for the master problem, the same object in every call
+	 */
+	public abstract MIP getMasterProblemModel();
+
+	/**
+	 * @return the number of pricing subproblems
+	 */
+	public abstract int getNSubproblems();
+
+	/**
+	 * Get pricing subproblem e for the duals of the master problem. The objective of the pricing model is the reduced cost
+	 * of the column that its solution describes: the cost of the column minus the duals times its coefficients in the
+	 * master problem, including the convexity constraint of the subproblem if the master problem has one.
+	 * When the model is already initialized (the same model object is returned again), its objective function
+	 * is recomputed, so the model can read the duals in its setObjectiveFunction.
+	 * @param e the number of the subproblem
+	 * @param duals the dual value of every constraint of the master problem, in the order of its constraint list
+	 * @return the mip model for the pricing subproblem
+	 */
+	public abstract MIP getPricingModel(int e, double[] duals);
+
+	/**
+	 * Add the column(s) of a solved pricing model to the master problem (see MIP.addColumn). This is called for every
+	 * pricing model with an improving reduced cost, after all pricing models of the iteration are solved.
+	 * @param e the number of the subproblem
+	 * @param pricing the solved pricing model, with its solution in its variables
+	 * @param master the master problem
+	 * @return the number of columns that were added, 0 if the column is already in the master problem
+	 */
+	public abstract int addColumns(int e, MIP pricing, MIP master);
+
+	/**
+	 * Set the time limits
+	 * @param timeLimit The time limit for the column generation (in seconds).
+	 * @param pricingTimeLimit The time limit for every pricing subproblem (in seconds).
+	 */
+	public void setTimeLimit(double timeLimit, double pricingTimeLimit) {
+		this.timeLimit = timeLimit;
+		this.pricingTimeLimit = pricingTimeLimit;
+	}
+
+	/**
+	 * Set the time limit for the integer solve of the master problem after the column generation
+	 * @param integerTimeLimit The time limit (in seconds).
+	 */
+	public void setIntegerTimeLimit(double integerTimeLimit) {
+		this.integerTimeLimit = integerTimeLimit;
+	}
+
+	/**
+	 * @return get the time limit for the column generation
+	 */
+	public double getTimeLimit() {
+		return timeLimit;
+	}
+
+	/**
+	 * @return get the time limit for every pricing subproblem
+	 */
+	public double getPricingTimeLimit() {
+		return pricingTimeLimit;
+	}
+
+	/**
+	 * @return get the time limit for the integer solve of the master problem
+	 */
+	public double getIntegerTimeLimit() {
+		return integerTimeLimit;
+	}
+
+	/**
+	 * Code to execute after the column generation, before the integer solve of the master problem
+	 */
+	public void finishColumnGeneration() {}
+
+}
@@ -0,0 +1,409 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A column generation (Dantzig-Wolfe) Solver. Every iteration solves the restricted master problem as an LP,
+ * solves the pricing subproblems for its duals, and adds the columns with an improving reduced cost to the master problem,
+ * until no pricing subproblem finds such a column. The master problem stays built in the mip solver of this CGSolver,
+ * which adds the new columns with an update, and starts from the basis of the previous LP.
+ * Finally the master problem is solved with its integer variables over all generated columns (price-and-branch).
+ * The pricing subproblems are solved with mip solvers from a pool, one after another or concurrently (see setParallel).
+ * @param <P> the problem class to solve
+ */
+public class CGSolver<P extends IProblem> implements ISolver {
+	static final double TOLERANCE = 1e-6;
+	IMIPSolver mipsolver;
+	SolverPool pool;
+	Executor executor;
+	boolean minimize = true;
+	boolean debug = false;
+	double mipgap = 1e-4;
+	double smoothing = 0;
+	boolean integerSolve = true;
+	int maxIterations = Integer.MAX_VALUE;
+	CGModel<P> instance;
+	SolveMetrics metrics;
+	// The pricing solvers of the running solve, which terminate stops
+	final Set<IMIPSolver> pricing = ConcurrentHashMap.newKeySet();
+	volatile boolean terminated;
+	// True if resetTerminate was called for the next solve, which then keeps the terminate flag
+	boolean terminateReset;
+	int iterations, columns;
+	double lpObjective = Double.NaN;
+
+	/**
+	 * Create a column generation solver
+	 * @param mipsolver the mip solver of the master problem, which should not presolve it (the duals refer to its constraints)
+	 * @param pool the pool of mip solvers for the pricing subproblems, which is not closed by this solver
+	 */
+	public CGSolver(IMIPSolver mipsolver, SolverPool pool) {
+		this.mipsolver = mipsolver;
+		this.pool = pool;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void build(IModel instance) {
+		assert (instance instanceof CGModel<?>);
+		this.instance = (CGModel<P>) instance;
+	}
+
+	@Override
+	public void setMinimize(boolean value) {
+		this.minimize = value;
+	}
+
+	@Override
+	public void setMipGap(double value) {
+		this.mipgap = value;
+	}
+
+	@Override
+	public void setDebug(boolean value) {
+		this.debug = value;
+	}
+
+	/**
+	 * Stabilize the duals by smoothing (Wentges): the pricing gets alpha times the duals of the previous pricing
+	 * plus (1 - alpha) times the duals of the master problem. When the smoothed duals give no improving column,
+	 * or did not improve the master problem in the previous iteration, the pricing gets the duals of the master problem,
+	 * so the column generation still ends with the optimal LP of the master problem.
+	 * @param alpha the weight of the previous duals, 0 to disable the smoothing (default)
+	 */
+	public void setSmoothing(double alpha) {
+		if(alpha < 0 || alpha >= 1) throw new IllegalArgumentException("The smoothing should be in [0, 1)");
+		this.smoothing = alpha;
+	}
+
+	/**
+	 * Solve the master problem with its integer variables after the column generation (price-and-branch, default).
+	 * Otherwise the solve returns the objective of the last master LP, and the variables keep its solution.
+	 * @param value true to solve the master problem as a mip after the column generation
+	 */
+	public void setIntegerSolve(boolean value) {
+		this.integerSolve = value;
+	}
+
+	/**
+	 * @param maxIterations the maximum number of column generation iterations
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Solve the pricing subproblems of every iteration concurrently, every one with a mip solver from the pool.
+	 * The number of concurrent solves is bounded by the size of the pool.
+	 * The CGModel should return independent pricing models.
+	 * @param executor the executor to run the pricing solves on, or null to solve them one after another (default)
+	 */
+	public void setParallel(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the metrics listener of this solver and of its mip solvers, including the pricing solvers from the pool.
+	 * This solver reports the time of every iteration, and its progress with the number of iterations.
+	 * The mip solvers report their own phases.
+	 * @param metrics the listener, or null to disable the measurements
+	 */
+	@Override
+	public void setMetrics(SolveMetrics metrics) {
+		this.metrics = metrics;
+		mipsolver.setMetrics(metrics);
+	}
+
+	@Override
+	public SolveMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the number of iterations of the last solve
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return the number of columns that the last solve added to the master problem
+	 */
+	public int getColumnCount() {
+		return columns;
+	}
+
+	/**
+	 * @return the objective of the last master LP, which is the LP bound of the master problem with all columns
+	 * if the column generation finished, or NaN
+	 */
+	public double getLPObjective() {
+		return lpObjective;
+	}
+
+	/**
+	 * @param start the start time of the solve, in nanoseconds
+	 * @return the remaining time of the time limit, in seconds
+	 */
+	private double getRemainingTime(long start) {
+		return instance.getTimeLimit() - (System.nanoTime() - start) / 1e9;
+	}
+
+	/**
+	 * Solve the master problem with the mip solver of this CGSolver. The first solve builds the model,
+	 * the following solves apply the added columns with an update.
+	 * @param master the master problem
+	 * @param basis the basis to start from, or null
+	 * @return the objective value
+	 * @throws SolverException when an exception occurs in building or solving the model
+	 */
+	private double solveMaster(MIP master, Basis basis) throws SolverException {
+		if(master.isInitialized()) {
+			mipsolver.update(master);
+		} else {
+			master.initialize(mipsolver);
+			mipsolver.build(master);
+		}
+		mipsolver.setMipGap(mipgap);
+		if(basis != null) mipsolver.setBasis(extend(basis, master.getVariableRegistry().size()));
+		if(debug) mipsolver.save("master.lp");
+		return mipsolver.solve();
+	}
+
+	/**
+	 * Extend the basis of the previous master LP with the added columns, which start at their lower bound
+	 * @param basis the basis
+	 * @param nColumns the number of columns of the master problem
+	 * @return the extended basis
+	 */
+	private static Basis extend(Basis basis, int nColumns) {
+		Basis.Status[] columns = basis.getColumnStatus();
+		if(columns.length >= nColumns) return basis;
+		Basis.Status[] extended = Arrays.copyOf(columns, nColumns);
+		Arrays.fill(extended, columns.length, nColumns, Basis.Status.AtLower);
+		return new Basis(extended, basis.getRowStatus());
+	}
+
+	/**
+	 * Solve a pricing subproblem with a solver from the pool, within the remaining time
+	 * @param e the number of the subproblem
+	 * @param model the pricing model
+	 * @param reducedCosts receives the objective value of the subproblem, which stays NaN if it has no solution
+	 * @param start the start time of the solve, in nanoseconds
+	 * @return false if there was no time left to solve the subproblem, or the solve was terminated
+	 * @throws SolverException when an exception occurs in building or solving the model
+	 */
+	private boolean solvePricing(int e, MIP model, double[] reducedCosts, long start) throws SolverException {
+		double remaining = getRemainingTime(start);
+		if(remaining <= 0 || terminated) return false;
+		model.setTimeLimit(Math.min(remaining, instance.getPricingTimeLimit()));
+		IMIPSolver solver;
+		try {
+			solver = pool.borrow();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new SolverException("Interrupted while waiting for a pricing solver", ex);
+		}
+		pricing.add(solver);
+		try {
+			if(terminated) return false;
+			solver.setMinimize(minimize);
+			solver.setMipGap(mipgap);
+			solver.setMetrics(metrics);
+			if(model.isInitialized()) {
+				model.updateObjectiveFunction();
+				solver.update(model);
+			} else {
+				model.initialize(solver);
+				solver.build(model);
+			}
+			reducedCosts[e] = solver.solve();
+		} catch (InfeasibleException ex) {
+			// the subproblem has no column
+		} finally {
+			pricing.remove(solver);
+			pool.release(solver);
+		}
+		return true;
+	}
+
+	/**
+	 * Solve all pricing subproblems for the given duals, and add the columns with an improving reduced cost
+	 * to the master problem
+	 * @param master the master problem
+	 * @param duals the duals of the constraints of the master problem
+	 * @param start the start time of the solve, in nanoseconds
+	 * @return the number of added columns
+	 * @throws SolverException when an exception occurs in building or solving a pricing subproblem
+	 */
+	private int price(MIP master, double[] duals, long start) throws SolverException {
+		// Get the models on this thread, so the CG model does not need to be thread-safe
+		int n = instance.getNSubproblems();
+		List<MIP> models = new ArrayList<MIP>(n);
+		for(int e = 0; e < n; e++)
+			models.add(instance.getPricingModel(e, duals));
+		double[] reducedCosts = new double[n];
+		Arrays.fill(reducedCosts, Double.NaN);
+		if(executor == null) {
+			for(int e = 0; e < n; e++)
+				if(!solvePricing(e, models.get(e), reducedCosts, start)) break;
+		} else {
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[n];
+			for(int e = 0; e < n; e++) {
+				int sub = e;
+				futures[e] = CompletableFuture.runAsync(() -> {
+					try {
+						solvePricing(sub, models.get(sub), reducedCosts, start);
+					} catch (SolverException ex) {
+						throw new CompletionException(ex);
+					}
+				}, executor);
+			}
+			try {
+				CompletableFuture.allOf(futures).join();
+			} catch (CompletionException ex) {
+				if(ex.getCause() instanceof SolverException)
+					throw (SolverException) ex.getCause();
+				if(ex.getCause() instanceof RuntimeException)
+					throw (RuntimeException) ex.getCause();
+				throw ex;
+			}
+		}
+		int added = 0;
+		for(int e = 0; e < n; e++)
+			if(isImproving(reducedCosts[e])) added += instance.addColumns(e, models.get(e), master);
+		return added;
+	}
+
+	/**
+	 * @param reducedCost the reduced cost of a column, or NaN
+	 * @return true if adding the column can improve the master problem
+	 */
+	private boolean isImproving(double reducedCost) {
+		return minimize ? reducedCost < -TOLERANCE : reducedCost > TOLERANCE;
+	}
+
+	/**
+	 * @param duals the duals of the master problem
+	 * @param center the duals of the previous pricing
+	 * @return the smoothed duals
+	 */
+	private double[] smooth(double[] duals, double[] center) {
+		double[] smoothed = duals.clone();
+		for(int i=0; i<Math.min(duals.length, center.length); i++)
+			smoothed[i] = smoothing * center[i] + (1 - smoothing) * duals[i];
+		return smoothed;
+	}
+
+	/**
+	 * Run the column generation, and solve the master problem with its integer variables if enabled (see setIntegerSolve).
+	 * When the column generation is terminated, the integer solve is skipped.
+	 * @return the objective value of the integer solve, or else of the last master LP
+	 * @throws SolverException when an exception occurs in solving the master problem or a pricing subproblem,
+	 * or the mip solver has no duals for the master problem
+	 */
+	@Override
+	public double solve() throws SolverException {
+		if(!terminateReset) terminated = false;
+		terminateReset = false;
+		long start = System.nanoTime();
+		MIP master = instance.getMasterProblemModel();
+		mipsolver.setMinimize(minimize);
+		mipsolver.setSolveAsLP(true);
+		iterations = 0;
+		columns = 0;
+		lpObjective = Double.NaN;
+		Basis basis = null;
+		double[] center = null;
+		double lastObjective = Double.NaN;
+		while(iterations < maxIterations) {
+			double remaining = getRemainingTime(start);
+			if(remaining <= 0 || terminated) break;
+			long iterationStart = metrics == null ? 0 : System.nanoTime();
+			int added;
+			try {
+				master.setTimeLimit(remaining);
+				double obj = solveMaster(master, basis);
+				lpObjective = obj;
+				double[] duals = mipsolver.getDuals();
+				if(duals == null) throw new SolverException("The mip solver has no duals for the master problem");
+				basis = mipsolver.getBasis();
+				// smoothing stops when it did not improve the master problem, the duals then move to those of the master problem
+				boolean smoothed = smoothing > 0 && center != null
+						&& (Double.isNaN(lastObjective) || (minimize ? obj < lastObjective - TOLERANCE : obj > lastObjective + TOLERANCE));
+				center = smoothed ? smooth(duals, center) : duals;
+				added = price(master, center, start);
+				if(added == 0 && smoothed && !terminated) {
+					// the smoothed duals give no column, so price again with the duals of the master problem
+					center = duals;
+					added = price(master, duals, start);
+				}
+				lastObjective = obj;
+			} catch (SolverException e) {
+				// a terminated solve ends the column generation with the columns so far
+				if(terminated) break;
+				throw e;
+			}
+			iterations++;
+			columns += added;
+			if(debug) System.out.println(String.format("%d:\t%f\t%d columns", iterations, lpObjective, added));
+			if(metrics != null) {
+				metrics.time(this, SolveMetrics.Phase.Iteration, System.nanoTime() - iterationStart);
+				metrics.progress(this, iterations, -1, Double.NaN);
+			}
+			if(added == 0) break;
+		}
+		instance.finishColumnGeneration();
+		if(!integerSolve || terminated) return lpObjective;
+		// price-and-branch: the integer solve of the master problem with the generated columns
+		mipsolver.setSolveAsLP(false);
+		master.setTimeLimit(instance.getIntegerTimeLimit());
+		return solveMaster(master, null);
+	}
+
+	/**
+	 * Save the master problem model in LP or MPS format (see ModelWriter), with the objective direction of this solver
+	 * @param file the file name, ending with .lp or .mps, and optionally .gz
+	 * @throws SolverException when the master problem is not initialized yet, or the file cannot be written
+	 */
+	@Override
+	public void save(String file) throws SolverException {
+		MIP master = instance == null ? null : instance.getMasterProblemModel();
+		if(master == null || !master.isInitialized()) throw new SolverException("No master problem to save");
+		new ModelWriter(master).setMinimize(minimize).write(file);
+	}
+
+	@Override
+	public void resetTerminate() {
+		terminated = false;
+		terminateReset = true;
+	}
+
+	/**
+	 * Terminate the column generation from another thread: the running master and pricing solves are terminated,
+	 * no new iteration is started, and the integer solve is skipped
+	 */
+	@Override
+	public void terminate() {
+		terminated = true;
+		mipsolver.terminate();
+		for(IMIPSolver solver: pricing)
+			solver.terminate();
+	}
+
+	/**
+	 * Dispose the mip solver of the master problem. The pool of pricing solvers is not closed.
+	 */
+	@Override
+	public void dispose() {
+		mipsolver.dispose();
+	}
+
+}
@@ -5,7 +5,8 @@ public class Constraint {
 	LinExp left;
 	LinExp right;
 	CMP comparator;
-	String name;
+	// A String, or the Variable of a fix_<name> constraint that is only formatted on demand
+	Object name;
 	
 	/**
 	 * Add a constraint to the model
@@ -32,6 +33,16 @@ public class Constraint {
 		this(left, new LinExp().addTerm(Variable.CONST, value), comparator, name);
 	}
 
+	/**
+	 * Create the constraint fix_&lt;name&gt; of a variable (see MIP.fixVariable)
+	 */
+	Constraint(Variable var, LinExp right, CMP comparator) {
+		this.left = new LinExp(var);
+		this.right = right;
+		this.comparator = comparator;
+		this.name = var;
+	}
+
 	/**
 	 * @return the left
 	 */
@@ -43,7 +54,8 @@ public class Constraint {
 	 * @return the name
 	 */
 	public String getName() {
-		return name;
+		if(name instanceof Variable) return "fix_" + ((Variable) name).getName();
+		return (String) name;
 	}
 
 	/**
@@ -53,6 +65,13 @@ public class Constraint {
 		return right;
 	}
 
+	/**
+	 * @return the right hand side value of the constraint, when all variables are moved to the left hand side
+	 */
+	public double getRhs() {
+		return right.getCoefficient(Variable.CONST) - left.getCoefficient(Variable.CONST);
+	}
+
 	/**
 	 * @return the comparator
 	 */
@@ -62,6 +81,6 @@ public class Constraint {
 	
 	@Override
 	public String toString() {
-		return name + ": " + left.toString() + " " + comparator.toString() + " " + right.toString();
+		return getName() + ": " + left.toString() + " " + comparator.toString() + " " + right.toString();
 	}
 }
@@ -0,0 +1,132 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A model that was read from a file by a ModelReader, or loaded from a ModelSnapshot.
+ * The variables, constraints, objective and SOS sets are filled by the reader, so initializing the model does not
+ * change it, and the solution is kept in the variables.
+ * The matrix of a snapshot is used instead of compiling the model until the model is changed through its methods.
+ */
+public class FileMIP extends MIP {
+	String name;
+	boolean minimize;
+	Map<String, Variable> byName;
+	// The matrix of a snapshot, while it still matches the model
+	ModelMatrix snapshot;
+
+	FileMIP(String name) {
+		super();
+		this.name = name;
+		this.minimize = true;
+	}
+
+	/**
+	 * @return true if the objective of the file is minimized, false if it is maximized
+	 */
+	public boolean isMinimize() {
+		return minimize;
+	}
+
+	/**
+	 * Get a variable by its name in the file
+	 * @param name the name of the variable
+	 * @return the variable, or null if there is no variable with this name
+	 */
+	public Variable getVariable(String name) {
+		if(byName == null) {
+			byName = new HashMap<String, Variable>(vars.size() * 2);
+			for(Variable v: vars)
+				byName.putIfAbsent(v.getName(), v);
+		}
+		return byName.get(name);
+	}
+
+	/**
+	 * Get the matrix of the snapshot this model was loaded from, if the model was not changed.
+	 * Changes to the constraints and the objective through the methods of the model discard the matrix, and the
+	 * bounds and types of the columns are checked against it.
+	 * @return the matrix, or null if the model was not loaded from a snapshot or was changed
+	 */
+	ModelMatrix getSnapshot() {
+		if(snapshot == null) return null;
+		if(vars.size() != snapshot.getColumns() || constraints.size() != snapshot.getRows()) {
+			snapshot = null;
+			return null;
+		}
+		for(int j=0; j<vars.size(); j++) {
+			Variable v = vars.get(j);
+			if(v.type != snapshot.types[j] || getLowerBound(v) != snapshot.lb[j] || getUpperBound(v) != snapshot.ub[j]) {
+				snapshot = null;
+				return null;
+			}
+		}
+		return snapshot;
+	}
+
+	@Override
+	public void addConstraint(Constraint c) {
+		snapshot = null;
+		super.addConstraint(c);
+	}
+
+	@Override
+	public void addConstraint(LinExp left, LinExp right, CMP cmp, String name) {
+		snapshot = null;
+		super.addConstraint(left, right, cmp, name);
+	}
+
+	@Override
+	public boolean removeConstraint(Constraint c) {
+		snapshot = null;
+		return super.removeConstraint(c);
+	}
+
+	@Override
+	public void setRhs(Constraint c, double rhs) {
+		snapshot = null;
+		super.setRhs(c, rhs);
+	}
+
+	@Override
+	public void setObjectiveCoefficient(Variable v, double value) {
+		snapshot = null;
+		super.setObjectiveCoefficient(v, value);
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * The objective is read from the file, so there is nothing to recompute
+	 */
+	@Override
+	public void updateObjectiveFunction() {}
+
+	@Override
+	protected void setConstraints() {}
+
+	@Override
+	protected void setObjectiveFunction() {}
+
+	@Override
+	protected void setVars() {}
+
+	@Override
+	protected void initiliazeVars() {}
+
+	@Override
+	public void writeSolution() throws SolverException {}
+
+	@Override
+	public void printSolution() {
+		for(Variable v: vars) {
+			double value = v.getValue();
+			if(!Double.isNaN(value) && value != 0)
+				System.out.println(v.getName() + " = " + value);
+		}
+	}
+}
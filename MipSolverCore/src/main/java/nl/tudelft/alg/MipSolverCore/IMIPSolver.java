@@ -1,5 +1,6 @@
 package nl.tudelft.alg.MipSolverCore;
 
+import java.util.Map;
 
 public interface IMIPSolver extends ISolver {
 	
@@ -8,6 +9,18 @@ public interface IMIPSolver extends ISolver {
 	 * @throws SolverException when an error occurs in setting the objective function
 	 */
 	public abstract void setObjectiveFunction() throws SolverException;
+	
+	/**
+	 * Apply the changes to the model since it was last built or updated by this solver (see MIP.getChanges())
+	 * to the native model, instead of building the model again.
+	 * If the native model was not built from this model, the model is built completely.
+	 * The default implementation builds the model again.
+	 * @param model the model to update
+	 * @throws SolverException when the solver cannot apply the changes
+	 */
+	public default void update(IModel model) throws SolverException {
+		build(model);
+	}
 
 	/**
 	 * Relax the integer variables, so that the model becomes a linear problem
@@ -24,11 +37,106 @@ public interface IMIPSolver extends ISolver {
 	 */
 	public abstract double[] getUnboundedRay();
 
+	/**
+	 * Get the dual values of the constraints after the last solve, if it solved an LP, in one bulk call.
+	 * The dual value of a constraint is the change of the objective per unit increase of its right hand side.
+	 * The default implementation has no dual values.
+	 * @return the dual value of every constraint, in the order of the constraint list of the model, or null if the
+	 * last solve did not solve an LP, or the model was presolved by the core
+	 * @throws SolverException when an exception occurs
+	 */
+	public default double[] getDuals() throws SolverException {
+		return null;
+	}
+
 	/**
 	 * The the log file
 	 * @param mipLogFile the file name of the log file
 	 * @throws SolverException when an exception occurs in setting the log file
 	 */
 	public abstract void setLogFile(String mipLogFile) throws SolverException;
+	
+	/**
+	 * Enable or disable warm starts. When enabled, every solve starts from the previous one: 
+	 * the current solution values of the variables are used as MIP start, and the last LP basis is reused.
+	 * The default implementation ignores warm starts.
+	 * @param value true to enable warm starts
+	 * @throws SolverException when an exception occurs
+	 */
+	public default void setWarmStart(boolean value) throws SolverException {}
+	
+	/**
+	 * Set the MIP start for the next solve.
+	 * The default implementation ignores the MIP start.
+	 * @param start the start value per variable, variables that are not in the map get no start value.
+	 * If start is null, the current solution values of the variables are used.
+	 * @throws SolverException when an exception occurs
+	 */
+	public default void setMipStart(Map<Variable, Double> start) throws SolverException {}
+	
+	/**
+	 * The default implementation has no basis.
+	 * @return the LP basis after the last solve, or null if there is no basis (for example after solving a MIP)
+	 * @throws SolverException when an exception occurs
+	 */
+	public default Basis getBasis() throws SolverException {
+		return null;
+	}
+	
+	/**
+	 * Set the LP basis to start the next solve from. The basis is ignored if it does not fit the model.
+	 * The default implementation ignores the basis.
+	 * @param basis the starting basis
+	 * @throws SolverException when an exception occurs
+	 */
+	public default void setBasis(Basis basis) throws SolverException {}
+
+	/**
+	 * Enable or disable the presolve of the core (see Presolve), which removes fixed columns, singleton, empty, 
+	 * dominated and duplicate rows before the model is passed to the solver, and maps the solution back to all variables.
+	 * The native model is then built from the presolved model, so bases and unbounded rays refer to it, 
+	 * and every update builds the model again. Models with a quadratic objective or SOS constraints are not presolved.
+	 * The default implementation never presolves.
+	 * @param value true to presolve the model when it is built
+	 * @throws SolverException when an exception occurs
+	 */
+	public default void setPresolve(boolean value) throws SolverException {}
+
+	/**
+	 * Set the listener that receives the incumbents and the progress of the running solves of this solver (see SolveListener).
+	 * The default implementation reports nothing to the listener.
+	 * @param listener the listener, or null to remove it
+	 */
+	public default void setSolveListener(SolveListener listener) {}
+
+	/**
+	 * Set whether the native model gets the names of the variables and constraints (default).
+	 * Names are only needed to save or debug a model, so skipping them saves the formatting of the names
+	 * of indexed variables and passing them to the solver. Saved models then get generic names.
+	 * The default implementation always sets the names.
+	 * @param value true to set the names, false to skip them
+	 */
+	public default void setUseNames(boolean value) {}
+
+	/**
+	 * Set the separator that adds the violated constraints of the model during a solve (see Separator).
+	 * The lazy constraints that a solve finds are added to the model at the end of the solve.
+	 * Solvers that separate in a callback do not presolve models with a separator in the core.
+	 * The default implementation does not separate, and only accepts null.
+	 * @param separator the separator, or null to remove it
+	 */
+	public default void setSeparator(Separator separator) {
+		if(separator != null) throw new UnsupportedOperationException("This solver does not support a separator");
+	}
+
+	/**
+	 * Reset the settings of this interface to the defaults of the solver: minimize, solve as MIP, the default mip gap 
+	 * and debug output, no warm start, MIP start or basis, no presolve, names on, and no separator, listener or metrics.
+	 * Settings of the solver class itself, such as its log file, are kept. The built model is kept, but should be built 
+	 * again to use the reset settings.
+	 * The default implementation keeps all settings.
+	 * @throws SolverException when the solver cannot reset its native parameters
+	 */
+	public default void reset() throws SolverException {}
 
-}
\ No newline at end of file
+}
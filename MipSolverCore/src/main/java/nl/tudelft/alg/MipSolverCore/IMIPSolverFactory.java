@@ -0,0 +1,14 @@
+package nl.tudelft.alg.MipSolverCore;
+
+/**
+ * Creates new, independent mip solver instances, for example one for every worker thread
+ */
+@FunctionalInterface
+public interface IMIPSolverFactory {
+
+	/**
+	 * @return a new mip solver
+	 * @throws SolverException when the solver cannot be created
+	 */
+	public IMIPSolver create() throws SolverException;
+}
@@ -1,5 +1,9 @@
 package nl.tudelft.alg.MipSolverCore;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public interface ISolver {
 	
 	/**
@@ -36,6 +40,56 @@ public interface ISolver {
 	 */
 	public double solve() throws SolverException;
 
+	/**
+	 * Terminate the running solve. This can be called from another thread, and has no effect when the solver is not solving.
+	 * The solver stops at its next check, and the solve returns the best solution found so far, 
+	 * or throws a SolverException if there is none. The solver can be used again after the solve has returned.
+	 * The default implementation cannot terminate a solve, and does nothing.
+	 */
+	public default void terminate() {}
+
+	/**
+	 * Clear an earlier terminate before a solve. The next solve then keeps a terminate that is called after this method,
+	 * while a solve without this call clears the terminate flag when it starts. solveAsync calls this before the solve
+	 * can be cancelled, so a cancel just before the solve starts is not lost.
+	 * The default implementation does nothing.
+	 */
+	public default void resetTerminate() {}
+
+	/**
+	 * Solve the problem on an executor. Cancelling the returned future terminates the solve (see terminate), 
+	 * or skips it when it has not started yet. A cancelled future completes at once, while the solve stops in the background.
+	 * To use the solver again after a cancel, submit the next work to the same single-thread executor, 
+	 * so it runs after the solve has returned; solvers with a native model that is confined to one thread 
+	 * (such as GLPK) should also be built on that executor.
+	 * @param executor the executor to solve on
+	 * @return the result of the solve, or an exceptionally completed future with the SolverException of the solve
+	 */
+	public default CompletableFuture<SolveResult> solveAsync(Executor executor) {
+		CompletableFuture<SolveResult> future = new CompletableFuture<SolveResult>();
+		// 0: not started, 1: solving, 2: solved or cancelled
+		AtomicInteger state = new AtomicInteger();
+		future.whenComplete((result, e) -> {
+			if(future.isCancelled() && state.getAndSet(2) == 1) terminate();
+		});
+		executor.execute(() -> {
+			if(!state.compareAndSet(0, 1)) return;
+			try {
+				// a cancel before the reset is skipped here, a cancel after it terminates the solve
+				resetTerminate();
+				if(future.isCancelled()) return;
+				long start = System.nanoTime();
+				double objective = solve();
+				future.complete(new SolveResult(this, objective, System.nanoTime() - start));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			} finally {
+				state.set(2);
+			}
+		});
+		return future;
+	}
+
 	/**
 	 * Save the model to a file
 	 * @param file the file name to write the model to
@@ -43,6 +97,22 @@ public interface ISolver {
 	 */
 	public void save(String file) throws SolverException;
 
+	/**
+	 * Set the listener that receives the timings and counters of this solver (see SolveMetrics).
+	 * By default there is no listener, and nothing is measured.
+	 * The default implementation measures nothing.
+	 * @param metrics the listener, or null to disable the measurements
+	 */
+	public default void setMetrics(SolveMetrics metrics) {}
+
+	/**
+	 * The default implementation has no listener.
+	 * @return the listener that receives the timings and counters of this solver, or null
+	 */
+	public default SolveMetrics getMetrics() {
+		return null;
+	}
+
 	/**
 	 * Dispose the model
 	 */
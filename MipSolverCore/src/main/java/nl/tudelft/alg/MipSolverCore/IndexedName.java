@@ -0,0 +1,67 @@
+package nl.tudelft.alg.MipSolverCore;
+
+/**
+ * The compact name of a block of variables with consecutive ids, such as the cells of a VarTensor or of MIP.newVarArray.
+ * The block shares one base name and shape, and the name base_i_j_... of a variable is derived from its id
+ * when it is asked for, so no String is stored per variable.
+ */
+final class IndexedName {
+	final String base;
+	final int[] shape;
+	final int firstId;
+
+	/**
+	 * @param base the base name
+	 * @param shape the size of every dimension
+	 * @param firstId the id of the first cell, the cells have consecutive ids in row-major order
+	 */
+	IndexedName(String base, int[] shape, int firstId) {
+		this.base = base;
+		this.shape = shape;
+		this.firstId = firstId;
+	}
+
+	/**
+	 * @param id the id of a variable in the block
+	 * @return the name base_i_j_... of the variable
+	 */
+	String format(int id) {
+		int cell = id - firstId;
+		int[] index = new int[shape.length];
+		for(int d=shape.length-1; d>=0; d--) {
+			index[d] = cell % shape[d];
+			cell /= shape[d];
+		}
+		StringBuilder sb = new StringBuilder(base.length() + 4 * shape.length).append(base);
+		for(int i: index)
+			sb.append('_').append(i);
+		return sb.toString();
+	}
+
+	/**
+	 * @param ar a (nested) Variable array
+	 * @return the size of every dimension, or null if the array is not rectangular
+	 */
+	static int[] getShape(Object[] ar) {
+		int depth = 0;
+		for(Object a = ar; a != null && a.getClass().isArray(); a = ((Object[]) a).length > 0 ? ((Object[]) a)[0] : null)
+			depth++;
+		int[] shape = new int[depth];
+		Object a = ar;
+		for(int d=0; d<depth; d++) {
+			shape[d] = ((Object[]) a).length;
+			a = shape[d] > 0 ? ((Object[]) a)[0] : null;
+		}
+		return isRectangular(ar, shape, 0) ? shape : null;
+	}
+
+	private static boolean isRectangular(Object[] ar, int[] shape, int d) {
+		if(ar.length != shape[d]) return false;
+		for(Object a: ar) {
+			boolean array = a != null && a.getClass().isArray();
+			if(array != d < shape.length - 1) return false;
+			if(array && !isRectangular((Object[]) a, shape, d+1)) return false;
+		}
+		return true;
+	}
+}
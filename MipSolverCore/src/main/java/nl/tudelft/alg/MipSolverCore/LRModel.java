@@ -35,18 +35,33 @@ public abstract class LRModel<P extends IProblem> implements IModel {
 	 */
 	public abstract int getNSubproblems();
 	
+	/**
+	 * Whether the solver may reuse the mip models of this model incrementally (default false). When this returns true
+	 * and getSubproblemModel or getMasterProblemModel returns a model that was already initialized, only its objective 
+	 * function is recomputed, and the mip solver applies only the changes since the previous solve. 
+	 * The constraints and bounds that setVars and setConstraints would compute are then not recomputed,
+	 * so only return true if they do not depend on the lagrangian multipliers or other state that changes between iterations. 
+	 * When this returns false, every model is initialized and built again.
+	 * @return true to update reused models with their objective function only
+	 */
+	public boolean isObjectiveOnlyUpdate() {
+		return false;
+	}
+
 	/**
 	 * Get sub problem number e
 	 * @param e the number of the subproblem
 	 * @param problem the lagrangian problem
-	 * @return the mip model for the relaxed subproblem
+	 * @return the mip model for the relaxed subproblem, 
+	 * which is only updated with its objective function if it is reused and isObjectiveOnlyUpdate returns true
 	 */
 	public abstract MIP getSubproblemModel(int e, LRProblem<P> problem);
 	
 	/**
 	 * Get the master problem
 	 * @param problem the lagrangian problem
-	 * @return the mip model for the master problem
+	 * @return the mip model for the master problem,
+	 * which is only updated with its objective function if it is reused and isObjectiveOnlyUpdate returns true
 	 */
 	public abstract MIP getMasterProblemModel(LRProblem<P> problem);
 	
@@ -80,7 +95,8 @@ public abstract class LRModel<P extends IProblem> implements IModel {
 	}
 
 	/**
-	 * Code to execute after running all the subproblems
+	 * Code to execute after running all the subproblems. When the subproblems are solved in parallel, 
+	 * this is called after all of them are done
 	 */
 	public void finishSubProblems() {}
 
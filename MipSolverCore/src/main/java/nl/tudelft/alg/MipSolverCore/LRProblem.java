@@ -50,7 +50,7 @@ public abstract class LRProblem<P extends IProblem> {
 		return !(gap[iteration-1] < idealGAP || iteration+1 > maxIter);
 	}
 
-	public void setlowerObj() {
+	public synchronized void setlowerObj() {
 		lowerObj = 0;
 		for(int e = 0; e<instance.getNSubproblems(); e++) 
 			lowerObj += lowerObjPerSubproblem[e];
@@ -92,7 +92,12 @@ public abstract class LRProblem<P extends IProblem> {
 		return maxIter;
 	}
 	
-	public void setLBObjPerSubproblem(int e, double sol) {
+	/**
+	 * Set the objective of subproblem e. This can be called concurrently from the subproblems that are solved in parallel
+	 * @param e the subproblem
+	 * @param sol the objective of subproblem e
+	 */
+	public synchronized void setLBObjPerSubproblem(int e, double sol) {
 		this.lowerObjPerSubproblem[e] = sol;
 	}
 }
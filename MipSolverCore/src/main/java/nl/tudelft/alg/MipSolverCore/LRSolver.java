@@ -1,5 +1,15 @@
 package nl.tudelft.alg.MipSolverCore;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A lagrangian relaxation Solver
  * @param <P> the problem class to solve
@@ -11,7 +21,17 @@ public class LRSolver<P extends IProblem> implements ISolver {
 	double timeLimit = Double.MAX_VALUE;
 	double subTimeLimit = Double.MAX_VALUE;
 	double mipgap = 1e-4;
+	boolean warmStart = false;
+	Map<MIP, Basis> bases = Collections.synchronizedMap(new IdentityHashMap<MIP, Basis>());
 	LRModel<P> instance;
+	IMIPSolverFactory factory;
+	Executor executor;
+	IMIPSolver[] workers;
+	volatile MIP lastModel;
+	SolveMetrics metrics;
+	volatile boolean terminated;
+	// True if resetTerminate was called for the next solve, which then keeps the terminate flag
+	boolean terminateReset;
 	
 	public LRSolver(IMIPSolver mipsolver) {
 		this.mipsolver = mipsolver;
@@ -40,53 +60,270 @@ public class LRSolver<P extends IProblem> implements ISolver {
 	}
 	
 	/**
-	 * Build a mip model and solve it
+	 * Warm start every subproblem and master problem solve from the previous solution of that model:
+	 * the previous solution is used as MIP start, and the last LP basis of the same model is restored.
+	 * @param value true to enable warm starts
+	 * @throws SolverException when the mip solver cannot enable warm starts
+	 */
+	public void setWarmStart(boolean value) throws SolverException {
+		warmStart = value;
+		bases.clear();
+		mipsolver.setWarmStart(value);
+		if(workers != null) {
+			for(IMIPSolver worker: workers)
+				if(worker != null) worker.setWarmStart(value);
+		}
+	}
+	
+	/**
+	 * Set the metrics listener of this solver and of its mip solvers, including the mip solvers of the workers.
+	 * This solver reports the time of every iteration, and its progress with the number of iterations and the gap
+	 * between the best solution and the lower bound. The mip solvers report their own phases.
+	 * @param metrics the listener, or null to disable the measurements
+	 */
+	@Override
+	public void setMetrics(SolveMetrics metrics) {
+		this.metrics = metrics;
+		mipsolver.setMetrics(metrics);
+		if(workers != null) {
+			for(IMIPSolver worker: workers)
+				if(worker != null) worker.setMetrics(metrics);
+		}
+	}
+
+	@Override
+	public SolveMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Solve the subproblems of every iteration concurrently. Every worker gets its own mip solver from the factory,
+	 * which is reused in the following iterations. The master problem is still solved by the mip solver of this LRSolver.
+	 * The LRModel should return independent subproblem models, and its LRProblem should aggregate the subproblem
+	 * results in a thread-safe way (as LRProblem.setLBObjPerSubproblem does).
+	 * @param factory creates the mip solvers of the workers
+	 * @param executor the executor to run the workers on
+	 * @param nWorkers the number of workers, which is the maximum number of subproblems that are solved at the same time
+	 */
+	public void setParallel(IMIPSolverFactory factory, Executor executor, int nWorkers) {
+		assert nWorkers > 0;
+		disposeWorkers();
+		this.factory = factory;
+		this.executor = executor;
+		this.workers = new IMIPSolver[nWorkers];
+	}
+	
+	/**
+	 * Solve the subproblems one after another with the mip solver of this LRSolver (default)
+	 */
+	public void setSequential() {
+		disposeWorkers();
+		this.factory = null;
+		this.executor = null;
+	}
+	
+	/**
+	 * Build a mip model and solve it.
+	 * When the model was already initialized (the LR model returns the same model object again) 
+	 * and the LR model allows it with isObjectiveOnlyUpdate, only the objective function is recomputed, 
+	 * and the solver applies only the changes to its native model. Otherwise the model is initialized and built again.
 	 * @param model the mip model to solve
 	 * @return the objective value
 	 * @throws SolverException when an exception occurs in building or solving the model
 	 */
 	protected double mipBuildAndSolve(MIP model) throws SolverException {
-		model.initialize(mipsolver);
-		mipsolver.build(model);
-		mipsolver.setMipGap(mipgap);
-		if(debug) mipsolver.save("mip.lp");
-		return mipsolver.solve();
+		lastModel = model;
+		return mipBuildAndSolve(mipsolver, model);
+	}
+	
+	/**
+	 * Build a mip model and solve it with the given mip solver
+	 * @param solver the mip solver
+	 * @param model the mip model to solve
+	 * @return the objective value
+	 * @throws SolverException when an exception occurs in building or solving the model
+	 */
+	protected double mipBuildAndSolve(IMIPSolver solver, MIP model) throws SolverException {
+		if(model.isInitialized() && instance.isObjectiveOnlyUpdate()) {
+			model.updateObjectiveFunction();
+			solver.update(model);
+		} else {
+			model.initialize(solver);
+			solver.build(model);
+		}
+		solver.setMipGap(mipgap);
+		if(debug) solver.save("mip.lp");
+		if(!warmStart) return solver.solve();
+		// A mip solver can be shared by several models, so keep the basis of every model separately
+		Basis basis = bases.get(model);
+		if(basis != null) solver.setBasis(basis);
+		double obj = solver.solve();
+		basis = solver.getBasis();
+		if(basis != null) bases.put(model, basis);
+		return obj;
+	}
+	
+	/**
+	 * @param start the start time of the solve, in nanoseconds
+	 * @return the remaining time of the time limit, in seconds
+	 */
+	private double getRemainingTime(long start) {
+		return instance.getTimeLimit() - (System.nanoTime() - start) / 1e9;
+	}
+	
+	/**
+	 * Solve a subproblem, within the remaining time
+	 * @param solver the mip solver to use
+	 * @param model the subproblem model
+	 * @param start the start time of the solve, in nanoseconds
+	 * @return false if there was no time left to solve the subproblem, or the solve was terminated
+	 * @throws SolverException when an exception occurs in building or solving the model
+	 */
+	private boolean solveSubproblem(IMIPSolver solver, MIP model, long start) throws SolverException {
+		double remaining = getRemainingTime(start);
+		if(remaining <= 0 || terminated) return false;
+		model.setTimeLimit(Math.min(remaining, instance.getSubTimeLimit()));
+		mipBuildAndSolve(solver, model);
+		return true;
+	}
+	
+	/**
+	 * Solve all subproblems of one iteration, one after another
+	 * @param relax the lagrangian problem
+	 * @param start the start time of the solve, in nanoseconds
+	 * @throws SolverException when an exception occurs in building or solving a subproblem
+	 */
+	private void solveSubproblems(LRProblem<P> relax, long start) throws SolverException {
+		for(int e = 0; e < instance.getNSubproblems(); e++) {
+			MIP model = instance.getSubproblemModel(e, relax);
+			if(!solveSubproblem(mipsolver, model, start)) break;
+		}
+	}
+	
+	/**
+	 * Solve all subproblems of one iteration concurrently. The workers take the next unsolved subproblem until 
+	 * all are solved or the time is up. This returns after all workers are done.
+	 * @param relax the lagrangian problem
+	 * @param start the start time of the solve, in nanoseconds
+	 * @throws SolverException when an exception occurs in building or solving a subproblem
+	 */
+	private void solveSubproblemsParallel(LRProblem<P> relax, long start) throws SolverException {
+		// Get the models on this thread, so the LR model does not need to be thread-safe
+		List<MIP> models = new ArrayList<MIP>(instance.getNSubproblems());
+		for(int e = 0; e < instance.getNSubproblems(); e++)
+			models.add(instance.getSubproblemModel(e, relax));
+		AtomicInteger next = new AtomicInteger();
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[Math.min(workers.length, models.size())];
+		for(int w = 0; w < futures.length; w++) {
+			if(workers[w] == null) {
+				workers[w] = factory.create();
+				workers[w].setWarmStart(warmStart);
+				workers[w].setMetrics(metrics);
+			}
+			IMIPSolver solver = workers[w];
+			futures[w] = CompletableFuture.runAsync(() -> {
+				try {
+					for(int e = next.getAndIncrement(); e < models.size(); e = next.getAndIncrement())
+						if(!solveSubproblem(solver, models.get(e), start)) break;
+				} catch (SolverException ex) {
+					throw new CompletionException(ex);
+				}
+			}, executor);
+		}
+		try {
+			CompletableFuture.allOf(futures).join();
+		} catch (CompletionException ex) {
+			if(ex.getCause() instanceof SolverException)
+				throw (SolverException) ex.getCause();
+			if(ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+			throw ex;
+		}
 	}
 
 	@Override
 	public double solve() throws SolverException {
+		if(!terminateReset) terminated = false;
+		terminateReset = false;
 		long start = System.nanoTime();
 		LRProblem<P> relax = instance.getLagrangianProblem();
 		while(relax.checkend()) {
-			for(int e = 0; e < instance.getNSubproblems(); e++) {
-				double remaining = instance.getTimeLimit() - (System.nanoTime() - start) / 1e9;
-				if(remaining <= 0) break;
-				MIP model = instance.getSubproblemModel(e, relax);
-				model.setTimeLimit(Math.min(remaining, instance.getSubTimeLimit()));
+			long iterationStart = metrics == null ? 0 : System.nanoTime();
+			try {
+				if(workers == null)
+					solveSubproblems(relax, start);
+				else
+					solveSubproblemsParallel(relax, start);
+				instance.finishSubProblems();
+				double remaining = getRemainingTime(start);
+				if(remaining <= 0 || terminated) break;
+				relax.setlowerObj();
+				relax.addTolowerObj();
+				MIP model = instance.getMasterProblemModel(relax);
+				model.setTimeLimit(Math.min(remaining, instance.getTimeLimit()));
 				mipBuildAndSolve(model);
+			} catch (SolverException e) {
+				// a terminated mip solve without a solution ends the relaxation with the best solution so far
+				if(terminated) break;
+				throw e;
 			}
-			instance.finishSubProblems();
-			double remaining = instance.getTimeLimit() - (System.nanoTime() - start) / 1e9;
-			if(remaining <= 0) break;
-			relax.setlowerObj();
-			relax.addTolowerObj();
-			MIP model = instance.getMasterProblemModel(relax);
-			model.setTimeLimit(Math.min(remaining, instance.getTimeLimit()));
-			mipBuildAndSolve(model);
+			if(terminated) break;
 			relax.updateMultipliers();
 			relax.newiteration();
+			if(metrics != null) {
+				metrics.time(this, SolveMetrics.Phase.Iteration, System.nanoTime() - iterationStart);
+				metrics.progress(this, relax.getIteration(), -1, Math.abs((relax.bestObj - relax.lowerObj) / relax.bestObj));
+			}
 		}
 		return relax.getBestSolution();
 	}
 
+	/**
+	 * Save the last master problem model in LP or MPS format (see ModelWriter), with the objective direction of this solver
+	 * @param file the file name, ending with .lp or .mps, and optionally .gz
+	 * @throws SolverException when no master problem was solved yet, or the file cannot be written
+	 */
+	@Override
+	public void save(String file) throws SolverException {
+		MIP model = lastModel;
+		if(model == null) throw new SolverException("No master problem to save");
+		new ModelWriter(model).setMinimize(minimize).write(file);
+	}
+	
+	@Override
+	public void resetTerminate() {
+		terminated = false;
+		terminateReset = true;
+	}
+
+	/**
+	 * Terminate the lagrangian relaxation from another thread: the running mip solves are terminated, no new 
+	 * iteration is started, and the solve returns the best solution of the finished iterations
+	 */
 	@Override
-	public void save(String file) {
-		// TODO Auto-generated method stub
+	public void terminate() {
+		terminated = true;
+		mipsolver.terminate();
+		IMIPSolver[] w = workers;
+		if(w == null) return;
+		for(IMIPSolver worker: w)
+			if(worker != null) worker.terminate();
+	}
+	
+	/**
+	 * Dispose the mip solvers of the workers
+	 */
+	private void disposeWorkers() {
+		if(workers == null) return;
+		for(IMIPSolver worker: workers)
+			if(worker != null) worker.dispose();
+		workers = null;
 	}
 
 	@Override
 	public void dispose() {
 		mipsolver.dispose();
+		disposeWorkers();
 	}
 
 }
@@ -1,24 +1,53 @@
 package nl.tudelft.alg.MipSolverCore;
 
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
- * A class that holds a mutable representation of a linear expression
+ * A class that holds a mutable representation of a linear expression.
+ * The terms are stored in parallel arrays of variable ids and coefficients. Terms are appended as they are added,
+ * and terms of the same variable are merged lazily, the first time the expression is read.
+ * The merge is synchronized, so several threads can read the same expression, also before it was read for the first time.
+ * An expression should not be modified while other threads read it.
  */
 public class LinExp extends Exp {
-	Map<Variable, Double> expr;
-	
+	private static final int INITIAL_CAPACITY = 2;
+	int[] ids;
+	double[] coefs;
+	Variable[] vars;
+	int size;
+	// volatile, so that a thread that sees a merged expression also sees its merged arrays
+	volatile boolean merged;
+
 	/**
 	 * Create an empty linear expression. This linear expression has value zero.
 	 */
 	public LinExp(){
 		super();
-		expr = new HashMap<Variable, Double>();
+		ids = new int[INITIAL_CAPACITY];
+		coefs = new double[INITIAL_CAPACITY];
+		vars = new Variable[INITIAL_CAPACITY];
+		size = 0;
+		merged = true;
+	}
+
+	/**
+	 * Create an empty linear expression with room for a number of terms
+	 * @param capacity the number of terms
+	 * @return the expression
+	 */
+	static LinExp withCapacity(int capacity) {
+		LinExp exp = new LinExp();
+		exp.ids = new int[capacity];
+		exp.coefs = new double[capacity];
+		exp.vars = new Variable[capacity];
+		return exp;
 	}
-	
+
 	/**
 	 * Create a new linear expression. Terms can be added one by one in the order of constant, variable, constant, variable, etc.
 	 * If the last constant is not followed by another variable, this constant is added as a constant to the expression.
@@ -49,18 +78,107 @@ public class LinExp extends Exp {
 		}
 		if(expecting) addTerm(multiplier);
 	}
-	
+
+	/**
+	 * Append a term to the arrays, without merging it with an existing term of the same variable
+	 * @param x the variable of the term
+	 * @param value the coefficient of the term
+	 */
+	private void append(Variable x, double value) {
+		if(size == ids.length) {
+			int capacity = size + (size >> 1) + 1;
+			ids = Arrays.copyOf(ids, capacity);
+			coefs = Arrays.copyOf(coefs, capacity);
+			vars = Arrays.copyOf(vars, capacity);
+		}
+		if(size > 0 && ids[size-1] >= x.id)
+			merged = false;
+		ids[size] = x.id;
+		coefs[size] = value;
+		vars[size] = x;
+		size++;
+	}
+
+	/**
+	 * Sort the terms on variable id and merge the terms of the same variable
+	 */
+	private void merge() {
+		if(merged) return;
+		synchronized(this) {
+			if(merged) return;
+			sort(0, size-1);
+			int n = 0;
+			for(int i=1; i<size; i++) {
+				if(ids[i] == ids[n]) {
+					coefs[n] += coefs[i];
+				} else {
+					n++;
+					ids[n] = ids[i];
+					coefs[n] = coefs[i];
+					vars[n] = vars[i];
+				}
+			}
+			if(size > 0) n++;
+			Arrays.fill(vars, n, size, null);
+			size = n;
+			merged = true;
+		}
+	}
+
+	/**
+	 * Sort the terms in the range [lo, hi] on variable id
+	 */
+	private void sort(int lo, int hi) {
+		while(hi - lo > 16) {
+			int mid = (lo + hi) >>> 1;
+			if(ids[mid] < ids[lo]) swap(mid, lo);
+			if(ids[hi] < ids[lo]) swap(hi, lo);
+			if(ids[hi] < ids[mid]) swap(hi, mid);
+			int pivot = ids[mid];
+			int i = lo, j = hi;
+			while(i <= j) {
+				while(ids[i] < pivot) i++;
+				while(ids[j] > pivot) j--;
+				if(i <= j) swap(i++, j--);
+			}
+			if(j - lo < hi - i) {
+				sort(lo, j);
+				lo = i;
+			} else {
+				sort(i, hi);
+				hi = j;
+			}
+		}
+		for(int i=lo+1; i<=hi; i++) {
+			for(int j=i; j>lo && ids[j-1] > ids[j]; j--)
+				swap(j, j-1);
+		}
+	}
+
+	private void swap(int i, int j) {
+		int id = ids[i]; ids[i] = ids[j]; ids[j] = id;
+		double c = coefs[i]; coefs[i] = coefs[j]; coefs[j] = c;
+		Variable v = vars[i]; vars[i] = vars[j]; vars[j] = v;
+	}
+
+	/**
+	 * Find the position of the term of variable x
+	 * @param x the variable to look for
+	 * @return the position of the term of x, or a negative value when x is not in this expression
+	 */
+	private int indexOf(Variable x) {
+		merge();
+		return Arrays.binarySearch(ids, 0, size, x.id);
+	}
+
 	@Override
 	public LinExp addTerm(Variable x, double value){
 		if(value == 0.0)
 			return this;
-		double current = 0;
-		if(expr.containsKey(x))
-			current = get(x);
-		expr.put(x, current + value);
+		append(x, value);
 		return this;
 	}
-	
+
 	/**
 	 * Add a negated term to this expression. This means that in effect (1-x)*value is added to the linear expression.
 	 * Useful for adding negated binary variables
@@ -73,13 +191,15 @@ public class LinExp extends Exp {
 		addTerm(x, -value);
 		return this;
 	}
-	
+
 	@Override
 	public LinExp addTerm(Variable x){
-		expr.put(x, 1.0);
+		int i = indexOf(x);
+		if(i >= 0) coefs[i] = 1.0;
+		else append(x, 1.0);
 		return this;
 	}
-	
+
 	/**
 	 * Add a negated term to this expression. This means that in effect (1-x) is added to the linear expression.
 	 * Useful for adding negated binary variables
@@ -90,22 +210,59 @@ public class LinExp extends Exp {
 		addNegationTerm(x, 1.0);
 		return this;
 	}
-	
+
 	@Override
 	public LinExp addTerm(double value) {
-		expr.put(Variable.CONST, get(Variable.CONST) + value);
+		append(Variable.CONST, value);
 		return this;
 	}
-	
+
 	@Override
 	public Double get(Variable x) {
-		if(!expr.containsKey(x)) return 0.0;
-		return expr.get(x);
+		return getCoefficient(x);
+	}
+
+	/**
+	 * Get the coefficient for a variable in this expression, without boxing
+	 * @param x the variable to get the coefficient of
+	 * @return the coefficient, or zero if the variable is not in this expression
+	 */
+	public double getCoefficient(Variable x) {
+		int i = indexOf(x);
+		return i < 0 ? 0.0 : coefs[i];
+	}
+
+	/**
+	 * @return the number of (merged) terms in this expression, including the constant term if present
+	 */
+	public int size() {
+		merge();
+		return size;
+	}
+
+	/**
+	 * Get the variable of the i-th term. Terms are ordered on variable id.
+	 * @param i the position of the term, between 0 and size()
+	 * @return the variable of the i-th term
+	 */
+	public Variable getVariableAt(int i) {
+		merge();
+		return vars[i];
+	}
+
+	/**
+	 * Get the coefficient of the i-th term. Terms are ordered on variable id.
+	 * @param i the position of the term, between 0 and size()
+	 * @return the coefficient of the i-th term
+	 */
+	public double getCoefficientAt(int i) {
+		merge();
+		return coefs[i];
 	}
-	
+
 	@Override
 	public Set<Variable> getVariables() {
-		return expr.keySet();
+		return new VariableSet();
 	}
 
 	/**
@@ -114,24 +271,33 @@ public class LinExp extends Exp {
 	 * @return this expression
 	 */
 	public LinExp multiplyBy(double m) {
-		for(Map.Entry<Variable, Double> e: expr.entrySet()) {
-			Variable v = e.getKey();
-			Double d = e.getValue();
-			expr.put(v, d*m);
-		}
+		for(int i=0; i<size; i++)
+			coefs[i] *= m;
 		return this;
 	}
-	
+
 	@Override
 	public LinExp addLinExp(LinExp add) {
-		return (LinExp) super.addLinExp(add);
+		if(add == this) return multiplyBy(2.0);
+		add.merge();
+		for(int i=0; i<add.size; i++) {
+			if(add.coefs[i] != 0.0)
+				append(add.vars[i], add.coefs[i]);
+		}
+		return this;
 	}
-	
+
 	@Override
 	public LinExp subtractLinExp(LinExp sub) {
-		return (LinExp) super.subtractLinExp(sub);
+		if(sub == this) return multiplyBy(0.0);
+		sub.merge();
+		for(int i=0; i<sub.size; i++) {
+			if(sub.coefs[i] != 0.0)
+				append(sub.vars[i], -sub.coefs[i]);
+		}
+		return this;
 	}
-	
+
 	/**
 	 * Add a negated linear expression. In effect this means adding (1-x)*value
 	 * This is useful for adding linear expressions that consist of binary variables.
@@ -144,15 +310,16 @@ public class LinExp extends Exp {
 		addLinExp(x.multiplyBy(-value));
 		return this;
 	}
-	
+
 	/**
 	 * @return true if this linear expression is a constant (ie. does not contain any variables)
 	 */
 	public boolean isConstant() {
-		return expr.size() == 0 ||
-			expr.size() == 1 && expr.containsKey(Variable.CONST);
+		merge();
+		return size == 0 ||
+			size == 1 && vars[0] == Variable.CONST;
 	}
-	
+
 	/**
 	 * Multiply this linear expression by another. This method works only if one of this or the other linear expression is 'constant'
 	 * @param other the linear expression to multiply with
@@ -172,22 +339,23 @@ public class LinExp extends Exp {
 		}
 		return this;
 	}
-	
+
 	@Override
 	public String toString() {
+		merge();
 		StringBuilder res = new StringBuilder();
 		double _const = 0;
 		boolean first = true;
-		for(Map.Entry<Variable, Double> e: expr.entrySet()) {
-			if(e.getKey() == Variable.CONST) {
-				_const = e.getValue();
+		for(int i=0; i<size; i++) {
+			if(vars[i] == Variable.CONST) {
+				_const = coefs[i];
 				continue;
 			}
-			if(Math.abs(e.getValue()) < 1e-6) continue;
-			if(!first || e.getValue() < 0) res.append((e.getValue() >= 0 ? " + " : " - "));
-			if(Math.abs(Math.abs(e.getValue()) - 1) >= 1e-6)
-				res.append(String.format("%.4g ", Math.abs(e.getValue())));
-			res.append(e.getKey().getName());
+			if(Math.abs(coefs[i]) < 1e-6) continue;
+			if(!first || coefs[i] < 0) res.append((coefs[i] >= 0 ? " + " : " - "));
+			if(Math.abs(Math.abs(coefs[i]) - 1) >= 1e-6)
+				res.append(String.format("%.4g ", Math.abs(coefs[i])));
+			res.append(vars[i].getName());
 			first = false;
 		}
 		if(first || Math.abs(_const) >= 1e-6) {
@@ -196,4 +364,39 @@ public class LinExp extends Exp {
 		}
 		return res.toString();
 	}
+
+	/**
+	 * A read-only view on the variables of this expression
+	 */
+	private class VariableSet extends AbstractSet<Variable> {
+
+		@Override
+		public Iterator<Variable> iterator() {
+			merge();
+			return new Iterator<Variable>() {
+				int i = 0;
+
+				@Override
+				public boolean hasNext() {
+					return i < size;
+				}
+
+				@Override
+				public Variable next() {
+					if(i >= size) throw new NoSuchElementException();
+					return vars[i++];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return LinExp.this.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Variable && indexOf((Variable) o) >= 0;
+		}
+	}
 }
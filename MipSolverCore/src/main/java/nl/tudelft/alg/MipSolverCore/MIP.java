@@ -3,7 +3,9 @@ package nl.tudelft.alg.MipSolverCore;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public abstract class MIP implements IModel {
 	protected List<Variable> vars;
@@ -14,21 +16,70 @@ public abstract class MIP implements IModel {
 	double mipgap = 1e-6;
 	double timeLimit = Double.MAX_VALUE;
 	protected ISolver solver;
+	protected ModelChanges changes;
+	// The bounds set with setBounds, which override the bounds of the variables in this model only
+	Map<Variable, double[]> bounds;
+	boolean initialized;
+	// The values of the last solution by column index
+	double[] solution;
 	
 	public MIP() {
 		constraints = new ArrayList<Constraint>();
-		vars = new ArrayList<Variable>();
+		vars = new VariableRegistry();
 		soss = new ArrayList<Variable[]>();
 		objectiveFunction = new LinExp();
+		changes = new ModelChanges();
+		bounds = new HashMap<Variable, double[]>();
+		initialized = false;
 	}
 	
 	@Override
 	public void initialize(ISolver solver) {
+		SolveMetrics metrics = solver == null ? null : solver.getMetrics();
+		long start = metrics == null ? 0 : System.nanoTime();
 		this.solver = solver;
 		initiliazeVars();
 		setVars();
 		setConstraints();
 		setObjectiveFunction();
+		initialized = true;
+		if(metrics != null) metrics.time(solver, SolveMetrics.Phase.Initialize, System.nanoTime() - start);
+	}
+	
+	/**
+	 * @return true if the model has been initialized
+	 */
+	public boolean isInitialized() {
+		return initialized;
+	}
+	
+	/**
+	 * @return the changes to this model since it was last built or updated by a solver
+	 */
+	public ModelChanges getChanges() {
+		return changes;
+	}
+	
+	/**
+	 * Recompute the objective function, for example after the parameters it depends on have changed.
+	 * The objective is reset to an empty linear expression before setObjectiveFunction() is called.
+	 */
+	public void updateObjectiveFunction() {
+		objectiveFunction = new LinExp();
+		setObjectiveFunction();
+		changes.objectiveChanged();
+	}
+	
+	/**
+	 * Set the coefficient of a variable in the (linear) objective function
+	 * @param v the variable
+	 * @param value the new coefficient of v
+	 */
+	public void setObjectiveCoefficient(Variable v, double value) {
+		assert objectiveFunction instanceof LinExp;
+		LinExp obj = (LinExp) objectiveFunction;
+		obj.addTerm(v, value - obj.getCoefficient(v));
+		changes.objectiveChanged(v);
 	}
 	
 	/**
@@ -76,6 +127,28 @@ public abstract class MIP implements IModel {
 		constraints.add(new Constraint(left, right, cmp, name));
 	}
 	
+	/**
+	 * Remove a constraint from the model
+	 * @param c the constraint to remove
+	 * @return true if c was a constraint of the model
+	 */
+	public boolean removeConstraint(Constraint c) {
+		if(!constraints.remove(c)) return false;
+		changes.constraintRemoved(c);
+		return true;
+	}
+	
+	/**
+	 * Change the right hand side value of a constraint
+	 * @param c the constraint to change
+	 * @param rhs the new right hand side value, when all variables are moved to the left hand side
+	 */
+	public void setRhs(Constraint c, double rhs) {
+		// copy the right hand side, since the expression may be shared with other constraints
+		c.right = new LinExp().addLinExp(c.right).addTerm(rhs - c.getRhs());
+		changes.rhsChanged(c);
+	}
+	
 	public List<Constraint> getConstraints() {
 		return constraints;
 	}
@@ -92,6 +165,15 @@ public abstract class MIP implements IModel {
 		return vars;
 	}
 	
+	/**
+	 * @return the registry of the variables in this model, which maps every variable to its column index
+	 */
+	public VariableRegistry getVariableRegistry() {
+		if(!(vars instanceof VariableRegistry))
+			vars = new VariableRegistry(vars);
+		return (VariableRegistry) vars;
+	}
+	
 	public double getMinimum() {
 		return minimum;
 	}
@@ -116,12 +198,33 @@ public abstract class MIP implements IModel {
 		return timeLimit;
 	}
 	
+	/**
+	 * Get start values for all the variables in the model, for example to warm start a solver
+	 * @param start the start values per variable, or null to use the current solution values of the variables
+	 * @return the start values by column index, with NaN for variables without a start value
+	 */
+	public double[] getStartValues(Map<Variable, Double> start) {
+		VariableRegistry registry = getVariableRegistry();
+		double[] values = new double[registry.size()];
+		for(int j=0; j<values.length; j++) {
+			Variable v = registry.get(j);
+			if(start == null) {
+				values[j] = v.solution;
+				continue;
+			}
+			Double value = start.get(v);
+			values[j] = value == null ? Double.NaN : value;
+		}
+		return values;
+	}
+	
 	/**
 	 * Initializes a Variable array with name name, type vType, and with dimensions dims
 	 * @param name the base name of all the variables in the array
 	 * @param vType the type of the variables
 	 * @param dims the dimensions of the resulting array
 	 * @return a Variable array with dimensions dims, of type vType with base name name
+	 * @see VarTensor for a flat array with typed accessors
 	 */
 	public Object newVarArray(String name, VarType vType, int... dims) {
 		if(dims.length == 0)
@@ -132,12 +235,22 @@ public abstract class MIP implements IModel {
 	}
 	
 	/**
-	 * Initializes a Variable array, with type vType, and beginning with name name
+	 * Initializes a Variable array, with type vType, and beginning with name name.
+	 * The variables of a rectangular array share one IndexedName, so their names name_i_j_... are only formatted on demand.
 	 * @param ar the Variable array to initialize
 	 * @param name the base name of all the variables in the array
 	 * @param vType the type of the variables
 	 */
 	protected void initVarArray(Object[] ar, String name, VarType vType) {
+		int[] shape = IndexedName.getShape(ar);
+		if(shape != null) {
+			int n = 1;
+			for(int s: shape) n *= s;
+			if(n == 0) return;
+			IndexedName indexed = new IndexedName(name, shape, Variable.reserveIds(n));
+			fillVarArray(ar, indexed, indexed.firstId, n, vType);
+			return;
+		}
 		for(int i=0; i<ar.length; i++) {
 			if(ar[i] != null && ar[i].getClass().isArray())
 				initVarArray((Object[]) ar[i], name+"_"+i, vType);
@@ -147,9 +260,26 @@ public abstract class MIP implements IModel {
 	}
 	
 	/**
-	 * Add constrains to the MIP model to fix a list of variables
+	 * Fill a rectangular Variable array in row-major order with the reserved ids of an IndexedName
+	 * @param ar the (sub)array
+	 * @param name the shared name
+	 * @param id the id of the first cell of the subarray
+	 * @param size the number of cells of the subarray
+	 */
+	private void fillVarArray(Object[] ar, IndexedName name, int id, int size, VarType vType) {
+		int n = size / ar.length;
+		for(int i=0; i<ar.length; i++) {
+			if(ar[i] != null && ar[i].getClass().isArray())
+				fillVarArray((Object[]) ar[i], name, id + i * n, n, vType);
+			else
+				ar[i] = new Variable(id + i, name, vType, ModelMatrix.getLowerBound(vType), ModelMatrix.getUpperBound(vType));
+		}
+	}
+	
+	/**
+	 * Fix a list of variables to a value, by setting their bounds
 	 * @param value the value to fix the variables to
-	 * @param ar a Variable or a Variable array, or multiple Variable arrays
+	 * @param ar a Variable or a Variable array, or multiple Variable arrays or VarTensors
 	 */
 	public void fixVariables(double value, Object... ar) {
 		if(ar.length == 1 && ar[0].getClass().isArray())
@@ -159,11 +289,13 @@ public abstract class MIP implements IModel {
 				fixVariables(value, a);
 			else if(a instanceof Variable)
 				fixVariable(a, value);
+			else if(a instanceof VarTensor)
+				((VarTensor) a).fix(this, value);
 		}
 	}
 	
 	/**
-	 * Add constrains to the MIP model to fix a list of variables
+	 * Fix a list of variables, by setting their bounds (see fixVariable(Object, Object, CMP))
 	 * @param var the Variable, or Variable array to fix
 	 * @param val the values, or value array to fix the variable to
 	 */
@@ -172,7 +304,9 @@ public abstract class MIP implements IModel {
 	}
 	
 	/**
-	 * Add constrains to the MIP model to fix a list of variables
+	 * Fix a list of variables, by setting their bounds in this model (see setBounds). A numeric value tightens 
+	 * the lower bound (LARGEREQ) or the upper bound (SMALLEREQ), like a constraint would, or replaces both bounds (EQ), 
+	 * so a variable can be fixed again to another value. Other values (such as a variable) are added as a constraint fix_&lt;name&gt;.
 	 * @param var the Variable, or Variable array to fix
 	 * @param val the values, or value array to fix the variable to
 	 * @param cmp the comparator
@@ -183,15 +317,65 @@ public abstract class MIP implements IModel {
 			for(int i=0; i<vars.length; i++)
 				fixVariable(vars[i], 
 					val.getClass().isArray() ? Array.get(val, i): val, cmp);
+		} else if(var instanceof Variable && val instanceof Number) {
+			Variable v = (Variable) var;
+			double value = ((Number) val).doubleValue();
+			double lb = getLowerBound(v), ub = getUpperBound(v);
+			if(cmp == CMP.LARGEREQ) setBounds(v, Math.max(lb, value), ub);
+			else if(cmp == CMP.SMALLEREQ) setBounds(v, lb, Math.min(ub, value));
+			else setBounds(v, value, value);
 		} else if(var instanceof Variable) {
-			addConstraint(new LinExp(var), new LinExp(val), cmp, "fix_"+((Variable) var).getName());
+			addConstraint(new Constraint((Variable) var, new LinExp(val), cmp));
 		} else {
 			assert false;
 		}
 	}
 	
 	/**
-	 * Add a Variable, or list of Variable (arrays) to the model
+	 * Set the bounds of a variable in this model. The bounds override the bounds of the variable (see Variable.setBounds)
+	 * in this model only, so other models that share the variable, such as the subproblems of a lagrangian relaxation 
+	 * or a column generation, keep its own bounds. If the model was built, the solver changes the bounds of the column on update.
+	 * @param v the variable
+	 * @param lb the lower bound, or Double.NEGATIVE_INFINITY
+	 * @param ub the upper bound, or Double.POSITIVE_INFINITY
+	 */
+	public void setBounds(Variable v, double lb, double ub) {
+		if(getLowerBound(v) == lb && getUpperBound(v) == ub) return;
+		bounds.put(v, new double[] {lb, ub});
+		changes.boundsChanged(v, getVariableRegistry().indexOf(v));
+	}
+	
+	/**
+	 * Reset the bounds of a variable in this model to the bounds of the variable itself, for example to release a fixed variable
+	 * @param v the variable
+	 */
+	public void resetBounds(Variable v) {
+		double[] b = bounds.remove(v);
+		if(b != null && (b[0] != v.getLowerBound() || b[1] != v.getUpperBound()))
+			changes.boundsChanged(v, getVariableRegistry().indexOf(v));
+	}
+
+	/**
+	 * @param v a variable
+	 * @return the lower bound of v in this model
+	 */
+	public double getLowerBound(Variable v) {
+		double[] b = bounds.get(v);
+		return b == null ? v.getLowerBound() : b[0];
+	}
+
+	/**
+	 * @param v a variable
+	 * @return the upper bound of v in this model
+	 */
+	public double getUpperBound(Variable v) {
+		double[] b = bounds.get(v);
+		return b == null ? v.getUpperBound() : b[1];
+	}
+	
+	/**
+	 * Add a Variable, or list of Variable (arrays) or VarTensors to the model.
+	 * Every variable gets a column index in the order it is added. Variables that are already in the model are ignored.
 	 * @param vs the Variable, or list of Variable (arrays) to add
 	 */
 	public void addVars(Object... vs) {
@@ -202,9 +386,181 @@ public abstract class MIP implements IModel {
 				addVars(v);
 			else if(v instanceof Variable)
 				vars.add((Variable) v);
+			else if(v instanceof VarTensor)
+				((VarTensor) v).addTo(this);
 		}
 	}
 	
+	/**
+	 * Add a new column to the model: a variable with its objective coefficient and its coefficients in existing
+	 * constraints, for example a column of a column generation master problem (see CGSolver).
+	 * The left hand sides of the constraints are extended, so these expressions should not be shared with other constraints.
+	 * A solver that built the model adds the column on the next update, without building the model again.
+	 * @param v the variable, which should not be in the model yet
+	 * @param objective the objective coefficient of v
+	 * @param cs the constraints in which v has a coefficient, every constraint at most once
+	 * @param values the coefficient of v in every constraint of cs
+	 */
+	public void addColumn(Variable v, double objective, Constraint[] cs, double[] values) {
+		if(getVariableRegistry().indexOf(v) >= 0)
+			throw new IllegalArgumentException("Variable " + v.getName() + " is already in the model");
+		if(cs.length != values.length)
+			throw new IllegalArgumentException("Every constraint needs one coefficient");
+		addVars(v);
+		for(int k=0; k<cs.length; k++)
+			cs[k].left.addTerm(v, values[k]);
+		setObjectiveCoefficient(v, objective);
+		changes.columnAdded(v, cs, values);
+	}
+	
+	/**
+	 * Set the values of the last solution of all variables at once. Solvers call this with the solution 
+	 * that they get from the native solver in one bulk call.
+	 * @param x the value of every variable by column index (see VariableRegistry)
+	 */
+	public void setSolution(double[] x) {
+		VariableRegistry registry = getVariableRegistry();
+		Variable[] vs = registry.vars;
+		int n = Math.min(x.length, registry.size());
+		for(int j=0; j<n; j++)
+			vs[j].solution = x[j];
+		solution = x;
+	}
+	
+	/**
+	 * @return the values of the last solution by column index (see VariableRegistry), or null if the model was not 
+	 * solved yet. The array belongs to the model and should not be changed.
+	 */
+	public double[] getSolution() {
+		return solution;
+	}
+	
+	/**
+	 * Copy the solution values of variables into an array, without boxing or reflection
+	 * @param vs the variables, of which null entries get the value 0
+	 * @param target the array to copy the values to, at least as long as vs
+	 * @return target
+	 */
+	public static double[] copyValues(Variable[] vs, double[] target) {
+		for(int i=0; i<vs.length; i++)
+			target[i] = vs[i] == null ? 0 : vs[i].solution;
+		return target;
+	}
+	
+	/**
+	 * Copy the solution values of variables into an array, rounded to the nearest integer
+	 * @param vs the variables, of which null entries get the value 0
+	 * @param target the array to copy the values to, at least as long as vs
+	 * @return target
+	 */
+	public static int[] copyValues(Variable[] vs, int[] target) {
+		for(int i=0; i<vs.length; i++)
+			target[i] = vs[i] == null ? 0 : (int) Math.round(vs[i].solution);
+		return target;
+	}
+	
+	/**
+	 * Copy the solution values of variables into an array, as true if the value is larger than 0.5
+	 * @param vs the variables, of which null entries get the value false
+	 * @param target the array to copy the values to, at least as long as vs
+	 * @return target
+	 */
+	public static boolean[] copyValues(Variable[] vs, boolean[] target) {
+		for(int i=0; i<vs.length; i++)
+			target[i] = vs[i] != null && vs[i].solution > 0.5;
+		return target;
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return the solution values of the variables (see copyValues)
+	 */
+	public static double[] getValues(Variable[] vs) {
+		return copyValues(vs, new double[vs.length]);
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return the solution values of the variables (see copyValues)
+	 */
+	public static double[][] getValues(Variable[][] vs) {
+		double[][] result = new double[vs.length][];
+		for(int i=0; i<vs.length; i++)
+			result[i] = getValues(vs[i]);
+		return result;
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return the solution values of the variables (see copyValues)
+	 */
+	public static double[][][] getValues(Variable[][][] vs) {
+		double[][][] result = new double[vs.length][][];
+		for(int i=0; i<vs.length; i++)
+			result[i] = getValues(vs[i]);
+		return result;
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return the solution values of the variables, rounded to the nearest integer (see copyValues)
+	 */
+	public static int[] getIntValues(Variable[] vs) {
+		return copyValues(vs, new int[vs.length]);
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return the solution values of the variables, rounded to the nearest integer (see copyValues)
+	 */
+	public static int[][] getIntValues(Variable[][] vs) {
+		int[][] result = new int[vs.length][];
+		for(int i=0; i<vs.length; i++)
+			result[i] = getIntValues(vs[i]);
+		return result;
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return the solution values of the variables, rounded to the nearest integer (see copyValues)
+	 */
+	public static int[][][] getIntValues(Variable[][][] vs) {
+		int[][][] result = new int[vs.length][][];
+		for(int i=0; i<vs.length; i++)
+			result[i] = getIntValues(vs[i]);
+		return result;
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return whether the solution value of every variable is larger than 0.5 (see copyValues)
+	 */
+	public static boolean[] getBooleanValues(Variable[] vs) {
+		return copyValues(vs, new boolean[vs.length]);
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return whether the solution value of every variable is larger than 0.5 (see copyValues)
+	 */
+	public static boolean[][] getBooleanValues(Variable[][] vs) {
+		boolean[][] result = new boolean[vs.length][];
+		for(int i=0; i<vs.length; i++)
+			result[i] = getBooleanValues(vs[i]);
+		return result;
+	}
+	
+	/**
+	 * @param vs the variables
+	 * @return whether the solution value of every variable is larger than 0.5 (see copyValues)
+	 */
+	public static boolean[][][] getBooleanValues(Variable[][][] vs) {
+		boolean[][][] result = new boolean[vs.length][][];
+		for(int i=0; i<vs.length; i++)
+			result[i] = getBooleanValues(vs[i]);
+		return result;
+	}
+	
 	/**
 	 * Write results from the solver back to a double array
 	 * @param mVars the list of Variables in the model
@@ -215,25 +571,39 @@ public abstract class MIP implements IModel {
 	}
 	
 	/**
-	 * Write results from the solver back to an array
+	 * Write results from the solver back to an array. Booleans are true for values larger than 0.1, 
+	 * and integers are truncated (unlike copyValues, which rounds).
 	 * @param mVars the list of Variables in the model
 	 * @param pVars the array where the results should be written to
 	 * @param type the type of the resulting array
 	 */
 	protected void writeVarsBack(Object mVars, Object pVars, Class<?> type) {
-		if(mVars.getClass().isArray()) {
+		if(mVars instanceof Variable[]) {
+			// the last dimension is copied without reflection
+			Variable[] m = (Variable[]) mVars;
+			if(type.equals(boolean.class)) {
+				boolean[] p = (boolean[]) pVars;
+				for(int i=0; i<m.length; i++)
+					p[i] = m[i].solution > 0.1;
+			} else if(type.equals(int.class)) {
+				int[] p = (int[]) pVars;
+				for(int i=0; i<m.length; i++)
+					p[i] = (int) m[i].solution;
+			} else
+				copyValues(m, (double[]) pVars);
+		} else if(mVars.getClass().isArray()) {
 			Object[] m = (Object[]) mVars;
 			for(int i=0; i<m.length; i++) {
 				if(m[i].getClass().isArray()) {
 					writeVarsBack(m[i], ((Object[]) pVars)[i], type);
 				} else {
-					Double d = ((Variable) m[i]).getSolution();
+					double d = ((Variable) m[i]).solution;
 					if(type.equals(boolean.class))
 						Array.set(pVars, i, d > 0.1);
 					else if(type.equals(int.class))
-						Array.set(pVars, i, d.intValue());
+						Array.set(pVars, i, (int) d);
 					else
-						Array.set(pVars, i, d.doubleValue());
+						Array.set(pVars, i, d);
 				}
 			}
 		} else {
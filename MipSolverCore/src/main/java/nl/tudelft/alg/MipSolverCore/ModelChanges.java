@@ -0,0 +1,243 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the changes to a MIP since it was last built (or updated) by a solver,
+ * so that the solver can apply only these changes to its native model.
+ * Rows are identified by their index in the built model. Constraints and variables that were added after the build
+ * are the ones beyond the built rows and columns in the constraint list and the variable registry.
+ * Columns that are added with MIP.addColumn also keep their coefficients in the built rows.
+ */
+public class ModelChanges {
+	Object solver;
+	List<Constraint> rows;
+	int columns;
+	Map<Constraint, Integer> rowIndex;
+	BitSet removedRows;
+	BitSet changedRows;
+	Set<Variable> changedObjective;
+	Set<Variable> changedBounds;
+	boolean objectiveChanged;
+	// The columns added with MIP.addColumn, with their coefficients in the built rows
+	List<Variable> addedColumns;
+	List<int[]> addedColumnRows;
+	List<double[]> addedColumnValues;
+
+	public ModelChanges() {
+		this.solver = null;
+		this.rows = new ArrayList<Constraint>();
+		this.removedRows = new BitSet();
+		this.changedRows = new BitSet();
+		this.changedObjective = new LinkedHashSet<Variable>();
+		this.changedBounds = new LinkedHashSet<Variable>();
+		this.addedColumns = new ArrayList<Variable>();
+		this.addedColumnRows = new ArrayList<int[]>();
+		this.addedColumnValues = new ArrayList<double[]>();
+	}
+
+	/**
+	 * Start tracking changes from the current state of the model, after it has been built or updated by a solver
+	 * @param solver the solver that holds the model
+	 * @param mip the model
+	 */
+	public void reset(Object solver, MIP mip) {
+		this.solver = solver;
+		this.rows = new ArrayList<Constraint>(mip.getConstraints());
+		this.columns = mip.getVariableRegistry().size();
+		this.rowIndex = null;
+		this.removedRows.clear();
+		this.changedRows.clear();
+		this.changedObjective.clear();
+		this.changedBounds.clear();
+		this.objectiveChanged = false;
+		this.addedColumns.clear();
+		this.addedColumnRows.clear();
+		this.addedColumnValues.clear();
+	}
+
+	/**
+	 * @param solver a solver
+	 * @return true if the changes are tracked relative to the model that was built by solver
+	 */
+	public boolean isTrackedFor(Object solver) {
+		return this.solver != null && this.solver == solver;
+	}
+
+	/**
+	 * Get the row index of a constraint in the built model
+	 * @param c the constraint
+	 * @return the row index of c, or -1 if c is not a row of the built model
+	 */
+	int getRow(Constraint c) {
+		if(rowIndex == null) {
+			rowIndex = new IdentityHashMap<Constraint, Integer>(rows.size() * 2);
+			for(int i=0; i<rows.size(); i++)
+				rowIndex.put(rows.get(i), i);
+		}
+		Integer i = rowIndex.get(c);
+		return i == null ? -1 : i;
+	}
+
+	void constraintRemoved(Constraint c) {
+		if(solver == null) return;
+		int i = getRow(c);
+		if(i >= 0) removedRows.set(i);
+	}
+
+	void rhsChanged(Constraint c) {
+		if(solver == null) return;
+		int i = getRow(c);
+		if(i >= 0) changedRows.set(i);
+	}
+
+	void objectiveChanged(Variable v) {
+		if(solver == null || objectiveChanged) return;
+		changedObjective.add(v);
+	}
+
+	/**
+	 * @param v the variable of which the bounds changed
+	 * @param column the column of v in this model, which differs from v.index if v is shared with another model
+	 */
+	void boundsChanged(Variable v, int column) {
+		if(solver == null) return;
+		// columns that are added after the build get their bounds when they are added
+		if(column >= 0 && column < columns) changedBounds.add(v);
+	}
+
+	void columnAdded(Variable v, Constraint[] cs, double[] values) {
+		if(solver == null) return;
+		int[] rows = new int[cs.length];
+		double[] vals = new double[cs.length];
+		int n = 0;
+		for(int k=0; k<cs.length; k++) {
+			int i = getRow(cs[k]);
+			// coefficients in added rows are set with those rows
+			if(i < 0 || values[k] == 0) continue;
+			rows[n] = i;
+			vals[n++] = values[k];
+		}
+		if(n == 0) return;
+		addedColumns.add(v);
+		addedColumnRows.add(Arrays.copyOf(rows, n));
+		addedColumnValues.add(Arrays.copyOf(vals, n));
+	}
+
+	void objectiveChanged() {
+		if(solver == null) return;
+		objectiveChanged = true;
+		changedObjective.clear();
+	}
+
+	/**
+	 * @return the number of rows in the built model
+	 */
+	public int getBuiltRows() {
+		return rows.size();
+	}
+
+	/**
+	 * @return the number of columns in the built model
+	 */
+	public int getBuiltColumns() {
+		return columns;
+	}
+
+	/**
+	 * @param i the row index in the built model
+	 * @return the constraint of row i
+	 */
+	public Constraint getRowConstraint(int i) {
+		return rows.get(i);
+	}
+
+	/**
+	 * @return the rows of the built model that were removed, in increasing order
+	 */
+	public int[] getRemovedRows() {
+		return removedRows.stream().toArray();
+	}
+
+	/**
+	 * @return the rows of the built model of which the right hand side changed, and which were not removed, in increasing order
+	 */
+	public int[] getChangedRows() {
+		BitSet changed = (BitSet) changedRows.clone();
+		changed.andNot(removedRows);
+		return changed.stream().toArray();
+	}
+
+	/**
+	 * Get the constraints that were added after the model was built
+	 * @param mip the model
+	 * @return the added constraints, in the order of the constraint list of the model
+	 */
+	public List<Constraint> getAddedConstraints(MIP mip) {
+		List<Constraint> constraints = mip.getConstraints();
+		int kept = rows.size() - removedRows.cardinality();
+		return constraints.subList(Math.min(kept, constraints.size()), constraints.size());
+	}
+
+	/**
+	 * @return the columns that were added with MIP.addColumn after the build and have coefficients in the built rows,
+	 * in the order they were added
+	 */
+	public List<Variable> getAddedColumns() {
+		return addedColumns;
+	}
+
+	/**
+	 * @param k the index of a column in getAddedColumns()
+	 * @return the rows of the built model in which the column has a coefficient, and which were not removed
+	 */
+	public int[] getAddedColumnRows(int k) {
+		int[] rows = addedColumnRows.get(k);
+		if(removedRows.isEmpty()) return rows;
+		return Arrays.stream(rows).filter(i -> !removedRows.get(i)).toArray();
+	}
+
+	/**
+	 * @param k the index of a column in getAddedColumns()
+	 * @return the coefficients of the column in the rows of getAddedColumnRows(k)
+	 */
+	public double[] getAddedColumnValues(int k) {
+		int[] rows = addedColumnRows.get(k);
+		double[] values = addedColumnValues.get(k);
+		if(removedRows.isEmpty()) return values;
+		double[] kept = new double[rows.length];
+		int n = 0;
+		for(int t=0; t<rows.length; t++)
+			if(!removedRows.get(rows[t])) kept[n++] = values[t];
+		return Arrays.copyOf(kept, n);
+	}
+
+	/**
+	 * @return true if the objective function was replaced, in which case it should be set completely
+	 */
+	public boolean isObjectiveChanged() {
+		return objectiveChanged;
+	}
+
+	/**
+	 * @return the variables of which the objective coefficient changed, if the objective was not replaced
+	 */
+	public Collection<Variable> getChangedObjectiveVariables() {
+		return changedObjective;
+	}
+
+	/**
+	 * @return the variables of the built model of which the bounds changed
+	 */
+	public Collection<Variable> getChangedBoundVariables() {
+		return changedBounds;
+	}
+}
@@ -0,0 +1,486 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A compiled, column-indexed representation of a MIP.
+ * The constraints are stored as a sparse matrix in compressed row format (CSR): the nonzeros of row i are at
+ * positions rowStart[i] to rowStart[i+1] of colIndex and values. Every row has the form
+ * sum_j a_ij x_j (sense_i) rhs_i, where all variables are moved to the left and all constants to the right hand side.
+ * The columns are the variables of the model, in the order of the variable registry.
+ * A compressed column (CSC) view of the same matrix is built on demand.
+ * The row and column names are formatted on demand from the constraints and variables of the model,
+ * so a solver that does not use names does not create them.
+ */
+public class ModelMatrix {
+	int nRows, nCols;
+	int[] rowStart;
+	int[] colIndex;
+	double[] values;
+	CMP[] senses;
+	double[] rhs;
+	double[] lb, ub;
+	VarType[] types;
+	double[] objective;
+	double objConstant;
+	boolean quadraticObjective;
+	String[] rowNames, colNames;
+	// The names that are not materialized yet
+	IntFunction<String> rowNamer, colNamer;
+	int[] colStart, rowIndex;
+	double[] colValues;
+
+	/**
+	 * Create a model matrix from its arrays
+	 * @param rowStart the start of every row in colIndex and values, with length nRows+1
+	 * @param colIndex the column index of every nonzero
+	 * @param values the value of every nonzero
+	 * @param senses the comparator of every row
+	 * @param rhs the right hand side of every row
+	 * @param lb the lower bound of every column
+	 * @param ub the upper bound of every column
+	 * @param types the type of every column
+	 * @param objective the objective coefficient of every column
+	 * @param objConstant the constant term of the objective
+	 */
+	public ModelMatrix(int[] rowStart, int[] colIndex, double[] values, CMP[] senses, double[] rhs,
+			double[] lb, double[] ub, VarType[] types, double[] objective, double objConstant) {
+		this.nRows = senses.length;
+		this.nCols = types.length;
+		this.rowStart = rowStart;
+		this.colIndex = colIndex;
+		this.values = values;
+		this.senses = senses;
+		this.rhs = rhs;
+		this.lb = lb;
+		this.ub = ub;
+		this.types = types;
+		this.objective = objective;
+		this.objConstant = objConstant;
+		assert rowStart.length == nRows + 1 && rhs.length == nRows;
+		assert lb.length == nCols && ub.length == nCols && objective.length == nCols;
+	}
+
+	/**
+	 * Compile a MIP into a model matrix
+	 * @param mip the mip model to compile
+	 * @return the model matrix of mip
+	 * @throws SolverException when a constraint or the objective contains a variable that is not in the model
+	 */
+	public static ModelMatrix compile(MIP mip) throws SolverException {
+		return compile(mip, mip.getConstraints());
+	}
+
+	/**
+	 * Compile the columns and objective of a MIP, and a selection of its constraints, into a model matrix
+	 * @param mip the mip model to compile
+	 * @param constraints the constraints that become the rows of the matrix
+	 * @return the model matrix
+	 * @throws SolverException when a constraint or the objective contains a variable that is not in the model
+	 */
+	public static ModelMatrix compile(MIP mip, List<Constraint> constraints) throws SolverException {
+		// an unchanged model that was loaded from a snapshot already has its matrix
+		if(mip instanceof FileMIP && constraints == mip.getConstraints()) {
+			ModelMatrix snapshot = ((FileMIP) mip).getSnapshot();
+			if(snapshot != null) return snapshot;
+		}
+		VariableRegistry registry = mip.getVariableRegistry();
+		int nRows = constraints.size();
+		int nCols = registry.size();
+
+		// Columns
+		double[] lb = new double[nCols];
+		double[] ub = new double[nCols];
+		VarType[] types = new VarType[nCols];
+		Variable[] columns = new Variable[nCols];
+		for(int j=0; j<nCols; j++) {
+			Variable v = registry.get(j);
+			types[j] = v.getType();
+			lb[j] = mip.getLowerBound(v);
+			ub[j] = mip.getUpperBound(v);
+			columns[j] = v;
+		}
+
+		// Rows
+		int capacity = 0;
+		for(Constraint c: constraints)
+			capacity += c.getLeft().size() + c.getRight().size();
+		int[] rowStart = new int[nRows+1];
+		int[] colIndex = new int[capacity];
+		double[] values = new double[capacity];
+		CMP[] senses = new CMP[nRows];
+		double[] rhs = new double[nRows];
+		Constraint[] rows = new Constraint[nRows];
+		int nz = 0;
+		for(int i=0; i<nRows; i++) {
+			Constraint c = constraints.get(i);
+			rowStart[i] = nz;
+			senses[i] = c.getComparator();
+			rows[i] = c;
+			LinExp left = c.getLeft(), right = c.getRight();
+			int nl = left.size(), nr = right.size();
+			int l = 0, r = 0;
+			double b = 0;
+			// Both sides are sorted on variable id, so merge them
+			while(l < nl || r < nr) {
+				Variable v;
+				double a;
+				if(r >= nr || l < nl && left.getVariableAt(l).id < right.getVariableAt(r).id) {
+					v = left.getVariableAt(l);
+					a = left.getCoefficientAt(l++);
+				} else if(l >= nl || right.getVariableAt(r).id < left.getVariableAt(l).id) {
+					v = right.getVariableAt(r);
+					a = -right.getCoefficientAt(r++);
+				} else {
+					v = left.getVariableAt(l);
+					a = left.getCoefficientAt(l++) - right.getCoefficientAt(r++);
+				}
+				if(v == Variable.CONST) {
+					b -= a;
+					continue;
+				}
+				int j = registry.indexOf(v);
+				if(j < 0)
+					throw new SolverException("adding unknown variable " + v.getName() + " in " + c.toString());
+				if(a == 0.0) continue;
+				colIndex[nz] = j;
+				values[nz] = a;
+				nz++;
+			}
+			rhs[i] = b;
+		}
+		rowStart[nRows] = nz;
+		if(nz < capacity) {
+			colIndex = Arrays.copyOf(colIndex, nz);
+			values = Arrays.copyOf(values, nz);
+		}
+
+		// Objective
+		double[] objective = new double[nCols];
+		double objConstant = 0;
+		Exp obj = mip.getObjectiveFunction();
+		boolean quadratic = !(obj instanceof LinExp);
+		if(!quadratic) {
+			LinExp lin = (LinExp) obj;
+			for(int k=0; k<lin.size(); k++) {
+				Variable v = lin.getVariableAt(k);
+				if(v == Variable.CONST) {
+					objConstant += lin.getCoefficientAt(k);
+					continue;
+				}
+				int j = registry.indexOf(v);
+				if(j < 0)
+					throw new SolverException("adding unknown variable " + v.getName() + " in the objective function");
+				objective[j] += lin.getCoefficientAt(k);
+			}
+		}
+
+		ModelMatrix m = new ModelMatrix(rowStart, colIndex, values, senses, rhs, lb, ub, types, objective, objConstant);
+		m.quadraticObjective = quadratic;
+		m.rowNamer = i -> rows[i].getName();
+		m.colNamer = j -> columns[j].getName();
+		return m;
+	}
+
+	/**
+	 * Get the default lower bound of a variable type
+	 * @param type the variable type
+	 * @return the lower bound of the type
+	 */
+	public static double getLowerBound(VarType type) {
+		switch(type) {
+		case PositiveContinuous:
+		case Binary:
+		case BinaryContinuous:
+			return 0;
+		default:
+			return Double.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Get the default upper bound of a variable type
+	 * @param type the variable type
+	 * @return the upper bound of the type
+	 */
+	public static double getUpperBound(VarType type) {
+		switch(type) {
+		case NegativeContinuous:
+			return 0;
+		case Binary:
+		case BinaryContinuous:
+			return 1;
+		default:
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Build the compressed column view of the matrix, if it was not built yet
+	 */
+	private void buildColumns() {
+		if(colStart != null) return;
+		int nz = getNonzeros();
+		int[] start = new int[nCols+1];
+		for(int k=0; k<nz; k++)
+			start[colIndex[k]+1]++;
+		for(int j=0; j<nCols; j++)
+			start[j+1] += start[j];
+		int[] next = Arrays.copyOf(start, nCols);
+		int[] rows = new int[nz];
+		double[] vals = new double[nz];
+		for(int i=0; i<nRows; i++) {
+			for(int k=rowStart[i]; k<rowStart[i+1]; k++) {
+				int p = next[colIndex[k]]++;
+				rows[p] = i;
+				vals[p] = values[k];
+			}
+		}
+		rowIndex = rows;
+		colValues = vals;
+		colStart = start;
+	}
+
+	/**
+	 * @return the number of rows (constraints)
+	 */
+	public int getRows() {
+		return nRows;
+	}
+
+	/**
+	 * @return the number of columns (variables)
+	 */
+	public int getColumns() {
+		return nCols;
+	}
+
+	/**
+	 * @return the number of nonzeros in the constraint matrix
+	 */
+	public int getNonzeros() {
+		return rowStart[nRows];
+	}
+
+	/**
+	 * @return the start of every row in the column index and value arrays, with length getRows()+1
+	 */
+	public int[] getRowStarts() {
+		return rowStart;
+	}
+
+	/**
+	 * @return the column index of every nonzero, in row order
+	 */
+	public int[] getColumnIndices() {
+		return colIndex;
+	}
+
+	/**
+	 * @return the value of every nonzero, in row order
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * @return the start of every column in the row index and column value arrays, with length getColumns()+1
+	 */
+	public int[] getColumnStarts() {
+		buildColumns();
+		return colStart;
+	}
+
+	/**
+	 * @return the row index of every nonzero, in column order
+	 */
+	public int[] getRowIndices() {
+		buildColumns();
+		return rowIndex;
+	}
+
+	/**
+	 * @return the value of every nonzero, in column order
+	 */
+	public double[] getColumnValues() {
+		buildColumns();
+		return colValues;
+	}
+
+	/**
+	 * @return the comparator of every row
+	 */
+	public CMP[] getSenses() {
+		return senses;
+	}
+
+	/**
+	 * @return the right hand side of every row
+	 */
+	public double[] getRhs() {
+		return rhs;
+	}
+
+	/**
+	 * @return the lower bound of every column
+	 */
+	public double[] getLowerBounds() {
+		return lb;
+	}
+
+	/**
+	 * @return the upper bound of every column
+	 */
+	public double[] getUpperBounds() {
+		return ub;
+	}
+
+	/**
+	 * @return the type of every column
+	 */
+	public VarType[] getTypes() {
+		return types;
+	}
+
+	/**
+	 * @param j the column index
+	 * @return true if column j is integer (binary or general integer)
+	 */
+	public boolean isInteger(int j) {
+		return types[j] == VarType.Binary || types[j] == VarType.Integer;
+	}
+
+	/**
+	 * @return true if the model has an integer column
+	 */
+	public boolean hasIntegers() {
+		for(int j=0; j<nCols; j++)
+			if(isInteger(j)) return true;
+		return false;
+	}
+
+	/**
+	 * Check whether a solution satisfies the bounds, the integrality and the rows of this model
+	 * @param x the value of every column
+	 * @param tol the feasibility tolerance
+	 * @return true if x has a value for every column and is feasible within tol
+	 */
+	public boolean isFeasible(double[] x, double tol) {
+		if(x == null || x.length < nCols) return false;
+		for(int j=0; j<nCols; j++) {
+			if(Double.isNaN(x[j]) || x[j] < lb[j] - tol || x[j] > ub[j] + tol) return false;
+			if(isInteger(j) && Math.abs(x[j] - Math.rint(x[j])) > tol) return false;
+		}
+		for(int i=0; i<nRows; i++) {
+			double r = 0;
+			for(int k=rowStart[i]; k<rowStart[i+1]; k++)
+				r += values[k] * x[colIndex[k]];
+			if(senses[i] != CMP.LARGEREQ && r > rhs[i] + tol) return false;
+			if(senses[i] != CMP.SMALLEREQ && r < rhs[i] - tol) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the linear objective coefficient of every column
+	 */
+	public double[] getObjective() {
+		return objective;
+	}
+
+	/**
+	 * @return the constant term of the objective
+	 */
+	public double getObjectiveConstant() {
+		return objConstant;
+	}
+
+	/**
+	 * @return true if the objective of the model is not linear. In that case the objective arrays are empty.
+	 */
+	public boolean hasQuadraticObjective() {
+		return quadraticObjective;
+	}
+
+	/**
+	 * @param i the row index
+	 * @return the name of row i, or null if the rows have no names
+	 */
+	public String getRowName(int i) {
+		if(rowNames != null) return rowNames[i];
+		return rowNamer == null ? null : rowNamer.apply(i);
+	}
+
+	/**
+	 * @param j the column index
+	 * @return the name of column j, or null if the columns have no names
+	 */
+	public String getColumnName(int j) {
+		if(colNames != null) return colNames[j];
+		return colNamer == null ? null : colNamer.apply(j);
+	}
+
+	/**
+	 * @return true if the rows have names
+	 */
+	boolean hasRowNames() {
+		return rowNames != null || rowNamer != null;
+	}
+
+	/**
+	 * @return true if the columns have names
+	 */
+	boolean hasColumnNames() {
+		return colNames != null || colNamer != null;
+	}
+
+	/**
+	 * Get the names of all rows. The names are formatted on the first call, use getRowName for single rows.
+	 * @return the names of the rows, or null if the rows have no names
+	 */
+	public String[] getRowNames() {
+		if(rowNames == null && rowNamer != null) {
+			rowNames = new String[nRows];
+			for(int i=0; i<nRows; i++) rowNames[i] = rowNamer.apply(i);
+			rowNamer = null;
+		}
+		return rowNames;
+	}
+
+	/**
+	 * Get the names of all columns. The names are formatted on the first call, use getColumnName for single columns.
+	 * @return the names of the columns, or null if the columns have no names
+	 */
+	public String[] getColumnNames() {
+		if(colNames == null && colNamer != null) {
+			colNames = new String[nCols];
+			for(int j=0; j<nCols; j++) colNames[j] = colNamer.apply(j);
+			colNamer = null;
+		}
+		return colNames;
+	}
+
+	/**
+	 * Set the names of the rows and columns
+	 * @param rowNames the row names, or null
+	 * @param colNames the column names, or null
+	 */
+	public void setNames(String[] rowNames, String[] colNames) {
+		this.rowNames = rowNames;
+		this.colNames = colNames;
+		this.rowNamer = this.colNamer = null;
+	}
+
+	/**
+	 * Set the names of the rows and columns, formatted on demand
+	 * @param rowNamer gives the name of a row index, or null
+	 * @param colNamer gives the name of a column index, or null
+	 */
+	void setNamers(IntFunction<String> rowNamer, IntFunction<String> colNamer) {
+		this.rowNames = this.colNames = null;
+		this.rowNamer = rowNamer;
+		this.colNamer = colNamer;
+	}
+}
@@ -0,0 +1,1154 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import nl.tudelft.alg.MipSolverCore.ModelWriter.Format;
+
+/**
+ * Reads a model in LP or MPS format into a FileMIP.
+ * The file is memory-mapped (files that end with .gz are decompressed into memory), and tokenized on its bytes:
+ * numbers are parsed from the bytes, and names are looked up in hash tables on their bytes, so a string is only
+ * created once for every distinct name, not for every token.
+ * MPS files are read in free format, so names cannot contain spaces. The sections NAME, OBJSENSE, OBJNAME, ROWS,
+ * COLUMNS (with integer markers), RHS, RANGES, BOUNDS, SOS, QUADOBJ and QMATRIX are supported.
+ * LP files can have the sections Minimize/Maximize, Subject To, Bounds, General, Binary, SOS and End.
+ * A ranged row becomes two constraints, the second of which gets the suffix _rng.
+ * Only SOS2 sets are supported, since the models have no other SOS constraints.
+ */
+public class ModelReader {
+	// Files are mapped in segments of 1 GiB, so files larger than 2 GiB can be read
+	static final int SEGMENT_BITS = 30;
+	static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+	// The bytes are read through a window that is copied from the segments, and that starts a little before the
+	// byte that is read when it is moved, so that the start of the current token stays in the window
+	static final int WINDOW_SIZE = 1 << 20;
+	static final int WINDOW_HISTORY = 1 << 12;
+	// Numbers with at least this absolute value are infinite
+	static final double INFINITY = 1e30;
+	static final double[] POW10 = { 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14,
+			1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	// Token kinds of the LP format. Operators are their own character.
+	static final int END = -1, NAME = -2, NUMBER = -3, SENSE = -4;
+	// LP sections
+	static final int NONE = 0, MINIMIZE = 1, MAXIMIZE = 2, SUBJECT_TO = 3, BOUNDS = 4, GENERAL = 5, BINARY = 6,
+			SOS = 7, SEMI = 8, LP_END = 9;
+	// Column flags
+	static final byte INTEGER = 1, BINARY_COLUMN = 2, LOWER_SET = 4;
+	static final int MAX_FIELDS = 8;
+
+	/**
+	 * An open addressing hash table of names, which finds names by their bytes in the file.
+	 * The hash of a name is the String hash code of its bytes. The bytes of the names are kept together in one array,
+	 * so comparing a name does not need its string.
+	 */
+	static class NameTable {
+		String[] names = new String[16];
+		byte[] bytes = new byte[256];
+		// name i has the bytes from offsets[i] to offsets[i+1]
+		int[] offsets = new int[17];
+		int size;
+		// the hash and the index + 1 of the name in every slot, or 0 if the slot is empty
+		long[] slots = new long[32];
+		// the slot of a hash is given by its highest bits
+		int shift = 32 - 5;
+
+		int find(ModelReader reader, long start, int len, int hash) {
+			int mask = slots.length - 1;
+			for(int s = slot(hash); ; s = (s + 1) & mask) {
+				long entry = slots[s];
+				if(entry == 0) return -1;
+				int i = (int) entry - 1;
+				if((int) (entry >>> 32) == hash && matches(reader, i, start, len)) return i;
+			}
+		}
+
+		boolean matches(ModelReader reader, int i, long start, int len) {
+			int offset = offsets[i];
+			if(offsets[i+1] - offset != len) return false;
+			for(int k=0; k<len; k++)
+				if(bytes[offset + k] != (byte) reader.at(start + k)) return false;
+			return true;
+		}
+
+		/**
+		 * Add a name, without checking whether it is already in the table
+		 * @return the index of the name
+		 */
+		int add(ModelReader reader, long start, int len, int hash) {
+			if(size + 1 == offsets.length) {
+				names = Arrays.copyOf(names, size * 2);
+				offsets = Arrays.copyOf(offsets, size * 2 + 1);
+			}
+			int offset = offsets[size];
+			if(offset + len > bytes.length)
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, offset + len));
+			for(int k=0; k<len; k++)
+				bytes[offset + k] = (byte) reader.at(start + k);
+			names[size] = new String(bytes, offset, len, StandardCharsets.ISO_8859_1);
+			offsets[++size] = offset + len;
+			if(2 * size > slots.length) {
+				long[] old = slots;
+				slots = new long[slots.length * 2];
+				shift--;
+				for(long entry: old)
+					if(entry != 0) insert(entry);
+			}
+			insert((long) hash << 32 | size);
+			return size - 1;
+		}
+
+		private void insert(long entry) {
+			int mask = slots.length - 1;
+			int s = slot((int) (entry >>> 32));
+			while(slots[s] != 0)
+				s = (s + 1) & mask;
+			slots[s] = entry;
+		}
+
+		private int slot(int hash) {
+			return (hash * 0x9E3779B9) >>> shift;
+		}
+	}
+
+	// The file
+	ByteBuffer[] segments;
+	long size, pos;
+	byte[] window;
+	long windowStart;
+	int windowLength;
+	int line;
+	// The current line of an MPS file, or the current token of an LP file
+	final long[] fieldStart = new long[MAX_FIELDS];
+	final int[] fieldLength = new int[MAX_FIELDS];
+	int kind;
+	long tokenStart;
+	int tokenLength;
+	double value;
+	CMP sense;
+	boolean firstOnLine, newLine;
+	// The model
+	FileMIP mip;
+	NameTable columnNames;
+	Variable[] columns;
+	double[] objective, lb, ub;
+	byte[] flags;
+	int n, lastColumn;
+	double constant;
+	int[] quadFirst, quadSecond;
+	double[] quadValues;
+	int quads;
+	// The entries of the rows of an MPS file, or of the current row of an LP file
+	int[] entryRows, entryColumns;
+	double[] entryValues;
+	int entries;
+	// The rows of an MPS file
+	NameTable rowNames;
+	LinExp[] rowExps;
+	byte[] rowTypes;
+	double[] rhs, ranges;
+	int m, objectiveRow;
+	String objectiveName;
+
+	/**
+	 * Read a model from a file. The format follows from the extension (see ModelWriter.getFormat), and the file is
+	 * decompressed if it ends with .gz
+	 * @param file the file name
+	 * @return the model
+	 * @throws SolverException when the file cannot be read, or is not a valid LP or MPS file
+	 */
+	public FileMIP read(String file) throws SolverException {
+		Format format = ModelWriter.getFormat(file);
+		Path path = Paths.get(file);
+		try {
+			if(file.toLowerCase().endsWith(".gz")) inflate(path);
+			else map(path);
+			String name = path.getFileName().toString();
+			return read(format, name.substring(0, name.indexOf('.')));
+		} catch (IOException e) {
+			throw new SolverException(e);
+		} finally {
+			segments = null;
+		}
+	}
+
+	/**
+	 * Read a model from a buffer, for example a model received from another process.
+	 * The model is read from the position to the limit of the buffer.
+	 * @param buffer the buffer
+	 * @param format the file format
+	 * @return the model
+	 * @throws SolverException when the buffer is not a valid LP or MPS file
+	 */
+	public FileMIP read(ByteBuffer buffer, Format format) throws SolverException {
+		segments = new ByteBuffer[] { buffer.slice() };
+		size = buffer.remaining();
+		try {
+			return read(format, "mip");
+		} finally {
+			segments = null;
+		}
+	}
+
+	private FileMIP read(Format format, String name) throws SolverException {
+		window = new byte[(int) Math.min(WINDOW_SIZE, Math.max(size, 1))];
+		windowStart = 0;
+		windowLength = 0;
+		pos = 0;
+		line = 1;
+		mip = new FileMIP(name);
+		columnNames = new NameTable();
+		columns = new Variable[16];
+		objective = new double[16];
+		lb = new double[16];
+		ub = new double[16];
+		flags = new byte[16];
+		n = 0;
+		lastColumn = -1;
+		constant = 0;
+		quads = 0;
+		entryRows = new int[1024];
+		entryColumns = new int[1024];
+		entryValues = new double[1024];
+		entries = 0;
+		m = 0;
+		try {
+			if(format == Format.LP) readLP();
+			else readMPS();
+			finish(format);
+			return mip;
+		} finally {
+			mip = null;
+			columnNames = null;
+			columns = null;
+			rowNames = null;
+			rowExps = null;
+			entryRows = entryColumns = null;
+			entryValues = null;
+			window = null;
+		}
+	}
+
+	private void map(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			size = channel.size();
+			segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS)];
+			for(int s=0; s<segments.length; s++) {
+				long start = (long) s << SEGMENT_BITS;
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << SEGMENT_BITS));
+			}
+		}
+	}
+
+	private void inflate(Path path) throws IOException {
+		List<ByteBuffer> list = new ArrayList<ByteBuffer>();
+		size = 0;
+		try(InputStream in = new GZIPInputStream(Files.newInputStream(path), 1 << 16)) {
+			byte[] buffer = new byte[1 << 16];
+			int len = 0;
+			while(true) {
+				if(len == buffer.length) {
+					if(len == 1 << SEGMENT_BITS) {
+						list.add(ByteBuffer.wrap(buffer));
+						buffer = new byte[1 << 16];
+						len = 0;
+					} else buffer = Arrays.copyOf(buffer, len * 2);
+				}
+				int r = in.read(buffer, len, buffer.length - len);
+				if(r < 0) break;
+				len += r;
+				size += r;
+			}
+			list.add(ByteBuffer.wrap(buffer, 0, len));
+		}
+		segments = list.toArray(new ByteBuffer[list.size()]);
+	}
+
+	/*
+	 * MPS format
+	 */
+
+	private void readMPS() throws SolverException {
+		rowNames = new NameTable();
+		rowExps = new LinExp[16];
+		rowTypes = new byte[16];
+		rhs = new double[16];
+		ranges = new double[16];
+		m = 0;
+		objectiveRow = -1;
+		objectiveName = null;
+		line = 0;
+		String section = null;
+		boolean integers = false;
+		List<Integer> sos = new ArrayList<Integer>();
+		List<Double> weights = new ArrayList<Double>();
+		while(pos < size) {
+			boolean header = !isSpace(at(pos));
+			int count = split();
+			if(count == 0) continue;
+			if(header) {
+				if("SOS".equals(section)) addSOS(sos, weights);
+				section = getMPSSection(count);
+				if("ENDATA".equals(section)) return;
+				continue;
+			}
+			if(section == null) throw error("Data before the first MPS section");
+			switch(section) {
+			case "OBJSENSE":
+				readMPSSense(0);
+				break;
+			case "OBJNAME":
+				objectiveName = string(0);
+				break;
+			case "ROWS":
+				readMPSRow(count);
+				break;
+			case "COLUMNS":
+				if(count >= 3 && is(1, "'MARKER'")) {
+					if(is(2, "'INTORG'")) integers = true;
+					else if(is(2, "'INTEND'")) integers = false;
+					else throw error("Unknown marker");
+					break;
+				}
+				if(count % 2 == 0) throw error("Expected a column followed by pairs of rows and values");
+				int j = getColumn(0);
+				if(integers) flags[j] |= INTEGER;
+				for(int k=1; k<count; k+=2) {
+					int i = getRow(k);
+					double a = number(k+1);
+					if(i == objectiveRow) objective[j] += a;
+					else if(rowTypes[i] != 'N') addEntry(i, j, a);
+				}
+				break;
+			case "RHS":
+			case "RANGES":
+				// the name of the vector is optional
+				for(int k=count%2; k+1<count; k+=2) {
+					int i = getRow(k);
+					double a = number(k+1);
+					if(i == objectiveRow) {
+						// the right hand side of the objective row is minus the objective constant
+						if("RHS".equals(section)) constant = -a;
+					} else if("RHS".equals(section)) rhs[i] = a;
+					else ranges[i] = a;
+				}
+				break;
+			case "BOUNDS":
+				readMPSBound(count);
+				break;
+			case "SOS":
+				if(count >= 3 && (is(0, "S1") || is(0, "S2"))) {
+					addSOS(sos, weights);
+					if(is(0, "S1")) throw error("SOS1 sets are not supported");
+				} else if(count == 1) {
+					int colon = indexOf(0, ':');
+					if(colon < 0) throw error("Expected a column and a weight");
+					sos.add(getColumn(fieldStart[0], colon));
+					weights.add(number(fieldStart[0] + colon + 1, fieldLength[0] - colon - 1));
+				} else {
+					sos.add(getColumn(0));
+					weights.add(number(1));
+				}
+				break;
+			case "QUADOBJ":
+			case "QMATRIX":
+				if(count < 3) throw error("Expected two columns and a value");
+				int j1 = getColumn(0), j2 = getColumn(1);
+				double q = number(2);
+				// QUADOBJ has every pair once, QMATRIX has both (j1, j2) and (j2, j1)
+				addQuadratic(j1, j2, j1 == j2 || "QMATRIX".equals(section) ? q / 2 : q);
+				break;
+			default:
+				throw error("Unknown MPS section " + section);
+			}
+		}
+		if("SOS".equals(section)) addSOS(sos, weights);
+	}
+
+	/**
+	 * @return the name of the section of a header line
+	 */
+	private String getMPSSection(int count) throws SolverException {
+		String section = string(0).toUpperCase();
+		switch(section) {
+		case "NAME":
+			if(count > 1) mip.name = string(1);
+			return null;
+		case "OBJSENSE":
+		case "OBJSENS":
+			if(count > 1) readMPSSense(1);
+			return "OBJSENSE";
+		case "OBJNAME":
+			if(count > 1) objectiveName = string(1);
+			return section;
+		case "QSECTION":
+			if(count < 2 || objectiveRow < 0 || !matches(fieldStart[1], fieldLength[1], rowNames.names[objectiveRow]))
+				throw error("Quadratic constraints are not supported");
+			return "QMATRIX";
+		case "ROWS":
+		case "COLUMNS":
+		case "RHS":
+		case "RANGES":
+		case "BOUNDS":
+		case "SOS":
+		case "QUADOBJ":
+		case "QMATRIX":
+		case "ENDATA":
+			return section;
+		default:
+			throw error("Unsupported MPS section " + section);
+		}
+	}
+
+	private void readMPSSense(int k) throws SolverException {
+		if(is(k, "MAX") || is(k, "MAXIMIZE")) mip.minimize = false;
+		else if(is(k, "MIN") || is(k, "MINIMIZE")) mip.minimize = true;
+		else throw error("Expected MIN or MAX");
+	}
+
+	private void readMPSRow(int count) throws SolverException {
+		if(count < 2 || fieldLength[0] != 1) throw error("Expected a row type and name");
+		int type = Character.toUpperCase(at(fieldStart[0]));
+		if(type != 'N' && type != 'L' && type != 'G' && type != 'E') throw error("Unknown row type");
+		int hash = hash(fieldStart[1], fieldLength[1]);
+		if(rowNames.find(this, fieldStart[1], fieldLength[1], hash) >= 0) throw error("Duplicate row " + string(1));
+		int i = rowNames.add(this, fieldStart[1], fieldLength[1], hash);
+		if(i == rowExps.length) {
+			rowExps = Arrays.copyOf(rowExps, i * 2);
+			rowTypes = Arrays.copyOf(rowTypes, i * 2);
+			rhs = Arrays.copyOf(rhs, i * 2);
+			ranges = Arrays.copyOf(ranges, i * 2);
+		}
+		rowTypes[i] = (byte) type;
+		ranges[i] = Double.NaN;
+		if(type == 'N' && objectiveRow < 0 && (objectiveName == null || objectiveName.equals(rowNames.names[i])))
+			objectiveRow = i;
+		m = i + 1;
+	}
+
+	private void readMPSBound(int count) throws SolverException {
+		if(count < 2) throw error("Expected a bound type and a column");
+		boolean valued = !(is(0, "FR") || is(0, "MI") || is(0, "PL") || is(0, "BV"));
+		// the name of the bound vector is optional
+		int k = valued ? count - 2 : count >= 3 ? 2 : 1;
+		if(k < 1) throw error("Expected a bound value");
+		int j = getColumn(k);
+		double v = valued ? number(k+1) : 0;
+		if(v >= INFINITY) v = Double.POSITIVE_INFINITY;
+		else if(v <= -INFINITY) v = Double.NEGATIVE_INFINITY;
+		if(is(0, "UP") || is(0, "UI")) {
+			ub[j] = v;
+			// a negative upper bound of a column without a lower bound makes the column unbounded below
+			if(v < 0 && (flags[j] & LOWER_SET) == 0) lb[j] = Double.NEGATIVE_INFINITY;
+		} else if(is(0, "LO") || is(0, "LI")) {
+			lb[j] = v;
+			flags[j] |= LOWER_SET;
+		} else if(is(0, "FX")) {
+			lb[j] = ub[j] = v;
+			flags[j] |= LOWER_SET;
+		} else if(is(0, "FR")) {
+			lb[j] = Double.NEGATIVE_INFINITY;
+			ub[j] = Double.POSITIVE_INFINITY;
+		} else if(is(0, "MI")) {
+			lb[j] = Double.NEGATIVE_INFINITY;
+			flags[j] |= LOWER_SET;
+		} else if(is(0, "PL")) {
+			ub[j] = Double.POSITIVE_INFINITY;
+		} else if(is(0, "BV")) {
+			lb[j] = 0;
+			ub[j] = 1;
+			flags[j] |= BINARY_COLUMN;
+		} else throw error("Unsupported bound type " + string(0));
+		if(is(0, "UI") || is(0, "LI")) flags[j] |= INTEGER;
+	}
+
+	/**
+	 * Split the current line of an MPS file on whitespace, and move to the next line
+	 * @return the number of fields on the line
+	 */
+	private int split() throws SolverException {
+		int count = 0;
+		line++;
+		// comment lines
+		if(at(pos) == '*') {
+			while(pos < size && at(pos++) != '\n') {}
+			return 0;
+		}
+		while(true) {
+			int b = at(pos);
+			if(b < 0) break;
+			if(b == '\n') {
+				pos++;
+				break;
+			}
+			if(isSpace(b)) {
+				pos++;
+				continue;
+			}
+			long start = pos;
+			while(b >= 0 && b != '\n' && !isSpace(b))
+				b = at(++pos);
+			if(count == MAX_FIELDS) throw error("Too many fields");
+			fieldStart[count] = start;
+			fieldLength[count++] = (int) (pos - start);
+		}
+		return count;
+	}
+
+	private int getRow(int k) throws SolverException {
+		long start = fieldStart[k];
+		int len = fieldLength[k];
+		int i = rowNames.find(this, start, len, hash(start, len));
+		if(i < 0) throw error("Unknown row " + string(k));
+		return i;
+	}
+
+	private int getColumn(int k) {
+		return getColumn(fieldStart[k], fieldLength[k]);
+	}
+
+	private void addEntry(int i, int j, double a) {
+		if(entries == entryRows.length) {
+			entryRows = Arrays.copyOf(entryRows, entries * 2);
+			entryColumns = Arrays.copyOf(entryColumns, entries * 2);
+			entryValues = Arrays.copyOf(entryValues, entries * 2);
+		}
+		entryRows[entries] = i;
+		entryColumns[entries] = j;
+		entryValues[entries++] = a;
+	}
+
+	private void addSOS(List<Integer> sos, List<Double> weights) {
+		if(sos.isEmpty()) return;
+		Integer[] order = new Integer[sos.size()];
+		for(int k=0; k<order.length; k++)
+			order[k] = k;
+		Arrays.sort(order, (a, b) -> Double.compare(weights.get(a), weights.get(b)));
+		Variable[] set = new Variable[order.length];
+		for(int k=0; k<order.length; k++)
+			set[k] = columns[sos.get(order[k])];
+		mip.soss.add(set);
+		sos.clear();
+		weights.clear();
+	}
+
+	/*
+	 * LP format
+	 */
+
+	private void readLP() throws SolverException {
+		newLine = true;
+		next();
+		while(kind != END) {
+			int section = getLPSection();
+			if(section == NONE) throw error("Expected a section");
+			boolean twoWords = equalsIgnoreCase("subject") || equalsIgnoreCase("such");
+			next();
+			if(twoWords) {
+				if(kind != NAME || !equalsIgnoreCase("to") && !equalsIgnoreCase("that")) throw error("Expected Subject To");
+				next();
+			}
+			switch(section) {
+			case MINIMIZE:
+			case MAXIMIZE:
+				mip.minimize = section == MINIMIZE;
+				if(kind == NAME && getLPSection() == NONE && isFollowedByColon()) {
+					next();
+					next();
+				}
+				constant += readLPExpression(true);
+				break;
+			case SUBJECT_TO:
+				while(kind != END && getLPSection() == NONE)
+					readLPConstraint();
+				break;
+			case BOUNDS:
+				while(kind != END && getLPSection() == NONE)
+					readLPBound();
+				break;
+			case GENERAL:
+			case BINARY:
+				while(kind != END && getLPSection() == NONE) {
+					if(kind != NAME) throw error("Expected a column");
+					// getColumn can grow the column arrays, so get the column before the flags
+					int j = getColumn(tokenStart, tokenLength);
+					flags[j] |= section == GENERAL ? INTEGER : BINARY_COLUMN;
+					next();
+				}
+				break;
+			case SOS:
+				readLPSOS();
+				break;
+			case SEMI:
+				throw error("Semi-continuous columns are not supported");
+			case LP_END:
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the section of which the current token is the keyword, or NONE. Keywords are only recognized at the
+	 * start of a line.
+	 */
+	private int getLPSection() {
+		if(kind != NAME || !firstOnLine) return NONE;
+		switch(tokenLength) {
+		case 2:
+			return equalsIgnoreCase("st") ? SUBJECT_TO : NONE;
+		case 3:
+			if(equalsIgnoreCase("min")) return MINIMIZE;
+			if(equalsIgnoreCase("max")) return MAXIMIZE;
+			if(equalsIgnoreCase("st.")) return SUBJECT_TO;
+			if(equalsIgnoreCase("gen")) return GENERAL;
+			if(equalsIgnoreCase("bin")) return BINARY;
+			if(equalsIgnoreCase("sos")) return SOS;
+			if(equalsIgnoreCase("end")) return LP_END;
+			return NONE;
+		default:
+			if(equalsIgnoreCase("minimize") || equalsIgnoreCase("minimise") || equalsIgnoreCase("minimum")) return MINIMIZE;
+			if(equalsIgnoreCase("maximize") || equalsIgnoreCase("maximise") || equalsIgnoreCase("maximum")) return MAXIMIZE;
+			if(equalsIgnoreCase("subject") || equalsIgnoreCase("such") || equalsIgnoreCase("s.t.")) return SUBJECT_TO;
+			if(equalsIgnoreCase("bounds") || equalsIgnoreCase("bound")) return BOUNDS;
+			if(equalsIgnoreCase("general") || equalsIgnoreCase("generals") || equalsIgnoreCase("integer")
+					|| equalsIgnoreCase("integers")) return GENERAL;
+			if(equalsIgnoreCase("binary") || equalsIgnoreCase("binaries")) return BINARY;
+			if(equalsIgnoreCase("semi") || equalsIgnoreCase("semis")) return SEMI;
+			return NONE;
+		}
+	}
+
+	/**
+	 * Read a linear expression, and add its terms to the objective, or to the entries of the current row.
+	 * The quadratic terms of the objective are read between [ and ], optionally followed by / 2.
+	 * @return the constant of the expression
+	 */
+	private double readLPExpression(boolean objective) throws SolverException {
+		double sum = 0;
+		while(getLPSection() == NONE) {
+			double a = 1;
+			boolean term = false;
+			for(; kind == '+' || kind == '-'; next()) {
+				if(kind == '-') a = -a;
+				term = true;
+			}
+			if(kind == '[') {
+				if(!objective) throw error("Quadratic terms are only supported in the objective");
+				next();
+				readLPQuadratic(a);
+				continue;
+			}
+			if(kind == NUMBER) {
+				a *= value;
+				next();
+				term = true;
+			}
+			if(kind == NAME && getLPSection() == NONE) {
+				int j = getColumn(tokenStart, tokenLength);
+				if(objective) this.objective[j] += a;
+				else addEntry(0, j, a);
+				next();
+			} else if(term) sum += a;
+			else break;
+		}
+		return sum;
+	}
+
+	private void readLPQuadratic(double sign) throws SolverException {
+		int first = quads;
+		while(kind != ']') {
+			double a = 1;
+			for(; kind == '+' || kind == '-'; next())
+				if(kind == '-') a = -a;
+			if(kind == NUMBER) {
+				a *= value;
+				next();
+			}
+			if(kind != NAME) throw error("Expected a column in a quadratic term");
+			int j = getColumn(tokenStart, tokenLength);
+			next();
+			if(kind == '^') {
+				next();
+				if(kind != NUMBER || value != 2) throw error("Expected ^ 2");
+				addQuadratic(j, j, a);
+			} else if(kind == '*') {
+				next();
+				if(kind != NAME) throw error("Expected a column in a quadratic term");
+				addQuadratic(j, getColumn(tokenStart, tokenLength), a);
+			} else throw error("Expected ^ or * in a quadratic term");
+			next();
+		}
+		next();
+		if(kind == '/') {
+			next();
+			if(kind != NUMBER) throw error("Expected a number after /");
+			sign /= value;
+			next();
+		}
+		for(int k=first; k<quads; k++)
+			quadValues[k] *= sign;
+	}
+
+	private void readLPConstraint() throws SolverException {
+		String name = null;
+		if(kind == NAME && isFollowedByColon()) {
+			name = string(tokenStart, tokenLength);
+			next();
+			next();
+		}
+		double sum = readLPExpression(false);
+		if(kind != SENSE) throw error("Expected <=, >= or =");
+		CMP cmp = sense;
+		next();
+		double v = readLPValue() - sum;
+		if(name == null) name = "R" + mip.constraints.size();
+		LinExp exp = LinExp.withCapacity(entries);
+		for(int k=0; k<entries; k++)
+			exp.addTerm(columns[entryColumns[k]], entryValues[k]);
+		entries = 0;
+		mip.addConstraint(exp, constant(v), cmp, name);
+	}
+
+	/**
+	 * Read a bound: x free, x op value, value op x, or value op x op value
+	 */
+	private void readLPBound() throws SolverException {
+		if(kind == NAME && !isInfinity()) {
+			int j = getColumn(tokenStart, tokenLength);
+			next();
+			if(kind == NAME && equalsIgnoreCase("free")) {
+				lb[j] = Double.NEGATIVE_INFINITY;
+				ub[j] = Double.POSITIVE_INFINITY;
+				next();
+				return;
+			}
+			if(kind != SENSE) throw error("Expected <=, >=, = or free");
+			CMP cmp = sense;
+			next();
+			setBound(j, cmp, readLPValue());
+			return;
+		}
+		double v = readLPValue();
+		if(kind != SENSE) throw error("Expected <=, >= or =");
+		CMP cmp = sense == CMP.SMALLEREQ ? CMP.LARGEREQ : sense == CMP.LARGEREQ ? CMP.SMALLEREQ : CMP.EQ;
+		next();
+		if(kind != NAME) throw error("Expected a column");
+		int j = getColumn(tokenStart, tokenLength);
+		next();
+		setBound(j, cmp, v);
+		if(kind == SENSE) {
+			cmp = sense;
+			next();
+			setBound(j, cmp, readLPValue());
+		}
+	}
+
+	private void setBound(int j, CMP cmp, double v) {
+		if(cmp != CMP.SMALLEREQ) lb[j] = v;
+		if(cmp != CMP.LARGEREQ) ub[j] = v;
+	}
+
+	/**
+	 * Read a signed number or infinity
+	 */
+	private double readLPValue() throws SolverException {
+		double sign = 1;
+		for(; kind == '+' || kind == '-'; next())
+			if(kind == '-') sign = -sign;
+		double v;
+		if(kind == NUMBER) v = value;
+		else if(isInfinity()) v = Double.POSITIVE_INFINITY;
+		else throw error("Expected a number");
+		next();
+		if(v >= INFINITY) v = Double.POSITIVE_INFINITY;
+		return sign * v;
+	}
+
+	/**
+	 * Read the SOS section: sets of the form [name:] S2:: x:1 y:2 ...
+	 */
+	private void readLPSOS() throws SolverException {
+		List<Integer> sos = new ArrayList<Integer>();
+		List<Double> weights = new ArrayList<Double>();
+		while(kind != END && getLPSection() == NONE) {
+			if(kind != NAME) throw error("Expected an SOS set or column");
+			long start = tokenStart;
+			int len = tokenLength;
+			next();
+			if(kind != ':') throw error("Expected :");
+			next();
+			if(kind == NUMBER) {
+				sos.add(getColumn(start, len));
+				weights.add(value);
+				next();
+				continue;
+			}
+			// a new set, with or without a name
+			if(kind == NAME) {
+				start = tokenStart;
+				len = tokenLength;
+				next();
+				if(kind != ':') throw error("Expected ::");
+				next();
+			}
+			if(kind != ':') throw error("Expected ::");
+			next();
+			addSOS(sos, weights);
+			if(len != 2 || Character.toUpperCase(at(start)) != 'S' || at(start + 1) != '1' && at(start + 1) != '2')
+				throw error("Expected S1 or S2");
+			if(at(start + 1) == '1') throw error("SOS1 sets are not supported");
+		}
+		addSOS(sos, weights);
+	}
+
+	/**
+	 * Read the next token of an LP file. Whitespace and comments (from \ to the end of the line) are skipped.
+	 */
+	private void next() throws SolverException {
+		int b;
+		while(true) {
+			b = at(pos);
+			if(b == '\n') {
+				line++;
+				newLine = true;
+			} else if(b == '\\') {
+				while(b >= 0 && b != '\n')
+					b = at(++pos);
+				continue;
+			} else if(!isSpace(b)) break;
+			pos++;
+		}
+		tokenStart = pos;
+		firstOnLine = newLine;
+		newLine = false;
+		if(b < 0) {
+			kind = END;
+			tokenLength = 0;
+		} else if(isDigit(b) || b == '.' && isDigit(at(pos + 1))) {
+			while(isDigit(b) || b == '.')
+				b = at(++pos);
+			if(b == 'e' || b == 'E') {
+				int c = at(pos + 1);
+				if(isDigit(c)) pos += 2;
+				else if((c == '+' || c == '-') && isDigit(at(pos + 2))) pos += 3;
+				while(isDigit(at(pos)))
+					pos++;
+			}
+			kind = NUMBER;
+			tokenLength = (int) (pos - tokenStart);
+			value = number(tokenStart, tokenLength);
+		} else if(b == '<' || b == '>' || b == '=') {
+			int c = at(++pos);
+			if(c == '=' || b == '=' && (c == '<' || c == '>')) {
+				pos++;
+				if(b == '=') b = c;
+			}
+			kind = SENSE;
+			sense = b == '<' ? CMP.SMALLEREQ : b == '>' ? CMP.LARGEREQ : CMP.EQ;
+			tokenLength = (int) (pos - tokenStart);
+		} else if(isOperator(b) || b == '/') {
+			kind = b;
+			pos++;
+			tokenLength = 1;
+		} else {
+			while(b >= 0 && !isSpace(b) && b != '\n' && b != '\\' && b != '<' && b != '>' && b != '=' && !isOperator(b))
+				b = at(++pos);
+			kind = NAME;
+			tokenLength = (int) (pos - tokenStart);
+		}
+	}
+
+	private boolean isFollowedByColon() {
+		long p = tokenStart + tokenLength;
+		int b = at(p);
+		while(isSpace(b) || b == '\n')
+			b = at(++p);
+		return b == ':';
+	}
+
+	private boolean isInfinity() {
+		return kind == NAME && (equalsIgnoreCase("inf") || equalsIgnoreCase("infinity"));
+	}
+
+	private boolean equalsIgnoreCase(String word) {
+		if(tokenLength != word.length()) return false;
+		for(int k=0; k<tokenLength; k++)
+			if(Character.toLowerCase(at(tokenStart + k)) != word.charAt(k)) return false;
+		return true;
+	}
+
+	private static boolean isOperator(int b) {
+		return b == '+' || b == '-' || b == '*' || b == '^' || b == '[' || b == ']' || b == ':';
+	}
+
+	/*
+	 * The model
+	 */
+
+	/**
+	 * Get the index of a column by its name, and add the column if it is new.
+	 * The last column is checked first, since the entries of a column are usually together.
+	 */
+	private int getColumn(long start, int len) {
+		if(lastColumn >= 0 && columnNames.matches(this, lastColumn, start, len)) return lastColumn;
+		int hash = hash(start, len);
+		int j = columnNames.find(this, start, len, hash);
+		if(j < 0) {
+			j = columnNames.add(this, start, len, hash);
+			if(j == columns.length) {
+				columns = Arrays.copyOf(columns, j * 2);
+				objective = Arrays.copyOf(objective, j * 2);
+				lb = Arrays.copyOf(lb, j * 2);
+				ub = Arrays.copyOf(ub, j * 2);
+				flags = Arrays.copyOf(flags, j * 2);
+			}
+			columns[j] = new Variable(columnNames.names[j], VarType.PositiveContinuous);
+			lb[j] = 0;
+			ub[j] = Double.POSITIVE_INFINITY;
+			mip.vars.add(columns[j]);
+			n = j + 1;
+		}
+		lastColumn = j;
+		return j;
+	}
+
+	private void addQuadratic(int j, int k, double q) {
+		if(quadValues == null || quads == quadValues.length) {
+			int capacity = quads == 0 ? 16 : quads * 2;
+			quadFirst = quadFirst == null ? new int[capacity] : Arrays.copyOf(quadFirst, capacity);
+			quadSecond = quadSecond == null ? new int[capacity] : Arrays.copyOf(quadSecond, capacity);
+			quadValues = quadValues == null ? new double[capacity] : Arrays.copyOf(quadValues, capacity);
+		}
+		quadFirst[quads] = j;
+		quadSecond[quads] = k;
+		quadValues[quads++] = q;
+	}
+
+	/**
+	 * Set the types and bounds of the columns, and add the rows and the objective to the model
+	 */
+	private void finish(Format format) {
+		for(int j=0; j<n; j++) {
+			Variable v = columns[j];
+			if((flags[j] & BINARY_COLUMN) != 0) {
+				v.type = VarType.Binary;
+				// binary columns of an LP file can have tighter bounds
+				v.lb = format == Format.LP ? Math.max(lb[j], 0) : 0;
+				v.ub = format == Format.LP ? Math.min(ub[j], 1) : 1;
+				continue;
+			}
+			v.lb = lb[j];
+			v.ub = ub[j];
+			if((flags[j] & INTEGER) != 0) v.type = VarType.Integer;
+			else if(lb[j] == 0 && ub[j] == Double.POSITIVE_INFINITY) v.type = VarType.PositiveContinuous;
+			else if(lb[j] == Double.NEGATIVE_INFINITY && ub[j] == 0) v.type = VarType.NegativeContinuous;
+			else v.type = VarType.Real;
+		}
+		// the rows get their entries when their sizes are known
+		int[] count = new int[m];
+		for(int k=0; k<entries; k++)
+			count[entryRows[k]]++;
+		for(int i=0; i<m; i++)
+			rowExps[i] = LinExp.withCapacity(count[i]);
+		for(int k=0; k<entries; k++)
+			rowExps[entryRows[k]].addTerm(columns[entryColumns[k]], entryValues[k]);
+		for(int i=0; i<m; i++) {
+			if(rowTypes[i] == 'N') continue;
+			String name = rowNames.names[i];
+			CMP cmp = rowTypes[i] == 'L' ? CMP.SMALLEREQ : rowTypes[i] == 'G' ? CMP.LARGEREQ : CMP.EQ;
+			double r = ranges[i];
+			if(Double.isNaN(r) || cmp == CMP.EQ && r == 0) {
+				mip.addConstraint(rowExps[i], constant(rhs[i]), cmp, name);
+				continue;
+			}
+			double lower = cmp == CMP.SMALLEREQ ? rhs[i] - Math.abs(r) : cmp == CMP.LARGEREQ || r > 0 ? rhs[i] : rhs[i] + r;
+			double upper = cmp == CMP.LARGEREQ ? rhs[i] + Math.abs(r) : cmp == CMP.SMALLEREQ || r < 0 ? rhs[i] : rhs[i] + r;
+			mip.addConstraint(rowExps[i], constant(lower), CMP.LARGEREQ, name);
+			mip.addConstraint(new LinExp().addLinExp(rowExps[i]), constant(upper), CMP.SMALLEREQ, name + "_rng");
+		}
+		if(quads > 0) {
+			QuadExp quad = new QuadExp();
+			for(int j=0; j<n; j++)
+				quad.addTerm(columns[j], objective[j]);
+			for(int k=0; k<quads; k++)
+				quad.addTerm(columns[quadFirst[k]], columns[quadSecond[k]], quadValues[k]);
+			if(constant != 0) quad.addTerm(constant);
+			mip.objectiveFunction = quad;
+		} else {
+			LinExp obj = new LinExp();
+			for(int j=0; j<n; j++)
+				obj.addTerm(columns[j], objective[j]);
+			if(constant != 0) obj.addTerm(constant);
+			mip.objectiveFunction = obj;
+		}
+		mip.initialize(null);
+	}
+
+	private static LinExp constant(double v) {
+		return v == 0 ? new LinExp() : new LinExp().addTerm(v);
+	}
+
+	/*
+	 * Bytes, names and numbers
+	 */
+
+	/**
+	 * @return the byte at a position of the file, or -1 at the end of the file
+	 */
+	private int at(long p) {
+		long i = p - windowStart;
+		if(i >= 0 && i < windowLength) return window[(int) i] & 0xff;
+		return move(p);
+	}
+
+	/**
+	 * Move the window to a position of the file
+	 * @return the byte at the position, or -1 at the end of the file
+	 */
+	private int move(long p) {
+		if(p < 0 || p >= size) return -1;
+		windowStart = Math.max(0, p - WINDOW_HISTORY);
+		windowLength = (int) Math.min(window.length, size - windowStart);
+		for(int k=0; k<windowLength; ) {
+			long q = windowStart + k;
+			ByteBuffer segment = segments[(int) (q >>> SEGMENT_BITS)].duplicate();
+			segment.position((int) (q & SEGMENT_MASK));
+			int len = Math.min(windowLength - k, segment.remaining());
+			segment.get(window, k, len);
+			k += len;
+		}
+		return window[(int) (p - windowStart)] & 0xff;
+	}
+
+	private static boolean isSpace(int b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\f';
+	}
+
+	private static boolean isDigit(int b) {
+		return b >= '0' && b <= '9';
+	}
+
+	/**
+	 * @return the String hash code of the bytes
+	 */
+	private int hash(long start, int len) {
+		int h = 0;
+		for(int k=0; k<len; k++)
+			h = 31 * h + at(start + k);
+		return h;
+	}
+
+	boolean matches(long start, int len, String name) {
+		if(name == null || name.length() != len) return false;
+		for(int k=0; k<len; k++)
+			if(at(start + k) != name.charAt(k)) return false;
+		return true;
+	}
+
+	private boolean is(int k, String word) {
+		return matches(fieldStart[k], fieldLength[k], word);
+	}
+
+	private int indexOf(int k, int b) {
+		for(int i=0; i<fieldLength[k]; i++)
+			if(at(fieldStart[k] + i) == b) return i;
+		return -1;
+	}
+
+	private String string(int k) {
+		return string(fieldStart[k], fieldLength[k]);
+	}
+
+	private String string(long start, int len) {
+		byte[] bytes = new byte[len];
+		for(int k=0; k<len; k++)
+			bytes[k] = (byte) at(start + k);
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	private double number(int k) throws SolverException {
+		return number(fieldStart[k], fieldLength[k]);
+	}
+
+	/**
+	 * Parse a number from the bytes of the file. Numbers with at most 15 significant digits and a small exponent are
+	 * computed exactly from their digits; other numbers are parsed by Double.parseDouble.
+	 */
+	private double number(long start, int len) throws SolverException {
+		long p = start, end = start + len;
+		boolean negative = false;
+		if(p < end && (at(p) == '-' || at(p) == '+')) negative = at(p++) == '-';
+		long mantissa = 0;
+		int digits = 0, exponent = 0;
+		boolean any = false;
+		int b;
+		for(; p < end && isDigit(b = at(p)); p++) {
+			any = true;
+			if(mantissa != 0 || b != '0') {
+				mantissa = mantissa * 10 + (b - '0');
+				if(++digits > 18) return parseNumber(start, len);
+			}
+		}
+		if(p < end && at(p) == '.') {
+			for(p++; p < end && isDigit(b = at(p)); p++) {
+				any = true;
+				if(mantissa != 0 || b != '0') {
+					mantissa = mantissa * 10 + (b - '0');
+					if(++digits > 18) return parseNumber(start, len);
+				}
+				exponent--;
+			}
+		}
+		if(!any) {
+			if(matchesIgnoreCase(p, end, "inf") || matchesIgnoreCase(p, end, "infinity"))
+				return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+			throw error("Invalid number " + string(start, len));
+		}
+		if(p < end && (at(p) == 'e' || at(p) == 'E')) {
+			p++;
+			boolean negativeExponent = false;
+			if(p < end && (at(p) == '-' || at(p) == '+')) negativeExponent = at(p++) == '-';
+			if(p == end) throw error("Invalid number " + string(start, len));
+			int e = 0;
+			for(; p < end && isDigit(b = at(p)); p++)
+				e = Math.min(e * 10 + (b - '0'), 100000);
+			exponent += negativeExponent ? -e : e;
+		}
+		if(p != end) throw error("Invalid number " + string(start, len));
+		double v;
+		if(mantissa == 0) v = 0;
+		else if(digits > 15 || Math.abs(exponent) >= POW10.length) return parseNumber(start, len);
+		else v = exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+		return negative ? -v : v;
+	}
+
+	private double parseNumber(long start, int len) throws SolverException {
+		try {
+			return Double.parseDouble(string(start, len));
+		} catch (NumberFormatException e) {
+			throw error("Invalid number " + string(start, len));
+		}
+	}
+
+	private boolean matchesIgnoreCase(long p, long end, String word) {
+		if(end - p != word.length()) return false;
+		for(int k=0; k<word.length(); k++)
+			if(Character.toLowerCase(at(p + k)) != word.charAt(k)) return false;
+		return true;
+	}
+
+	private SolverException error(String message) {
+		return new SolverException(message + " on line " + line);
+	}
+}
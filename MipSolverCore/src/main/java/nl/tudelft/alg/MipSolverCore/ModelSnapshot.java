@@ -0,0 +1,429 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes and loads a compiled model in a versioned binary format, so a model that takes long to build from its data
+ * can be cached and loaded again without building or parsing it.
+ * The file is little-endian and starts with a header of 64 bytes:
+ * <pre>
+ *  0  magic "MIPSNAP\0"          36  int quadratic terms
+ *  8  int version                40  double objective constant
+ * 12  int flags                  48  long bytes of the name table
+ * 16  int columns                56  (reserved)
+ * 20  int rows
+ * 24  int nonzeros
+ * 28  int SOS sets
+ * 32  int SOS entries
+ * </pre>
+ * The header is followed by the arrays of the model, each starting at a multiple of 8 bytes: the column types, lower
+ * bounds, upper bounds and objective, the row senses and right hand sides, the CSR matrix (see ModelMatrix), the SOS
+ * sets as start and column arrays, the quadratic objective terms as first column, second column and value arrays,
+ * and, if the names are included, the end offsets and UTF-8 bytes of the model name, column names and row names.
+ * The arrays are loaded from the memory-mapped file with bulk copies, and the loaded matrix is used by the solvers
+ * instead of compiling the model, as long as the model is not changed.
+ */
+public class ModelSnapshot {
+	static final long MAGIC = 0x0050414e5350494dL; // "MIPSNAP\0"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	// Flags
+	static final int NAMES = 1, QUADRATIC = 2, MINIMIZE = 4;
+	// Arrays are mapped and copied in chunks of at most 1 GiB
+	static final int CHUNK_SIZE = 1 << 30;
+	static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	static final VarType[] TYPES = VarType.values();
+	static final CMP[] SENSES = CMP.values();
+
+	final MIP mip;
+	boolean minimize;
+	boolean useNames;
+	// Writing
+	FileChannel channel;
+	ByteBuffer buffer;
+
+	/**
+	 * Create a snapshot writer for a model. The model should be initialized.
+	 * @param mip the model
+	 */
+	public ModelSnapshot(MIP mip) {
+		this.mip = mip;
+		this.minimize = true;
+		this.useNames = true;
+	}
+
+	/**
+	 * Set the sense of the objective that is stored in the snapshot. Default: minimize
+	 * @param value true to minimize, false to maximize
+	 * @return this snapshot writer
+	 */
+	public ModelSnapshot setMinimize(boolean value) {
+		this.minimize = value;
+		return this;
+	}
+
+	/**
+	 * Set whether the names of the columns and rows are stored. Without names, the columns and rows are named
+	 * C&lt;j&gt; and R&lt;i&gt; when the snapshot is loaded. Default: true
+	 * @param value true to store the names
+	 * @return this snapshot writer
+	 */
+	public ModelSnapshot setUseNames(boolean value) {
+		this.useNames = value;
+		return this;
+	}
+
+	/**
+	 * Write the snapshot of the model to a file
+	 * @param file the file name
+	 * @throws SolverException when the model cannot be compiled, or the file cannot be written
+	 */
+	public void write(String file) throws SolverException {
+		ModelMatrix matrix = ModelMatrix.compile(mip);
+		int n = matrix.getColumns(), m = matrix.getRows();
+		Exp obj = mip.getObjectiveFunction();
+		double[] objective = matrix.objective;
+		double objConstant = matrix.objConstant;
+		int quads = 0;
+		int[] quadFirst = null, quadSecond = null;
+		double[] quadValues = null;
+		if(obj instanceof QuadExp) {
+			QuadExp quad = (QuadExp) obj;
+			objective = new double[n];
+			objConstant = quad.get(VariablePair.CONST);
+			quadFirst = new int[quad.getVariablePairs().size()];
+			quadSecond = new int[quadFirst.length];
+			quadValues = new double[quadFirst.length];
+			for(VariablePair p: quad.getVariablePairs()) {
+				if(p.isConstant()) continue;
+				int j = column(p.v1);
+				if(p.v2 == null) objective[j] += quad.get(p);
+				else {
+					quadFirst[quads] = j;
+					quadSecond[quads] = column(p.v2);
+					quadValues[quads++] = quad.get(p);
+				}
+			}
+		}
+		List<Variable[]> soss = mip.getSOSs();
+		int[] sosStart = new int[soss.size()+1];
+		for(int s=0; s<soss.size(); s++)
+			sosStart[s+1] = sosStart[s] + soss.get(s).length;
+		int[] sosColumns = new int[sosStart[soss.size()]];
+		for(int s=0, k=0; s<soss.size(); s++)
+			for(Variable v: soss.get(s))
+				sosColumns[k++] = column(v);
+		int[] nameEnds = null;
+		byte[][] names = null;
+		long nameBytes = 0;
+		if(useNames) {
+			nameEnds = new int[1 + n + m];
+			names = new byte[1 + n + m][];
+			names[0] = utf8(mip.getName());
+			for(int j=0; j<n; j++)
+				names[1 + j] = utf8(matrix.getColumnName(j));
+			for(int i=0; i<m; i++)
+				names[1 + n + i] = utf8(matrix.getRowName(i));
+			for(int k=0; k<names.length; k++) {
+				nameBytes += names[k].length;
+				if(nameBytes > Integer.MAX_VALUE) throw new SolverException("The names of the model are too long for a snapshot");
+				nameEnds[k] = (int) nameBytes;
+			}
+		}
+
+		try(FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			this.channel = channel;
+			buffer = ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putLong(MAGIC);
+			buffer.putInt(VERSION);
+			buffer.putInt((useNames ? NAMES : 0) | (quadFirst != null ? QUADRATIC : 0) | (minimize ? MINIMIZE : 0));
+			buffer.putInt(n);
+			buffer.putInt(m);
+			buffer.putInt(matrix.getNonzeros());
+			buffer.putInt(soss.size());
+			buffer.putInt(sosColumns.length);
+			buffer.putInt(quads);
+			buffer.putDouble(objConstant);
+			buffer.putLong(nameBytes);
+			buffer.putLong(0);
+			byte[] types = new byte[n];
+			for(int j=0; j<n; j++)
+				types[j] = (byte) matrix.types[j].ordinal();
+			put(types, n);
+			align();
+			put(matrix.lb, n);
+			put(matrix.ub, n);
+			put(objective, n);
+			byte[] senses = new byte[m];
+			for(int i=0; i<m; i++)
+				senses[i] = (byte) matrix.senses[i].ordinal();
+			put(senses, m);
+			align();
+			put(matrix.rhs, m);
+			put(matrix.rowStart, m + 1);
+			put(matrix.colIndex, matrix.getNonzeros());
+			put(matrix.values, matrix.getNonzeros());
+			put(sosStart, sosStart.length);
+			put(sosColumns, sosColumns.length);
+			if(quadFirst != null) {
+				put(quadFirst, quads);
+				put(quadSecond, quads);
+				put(quadValues, quads);
+			}
+			if(useNames) {
+				put(nameEnds, nameEnds.length);
+				for(byte[] name: names)
+					put(name, name.length);
+				align();
+			}
+			flush();
+		} catch (IOException e) {
+			throw new SolverException(e);
+		} finally {
+			this.channel = null;
+			buffer = null;
+		}
+	}
+
+	private static byte[] utf8(String name) {
+		return name == null ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private int column(Variable v) throws SolverException {
+		int j = mip.getVariableRegistry().indexOf(v);
+		if(j < 0) throw new SolverException("adding unknown variable " + v.getName() + " in a snapshot");
+		return j;
+	}
+
+	private void put(byte[] a, int length) throws IOException {
+		for(int k=0; k<length; ) {
+			if(!buffer.hasRemaining()) flush();
+			int count = Math.min(buffer.remaining(), length - k);
+			buffer.put(a, k, count);
+			k += count;
+		}
+	}
+
+	private void put(int[] a, int length) throws IOException {
+		for(int k=0; k<length; ) {
+			if(buffer.remaining() < Integer.BYTES) flush();
+			int count = Math.min(buffer.remaining() / Integer.BYTES, length - k);
+			buffer.asIntBuffer().put(a, k, count);
+			buffer.position(buffer.position() + count * Integer.BYTES);
+			k += count;
+		}
+		align();
+	}
+
+	private void put(double[] a, int length) throws IOException {
+		for(int k=0; k<length; ) {
+			if(buffer.remaining() < Double.BYTES) flush();
+			int count = Math.min(buffer.remaining() / Double.BYTES, length - k);
+			buffer.asDoubleBuffer().put(a, k, count);
+			buffer.position(buffer.position() + count * Double.BYTES);
+			k += count;
+		}
+	}
+
+	/**
+	 * Pad the file to a multiple of 8 bytes. The buffer is flushed at multiples of 8 bytes, so its position is
+	 * aligned like the file.
+	 */
+	private void align() throws IOException {
+		while((buffer.position() & 7) != 0) {
+			if(!buffer.hasRemaining()) flush();
+			buffer.put((byte) 0);
+		}
+	}
+
+	private void flush() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/*
+	 * Loading
+	 */
+
+	/**
+	 * Load a model from a snapshot file. The model is initialized, and its matrix is used by the solvers instead of
+	 * compiling the model until the constraints or the objective are changed.
+	 * @param file the file name
+	 * @return the model
+	 * @throws SolverException when the file cannot be read, or is not a snapshot of a supported version
+	 */
+	public static FileMIP read(String file) throws SolverException {
+		Path path = Paths.get(file);
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return read(channel, path.getFileName().toString());
+		} catch (IOException e) {
+			throw new SolverException(e);
+		}
+	}
+
+	private static FileMIP read(FileChannel channel, String fileName) throws IOException, SolverException {
+		if(channel.size() < HEADER_SIZE) throw new SolverException("Not a model snapshot: " + fileName);
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		if(header.getLong(0) != MAGIC) throw new SolverException("Not a model snapshot: " + fileName);
+		int version = header.getInt(8);
+		if(version > VERSION) throw new SolverException("Unsupported model snapshot version " + version + ": " + fileName);
+		int flags = header.getInt(12);
+		int n = header.getInt(16), m = header.getInt(20), nz = header.getInt(24);
+		int nSos = header.getInt(28), sosEntries = header.getInt(32), quads = header.getInt(36);
+		double objConstant = header.getDouble(40);
+		long nameBytes = header.getLong(48);
+
+		Loader in = new Loader(channel, HEADER_SIZE);
+		byte[] typeCodes = in.bytes(n);
+		double[] lb = in.doubles(n), ub = in.doubles(n), objective = in.doubles(n);
+		byte[] senseCodes = in.bytes(m);
+		double[] rhs = in.doubles(m);
+		int[] rowStart = in.ints(m + 1), colIndex = in.ints(nz);
+		double[] values = in.doubles(nz);
+		int[] sosStart = in.ints(nSos + 1), sosColumns = in.ints(sosEntries);
+		int[] quadFirst = null, quadSecond = null;
+		double[] quadValues = null;
+		if((flags & QUADRATIC) != 0) {
+			quadFirst = in.ints(quads);
+			quadSecond = in.ints(quads);
+			quadValues = in.doubles(quads);
+		}
+		String modelName = fileName.indexOf('.') > 0 ? fileName.substring(0, fileName.indexOf('.')) : fileName;
+		String[] colNames = new String[n], rowNames = new String[m];
+		if((flags & NAMES) != 0) {
+			int[] ends = in.ints(1 + n + m);
+			byte[] bytes = in.bytes((int) nameBytes);
+			// ASCII names, which are most names, are decoded without checking every byte for UTF-8
+			Charset charset = StandardCharsets.ISO_8859_1;
+			for(byte b: bytes)
+				if(b < 0) charset = StandardCharsets.UTF_8;
+			if(ends[0] > 0) modelName = new String(bytes, 0, ends[0], charset);
+			for(int j=0; j<n; j++)
+				colNames[j] = new String(bytes, ends[j], ends[j+1] - ends[j], charset);
+			for(int i=0; i<m; i++)
+				rowNames[i] = new String(bytes, ends[n+i], ends[n+i+1] - ends[n+i], charset);
+		}
+		// columns and rows without a name get a generic name
+		for(int j=0; j<n; j++)
+			if(colNames[j] == null || colNames[j].isEmpty()) colNames[j] = "C" + j;
+		for(int i=0; i<m; i++)
+			if(rowNames[i] == null || rowNames[i].isEmpty()) rowNames[i] = "R" + i;
+
+		VarType[] types = new VarType[n];
+		for(int j=0; j<n; j++)
+			types[j] = TYPES[typeCodes[j]];
+		CMP[] senses = new CMP[m];
+		for(int i=0; i<m; i++)
+			senses[i] = SENSES[senseCodes[i]];
+
+		FileMIP mip = new FileMIP(modelName);
+		mip.minimize = (flags & MINIMIZE) != 0;
+		Variable[] columns = new Variable[n];
+		for(int j=0; j<n; j++)
+			columns[j] = new Variable(colNames[j], types[j], lb[j], ub[j]);
+		mip.addVars((Object[]) columns);
+		for(int i=0; i<m; i++) {
+			LinExp left = LinExp.withCapacity(rowStart[i+1] - rowStart[i]);
+			for(int k=rowStart[i]; k<rowStart[i+1]; k++)
+				left.addTerm(columns[colIndex[k]], values[k]);
+			mip.addConstraint(left, rhs[i] == 0 ? new LinExp() : new LinExp().addTerm(rhs[i]), senses[i], rowNames[i]);
+		}
+		for(int s=0; s<nSos; s++) {
+			Variable[] set = new Variable[sosStart[s+1] - sosStart[s]];
+			for(int k=0; k<set.length; k++)
+				set[k] = columns[sosColumns[sosStart[s] + k]];
+			mip.soss.add(set);
+		}
+		ModelMatrix matrix = new ModelMatrix(rowStart, colIndex, values, senses, rhs, lb, ub, types, objective,
+				objConstant);
+		matrix.rowNames = rowNames;
+		matrix.colNames = colNames;
+		if(quadFirst != null) {
+			QuadExp quad = new QuadExp();
+			for(int j=0; j<n; j++)
+				quad.addTerm(columns[j], objective[j]);
+			for(int k=0; k<quads; k++)
+				quad.addTerm(columns[quadFirst[k]], columns[quadSecond[k]], quadValues[k]);
+			if(objConstant != 0) quad.addTerm(objConstant);
+			mip.objectiveFunction = quad;
+			// a compiled model has no linear objective when the objective is quadratic
+			matrix.quadraticObjective = true;
+			matrix.objective = new double[n];
+			matrix.objConstant = 0;
+		} else {
+			LinExp obj = LinExp.withCapacity(n + 1);
+			for(int j=0; j<n; j++)
+				obj.addTerm(columns[j], objective[j]);
+			if(objConstant != 0) obj.addTerm(objConstant);
+			mip.objectiveFunction = obj;
+		}
+		mip.initialize(null);
+		mip.snapshot = matrix;
+		return mip;
+	}
+
+	/**
+	 * Copies the arrays of a snapshot from the mapped file, in the order in which they were written
+	 */
+	static class Loader {
+		final FileChannel channel;
+		long position;
+
+		Loader(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+
+		byte[] bytes(int length) throws IOException {
+			byte[] a = new byte[length];
+			for(int k=0; k<length; ) {
+				int count = Math.min(CHUNK_SIZE, length - k);
+				map(count).get(a, k, count);
+				k += count;
+			}
+			position = (position + 7) & ~7L;
+			return a;
+		}
+
+		int[] ints(int length) throws IOException {
+			int[] a = new int[length];
+			for(int k=0; k<length; ) {
+				int count = Math.min(CHUNK_SIZE / Integer.BYTES, length - k);
+				map(count * Integer.BYTES).asIntBuffer().get(a, k, count);
+				k += count;
+			}
+			position = (position + 7) & ~7L;
+			return a;
+		}
+
+		double[] doubles(int length) throws IOException {
+			double[] a = new double[length];
+			for(int k=0; k<length; ) {
+				int count = Math.min(CHUNK_SIZE / Double.BYTES, length - k);
+				map(count * Double.BYTES).asDoubleBuffer().get(a, k, count);
+				k += count;
+			}
+			return a;
+		}
+
+		private ByteBuffer map(int length) throws IOException {
+			if(position + length > channel.size()) throw new IOException("Truncated model snapshot");
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			position += length;
+			return map.order(ByteOrder.LITTLE_ENDIAN);
+		}
+	}
+}
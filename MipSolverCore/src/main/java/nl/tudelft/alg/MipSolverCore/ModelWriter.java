@@ -0,0 +1,627 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a MIP in LP or free MPS format, without building a native model.
+ * The model is compiled to a ModelMatrix, and the text is streamed through a large byte buffer with its own number
+ * formatting, so the text of the model is never in memory at once, and no strings are created per term.
+ * Files that end with .gz are compressed with gzip.
+ * Names are written as they are in the model, with the characters that are not allowed in the file formats
+ * replaced by an underscore. Files are only read back correctly if these names are unique (see setUseNames).
+ */
+public class ModelWriter {
+	public enum Format { LP, MPS }
+
+	static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	// The maximum length of an LP line before it is wrapped
+	static final int LINE_LENGTH = 200;
+	static final double MPS_INFINITY = 1e30;
+	static final double[] POW10 = { 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9 };
+	final MIP mip;
+	boolean minimize;
+	boolean useNames;
+	int bufferSize;
+	// The state while writing
+	OutputStream out;
+	byte[] buffer;
+	int pos, lineStart;
+	final byte[] digits = new byte[20];
+	ModelMatrix matrix;
+
+	/**
+	 * Create a writer for a model
+	 * @param mip the initialized model
+	 */
+	public ModelWriter(MIP mip) {
+		this.mip = mip;
+		this.minimize = true;
+		this.useNames = true;
+		this.bufferSize = DEFAULT_BUFFER_SIZE;
+	}
+
+	/**
+	 * Set whether the objective is minimized (default) or maximized
+	 * @param value true to minimize the objective
+	 * @return this writer
+	 */
+	public ModelWriter setMinimize(boolean value) {
+		this.minimize = value;
+		return this;
+	}
+
+	/**
+	 * Set whether the rows and columns get the names of the constraints and variables (default), or the generic
+	 * names R0, R1, ... and C0, C1, ..., which are always unique
+	 * @param value true to write the names of the model
+	 * @return this writer
+	 */
+	public ModelWriter setUseNames(boolean value) {
+		this.useNames = value;
+		return this;
+	}
+
+	/**
+	 * Set the size of the output buffer (default 1 MiB)
+	 * @param value the buffer size in bytes
+	 * @return this writer
+	 */
+	public ModelWriter setBufferSize(int value) {
+		if(value < 64) throw new IllegalArgumentException("The buffer size should be at least 64 bytes");
+		this.bufferSize = value;
+		return this;
+	}
+
+	/**
+	 * Get the format of a file from its extension: .lp or .mps, optionally followed by .gz
+	 * @param file the file name
+	 * @return the format of the file
+	 * @throws SolverException when the extension is not .lp or .mps
+	 */
+	public static Format getFormat(String file) throws SolverException {
+		String name = file.toLowerCase();
+		if(name.endsWith(".gz")) name = name.substring(0, name.length() - 3);
+		if(name.endsWith(".lp")) return Format.LP;
+		if(name.endsWith(".mps")) return Format.MPS;
+		throw new SolverException("Unknown model file format: " + file);
+	}
+
+	/**
+	 * Write the model to a file. The format follows from the extension (see getFormat), and the file is compressed
+	 * if it ends with .gz
+	 * @param file the file name
+	 * @throws SolverException when the file cannot be written, or the model contains unknown variables
+	 */
+	public void write(String file) throws SolverException {
+		Format format = getFormat(file);
+		try(OutputStream stream = Files.newOutputStream(Paths.get(file))) {
+			if(file.toLowerCase().endsWith(".gz")) {
+				try(GZIPOutputStream gzip = new GZIPOutputStream(stream, 1 << 16)) {
+					write(gzip, format);
+				}
+			} else write(stream, format);
+		} catch (IOException e) {
+			throw new SolverException(e);
+		}
+	}
+
+	/**
+	 * Write the model to a stream. The stream is flushed, but not closed.
+	 * @param stream the output stream
+	 * @param format the file format
+	 * @throws IOException when the stream cannot be written
+	 * @throws SolverException when the model contains unknown variables
+	 */
+	public void write(OutputStream stream, Format format) throws IOException, SolverException {
+		matrix = ModelMatrix.compile(mip);
+		out = stream;
+		buffer = new byte[bufferSize];
+		pos = 0;
+		lineStart = 0;
+		try {
+			if(format == Format.LP) writeLP();
+			else writeMPS();
+			flush();
+			out.flush();
+		} finally {
+			out = null;
+			buffer = null;
+			matrix = null;
+		}
+	}
+
+	/*
+	 * LP format
+	 */
+
+	private void writeLP() throws IOException {
+		int n = matrix.getColumns(), m = matrix.getRows();
+		put("\\ Model ");
+		put(mip.getName() == null ? "mip" : mip.getName());
+		newLine();
+		put(minimize ? "Minimize" : "Maximize");
+		newLine();
+		put(" obj:");
+		writeLPObjective();
+		newLine();
+		put("Subject To");
+		newLine();
+		int[] start = matrix.getRowStarts(), colIndex = matrix.getColumnIndices();
+		double[] values = matrix.getValues(), rhs = matrix.getRhs();
+		CMP[] senses = matrix.getSenses();
+		for(int i=0; i<m; i++) {
+			put(' ');
+			writeRowName(i);
+			put(':');
+			if(start[i] == start[i+1] && n > 0) writeLPTerm(0, 0);
+			for(int k=start[i]; k<start[i+1]; k++)
+				writeLPTerm(values[k], colIndex[k]);
+			put(senses[i] == CMP.EQ ? " = " : senses[i] == CMP.LARGEREQ ? " >= " : " <= ");
+			writeNumber(rhs[i]);
+			newLine();
+		}
+		put("Bounds");
+		newLine();
+		double[] lb = matrix.getLowerBounds(), ub = matrix.getUpperBounds();
+		for(int j=0; j<n; j++) {
+			if(isBinary(j) || lb[j] == 0 && ub[j] == Double.POSITIVE_INFINITY) continue;
+			put(' ');
+			if(lb[j] == Double.NEGATIVE_INFINITY && ub[j] == Double.POSITIVE_INFINITY) {
+				writeColumnName(j);
+				put(" free");
+			} else if(lb[j] == ub[j]) {
+				writeColumnName(j);
+				put(" = ");
+				writeNumber(lb[j]);
+			} else {
+				if(lb[j] == Double.NEGATIVE_INFINITY) put("-inf");
+				else writeNumber(lb[j]);
+				put(" <= ");
+				writeColumnName(j);
+				if(ub[j] != Double.POSITIVE_INFINITY) {
+					put(" <= ");
+					writeNumber(ub[j]);
+				}
+			}
+			newLine();
+		}
+		writeLPSection("General", false);
+		writeLPSection("Binary", true);
+		List<Variable[]> soss = mip.getSOSs();
+		if(!soss.isEmpty()) {
+			put("SOS");
+			newLine();
+			for(int s=0; s<soss.size(); s++) {
+				put(" s");
+				writeLong(s);
+				put(": S2::");
+				Variable[] sos = soss.get(s);
+				for(int k=0; k<sos.length; k++) {
+					put(' ');
+					writeColumnName(column(sos[k]));
+					put(':');
+					writeLong(k + 1);
+					wrapLine();
+				}
+				newLine();
+			}
+		}
+		put("End");
+		newLine();
+	}
+
+	/**
+	 * Write the terms of the objective, with the quadratic terms as [ ... ] / 2
+	 */
+	private void writeLPObjective() throws IOException {
+		int n = matrix.getColumns();
+		Exp obj = mip.getObjectiveFunction();
+		if(!(obj instanceof QuadExp)) {
+			double[] c = matrix.getObjective();
+			boolean empty = true;
+			for(int j=0; j<n; j++) {
+				if(c[j] == 0) continue;
+				writeLPTerm(c[j], j);
+				empty = false;
+			}
+			if(empty && n > 0) writeLPTerm(0, 0);
+			writeConstant(matrix.getObjectiveConstant());
+			return;
+		}
+		QuadExp quad = (QuadExp) obj;
+		double constant = 0;
+		for(VariablePair p: quad.getVariablePairs()) {
+			if(p.isConstant()) constant += quad.get(p);
+			else if(p.v2 == null) writeLPTerm(quad.get(p), column(p.v1));
+		}
+		boolean open = false;
+		for(VariablePair p: quad.getVariablePairs()) {
+			if(p.isConstant() || p.v2 == null) continue;
+			if(!open) put(" + [");
+			open = true;
+			writeSignedCoefficient(2 * quad.get(p));
+			writeColumnName(column(p.v1));
+			if(p.v1 == p.v2) put(" ^ 2");
+			else {
+				put(" * ");
+				writeColumnName(column(p.v2));
+			}
+			wrapLine();
+		}
+		if(open) put(" ] / 2");
+		writeConstant(constant);
+	}
+
+	private void writeConstant(double constant) throws IOException {
+		if(constant == 0) return;
+		put(constant < 0 ? " - " : " + ");
+		writeNumber(Math.abs(constant));
+	}
+
+	/**
+	 * Write a term " + a x" of a linear expression
+	 */
+	private void writeLPTerm(double a, int j) throws IOException {
+		writeSignedCoefficient(a);
+		writeColumnName(j);
+		wrapLine();
+	}
+
+	/**
+	 * Write the sign and coefficient of a term, leaving out a coefficient of 1
+	 */
+	private void writeSignedCoefficient(double a) throws IOException {
+		put(a < 0 ? " - " : " + ");
+		if(Math.abs(a) != 1) {
+			writeNumber(Math.abs(a));
+			put(' ');
+		}
+	}
+
+	/**
+	 * Write the section of general integer or binary columns. Binary columns of which the bounds are changed are general.
+	 */
+	private void writeLPSection(String section, boolean binary) throws IOException {
+		boolean first = true;
+		for(int j=0; j<matrix.getColumns(); j++) {
+			if(!matrix.isInteger(j) || isBinary(j) != binary) continue;
+			if(first) {
+				put(section);
+				newLine();
+				first = false;
+			}
+			put(' ');
+			writeColumnName(j);
+			wrapLine();
+		}
+		if(!first) newLine();
+	}
+
+	/**
+	 * Start a new line if the current line is long
+	 */
+	private void wrapLine() throws IOException {
+		if(pos - lineStart > LINE_LENGTH) {
+			newLine();
+			put(' ');
+		}
+	}
+
+	/*
+	 * MPS format
+	 */
+
+	private void writeMPS() throws IOException {
+		int n = matrix.getColumns(), m = matrix.getRows();
+		put("NAME ");
+		put(mip.getName() == null ? "mip" : mip.getName());
+		newLine();
+		if(!minimize) {
+			put("OBJSENSE");
+			newLine();
+			put("    MAX");
+			newLine();
+		}
+		put("ROWS");
+		newLine();
+		put(" N  obj");
+		newLine();
+		CMP[] senses = matrix.getSenses();
+		for(int i=0; i<m; i++) {
+			put(senses[i] == CMP.EQ ? " E  " : senses[i] == CMP.LARGEREQ ? " G  " : " L  ");
+			writeRowName(i);
+			newLine();
+		}
+		put("COLUMNS");
+		newLine();
+		Exp obj = mip.getObjectiveFunction();
+		double[] c = getLinearObjective(obj);
+		int[] colStart = matrix.getColumnStarts(), rowIndex = matrix.getRowIndices();
+		double[] colValues = matrix.getColumnValues();
+		boolean integer = false;
+		int marker = 0;
+		for(int j=0; j<n; j++) {
+			if(matrix.isInteger(j) != integer) {
+				integer = !integer;
+				put("    MARKER");
+				writeLong(marker++);
+				put(integer ? " 'MARKER' 'INTORG'" : " 'MARKER' 'INTEND'");
+				newLine();
+			}
+			if(c[j] != 0 || colStart[j] == colStart[j+1]) {
+				writeMPSEntry(j);
+				put("obj ");
+				writeNumber(c[j]);
+				newLine();
+			}
+			for(int k=colStart[j]; k<colStart[j+1]; k++) {
+				writeMPSEntry(j);
+				writeRowName(rowIndex[k]);
+				put(' ');
+				writeNumber(colValues[k]);
+				newLine();
+			}
+		}
+		if(integer) {
+			put("    MARKER");
+			writeLong(marker);
+			put(" 'MARKER' 'INTEND'");
+			newLine();
+		}
+		put("RHS");
+		newLine();
+		double[] rhs = matrix.getRhs();
+		for(int i=0; i<m; i++) {
+			if(rhs[i] == 0) continue;
+			put("    rhs ");
+			writeRowName(i);
+			put(' ');
+			writeNumber(rhs[i]);
+			newLine();
+		}
+		double constant = getObjectiveConstant(obj);
+		if(constant != 0) {
+			// the right hand side of the objective row is minus the objective constant
+			put("    rhs obj ");
+			writeNumber(-constant);
+			newLine();
+		}
+		writeMPSBounds();
+		writeMPSSOS();
+		if(obj instanceof QuadExp) writeMPSQuadratic((QuadExp) obj);
+		put("ENDATA");
+		newLine();
+	}
+
+	private void writeMPSEntry(int j) throws IOException {
+		put("    ");
+		writeColumnName(j);
+		put(' ');
+	}
+
+	/**
+	 * Write the bounds that differ from the default [0, inf). Integer columns always get their bounds, since some
+	 * readers give integer columns without bounds an upper bound of 1.
+	 */
+	private void writeMPSBounds() throws IOException {
+		double[] lb = matrix.getLowerBounds(), ub = matrix.getUpperBounds();
+		put("BOUNDS");
+		newLine();
+		for(int j=0; j<matrix.getColumns(); j++) {
+			boolean integer = matrix.isInteger(j);
+			if(isBinary(j)) writeMPSBound("BV", j, Double.NaN);
+			else if(lb[j] == ub[j]) writeMPSBound("FX", j, lb[j]);
+			else if(lb[j] == Double.NEGATIVE_INFINITY && ub[j] == Double.POSITIVE_INFINITY) writeMPSBound("FR", j, Double.NaN);
+			else {
+				if(lb[j] == Double.NEGATIVE_INFINITY) writeMPSBound("MI", j, Double.NaN);
+				else if(lb[j] != 0 || integer) writeMPSBound("LO", j, lb[j]);
+				if(ub[j] != Double.POSITIVE_INFINITY) writeMPSBound("UP", j, ub[j]);
+				else if(integer) writeMPSBound("PL", j, Double.NaN);
+			}
+		}
+	}
+
+	private void writeMPSBound(String type, int j, double value) throws IOException {
+		put(' ');
+		put(type);
+		put(" bnd ");
+		writeColumnName(j);
+		if(!Double.isNaN(value)) {
+			put(' ');
+			writeNumber(value);
+		}
+		newLine();
+	}
+
+	private void writeMPSSOS() throws IOException {
+		List<Variable[]> soss = mip.getSOSs();
+		if(soss.isEmpty()) return;
+		put("SOS");
+		newLine();
+		for(int s=0; s<soss.size(); s++) {
+			put(" S2 SOS s");
+			writeLong(s);
+			put(" 1");
+			newLine();
+			Variable[] sos = soss.get(s);
+			for(int k=0; k<sos.length; k++) {
+				put("    ");
+				writeColumnName(column(sos[k]));
+				put(' ');
+				writeLong(k + 1);
+				newLine();
+			}
+		}
+	}
+
+	/**
+	 * Write the quadratic objective terms. The objective is c x + 1/2 x'Qx, and every pair of columns is written once.
+	 */
+	private void writeMPSQuadratic(QuadExp quad) throws IOException {
+		put("QUADOBJ");
+		newLine();
+		for(VariablePair p: quad.getVariablePairs()) {
+			if(p.isConstant() || p.v2 == null) continue;
+			int j = column(p.v1), k = column(p.v2);
+			put("    ");
+			writeColumnName(Math.min(j, k));
+			put(' ');
+			writeColumnName(Math.max(j, k));
+			put(' ');
+			writeNumber(j == k ? 2 * quad.get(p) : quad.get(p));
+			newLine();
+		}
+	}
+
+	/**
+	 * @return the linear objective coefficient of every column
+	 */
+	private double[] getLinearObjective(Exp obj) {
+		if(!(obj instanceof QuadExp)) return matrix.getObjective();
+		double[] c = new double[matrix.getColumns()];
+		QuadExp quad = (QuadExp) obj;
+		for(VariablePair p: quad.getVariablePairs())
+			if(!p.isConstant() && p.v2 == null) c[column(p.v1)] += quad.get(p);
+		return c;
+	}
+
+	private double getObjectiveConstant(Exp obj) {
+		if(!(obj instanceof QuadExp)) return matrix.getObjectiveConstant();
+		return ((QuadExp) obj).get(VariablePair.CONST);
+	}
+
+	/*
+	 * Names and numbers
+	 */
+
+	/**
+	 * @return true if column j is a binary column with the bounds [0, 1]
+	 */
+	private boolean isBinary(int j) {
+		return matrix.getTypes()[j] == VarType.Binary && matrix.getLowerBounds()[j] == 0 && matrix.getUpperBounds()[j] == 1;
+	}
+
+	private int column(Variable v) {
+		int j = mip.getVariableRegistry().indexOf(v);
+		if(j < 0) throw new IllegalArgumentException("unknown variable " + v.getName());
+		return j;
+	}
+
+	private void writeRowName(int i) throws IOException {
+		String name = useNames ? matrix.getRowName(i) : null;
+		if(name == null || name.isEmpty()) {
+			put('R');
+			writeLong(i);
+		} else writeName(name);
+	}
+
+	private void writeColumnName(int j) throws IOException {
+		String name = useNames ? matrix.getColumnName(j) : null;
+		if(name == null || name.isEmpty()) {
+			put('C');
+			writeLong(j);
+		} else writeName(name);
+	}
+
+	/**
+	 * Write a name, with the characters that are not allowed in LP and MPS names replaced by an underscore.
+	 * Names that start with a digit or a period get a leading underscore.
+	 */
+	private void writeName(String name) throws IOException {
+		ensure(name.length() + 1);
+		char first = name.charAt(0);
+		if(first >= '0' && first <= '9' || first == '.') buffer[pos++] = '_';
+		for(int k=0; k<name.length(); k++) {
+			char ch = name.charAt(k);
+			boolean valid = ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9'
+					|| ch > ' ' && ch < 127 && "_.!\"#$%&()/,;?@'`{}|~".indexOf(ch) >= 0;
+			buffer[pos++] = (byte) (valid ? ch : '_');
+		}
+	}
+
+	/**
+	 * Write a number in the shortest form that reads back to the same double: integers without a decimal point,
+	 * numbers with at most 9 decimals as a decimal fraction, and other numbers in exponent notation
+	 */
+	private void writeNumber(double v) throws IOException {
+		if(Double.isInfinite(v)) {
+			writeNumber(v > 0 ? MPS_INFINITY : -MPS_INFINITY);
+			return;
+		}
+		if(v == Math.rint(v) && Math.abs(v) < 1e15) {
+			writeLong((long) v);
+			return;
+		}
+		double a = Math.abs(v);
+		if(a >= 1e-4 && a < 1e6) {
+			for(int d=1; d<POW10.length; d++) {
+				double scaled = Math.rint(a * POW10[d]);
+				if(scaled / POW10[d] != a) continue;
+				long units = (long) scaled;
+				long whole = units / (long) POW10[d], fraction = units % (long) POW10[d];
+				if(v < 0) put('-');
+				writeLong(whole);
+				put('.');
+				ensure(d);
+				for(int k=d-1; k>=0; k--) {
+					buffer[pos+k] = (byte) ('0' + fraction % 10);
+					fraction /= 10;
+				}
+				pos += d;
+				return;
+			}
+		}
+		put(Double.toString(v));
+	}
+
+	private void writeLong(long v) throws IOException {
+		ensure(20);
+		if(v < 0) {
+			buffer[pos++] = '-';
+			v = -v;
+		}
+		int n = 0;
+		do {
+			digits[n++] = (byte) ('0' + v % 10);
+			v /= 10;
+		} while(v > 0);
+		while(n > 0)
+			buffer[pos++] = digits[--n];
+	}
+
+	private void put(String s) throws IOException {
+		ensure(s.length());
+		for(int k=0; k<s.length(); k++)
+			buffer[pos++] = (byte) s.charAt(k);
+	}
+
+	private void put(char ch) throws IOException {
+		ensure(1);
+		buffer[pos++] = (byte) ch;
+	}
+
+	private void newLine() throws IOException {
+		put('\n');
+		lineStart = pos;
+	}
+
+	/**
+	 * Make room for a number of bytes in the buffer, by writing the buffer to the stream if needed
+	 */
+	private void ensure(int length) throws IOException {
+		if(pos + length <= buffer.length) return;
+		flush();
+		if(length > buffer.length) buffer = new byte[length];
+	}
+
+	private void flush() throws IOException {
+		out.write(buffer, 0, pos);
+		lineStart -= pos;
+		pos = 0;
+	}
+}
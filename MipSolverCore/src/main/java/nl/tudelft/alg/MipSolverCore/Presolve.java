@@ -0,0 +1,508 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A presolve of a compiled model, independent of the solver. It repeatedly
+ * <ul>
+ * <li>removes empty rows, and turns singleton rows (bounds written as constraints) into column bounds,</li>
+ * <li>removes rows that can never be violated, given the bounds of their columns (dominated rows),</li>
+ * <li>tightens the bounds of integer columns from the rows they are in,</li>
+ * <li>removes fixed columns, and columns that appear in no row, by substituting their value,</li>
+ * <li>merges duplicate and parallel rows (rows that are a multiple of each other), found by hashing the normalized rows.</li>
+ * </ul>
+ * The reductions keep the set of feasible solutions of the remaining columns, so every solution of the reduced
+ * model maps back to a solution of the original model with postsolve. Bases and duals of the reduced model do not map back.
+ * Models with a quadratic objective cannot be presolved, since the objective arrays of their matrix are empty.
+ */
+public class Presolve {
+	static final double FEASIBILITY_TOL = 1e-9;
+	static final double INTEGER_TOL = 1e-6;
+	static final double MAX_BOUND = 1e9;
+	static final int MAX_PASSES = 20;
+	final ModelMatrix original;
+	final int nRows, nCols;
+	// The rows, with the nonzeros of every row sorted on column index
+	final int[] rowStart, cols;
+	final double[] vals;
+	// The columns
+	final int[] colStart, colRows;
+	final double[] colVals;
+	final double[] lb, ub, rhs, obj;
+	final CMP[] senses;
+	final boolean[] rowActive, colActive;
+	final double[] fixedValue;
+	double objConstant;
+	boolean infeasible;
+	int removedRows, removedColumns, tightenedBounds;
+	ModelMatrix reduced;
+	int[] columnMap, rowMap, reducedColumn;
+
+	/**
+	 * Presolve a compiled model
+	 * @param matrix the compiled model, which is not changed
+	 * @param minimize true if the objective is minimized, false if it is maximized
+	 */
+	public Presolve(ModelMatrix matrix, boolean minimize) {
+		assert !matrix.hasQuadraticObjective();
+		this.original = matrix;
+		this.nRows = matrix.getRows();
+		this.nCols = matrix.getColumns();
+		this.rowStart = matrix.getRowStarts();
+		this.cols = Arrays.copyOf(matrix.getColumnIndices(), matrix.getNonzeros());
+		this.vals = Arrays.copyOf(matrix.getValues(), matrix.getNonzeros());
+		for(int i=0; i<nRows; i++)
+			sortRow(rowStart[i], rowStart[i+1]);
+		this.colStart = matrix.getColumnStarts();
+		this.colRows = matrix.getRowIndices();
+		this.colVals = matrix.getColumnValues();
+		this.lb = matrix.getLowerBounds().clone();
+		this.ub = matrix.getUpperBounds().clone();
+		this.rhs = matrix.getRhs().clone();
+		this.senses = matrix.getSenses().clone();
+		this.obj = matrix.getObjective().clone();
+		if(!minimize)
+			for(int j=0; j<nCols; j++) obj[j] = -obj[j];
+		this.objConstant = 0;
+		this.rowActive = new boolean[nRows];
+		this.colActive = new boolean[nCols];
+		this.fixedValue = new double[nCols];
+		Arrays.fill(rowActive, true);
+		Arrays.fill(colActive, true);
+		run();
+		buildReduced(minimize);
+	}
+
+	/**
+	 * Presolve a model, if it can be presolved
+	 * @param mip the model
+	 * @param matrix the compiled model
+	 * @param minimize true if the objective is minimized, false if it is maximized
+	 * @return the presolve of the model, or null if the model has a quadratic objective or SOS constraints
+	 */
+	public static Presolve apply(MIP mip, ModelMatrix matrix, boolean minimize) {
+		if(matrix.hasQuadraticObjective() || !mip.getSOSs().isEmpty()) return null;
+		return new Presolve(matrix, minimize);
+	}
+
+	/**
+	 * Sort the nonzeros of a row on column index (insertion sort, rows are usually sorted already)
+	 */
+	private void sortRow(int from, int to) {
+		for(int k=from+1; k<to; k++) {
+			int c = cols[k];
+			double v = vals[k];
+			int p = k - 1;
+			while(p >= from && cols[p] > c) {
+				cols[p+1] = cols[p];
+				vals[p+1] = vals[p];
+				p--;
+			}
+			cols[p+1] = c;
+			vals[p+1] = v;
+		}
+	}
+
+	private static double tol(double b) {
+		return FEASIBILITY_TOL * (1 + Math.abs(b));
+	}
+
+	private boolean isInteger(int j) {
+		return original.isInteger(j);
+	}
+
+	/**
+	 * Apply the reductions until nothing changes anymore
+	 */
+	private void run() {
+		for(int pass=0; pass<MAX_PASSES && !infeasible; pass++) {
+			boolean changed = false;
+			for(int i=0; i<nRows && !infeasible; i++)
+				if(rowActive[i]) changed |= presolveRow(i);
+			for(int j=0; j<nCols && !infeasible; j++)
+				if(colActive[j]) changed |= presolveColumn(j);
+			if(!infeasible) changed |= mergeParallelRows();
+			if(!changed) break;
+		}
+	}
+
+	private void removeRow(int i) {
+		rowActive[i] = false;
+		removedRows++;
+	}
+
+	/**
+	 * Remove the row if it is empty, a singleton or dominated, and otherwise tighten the bounds of its integer columns
+	 * @param i the row
+	 * @return true if the model changed
+	 */
+	private boolean presolveRow(int i) {
+		int count = 0, last = -1;
+		double minAct = 0, maxAct = 0;
+		int minInf = 0, maxInf = 0;
+		for(int k=rowStart[i]; k<rowStart[i+1]; k++) {
+			int j = cols[k];
+			if(!colActive[j]) continue;
+			double a = vals[k];
+			count++;
+			last = k;
+			double low = a > 0 ? lb[j] : ub[j], high = a > 0 ? ub[j] : lb[j];
+			if(Double.isInfinite(low)) minInf++; else minAct += a * low;
+			if(Double.isInfinite(high)) maxInf++; else maxAct += a * high;
+		}
+		CMP s = senses[i];
+		double b = rhs[i], t = tol(b);
+		if(count == 0) {
+			if(s != CMP.LARGEREQ && 0 > b + t || s != CMP.SMALLEREQ && 0 < b - t) infeasible = true;
+			removeRow(i);
+			return true;
+		}
+		if(count == 1) {
+			setSingletonBounds(cols[last], vals[last], s, b);
+			removeRow(i);
+			return true;
+		}
+		if(s != CMP.SMALLEREQ && maxInf == 0 && maxAct < b - t || s != CMP.LARGEREQ && minInf == 0 && minAct > b + t) {
+			infeasible = true;
+			return false;
+		}
+		boolean lowerRedundant = s == CMP.SMALLEREQ || minInf == 0 && minAct >= b - t;
+		boolean upperRedundant = s == CMP.LARGEREQ || maxInf == 0 && maxAct <= b + t;
+		if(lowerRedundant && upperRedundant) {
+			removeRow(i);
+			return true;
+		}
+		// Tighten the bounds of the integer columns: a_j x_j >= b - (maximum activity of the other columns), and
+		// a_j x_j <= b - (minimum activity of the other columns)
+		boolean changed = false;
+		for(int k=rowStart[i]; k<rowStart[i+1] && !infeasible; k++) {
+			int j = cols[k];
+			if(!colActive[j] || !isInteger(j)) continue;
+			double a = vals[k];
+			// the bounds that the activity bounds were computed with
+			double low = a > 0 ? lb[j] : ub[j], high = a > 0 ? ub[j] : lb[j];
+			if(s != CMP.SMALLEREQ) {
+				double rest = residual(maxAct, maxInf, a, high);
+				if(!Double.isNaN(rest)) changed |= a > 0 ? tightenLower(j, (b - rest) / a) : tightenUpper(j, (b - rest) / a);
+			}
+			if(s != CMP.LARGEREQ) {
+				double rest = residual(minAct, minInf, a, low);
+				if(!Double.isNaN(rest)) changed |= a > 0 ? tightenUpper(j, (b - rest) / a) : tightenLower(j, (b - rest) / a);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * The activity bound of a row without one of its columns
+	 * @param act the finite part of the activity bound
+	 * @param inf the number of infinite contributions to the activity bound
+	 * @param a the coefficient of the column
+	 * @param bound the bound of the column that contributes to the activity bound
+	 * @return the activity bound of the other columns, or NaN if it is infinite
+	 */
+	private static double residual(double act, int inf, double a, double bound) {
+		if(Double.isInfinite(bound)) return inf == 1 ? act : Double.NaN;
+		return inf == 0 ? act - a * bound : Double.NaN;
+	}
+
+	private boolean tightenLower(int j, double value) {
+		if(Math.abs(value) > MAX_BOUND) return false;
+		value = Math.ceil(value - INTEGER_TOL);
+		if(value <= lb[j]) return false;
+		lb[j] = value;
+		tightenedBounds++;
+		if(lb[j] > ub[j]) infeasible = true;
+		return true;
+	}
+
+	private boolean tightenUpper(int j, double value) {
+		if(Math.abs(value) > MAX_BOUND) return false;
+		value = Math.floor(value + INTEGER_TOL);
+		if(value >= ub[j]) return false;
+		ub[j] = value;
+		tightenedBounds++;
+		if(lb[j] > ub[j]) infeasible = true;
+		return true;
+	}
+
+	/**
+	 * Turn a singleton row a x_j (s) b into bounds on x_j
+	 */
+	private void setSingletonBounds(int j, double a, CMP s, double b) {
+		double v = b / a;
+		if(a < 0 && s != CMP.EQ) s = s == CMP.LARGEREQ ? CMP.SMALLEREQ : CMP.LARGEREQ;
+		double lower = lb[j], upper = ub[j];
+		if(s != CMP.SMALLEREQ) lower = Math.max(lower, isInteger(j) ? Math.ceil(v - INTEGER_TOL) : v);
+		if(s != CMP.LARGEREQ) upper = Math.min(upper, isInteger(j) ? Math.floor(v + INTEGER_TOL) : v);
+		if(lower > upper) {
+			if(lower > upper + tol(v)) infeasible = true;
+			else upper = lower;
+		}
+		if(lower != lb[j] || upper != ub[j]) tightenedBounds++;
+		lb[j] = lower;
+		ub[j] = upper;
+	}
+
+	/**
+	 * Remove a column if it is fixed, or if it appears in no row (then it gets its best value for the objective)
+	 * @param j the column
+	 * @return true if the column was removed
+	 */
+	private boolean presolveColumn(int j) {
+		if(ub[j] - lb[j] <= tol(lb[j])) {
+			fixColumn(j, isInteger(j) ? Math.rint(lb[j]) : lb[j]);
+			return true;
+		}
+		for(int k=colStart[j]; k<colStart[j+1]; k++)
+			if(rowActive[colRows[k]]) return false;
+		double value;
+		if(obj[j] > 0) value = lb[j];
+		else if(obj[j] < 0) value = ub[j];
+		else value = Math.min(Math.max(0, lb[j]), ub[j]);
+		// Without a bound in the improving direction, the model is unbounded (or infeasible): leave that to the solver
+		if(Double.isInfinite(value)) return false;
+		fixColumn(j, value);
+		return true;
+	}
+
+	/**
+	 * Remove a column from the model, by substituting its value in the rows and the objective
+	 */
+	private void fixColumn(int j, double value) {
+		colActive[j] = false;
+		fixedValue[j] = value;
+		removedColumns++;
+		objConstant += obj[j] * value;
+		if(value == 0) return;
+		for(int k=colStart[j]; k<colStart[j+1]; k++)
+			if(rowActive[colRows[k]]) rhs[colRows[k]] -= colVals[k] * value;
+	}
+
+	/**
+	 * Find rows that are a multiple of each other, by hashing the rows after scaling their first coefficient to 1.
+	 * Two parallel rows are merged into one if the intersection of their ranges can be written as one row.
+	 * @return true if rows were removed
+	 */
+	private boolean mergeParallelRows() {
+		Map<Long, List<Integer>> buckets = new HashMap<Long, List<Integer>>();
+		boolean changed = false;
+		for(int i=0; i<nRows && !infeasible; i++) {
+			if(!rowActive[i]) continue;
+			double scale = 0;
+			long hash = 17;
+			for(int k=rowStart[i]; k<rowStart[i+1]; k++) {
+				if(!colActive[cols[k]]) continue;
+				if(scale == 0) scale = vals[k];
+				hash = 31 * hash + cols[k];
+				hash = 31 * hash + Math.round(vals[k] / scale * 1e6);
+			}
+			if(scale == 0) continue; // empty rows are removed in the next pass
+			List<Integer> bucket = buckets.get(hash);
+			if(bucket == null) {
+				bucket = new ArrayList<Integer>(1);
+				buckets.put(hash, bucket);
+			}
+			boolean merged = false;
+			for(int other: bucket) {
+				if(rowActive[other] && isParallel(other, i) && merge(other, i)) {
+					merged = true;
+					break;
+				}
+			}
+			if(merged) changed = true;
+			else bucket.add(i);
+		}
+		return changed;
+	}
+
+	/**
+	 * @return the first coefficient of row i on an active column, or 0 if the row is empty
+	 */
+	private double firstCoefficient(int i) {
+		for(int k=rowStart[i]; k<rowStart[i+1]; k++)
+			if(colActive[cols[k]]) return vals[k];
+		return 0;
+	}
+
+	/**
+	 * @return true if rows i and r have the same active columns and proportional coefficients
+	 */
+	private boolean isParallel(int i, int r) {
+		double si = firstCoefficient(i), sr = firstCoefficient(r);
+		int k = rowStart[i], l = rowStart[r];
+		while(true) {
+			while(k < rowStart[i+1] && !colActive[cols[k]]) k++;
+			while(l < rowStart[r+1] && !colActive[cols[l]]) l++;
+			boolean endI = k == rowStart[i+1], endR = l == rowStart[r+1];
+			if(endI || endR) return endI && endR;
+			if(cols[k] != cols[l]) return false;
+			double a = vals[k] / si, c = vals[l] / sr;
+			if(Math.abs(a - c) > FEASIBILITY_TOL * Math.max(1, Math.abs(a))) return false;
+			k++;
+			l++;
+		}
+	}
+
+	/**
+	 * Merge parallel row r into row i, if the intersection of their ranges fits in one row
+	 * @return true if row r was removed
+	 */
+	private boolean merge(int i, int r) {
+		double si = firstCoefficient(i), sr = firstCoefficient(r);
+		double[] range = range(i, si), other = range(r, sr);
+		double lower = Math.max(range[0], other[0]), upper = Math.min(range[1], other[1]);
+		if(lower > upper + tol(lower)) {
+			infeasible = true;
+			return false;
+		}
+		if(!Double.isInfinite(lower) && upper - lower <= tol(lower)) {
+			senses[i] = CMP.EQ;
+			rhs[i] = si * lower;
+		} else if(Double.isInfinite(upper)) {
+			senses[i] = si > 0 ? CMP.LARGEREQ : CMP.SMALLEREQ;
+			rhs[i] = si * lower;
+		} else if(Double.isInfinite(lower)) {
+			senses[i] = si > 0 ? CMP.SMALLEREQ : CMP.LARGEREQ;
+			rhs[i] = si * upper;
+		} else return false; // a range with two finite sides needs both rows
+		removeRow(r);
+		return true;
+	}
+
+	/**
+	 * @return the range [lower, upper] of the row after dividing it by scale
+	 */
+	private double[] range(int i, double scale) {
+		double v = rhs[i] / scale;
+		CMP s = senses[i];
+		if(scale < 0 && s != CMP.EQ) s = s == CMP.LARGEREQ ? CMP.SMALLEREQ : CMP.LARGEREQ;
+		return new double[] {
+				s == CMP.SMALLEREQ ? Double.NEGATIVE_INFINITY : v,
+				s == CMP.LARGEREQ ? Double.POSITIVE_INFINITY : v };
+	}
+
+	/**
+	 * Build the matrix of the remaining rows and columns
+	 */
+	private void buildReduced(boolean minimize) {
+		reducedColumn = new int[nCols];
+		int n = 0;
+		for(int j=0; j<nCols; j++)
+			reducedColumn[j] = colActive[j] ? n++ : -1;
+		columnMap = new int[n];
+		for(int j=0; j<nCols; j++)
+			if(colActive[j]) columnMap[reducedColumn[j]] = j;
+		int m = 0;
+		for(int i=0; i<nRows; i++)
+			if(rowActive[i]) m++;
+		rowMap = new int[m];
+		int[] start = new int[m+1];
+		int nz = 0;
+		for(int i=0, r=0; i<nRows; i++) {
+			if(!rowActive[i]) continue;
+			rowMap[r++] = i;
+			for(int k=rowStart[i]; k<rowStart[i+1]; k++)
+				if(colActive[cols[k]]) nz++;
+		}
+		int[] colIndex = new int[nz];
+		double[] values = new double[nz];
+		CMP[] s = new CMP[m];
+		double[] b = new double[m];
+		nz = 0;
+		for(int r=0; r<m; r++) {
+			int i = rowMap[r];
+			start[r] = nz;
+			s[r] = senses[i];
+			b[r] = rhs[i];
+			for(int k=rowStart[i]; k<rowStart[i+1]; k++) {
+				if(!colActive[cols[k]]) continue;
+				colIndex[nz] = reducedColumn[cols[k]];
+				values[nz++] = vals[k];
+			}
+		}
+		start[m] = nz;
+		double[] lower = new double[n], upper = new double[n], objective = new double[n];
+		VarType[] types = new VarType[n];
+		double sign = minimize ? 1 : -1;
+		for(int c=0; c<n; c++) {
+			int j = columnMap[c];
+			lower[c] = lb[j];
+			// crossed bounds of an infeasible model are not accepted by every solver
+			upper[c] = Math.max(lb[j], ub[j]);
+			types[c] = original.getTypes()[j];
+			objective[c] = sign * obj[j];
+		}
+		reduced = new ModelMatrix(start, colIndex, values, s, b, lower, upper, types, objective,
+				original.getObjectiveConstant() + sign * objConstant);
+		// the names of the original model are only formatted when a name of the reduced model is asked for
+		int[] rowMap = this.rowMap, columnMap = this.columnMap;
+		reduced.setNamers(original.hasRowNames() ? r -> original.getRowName(rowMap[r]) : null,
+			original.hasColumnNames() ? c -> original.getColumnName(columnMap[c]) : null);
+	}
+
+	/**
+	 * @return the presolved model. If the model is infeasible, it is the model at the moment that was detected.
+	 */
+	public ModelMatrix getReducedMatrix() {
+		return reduced;
+	}
+
+	/**
+	 * @return true if presolve found that the model is infeasible
+	 */
+	public boolean isInfeasible() {
+		return infeasible;
+	}
+
+	/**
+	 * @return the original column of every column of the reduced model
+	 */
+	public int[] getColumnMap() {
+		return columnMap;
+	}
+
+	/**
+	 * @return the original row of every row of the reduced model
+	 */
+	public int[] getRowMap() {
+		return rowMap;
+	}
+
+	/**
+	 * Map a solution of the reduced model back to the original model
+	 * @param x the value of every column of the reduced model
+	 * @return the value of every column of the original model
+	 */
+	public double[] postsolve(double[] x) {
+		double[] result = new double[nCols];
+		for(int j=0; j<nCols; j++)
+			result[j] = colActive[j] ? x[reducedColumn[j]] : fixedValue[j];
+		return result;
+	}
+
+	/**
+	 * Map values of the original columns to the reduced model, for example a MIP start
+	 * @param x the value of every column of the original model
+	 * @return the value of every column of the reduced model
+	 */
+	public double[] reduce(double[] x) {
+		double[] result = new double[columnMap.length];
+		for(int c=0; c<columnMap.length; c++)
+			result[c] = x[columnMap[c]];
+		return result;
+	}
+
+	/**
+	 * @return a summary of the reductions
+	 */
+	@Override
+	public String toString() {
+		return "presolve removed " + removedRows + " rows and " + removedColumns + " columns, and tightened "
+				+ tightenedBounds + " bounds" + (infeasible ? " (infeasible)" : "");
+	}
+}
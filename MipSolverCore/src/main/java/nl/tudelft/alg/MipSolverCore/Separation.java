@@ -0,0 +1,168 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The separation of the points of one solve with a Separator. It passes the points to the separator, keeps the
+ * returned constraints that the point violates, and compiles them to rows for the solver (see ModelMatrix.compile).
+ * The constraints that cut off candidate solutions are lazy constraints of the model: they are added to the model
+ * with addToModel after the solve, so the model contains them the next time it is built or updated.
+ * Solvers without separation callbacks use the re-solve loop of solve.
+ */
+public class Separation {
+	/**
+	 * The minimum violation of a returned constraint, constraints with a smaller violation are ignored
+	 */
+	public static final double TOLERANCE = 1e-6;
+	final MIP mip;
+	final Separator separator;
+	final List<Constraint> lazy;
+	int rounds, constraints, cuts;
+	volatile boolean stopped;
+
+	/**
+	 * One solve of the re-solve loop
+	 */
+	public interface SolveStep {
+		/**
+		 * @return the objective value
+		 * @throws SolverException when the solve fails
+		 */
+		public double solve() throws SolverException;
+	}
+
+	/**
+	 * @param mip the model
+	 * @param separator the separator
+	 */
+	public Separation(MIP mip, Separator separator) {
+		this.mip = mip;
+		this.separator = separator;
+		this.lazy = new ArrayList<Constraint>();
+	}
+
+	/**
+	 * @return true if the fractional points of the branch and bound nodes are separated (see Separator)
+	 */
+	public boolean separatesFractional() {
+		return separator.separatesFractional();
+	}
+
+	/**
+	 * Separate a point. The violated constraints of a candidate are kept for addToModel.
+	 * @param values the value of every column of the model
+	 * @param candidate true if the point is a candidate solution, false for a fractional point
+	 * @return the rows of the violated constraints, or null if the point violates none
+	 * @throws SolverException when a constraint contains a variable that is not in the model
+	 */
+	public synchronized ModelMatrix separate(double[] values, boolean candidate) throws SolverException {
+		rounds++;
+		List<Constraint> found = separator.separate(mip, values, candidate);
+		if(found == null || found.isEmpty()) return null;
+		VariableRegistry registry = mip.getVariableRegistry();
+		List<Constraint> violated = new ArrayList<Constraint>(found.size());
+		for(Constraint c: found)
+			if(getViolation(c, registry, values) > TOLERANCE) violated.add(c);
+		if(violated.isEmpty()) return null;
+		if(candidate) {
+			lazy.addAll(violated);
+			constraints += violated.size();
+		} else cuts += violated.size();
+		return ModelMatrix.compile(mip, violated);
+	}
+
+	/**
+	 * @param c a constraint
+	 * @param registry the variables of the model
+	 * @param values the value of every column
+	 * @return how much the constraint is violated, or 0 if it holds
+	 * @throws SolverException when the constraint contains a variable that is not in the model
+	 */
+	static double getViolation(Constraint c, VariableRegistry registry, double[] values) throws SolverException {
+		double slack = evaluate(c.getRight(), registry, values) - evaluate(c.getLeft(), registry, values);
+		switch(c.getComparator()) {
+		case SMALLEREQ: return Math.max(0, -slack);
+		case LARGEREQ: return Math.max(0, slack);
+		default: return Math.abs(slack);
+		}
+	}
+
+	private static double evaluate(LinExp exp, VariableRegistry registry, double[] values) throws SolverException {
+		double sum = 0;
+		for(int k=0; k<exp.size(); k++) {
+			Variable v = exp.getVariableAt(k);
+			if(v == Variable.CONST) {
+				sum += exp.getCoefficientAt(k);
+				continue;
+			}
+			int j = registry.indexOf(v);
+			if(j < 0) throw new SolverException("adding unknown variable " + v.getName() + " in a separated constraint");
+			sum += exp.getCoefficientAt(k) * values[j];
+		}
+		return sum;
+	}
+
+	/**
+	 * Add the lazy constraints that were found since the last call to the model
+	 * @return the number of added constraints
+	 */
+	public synchronized int addToModel() {
+		for(Constraint c: lazy)
+			mip.addConstraint(c);
+		int n = lazy.size();
+		lazy.clear();
+		return n;
+	}
+
+	/**
+	 * The re-solve loop: solve the model, add the constraints that its solution violates to the model,
+	 * update the solver and solve again, until the solution violates no constraint or the loop is stopped.
+	 * The time limit of the model applies to every solve.
+	 * @param solver the solver, which has built the model
+	 * @param step the solve of the model, for example solver::solve if the solver has no separator
+	 * @return the objective value of the last solve
+	 * @throws SolverException when a solve or update fails
+	 */
+	public double solve(IMIPSolver solver, SolveStep step) throws SolverException {
+		while(true) {
+			double objective = step.solve();
+			if(stopped || separate(mip.getSolution(), true) == null) return objective;
+			addToModel();
+			solver.update(mip);
+		}
+	}
+
+	/**
+	 * Stop the re-solve loop after the current solve. This can be called from any thread
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * @return the number of separated points
+	 */
+	public synchronized int getRounds() {
+		return rounds;
+	}
+
+	/**
+	 * @return the number of lazy constraints that were found
+	 */
+	public synchronized int getConstraints() {
+		return constraints;
+	}
+
+	/**
+	 * @return the number of cuts that were found
+	 */
+	public synchronized int getCuts() {
+		return cuts;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "separation: " + rounds + " points, " + constraints + " lazy constraints, " + cuts + " cuts";
+	}
+}
@@ -0,0 +1,33 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.List;
+
+/**
+ * Finds the constraints that a point violates, for models with too many constraints to add them all up front,
+ * such as subtour elimination or capacity constraints (see IMIPSolver.setSeparator). The model only contains a part
+ * of its constraints, and the solver asks the separator for the missing constraints that its solutions violate.
+ * Every returned constraint must hold for all feasible solutions of the complete model.
+ * Gurobi and GLPK call the separator from a callback of their branch and bound, on the thread of the solve.
+ * The Java solver and models that are solved as LP use the re-solve loop of Separation.
+ */
+public interface Separator {
+	/**
+	 * Separate a point
+	 * @param mip the model
+	 * @param values the value of every variable, by column index (see VariableRegistry.indexOf)
+	 * @param candidate true if the point is a candidate solution: an integer solution of the branch and bound,
+	 * or the solution of an LP. The solver accepts a candidate if none of the returned constraints is violated.
+	 * False for the fractional LP solution of a node, which is only separated if separatesFractional is true.
+	 * @return the violated constraints, or null or an empty list if there are none
+	 */
+	public List<Constraint> separate(MIP mip, double[] values, boolean candidate);
+
+	/**
+	 * The constraints that are returned for fractional points are added as cuts, which tighten the LP relaxation
+	 * but are not kept in the model.
+	 * @return true if the fractional points of the branch and bound nodes are separated as well (default false)
+	 */
+	public default boolean separatesFractional() {
+		return false;
+	}
+}
@@ -0,0 +1,87 @@
+package nl.tudelft.alg.MipSolverCore;
+
+/**
+ * Passes the events of one solve to a SolveListener. Solvers create one per solve with a listener, and report
+ * every incumbent and all the progress they see; this keeps the time of the solve, computes the gap, maps the values of 
+ * a presolved model back to all variables, and limits the progress events to changes and one per second.
+ * The methods are synchronized, so solvers can report from several threads.
+ */
+public class SolveEvents {
+	static final long INTERVAL = 1_000_000_000L;
+	final IMIPSolver solver;
+	final SolveListener listener;
+	final Presolve presolved;
+	final long start;
+	long lastProgress;
+	double objective = Double.NaN, bound = Double.NaN;
+
+	/**
+	 * Start reporting the events of a solve
+	 * @param solver the solver
+	 * @param listener the listener
+	 * @param presolved the presolve of the model of the solver, which maps the values back, or null
+	 */
+	public SolveEvents(IMIPSolver solver, SolveListener listener, Presolve presolved) {
+		this.solver = solver;
+		this.listener = listener;
+		this.presolved = presolved;
+		this.start = System.nanoTime();
+		this.lastProgress = start;
+	}
+
+	/**
+	 * @return true if the incumbents should be reported with their values
+	 */
+	public boolean needsValues() {
+		return listener.needsValues();
+	}
+
+	/**
+	 * @return the time since the start of the solve, in seconds
+	 */
+	double getTime() {
+		return (System.nanoTime() - start) / 1e9;
+	}
+
+	/**
+	 * Report a new incumbent. Incumbents that are not better than the last one are ignored
+	 * @param objective the objective value
+	 * @param values the values of the columns of the (presolved) model, or null
+	 * @param minimize true if the objective is minimized
+	 */
+	public synchronized void incumbent(double objective, double[] values, boolean minimize) {
+		if(!Double.isNaN(this.objective) && (minimize ? objective >= this.objective : objective <= this.objective)) return;
+		this.objective = objective;
+		if(values != null && presolved != null) values = presolved.postsolve(values);
+		listener.incumbent(solver, objective, needsValues() ? values : null, getTime());
+	}
+
+	/**
+	 * Report the progress of the search. It is passed on when the incumbent or the bound changed since the last
+	 * report, when a second has passed, or when it is final
+	 * @param nodes the number of explored nodes, or -1 if unknown
+	 * @param objective the objective value of the incumbent, or NaN if there is none
+	 * @param bound the best bound, or NaN if unknown
+	 * @param last true for the final progress of the solve, which is always passed on
+	 */
+	public synchronized void progress(long nodes, double objective, double bound, boolean last) {
+		long now = System.nanoTime();
+		boolean changed = Double.compare(objective, this.objective) != 0 || Double.compare(bound, this.bound) != 0;
+		if(!changed && !last && now - lastProgress < INTERVAL) return;
+		lastProgress = now;
+		if(!Double.isNaN(objective)) this.objective = objective;
+		this.bound = bound;
+		listener.progress(solver, nodes, objective, bound, getGap(objective, bound), (now - start) / 1e9);
+	}
+
+	/**
+	 * @param objective the objective value of the incumbent
+	 * @param bound the best bound
+	 * @return the relative gap like Gurobi computes it, or NaN if either is unknown
+	 */
+	static double getGap(double objective, double bound) {
+		if(Double.isNaN(objective) || Double.isNaN(bound) || Double.isInfinite(bound)) return Double.NaN;
+		if(objective == bound) return 0;
+		return Math.abs(objective - bound) / Math.abs(objective);
+	}
+}
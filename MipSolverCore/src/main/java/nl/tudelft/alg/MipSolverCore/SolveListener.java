@@ -0,0 +1,41 @@
+package nl.tudelft.alg.MipSolverCore;
+
+/**
+ * Receives the events of a running mip solve (see IMIPSolver.setSolveListener): every new incumbent, and the progress
+ * of the search with the best bound, the number of nodes and the gap. Gurobi reports the events from its callbacks, 
+ * GLPK from its search callback, and the Java solver reports the incumbents of its branch and bound.
+ * The events are called on the threads of the solver, so a listener should return quickly. To stop the solve when the
+ * solution is good enough, a listener can call ISolver.terminate; the solve then returns the incumbent.
+ */
+public interface SolveListener {
+	/**
+	 * The solver found a better solution
+	 * @param solver the solver
+	 * @param objective the objective value of the solution
+	 * @param values the value of every variable by index in the variable registry, or null if the listener does not 
+	 * need the values or the solver cannot give them during the search
+	 * @param time the time since the start of the solve, in seconds
+	 */
+	public void incumbent(IMIPSolver solver, double objective, double[] values, double time);
+
+	/**
+	 * The progress of the search, reported when the incumbent or the best bound changes, and at least every second
+	 * while the solver gives progress
+	 * @param solver the solver
+	 * @param nodes the number of explored nodes, or -1 if unknown
+	 * @param objective the objective value of the incumbent, or NaN if there is none
+	 * @param bound the best bound of the search, or NaN if unknown
+	 * @param gap the relative gap between the incumbent and the bound, or NaN if unknown
+	 * @param time the time since the start of the solve, in seconds
+	 */
+	public void progress(IMIPSolver solver, long nodes, double objective, double bound, double gap, double time);
+
+	/**
+	 * Whether the incumbent events should contain the values of the variables, which costs a copy of the solution per 
+	 * incumbent. GLPK gives the values only when its own presolver is off, so GLPK then solves the root LP first.
+	 * @return true to get the values with every incumbent (default false)
+	 */
+	public default boolean needsValues() {
+		return false;
+	}
+}
@@ -0,0 +1,65 @@
+package nl.tudelft.alg.MipSolverCore;
+
+/**
+ * Receives the timings and counters of a solver while it builds and solves models (see ISolver.setMetrics).
+ * Solvers only measure when a listener is set, so the measurements cost nothing when they are disabled.
+ * A listener can be shared by several solvers, for example by the mip solvers of the workers of an LRSolver,
+ * so it can be called from several threads at the same time. SolveStatistics is a thread-safe listener that
+ * aggregates the measurements.
+ */
+public interface SolveMetrics {
+	/**
+	 * The phases of building and solving a model
+	 */
+	public enum Phase {
+		/** MIP.initialize: creating the variables, constraints and objective of the model */
+		Initialize,
+		/** ISolver.build: compiling the model and building the native model */
+		Build,
+		/** IMIPSolver.update: applying the changes of the model to the native model */
+		Update,
+		/** The optimization by the solver, such as the Gurobi optimize or GLPK glp_intopt */
+		Optimize,
+		/** Getting the solution from the solver, and setting it in the variables */
+		Extract,
+		/** MIP.writeSolution */
+		WriteSolution,
+		/** One iteration of a lagrangian relaxation or column generation: solving the subproblems and the master problem */
+		Iteration
+	}
+
+	/**
+	 * A phase has finished
+	 * @param solver the solver
+	 * @param phase the phase
+	 * @param nanos the duration of the phase, in nanoseconds
+	 */
+	public void time(ISolver solver, Phase phase, long nanos);
+
+	/**
+	 * A model was built, this gives the size of the model that is passed to the solver (after the presolve of the core)
+	 * @param solver the solver
+	 * @param rows the number of rows
+	 * @param columns the number of columns
+	 * @param nonzeros the number of nonzeros of the constraint matrix
+	 */
+	public void size(ISolver solver, int rows, int columns, int nonzeros);
+
+	/**
+	 * The number of calls to a native library (JNI calls) in a phase, reported before the time of the phase.
+	 * Solvers without a native library do not report calls.
+	 * @param solver the solver
+	 * @param phase the phase
+	 * @param calls the number of native calls
+	 */
+	public void nativeCalls(ISolver solver, Phase phase, long calls);
+
+	/**
+	 * The progress of an optimization or a lagrangian relaxation iteration, as far as the solver exposes it
+	 * @param solver the solver
+	 * @param iterations the number of simplex iterations, or the iterations of an LRSolver or CGSolver, or -1 if unknown
+	 * @param nodes the number of branch and bound nodes, or -1 if unknown
+	 * @param gap the relative gap between the solution and the bound, or NaN if unknown
+	 */
+	public void progress(ISolver solver, long iterations, long nodes, double gap);
+}
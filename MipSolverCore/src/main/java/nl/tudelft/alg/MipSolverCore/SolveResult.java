@@ -0,0 +1,48 @@
+package nl.tudelft.alg.MipSolverCore;
+
+/**
+ * The result of an asynchronous solve (see ISolver.solveAsync). The solution itself is set in the variables of
+ * the model, like with ISolver.solve.
+ */
+public class SolveResult {
+	final ISolver solver;
+	final double objective;
+	final long nanos;
+
+	/**
+	 * @param solver the solver that solved the model
+	 * @param objective the objective value
+	 * @param nanos the time of the solve, in nanoseconds
+	 */
+	public SolveResult(ISolver solver, double objective, long nanos) {
+		this.solver = solver;
+		this.objective = objective;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * @return the solver that solved the model
+	 */
+	public ISolver getSolver() {
+		return solver;
+	}
+
+	/**
+	 * @return the objective value
+	 */
+	public double getObjective() {
+		return objective;
+	}
+
+	/**
+	 * @return the time of the solve, in seconds
+	 */
+	public double getSolveTime() {
+		return nanos / 1e9;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("objective %f in %.3f s", objective, getSolveTime());
+	}
+}
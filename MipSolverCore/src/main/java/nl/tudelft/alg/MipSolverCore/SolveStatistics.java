@@ -0,0 +1,152 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe SolveMetrics listener that aggregates the measurements of one or more solvers:
+ * the number and total time of every phase, the native calls per phase, the total simplex iterations and
+ * branch and bound nodes, and the last model size and gap.
+ */
+public class SolveStatistics implements SolveMetrics {
+	static final Phase[] PHASES = Phase.values();
+	final LongAdder[] counts, nanos, calls;
+	final LongAdder iterations, nodes;
+	volatile int rows, columns, nonzeros;
+	volatile double gap;
+
+	public SolveStatistics() {
+		counts = new LongAdder[PHASES.length];
+		nanos = new LongAdder[PHASES.length];
+		calls = new LongAdder[PHASES.length];
+		for(int p=0; p<PHASES.length; p++) {
+			counts[p] = new LongAdder();
+			nanos[p] = new LongAdder();
+			calls[p] = new LongAdder();
+		}
+		iterations = new LongAdder();
+		nodes = new LongAdder();
+		gap = Double.NaN;
+	}
+
+	@Override
+	public void time(ISolver solver, Phase phase, long nanos) {
+		counts[phase.ordinal()].increment();
+		this.nanos[phase.ordinal()].add(nanos);
+	}
+
+	@Override
+	public void size(ISolver solver, int rows, int columns, int nonzeros) {
+		this.rows = rows;
+		this.columns = columns;
+		this.nonzeros = nonzeros;
+	}
+
+	@Override
+	public void nativeCalls(ISolver solver, Phase phase, long calls) {
+		this.calls[phase.ordinal()].add(calls);
+	}
+
+	@Override
+	public void progress(ISolver solver, long iterations, long nodes, double gap) {
+		// the iterations of a lagrangian relaxation or column generation are counted by its Iteration phase
+		if(iterations > 0 && !(solver instanceof LRSolver) && !(solver instanceof CGSolver)) this.iterations.add(iterations);
+		if(nodes > 0) this.nodes.add(nodes);
+		if(!Double.isNaN(gap)) this.gap = gap;
+	}
+
+	/**
+	 * @param phase the phase
+	 * @return how many times the phase has finished
+	 */
+	public long getCount(Phase phase) {
+		return counts[phase.ordinal()].sum();
+	}
+
+	/**
+	 * @param phase the phase
+	 * @return the total time of the phase, in nanoseconds
+	 */
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()].sum();
+	}
+
+	/**
+	 * @param phase the phase
+	 * @return the total number of native calls in the phase
+	 */
+	public long getNativeCalls(Phase phase) {
+		return calls[phase.ordinal()].sum();
+	}
+
+	/**
+	 * @return the total number of simplex iterations
+	 */
+	public long getIterations() {
+		return iterations.sum();
+	}
+
+	/**
+	 * @return the total number of branch and bound nodes
+	 */
+	public long getNodes() {
+		return nodes.sum();
+	}
+
+	/**
+	 * @return the last reported gap, or NaN
+	 */
+	public double getGap() {
+		return gap;
+	}
+
+	/**
+	 * @return the number of rows of the last built model
+	 */
+	public int getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the number of columns of the last built model
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return the number of nonzeros of the last built model
+	 */
+	public int getNonzeros() {
+		return nonzeros;
+	}
+
+	/**
+	 * Clear all measurements
+	 */
+	public void reset() {
+		for(int p=0; p<PHASES.length; p++) {
+			counts[p].reset();
+			nanos[p].reset();
+			calls[p].reset();
+		}
+		iterations.reset();
+		nodes.reset();
+		rows = columns = nonzeros = 0;
+		gap = Double.NaN;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for(Phase phase: PHASES) {
+			long count = getCount(phase);
+			if(count == 0) continue;
+			sb.append(String.format("%s: %d times, %.3f ms", phase, count, getNanos(phase) / 1e6));
+			if(getNativeCalls(phase) > 0) sb.append(", ").append(getNativeCalls(phase)).append(" native calls");
+			sb.append('\n');
+		}
+		sb.append(String.format("model: %d rows, %d columns, %d nonzeros%n", rows, columns, nonzeros));
+		sb.append(String.format("%d iterations, %d nodes, gap %f", getIterations(), getNodes(), gap));
+		return sb.toString();
+	}
+}
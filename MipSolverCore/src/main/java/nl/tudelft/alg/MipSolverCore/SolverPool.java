@@ -0,0 +1,190 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of mip solvers, created by a factory.
+ * A borrowed solver is confined to the thread that borrowed it until that thread releases it,
+ * so several threads can solve models at the same time without sharing native solver state.
+ * Released solvers are reset to their default settings (see IMIPSolver.reset) and reused, most recently used first,
+ * so a borrower should set the parameters it needs, also those that the factory sets.
+ */
+public class SolverPool {
+	final IMIPSolverFactory factory;
+	final int maxSize;
+	final Deque<IMIPSolver> idle;
+	final Map<IMIPSolver, Thread> borrowed;
+	int size;
+	boolean disposeOnRelease;
+	boolean closed;
+
+	/**
+	 * Create a solver pool
+	 * @param factory creates the solvers of the pool
+	 * @param maxSize the maximum number of solvers in the pool
+	 */
+	public SolverPool(IMIPSolverFactory factory, int maxSize) {
+		if(maxSize <= 0) throw new IllegalArgumentException("The pool size should be positive");
+		this.factory = factory;
+		this.maxSize = maxSize;
+		this.idle = new ArrayDeque<IMIPSolver>();
+		this.borrowed = new IdentityHashMap<IMIPSolver, Thread>();
+		this.size = 0;
+		this.disposeOnRelease = false;
+		this.closed = false;
+	}
+
+	/**
+	 * Dispose the native model of a solver when it is released (default false). 
+	 * Use this for solvers of which the native model should not be used or freed from another thread. 
+	 * The solver object itself is still reused.
+	 * @param value true to dispose the model of a solver on release
+	 */
+	public synchronized void setDisposeOnRelease(boolean value) {
+		disposeOnRelease = value;
+	}
+
+	/**
+	 * Borrow a solver, and wait until one is available if all solvers are in use
+	 * @return a solver for the exclusive use of the current thread
+	 * @throws SolverException when a new solver cannot be created
+	 * @throws InterruptedException when the thread is interrupted while waiting
+	 */
+	public IMIPSolver borrow() throws SolverException, InterruptedException {
+		return borrow(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Borrow a solver, and wait at most timeout until one is available if all solvers are in use
+	 * @param timeout the maximum time to wait
+	 * @param unit the unit of timeout
+	 * @return a solver for the exclusive use of the current thread, or null if none became available in time
+	 * @throws SolverException when a new solver cannot be created
+	 * @throws InterruptedException when the thread is interrupted while waiting
+	 */
+	public IMIPSolver borrow(long timeout, TimeUnit unit) throws SolverException, InterruptedException {
+		long deadline = System.nanoTime() + Math.min(unit.toNanos(timeout), Long.MAX_VALUE / 2);
+		synchronized(this) {
+			while(!closed && idle.isEmpty() && size >= maxSize) {
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0) return null;
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+			if(closed) throw new IllegalStateException("The solver pool is closed");
+			IMIPSolver solver = idle.pollFirst();
+			if(solver != null) {
+				borrowed.put(solver, Thread.currentThread());
+				return solver;
+			}
+			size++; // reserve the place of the new solver
+		}
+		IMIPSolver solver = null;
+		try {
+			solver = factory.create();
+		} finally {
+			synchronized(this) {
+				if(solver == null) {
+					size--;
+					notifyAll();
+				} else borrowed.put(solver, Thread.currentThread());
+			}
+		}
+		return solver;
+	}
+
+	/**
+	 * Return a borrowed solver to the pool. Its settings are reset, so the next borrower does not get them. 
+	 * A solver that cannot be reset is disposed and removed from the pool.
+	 * @param solver the solver, which should have been borrowed by the current thread
+	 * @throws IllegalStateException when the solver was not borrowed by the current thread
+	 */
+	public void release(IMIPSolver solver) {
+		boolean dispose, remove;
+		synchronized(this) {
+			Thread owner = borrowed.get(solver);
+			if(owner != Thread.currentThread())
+				throw new IllegalStateException("The solver was not borrowed from this pool by this thread");
+			dispose = disposeOnRelease || closed;
+			remove = closed;
+		}
+		if(!remove) {
+			try {
+				solver.reset();
+			} catch (SolverException e) {
+				dispose = remove = true;
+			}
+		}
+		// dispose on the owning thread, before another thread can borrow the solver
+		if(dispose) solver.dispose();
+		synchronized(this) {
+			borrowed.remove(solver);
+			if(remove || closed) {
+				if(!dispose) solver.dispose();
+				size--;
+			}
+			else idle.addFirst(solver);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Build and solve a model with a solver from the pool
+	 * @param model the model to solve
+	 * @return the objective value
+	 * @throws SolverException when an exception occurs in building or solving the model
+	 * @throws InterruptedException when the thread is interrupted while waiting for a solver
+	 */
+	public double solve(MIP model) throws SolverException, InterruptedException {
+		IMIPSolver solver = borrow();
+		try {
+			if(!model.isInitialized()) model.initialize(solver);
+			solver.build(model);
+			return solver.solve();
+		} finally {
+			release(solver);
+		}
+	}
+
+	/**
+	 * @return the number of solvers that have been created and not disposed
+	 */
+	public synchronized int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of solvers that are available without creating a new one
+	 */
+	public synchronized int getIdle() {
+		return idle.size();
+	}
+
+	/**
+	 * @return the maximum number of solvers in the pool
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Close the pool: dispose all idle solvers now, and borrowed solvers when they are released
+	 */
+	public void close() {
+		List<IMIPSolver> solvers;
+		synchronized(this) {
+			closed = true;
+			solvers = new ArrayList<IMIPSolver>(idle);
+			idle.clear();
+			size -= solvers.size();
+			notifyAll();
+		}
+		for(IMIPSolver solver: solvers)
+			solver.dispose();
+	}
+}
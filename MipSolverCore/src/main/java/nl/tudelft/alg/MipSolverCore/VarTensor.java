@@ -0,0 +1,313 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.Arrays;
+
+/**
+ * A multi-dimensional array of variables, stored as one flat array with a shape and strides,
+ * as an alternative to the nested arrays of MIP.newVarArray. Cells are accessed with typed index accessors,
+ * without casts or reflection, and a slice or range is a view that shares the variables of the tensor.
+ * The variables are ordinary Variable objects, so they can be used in expressions and in other Variable-based code.
+ * The bulk operations (add, fix, setBounds and the value copies) visit the cells in row-major order.
+ */
+public class VarTensor {
+	final Variable[] vars;
+	final int offset;
+	final int[] shape, strides;
+	final int size;
+
+	/**
+	 * Create a tensor of new variables with the bounds of their type, named name_i_j_...
+	 * @param name the base name of the variables
+	 * @param type the type of the variables
+	 * @param shape the size of every dimension
+	 */
+	public VarTensor(String name, VarType type, int... shape) {
+		this(name, type, ModelMatrix.getLowerBound(type), ModelMatrix.getUpperBound(type), shape);
+	}
+
+	/**
+	 * Create a tensor of new variables with bounds, named name_i_j_...
+	 * @param name the base name of the variables
+	 * @param type the type of the variables
+	 * @param lb the lower bound of the variables
+	 * @param ub the upper bound of the variables
+	 * @param shape the size of every dimension
+	 */
+	public VarTensor(String name, VarType type, double lb, double ub, int... shape) {
+		this.shape = shape.clone();
+		this.strides = new int[shape.length];
+		int n = 1;
+		for(int d=shape.length-1; d>=0; d--) {
+			if(shape[d] < 0) throw new IllegalArgumentException("Negative dimension " + shape[d]);
+			strides[d] = n;
+			n *= shape[d];
+		}
+		this.size = n;
+		this.offset = 0;
+		this.vars = new Variable[n];
+		// the cells share one name, that is only formatted when the name of a variable is asked for
+		IndexedName indexed = new IndexedName(name, this.shape, Variable.reserveIds(n));
+		for(int k=0; k<n; k++)
+			vars[k] = new Variable(indexed.firstId + k, indexed, type, lb, ub);
+	}
+
+	/**
+	 * Create a view on the variables of another tensor
+	 */
+	VarTensor(Variable[] vars, int offset, int[] shape, int[] strides) {
+		this.vars = vars;
+		this.offset = offset;
+		this.shape = shape;
+		this.strides = strides;
+		int n = 1;
+		for(int s: shape)
+			n *= s;
+		this.size = n;
+	}
+
+	/**
+	 * Advance an index to the next cell in row-major order
+	 * @param index the index
+	 */
+	private void next(int[] index) {
+		for(int d=index.length-1; d>=0; d--) {
+			if(++index[d] < shape[d]) return;
+			index[d] = 0;
+		}
+	}
+
+	/**
+	 * @return the number of dimensions
+	 */
+	public int getDimensions() {
+		return shape.length;
+	}
+
+	/**
+	 * @param dim the dimension
+	 * @return the size of the dimension
+	 */
+	public int getSize(int dim) {
+		return shape[dim];
+	}
+
+	/**
+	 * @return the size of every dimension
+	 */
+	public int[] getShape() {
+		return shape.clone();
+	}
+
+	/**
+	 * @return the number of cells
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i the index of a one-dimensional tensor
+	 * @return the variable at the index
+	 */
+	public Variable get(int i) {
+		checkDimensions(1);
+		return vars[offset + check(0, i) * strides[0]];
+	}
+
+	/**
+	 * @param i the index in the first dimension
+	 * @param j the index in the second dimension
+	 * @return the variable at the index
+	 */
+	public Variable get(int i, int j) {
+		checkDimensions(2);
+		return vars[offset + check(0, i) * strides[0] + check(1, j) * strides[1]];
+	}
+
+	/**
+	 * @param i the index in the first dimension
+	 * @param j the index in the second dimension
+	 * @param k the index in the third dimension
+	 * @return the variable at the index
+	 */
+	public Variable get(int i, int j, int k) {
+		checkDimensions(3);
+		return vars[offset + check(0, i) * strides[0] + check(1, j) * strides[1] + check(2, k) * strides[2]];
+	}
+
+	/**
+	 * @param index the index in every dimension
+	 * @return the variable at the index
+	 */
+	public Variable get(int... index) {
+		checkDimensions(index.length);
+		int p = offset;
+		for(int d=0; d<index.length; d++)
+			p += check(d, index[d]) * strides[d];
+		return vars[p];
+	}
+
+	private void checkDimensions(int n) {
+		if(n != shape.length) throw new IllegalArgumentException("The tensor has " + shape.length + " dimensions, not " + n);
+	}
+
+	private int check(int dim, int i) {
+		if(i < 0 || i >= shape[dim]) throw new IndexOutOfBoundsException("Index " + i + " in dimension " + dim + " of size " + shape[dim]);
+		return i;
+	}
+
+	/**
+	 * Get the view with one index fixed, for example the variables of one time step
+	 * @param dim the dimension to fix
+	 * @param index the index in that dimension
+	 * @return a tensor with one dimension less, that shares the variables of this tensor
+	 */
+	public VarTensor slice(int dim, int index) {
+		check(dim, index);
+		int[] s = new int[shape.length-1], st = new int[shape.length-1];
+		for(int d=0, e=0; d<shape.length; d++) {
+			if(d == dim) continue;
+			s[e] = shape[d];
+			st[e++] = strides[d];
+		}
+		return new VarTensor(vars, offset + index * strides[dim], s, st);
+	}
+
+	/**
+	 * Get the view on a range of indices in one dimension
+	 * @param dim the dimension
+	 * @param from the first index of the range
+	 * @param to the index after the range
+	 * @return a tensor with the same dimensions, that shares the variables of this tensor
+	 */
+	public VarTensor range(int dim, int from, int to) {
+		if(from < 0 || to > shape[dim] || from > to) throw new IndexOutOfBoundsException("Range " + from + "-" + to + " in dimension " + dim + " of size " + shape[dim]);
+		int[] s = shape.clone();
+		s[dim] = to - from;
+		return new VarTensor(vars, offset + from * strides[dim], s, strides);
+	}
+
+	/**
+	 * @return the variables of all cells in row-major order
+	 */
+	public Variable[] toArray() {
+		if(isContiguous()) return Arrays.copyOfRange(vars, offset, offset + size);
+		Variable[] result = new Variable[size];
+		int[] index = new int[shape.length];
+		for(int k=0; k<size; k++) {
+			result[k] = vars[position(index)];
+			next(index);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if the cells of this view are one block of the backing array, in row-major order
+	 */
+	private boolean isContiguous() {
+		int n = 1;
+		for(int d=shape.length-1; d>=0; d--) {
+			if(shape[d] > 1 && strides[d] != n) return false;
+			n *= shape[d];
+		}
+		return true;
+	}
+
+	private int position(int[] index) {
+		int p = offset;
+		for(int d=0; d<index.length; d++)
+			p += index[d] * strides[d];
+		return p;
+	}
+
+	/**
+	 * Add all variables to a model (see MIP.addVars)
+	 * @param mip the model
+	 */
+	public void addTo(MIP mip) {
+		mip.addVars((Object[]) toArray());
+	}
+
+	/**
+	 * Set the bounds of all variables in a model (see MIP.setBounds)
+	 * @param mip the model
+	 * @param lb the lower bound
+	 * @param ub the upper bound
+	 */
+	public void setBounds(MIP mip, double lb, double ub) {
+		for(Variable v: toArray())
+			mip.setBounds(v, lb, ub);
+	}
+
+	/**
+	 * Fix all variables in a model to a value, by setting their bounds
+	 * @param mip the model
+	 * @param value the value
+	 */
+	public void fix(MIP mip, double value) {
+		setBounds(mip, value, value);
+	}
+
+	/**
+	 * Copy the solution values of the variables in row-major order
+	 * @param target the array to copy the values to, at least as long as the size of this tensor
+	 * @return target
+	 */
+	public double[] copyValues(double[] target) {
+		int[] index = new int[shape.length];
+		for(int k=0; k<size; k++) {
+			target[k] = vars[position(index)].solution;
+			next(index);
+		}
+		return target;
+	}
+
+	/**
+	 * Copy the solution values of the variables in row-major order, rounded to the nearest integer
+	 * @param target the array to copy the values to, at least as long as the size of this tensor
+	 * @return target
+	 */
+	public int[] copyValues(int[] target) {
+		int[] index = new int[shape.length];
+		for(int k=0; k<size; k++) {
+			target[k] = (int) Math.round(vars[position(index)].solution);
+			next(index);
+		}
+		return target;
+	}
+
+	/**
+	 * Copy the solution values of the variables in row-major order, as true if the value is larger than 0.5
+	 * @param target the array to copy the values to, at least as long as the size of this tensor
+	 * @return target
+	 */
+	public boolean[] copyValues(boolean[] target) {
+		int[] index = new int[shape.length];
+		for(int k=0; k<size; k++) {
+			target[k] = vars[position(index)].solution > 0.5;
+			next(index);
+		}
+		return target;
+	}
+
+	/**
+	 * @return the solution values of the variables in row-major order
+	 */
+	public double[] getValues() {
+		return copyValues(new double[size]);
+	}
+
+	/**
+	 * @return the solution values of the variables in row-major order, rounded to the nearest integer
+	 */
+	public int[] getIntValues() {
+		return copyValues(new int[size]);
+	}
+
+	/**
+	 * @return whether the solution value of every variable is larger than 0.5, in row-major order
+	 */
+	public boolean[] getBooleanValues() {
+		return copyValues(new boolean[size]);
+	}
+}
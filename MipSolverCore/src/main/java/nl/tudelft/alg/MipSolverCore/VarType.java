@@ -6,5 +6,9 @@ public enum VarType {
 	PositiveContinuous,
 	NegativeContinuous,
 	Binary,
-	BinaryContinuous
+	BinaryContinuous,
+	/**
+	 * A general integer variable, without bounds unless they are set on the variable
+	 */
+	Integer
 }
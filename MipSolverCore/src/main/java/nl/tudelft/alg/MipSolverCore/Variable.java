@@ -1,27 +1,126 @@
 package nl.tudelft.alg.MipSolverCore;
 
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Variable {
+	private final static AtomicInteger nextId = new AtomicInteger();
 	public final static Variable CONST = new Variable("const", VarType.Real); 
-	String name;
+	final int id;
+	int index;
+	// A String, or an IndexedName that is shared by a block of variables and is only formatted on demand
+	Object name;
 	VarType type;
-	Double solution;
+	double lb, ub;
+	// The value in the last solution, or NaN if there is none
+	double solution;
 	
+	/**
+	 * Create a variable with the bounds of its type
+	 * @param name the name of the variable
+	 * @param type the type of the variable
+	 */
 	public Variable(String name, VarType type) {
+		this(name, type, ModelMatrix.getLowerBound(type), ModelMatrix.getUpperBound(type));
+	}
+	
+	/**
+	 * Create a variable with bounds. The bounds become column bounds in the solver, not constraints.
+	 * @param name the name of the variable
+	 * @param type the type of the variable
+	 * @param lb the lower bound, or Double.NEGATIVE_INFINITY
+	 * @param ub the upper bound, or Double.POSITIVE_INFINITY
+	 */
+	public Variable(String name, VarType type, double lb, double ub) {
+		this(nextId.getAndIncrement(), name, type, lb, ub);
+	}
+
+	/**
+	 * Create a variable with a reserved id (see reserveIds)
+	 * @param id the id
+	 * @param name a String or an IndexedName
+	 */
+	Variable(int id, Object name, VarType type, double lb, double ub) {
+		this.id = id;
+		this.index = -1;
 		this.name = name;
 		this.type = type;
-		this.solution = null;
+		this.lb = lb;
+		this.ub = ub;
+		this.solution = Double.NaN;
+	}
+
+	/**
+	 * Reserve a block of consecutive ids, for a block of variables with an IndexedName
+	 * @param n the number of ids
+	 * @return the first id of the block
+	 */
+	static int reserveIds(int n) {
+		return nextId.getAndAdd(n);
 	}
 
+	/**
+	 * @return the unique integer id of this variable, used as the key in expressions
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the column index of this variable in the model it was added to, or -1 if it was not added to a model
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the name of this variable. The names of indexed variables are formatted on every call.
+	 */
 	public String getName() {
-		return name;
+		if(name instanceof IndexedName) return ((IndexedName) name).format(id);
+		return (String) name;
 	}
 
 	public VarType getType() {
 		return type;
 	}
 	
+	/**
+	 * @return the lower bound of this variable, which a model can override (see MIP.getLowerBound)
+	 */
+	public double getLowerBound() {
+		return lb;
+	}
+	
+	/**
+	 * @return the upper bound of this variable, which a model can override (see MIP.getUpperBound)
+	 */
+	public double getUpperBound() {
+		return ub;
+	}
+	
+	/**
+	 * Set the bounds of this variable, in every model that contains it. Use MIP.setBounds to change the bounds 
+	 * of a variable in one model, or in a built model.
+	 * @param lb the lower bound, or Double.NEGATIVE_INFINITY
+	 * @param ub the upper bound, or Double.POSITIVE_INFINITY
+	 */
+	public void setBounds(double lb, double ub) {
+		this.lb = lb;
+		this.ub = ub;
+	}
+	
+	/**
+	 * @return the value of this variable in the last solution, or null if there is none
+	 */
 	public Double getSolution() {
+		return Double.isNaN(solution) ? null : solution;
+	}
+	
+	/**
+	 * Get the value of this variable in the last solution, without boxing
+	 * @return the value, or NaN if there is none
+	 */
+	public double getValue() {
 		return solution;
 	}
 	
@@ -29,37 +128,17 @@ public class Variable {
 		solution = s;
 	}
 	
+	/**
+	 * Variables are compared on identity, so the hash code is the unique id of the variable
+	 */
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((name == null) ? 0 : name.hashCode());
-		result = prime * result + ((type == null) ? 0 : type.hashCode());
-		return result;
+		return id;
 	}
 
-	@Override
-	public boolean equals(Object obj) {
-		if (this == obj)
-			return true;
-		if (obj == null)
-			return false;
-		if (getClass() != obj.getClass())
-			return false;
-		Variable other = (Variable) obj;
-		if (name == null) {
-			if (other.name != null)
-				return false;
-		} else if (!name.equals(other.name))
-			return false;
-		if (type != other.type)
-			return false;
-		return true;
-	}
-	
 	@Override
 	public String toString() {
-		return name.toString() + ": " +(solution == null ? "## " : solution.toString());
+		return getName() + ": " +(Double.isNaN(solution) ? "## " : Double.toString(solution));
 	}
 
 }
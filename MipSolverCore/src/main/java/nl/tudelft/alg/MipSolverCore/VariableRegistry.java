@@ -0,0 +1,147 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The list of variables of a MIP. Every variable added to the registry gets a compact column index (0, 1, 2, ...),
+ * so that solvers can look up their own variable objects in a plain array instead of a map.
+ * Variables are compared on identity, and a variable is registered at most once.
+ */
+public class VariableRegistry extends AbstractList<Variable> implements RandomAccess {
+	Variable[] vars;
+	int size;
+	/**
+	 * Indices of variables that were added to another registry first, and therefore keep the index of that registry
+	 */
+	Map<Variable, Integer> shared;
+
+	public VariableRegistry() {
+		vars = new Variable[16];
+		size = 0;
+	}
+
+	/**
+	 * Create a registry with the variables in vs
+	 * @param vs the variables to register
+	 */
+	public VariableRegistry(Collection<? extends Variable> vs) {
+		this();
+		addAll(vs);
+	}
+
+	/**
+	 * Register a variable, if it is not yet registered
+	 * @param v the variable to register
+	 * @return the column index of the variable
+	 */
+	public int register(Variable v) {
+		int i = indexOf(v);
+		if(i >= 0) return i;
+		if(size == vars.length)
+			vars = Arrays.copyOf(vars, size + (size >> 1) + 1);
+		i = size++;
+		vars[i] = v;
+		if(v.index < 0)
+			v.index = i;
+		else {
+			if(shared == null) shared = new IdentityHashMap<Variable, Integer>();
+			shared.put(v, i);
+		}
+		return i;
+	}
+
+	/**
+	 * Get the column index of a variable
+	 * @param v the variable
+	 * @return the column index of the variable, or -1 if v is not registered
+	 */
+	public int indexOf(Variable v) {
+		int i = v.index;
+		if(i >= 0 && i < size && vars[i] == v) return i;
+		if(shared != null) {
+			Integer s = shared.get(v);
+			if(s != null) return s;
+		}
+		return -1;
+	}
+
+	@Override
+	public int indexOf(Object o) {
+		return o instanceof Variable ? indexOf((Variable) o) : -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object o) {
+		return indexOf(o);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public boolean add(Variable v) {
+		int n = size;
+		return register(v) == n;
+	}
+
+	@Override
+	public Variable get(int i) {
+		if(i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+		return vars[i];
+	}
+
+	@Override
+	public Variable remove(int i) {
+		Variable v = get(i);
+		System.arraycopy(vars, i+1, vars, i, size-i-1);
+		vars[--size] = null;
+		modCount++;
+		if(shared == null || shared.remove(v) == null)
+			v.index = -1;
+		reindex(i);
+		return v;
+	}
+
+	@Override
+	public void clear() {
+		for(int i=0; i<size; i++) {
+			if(shared == null || !shared.containsKey(vars[i]))
+				vars[i].index = -1;
+			vars[i] = null;
+		}
+		size = 0;
+		shared = null;
+		modCount++;
+	}
+
+	/**
+	 * Update the column indices of the variables from position start onwards
+	 * @param start the first position to update
+	 */
+	private void reindex(int start) {
+		for(int i=start; i<size; i++) {
+			Variable v = vars[i];
+			if(shared != null && shared.containsKey(v)) shared.put(v, i);
+			else v.index = i;
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the registered variables as an array, indexed by column index
+	 */
+	public Variable[] toArray() {
+		return Arrays.copyOf(vars, size);
+	}
+}
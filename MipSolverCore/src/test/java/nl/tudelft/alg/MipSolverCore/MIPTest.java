@@ -0,0 +1,87 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks that fixes and bounds are scoped to the model that sets them
+ */
+public class MIPTest {
+
+	/**
+	 * A model with the given variables and no constraints
+	 */
+	static class VarMIP extends MIP {
+		final Variable[] x;
+
+		VarMIP(Variable... x) {
+			this.x = x;
+		}
+
+		@Override
+		protected void initiliazeVars() {}
+
+		@Override
+		protected void setVars() {
+			addVars((Object[]) x);
+		}
+
+		@Override
+		protected void setConstraints() {}
+
+		@Override
+		protected void setObjectiveFunction() {}
+
+		@Override
+		public void writeSolution() {}
+
+		@Override
+		public void printSolution() {}
+	}
+
+	@Test
+	public void testOneSidedFixTightens() throws SolverException {
+		Variable x = new Variable("x", VarType.PositiveContinuous);
+		Variable y = new Variable("y", VarType.Real, 0, 10);
+		VarMIP mip = new VarMIP(x, y);
+		mip.initialize(null);
+		mip.fixVariable(x, -5, CMP.LARGEREQ);
+		mip.fixVariable(y, 20, CMP.SMALLEREQ);
+		ModelMatrix m = ModelMatrix.compile(mip);
+		assertEquals(0, m.getLowerBounds()[0], 0);
+		assertEquals(10, m.getUpperBounds()[1], 0);
+		mip.fixVariable(y, 4, CMP.SMALLEREQ);
+		assertEquals(4, mip.getUpperBound(y), 0);
+	}
+
+	@Test
+	public void testFixIsScopedToModel() throws SolverException {
+		Variable v = new Variable("v", VarType.Real, 0, 10);
+		VarMIP a = new VarMIP(v);
+		VarMIP b = new VarMIP(v);
+		a.initialize(null);
+		b.initialize(null);
+		b.fixVariable(v, 5);
+		assertEquals(5, ModelMatrix.compile(b).getLowerBounds()[0], 0);
+		assertEquals(0, ModelMatrix.compile(a).getLowerBounds()[0], 0);
+		assertEquals(10, ModelMatrix.compile(a).getUpperBounds()[0], 0);
+		b.resetBounds(v);
+		assertEquals(0, ModelMatrix.compile(b).getLowerBounds()[0], 0);
+	}
+
+	@Test
+	public void testBoundChangeOfSharedVariable() {
+		Variable w = new Variable("w", VarType.Real, 0, 10);
+		Variable v = new Variable("v", VarType.Real, 0, 10);
+		// v is column 1 of the first model, and column 0 of the second
+		VarMIP a = new VarMIP(w, v);
+		VarMIP b = new VarMIP(v);
+		a.initialize(null);
+		b.initialize(null);
+		b.getChanges().reset(this, b);
+		b.setBounds(v, 1, 2);
+		assertTrue(b.getChanges().getChangedBoundVariables().contains(v));
+	}
+}
@@ -0,0 +1,39 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the feasibility test of a compiled model, which the solvers use for MIP starts
+ */
+public class ModelMatrixTest {
+
+	/**
+	 * x + y <= 4 and x - y >= -1, with x integer in [0, 3] and y in [0, 10]
+	 */
+	private static ModelMatrix matrix() {
+		return new ModelMatrix(new int[] {0, 2, 4}, new int[] {0, 1, 0, 1}, new double[] {1, 1, 1, -1},
+				new CMP[] {CMP.SMALLEREQ, CMP.LARGEREQ}, new double[] {4, -1}, new double[] {0, 0}, new double[] {3, 10},
+				new VarType[] {VarType.Integer, VarType.PositiveContinuous}, new double[] {1, 1}, 0);
+	}
+
+	@Test
+	public void testFeasible() {
+		assertTrue(matrix().isFeasible(new double[] {1, 2}, 1e-6));
+		assertTrue(matrix().isFeasible(new double[] {1 + 1e-9, 2}, 1e-6));
+	}
+
+	@Test
+	public void testInfeasible() {
+		ModelMatrix m = matrix();
+		// bounds, integrality, both row senses and missing values
+		assertFalse(m.isFeasible(new double[] {-1, 0}, 1e-6));
+		assertFalse(m.isFeasible(new double[] {0.5, 1}, 1e-6));
+		assertFalse(m.isFeasible(new double[] {2, 3}, 1e-6));
+		assertFalse(m.isFeasible(new double[] {0, 2}, 1e-6));
+		assertFalse(m.isFeasible(new double[] {1, Double.NaN}, 1e-6));
+		assertFalse(m.isFeasible(new double[] {1}, 1e-6));
+	}
+}
@@ -0,0 +1,84 @@
+package nl.tudelft.alg.MipSolverCore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Round trips of models through ModelWriter and ModelReader
+ */
+public class ModelReaderTest {
+
+	/**
+	 * A model with one constraint, in which the other columns only appear in the General and Binary sections
+	 */
+	static class SectionMIP extends MIP {
+		final int columns;
+		Variable[] x;
+
+		SectionMIP(int columns) {
+			this.columns = columns;
+		}
+
+		@Override
+		protected void initiliazeVars() {
+			x = new Variable[columns];
+			for(int j=0; j<columns; j++)
+				x[j] = j % 2 == 0 ? new Variable("x" + j, VarType.Binary) : new Variable("x" + j, VarType.Integer, 0, 5);
+		}
+
+		@Override
+		protected void setVars() {
+			addVars(x);
+		}
+
+		@Override
+		protected void setConstraints() {
+			addConstraint(new LinExp().addTerm(x[0], 1), new LinExp().addTerm(1), CMP.SMALLEREQ, "c0");
+		}
+
+		@Override
+		protected void setObjectiveFunction() {
+			objectiveFunction = new LinExp().addTerm(x[0], 1);
+		}
+
+		@Override
+		public void writeSolution() {}
+
+		@Override
+		public void printSolution() {}
+	}
+
+	private static void roundTrip(String extension) throws IOException, SolverException {
+		SectionMIP mip = new SectionMIP(300);
+		mip.initialize(null);
+		File file = File.createTempFile("model", extension);
+		try {
+			new ModelWriter(mip).write(file.getPath());
+			FileMIP read = new ModelReader().read(file.getPath());
+			List<Variable> vars = read.getVars();
+			assertEquals(mip.columns, vars.size());
+			for(Variable v: vars) {
+				int j = Integer.parseInt(v.getName().substring(1));
+				assertEquals(v.getName(), mip.x[j].getType(), v.getType());
+				assertEquals(v.getName(), mip.x[j].getUpperBound(), v.getUpperBound(), 0);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testLPSectionColumns() throws IOException, SolverException {
+		roundTrip(".lp");
+	}
+
+	@Test
+	public void testMPSSectionColumns() throws IOException, SolverException {
+		roundTrip(".mps");
+	}
+}
@@ -0,0 +1,236 @@
+package nl.tudelft.alg.MipSolverGLPK;
+
+import java.util.function.Consumer;
+
+import org.gnu.glpk.GLPK;
+import org.gnu.glpk.GLPKConstants;
+import org.gnu.glpk.GlpkCallbackListener;
+import org.gnu.glpk.SWIGTYPE_p_double;
+import org.gnu.glpk.SWIGTYPE_p_int;
+import org.gnu.glpk.glp_prob;
+import org.gnu.glpk.glp_tree;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+import nl.tudelft.alg.MipSolverCore.Separation;
+import nl.tudelft.alg.MipSolverCore.SolveEvents;
+import nl.tudelft.alg.MipSolverCore.SolverException;
+
+/**
+ * Callback for the GLPK branch-and-cut search of one solve.
+ * It passes the MIP start to the search as a heuristic solution, counts the subproblems of the search, reports
+ * the incumbents and the progress of the search to the events of the solve, separates the LP solutions of the
+ * subproblems, and terminates the search when asked to.
+ * GLPK callback listeners are global, so the callback only acts on the search of the thread that created it.
+ */
+public class Callback implements GlpkCallbackListener {
+	final Thread thread = Thread.currentThread();
+	SWIGTYPE_p_double start;
+	// The number of subproblems, the last gap of the search, and the GLPK calls of the callback, for the metrics
+	long nodes, calls;
+	double gap = Double.NaN;
+	boolean measureGap;
+	volatile boolean terminate;
+	// The events of the solve, the number of columns of which the values can be reported, and the last best bound
+	SolveEvents events;
+	int columns;
+	boolean minimize;
+	double bound = Double.NaN;
+	// The separation of the solve, the integer columns, and how lazy rows are added to the problem
+	Separation separation;
+	boolean[] integer;
+	Consumer<ModelMatrix> lazyRows;
+	// The exception of the separation, which terminated the search
+	SolverException error;
+	// GLPK accepts an LP solution as integer when every integer column is within its default tol_int of an integer
+	static final double INTEGER_TOLERANCE = 1e-5;
+	
+	/**
+	 * Set the MIP start, which is offered to GLPK at the first heuristic callback
+	 * @param values the start value of every column, by (0-based) column index
+	 */
+	public void setStart(double[] values) {
+		dispose();
+		start = GLPK.new_doubleArray(values.length+1);
+		for(int j=0; j<values.length; j++)
+			GLPK.doubleArray_setitem(start, j+1, values[j]);
+		calls += values.length + 1;
+	}
+	
+	/**
+	 * Get the relative gap of the search at every subproblem selection, which costs a GLPK call per selection
+	 * @param value true to get the gap
+	 */
+	public void setMeasureGap(boolean value) {
+		measureGap = value;
+	}
+	
+	/**
+	 * Report the incumbents and the progress of the search
+	 * @param events the events of the solve
+	 * @param columns the number of columns of the problem, or 0 if the search runs on a problem of the GLPK presolver,
+	 * of which the values of the columns cannot be reported
+	 * @param minimize true if the objective is minimized
+	 */
+	public void setEvents(SolveEvents events, int columns, boolean minimize) {
+		this.events = events;
+		this.columns = columns;
+		this.minimize = minimize;
+	}
+	
+	/**
+	 * Separate the LP solutions of the subproblems: integer solutions at the row generation, where the violated
+	 * constraints are added as lazy rows, and fractional solutions at the cut generation, where they are added as cuts.
+	 * The search should run on the problem itself, without the GLPK presolver.
+	 * @param separation the separation of the solve
+	 * @param integer for every column, whether it is integer
+	 * @param lazyRows adds the rows of the violated constraints to the problem
+	 */
+	public void setSeparation(Separation separation, boolean[] integer, Consumer<ModelMatrix> lazyRows) {
+		this.separation = separation;
+		this.integer = integer;
+		this.lazyRows = lazyRows;
+	}
+	
+	/**
+	 * Terminate the search at the next callback. This can be called from any thread
+	 */
+	public void terminate() {
+		terminate = true;
+	}
+	
+	@Override
+	public void callback(glp_tree tree) {
+		if(Thread.currentThread() != thread) return;
+		if(terminate) {
+			// glp_intopt returns GLP_ESTOP, with the incumbent as the solution if there is one
+			GLPK.glp_ios_terminate(tree);
+			calls++;
+			return;
+		}
+		int reason = GLPK.glp_ios_reason(tree);
+		calls++;
+		if(reason == GLPKConstants.GLP_IPREPRO) nodes++;
+		if(reason == GLPKConstants.GLP_ISELECT && measureGap) {
+			// the gap is DBL_MAX while there is no incumbent
+			double g = GLPK.glp_ios_mip_gap(tree);
+			calls++;
+			if(g < Double.MAX_VALUE) gap = g;
+		}
+		if(reason == GLPKConstants.GLP_IHEUR && start != null) {
+			// GLPK only checks that the integer columns are integral and that the solution improves the incumbent,
+			// so the solver only sets a start that is feasible for the model (see GLPKSolver.getStartValues)
+			GLPK.glp_ios_heur_sol(tree, start);
+			calls++;
+			dispose();
+		}
+		if(separation != null && (reason == GLPKConstants.GLP_IROWGEN || reason == GLPKConstants.GLP_ICUTGEN))
+			separate(tree, reason);
+		if(events != null) report(tree, reason);
+		// the listener of the events can terminate the solve
+		if(terminate) {
+			GLPK.glp_ios_terminate(tree);
+			calls++;
+		}
+	}
+	
+	/**
+	 * Separate the LP solution of the current subproblem
+	 * @param tree the search tree
+	 * @param reason the row generation or the cut generation
+	 */
+	private void separate(glp_tree tree, int reason) {
+		boolean rowGeneration = reason == GLPKConstants.GLP_IROWGEN;
+		if(!rowGeneration && !separation.separatesFractional()) return;
+		glp_prob prob = GLPK.glp_ios_get_prob(tree);
+		double[] x = new double[integer.length];
+		boolean candidate = true;
+		for(int j=0; j<x.length; j++) {
+			x[j] = GLPK.glp_get_col_prim(prob, j+1);
+			if(integer[j] && Math.abs(x[j] - Math.rint(x[j])) > INTEGER_TOLERANCE) candidate = false;
+		}
+		calls += x.length + 1;
+		// an integer solution that passes the row generation becomes an incumbent, cuts are generated for fractional ones
+		if(candidate != rowGeneration) return;
+		ModelMatrix rows;
+		try {
+			rows = separation.separate(x, candidate);
+		} catch (SolverException e) {
+			error = e;
+			terminate = true;
+			return;
+		}
+		if(rows == null) return;
+		// GLPK solves the subproblem again with the new rows
+		if(candidate) lazyRows.accept(rows);
+		else addCuts(tree, rows);
+	}
+	
+	/**
+	 * Add rows to the cut pool of the search. An equality is added as two inequalities, GLPK cuts are inequalities.
+	 * @param tree the search tree
+	 * @param rows the rows
+	 */
+	private void addCuts(glp_tree tree, ModelMatrix rows) {
+		int[] start = rows.getRowStarts();
+		int[] colIndex = rows.getColumnIndices();
+		double[] values = rows.getValues();
+		for(int i=0; i<rows.getRows(); i++) {
+			int length = start[i+1] - start[i];
+			SWIGTYPE_p_int ind = GLPK.new_intArray(length+1);
+			SWIGTYPE_p_double val = GLPK.new_doubleArray(length+1);
+			for(int k=0; k<length; k++) {
+				GLPK.intArray_setitem(ind, k+1, colIndex[start[i]+k]+1);
+				GLPK.doubleArray_setitem(val, k+1, values[start[i]+k]);
+			}
+			CMP sense = rows.getSenses()[i];
+			if(sense != CMP.SMALLEREQ)
+				GLPK.glp_ios_add_row(tree, null, 0, 0, length, ind, val, GLPKConstants.GLP_LO, rows.getRhs()[i]);
+			if(sense != CMP.LARGEREQ)
+				GLPK.glp_ios_add_row(tree, null, 0, 0, length, ind, val, GLPKConstants.GLP_UP, rows.getRhs()[i]);
+			GLPK.delete_intArray(ind);
+			GLPK.delete_doubleArray(val);
+			calls += 2L*length + (sense == CMP.EQ ? 6 : 5);
+		}
+	}
+	
+	/**
+	 * Report a new incumbent, or the progress at the selection of a subproblem
+	 * @param tree the search tree
+	 * @param reason the reason of the callback
+	 */
+	private void report(glp_tree tree, int reason) {
+		if(reason != GLPKConstants.GLP_IBINGO && reason != GLPKConstants.GLP_ISELECT) return;
+		glp_prob prob = GLPK.glp_ios_get_prob(tree);
+		calls++;
+		if(reason == GLPKConstants.GLP_IBINGO) {
+			double[] values = null;
+			if(columns > 0 && events.needsValues()) {
+				values = new double[columns];
+				for(int j=0; j<columns; j++)
+					values[j] = GLPK.glp_mip_col_val(prob, j+1);
+				calls += columns;
+			}
+			events.incumbent(GLPK.glp_mip_obj_val(prob), values, minimize);
+			calls++;
+			return;
+		}
+		int node = GLPK.glp_ios_best_node(tree);
+		if(node != 0) bound = GLPK.glp_ios_node_bound(tree, node);
+		int status = GLPK.glp_mip_status(prob);
+		double objective = status == GLPK.GLP_FEAS || status == GLPK.GLP_OPT ? GLPK.glp_mip_obj_val(prob) : Double.NaN;
+		calls += node != 0 ? 4 : 3;
+		events.progress(nodes, objective, bound, false);
+	}
+	
+	/**
+	 * Free the native memory of the callback
+	 */
+	public void dispose() {
+		if(start != null) {
+			GLPK.delete_doubleArray(start);
+			calls++;
+		}
+		start = null;
+	}
+}
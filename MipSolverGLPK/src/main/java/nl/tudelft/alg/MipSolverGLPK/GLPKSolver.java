@@ -4,13 +4,13 @@ package nl.tudelft.alg.MipSolverGLPK;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.gnu.glpk.GLPK;
 import org.gnu.glpk.GLPKConstants;
+import org.gnu.glpk.GlpkCallback;
 import org.gnu.glpk.GlpkException;
 import org.gnu.glpk.GlpkTerminal;
 import org.gnu.glpk.GlpkTerminalListener;
@@ -18,7 +18,9 @@ import org.gnu.glpk.SWIGTYPE_p_double;
 import org.gnu.glpk.SWIGTYPE_p_int;
 import org.gnu.glpk.glp_iocp;
 import org.gnu.glpk.glp_prob;
+import org.gnu.glpk.glp_smcp;
 
+import nl.tudelft.alg.MipSolverCore.Basis;
 import nl.tudelft.alg.MipSolverCore.CMP;
 import nl.tudelft.alg.MipSolverCore.Constraint;
 import nl.tudelft.alg.MipSolverCore.IMIPSolver;
@@ -26,24 +28,71 @@ import nl.tudelft.alg.MipSolverCore.IModel;
 import nl.tudelft.alg.MipSolverCore.InfeasibleException;
 import nl.tudelft.alg.MipSolverCore.LinExp;
 import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.ModelChanges;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+import nl.tudelft.alg.MipSolverCore.Presolve;
+import nl.tudelft.alg.MipSolverCore.Separation;
+import nl.tudelft.alg.MipSolverCore.Separator;
+import nl.tudelft.alg.MipSolverCore.SolveEvents;
+import nl.tudelft.alg.MipSolverCore.SolveListener;
+import nl.tudelft.alg.MipSolverCore.SolveMetrics;
+import nl.tudelft.alg.MipSolverCore.SolveMetrics.Phase;
 import nl.tudelft.alg.MipSolverCore.SolverException;
 import nl.tudelft.alg.MipSolverCore.VarType;
 import nl.tudelft.alg.MipSolverCore.Variable;
+import nl.tudelft.alg.MipSolverCore.VariableRegistry;
 
+/**
+ * A mip solver that uses GLPK. The log file and the terminal and callback listeners belong to the instance, 
+ * so instances can solve models from different threads at the same time. An instance itself is not thread-safe, 
+ * and its native model should be used (and disposed) by one thread only. Only terminate can be called from another thread;
+ * to solve asynchronously, build and solve on the same single-thread executor (see ISolver.solveAsync).
+ */
 public class GLPKSolver implements IMIPSolver {
-	private static boolean DEBUG = false;
-	private static String logFile = "mip1.log";
+	// The feasibility tolerance of a MIP start
+	static final double START_TOL = 1e-6;
+	// The time slice of the simplex method in milliseconds, after which it checks whether it was terminated
+	static final int SIMPLEX_SLICE = 100;
+	private boolean debug = false;
+	private String logFile = "mip1.log";
 	glp_prob prob;
 	glp_iocp iocp;
 	SWIGTYPE_p_int ind; 
 	SWIGTYPE_p_double val;
+	int bufferSize;
 	MIP mip;
-	Map<Variable, Integer> varMap;
+	ModelMatrix matrix;
+	VariableRegistry registry;
 	boolean minimize;
 	int nVariables;
 	boolean fileOutput;
 	boolean relaxed;
+	boolean builtRelaxed;
+	boolean useNames;
+	boolean warmStart;
+	boolean presolve;
+	boolean builtPresolve;
+	Presolve presolved;
+	boolean startPending;
+	// True if update changed the native model after the matrix was compiled
+	boolean matrixStale;
+	Map<Variable, Double> mipStart;
+	Basis basis, lastBasis;
 	FileOutputStream outputStream;
+	SolveMetrics metrics;
+	// The number of GLPK calls since the start of the current phase, for the metrics
+	long calls;
+	// The callback of the running solve, which terminates the search when terminate is called
+	volatile Callback callback;
+	volatile boolean terminated;
+	// True if resetTerminate was called for the next solve, which then keeps the terminate flag
+	boolean terminateReset;
+	// True if the last solve solved an LP with the simplex method, so the problem has its duals
+	boolean lpSolved;
+	SolveListener listener;
+	Separator separator;
+	// The separation of the running solve, which terminate stops
+	volatile Separation separation;
 	
 	public GLPKSolver() {
 		GLPK.glp_term_out(0);
@@ -52,113 +101,319 @@ public class GLPKSolver implements IMIPSolver {
 		minimize = true;
 		fileOutput = true;
 		relaxed = false;
+		useNames = true;
 	}
 	
 	private void debug(String s) {
-		if(DEBUG) System.out.println(s);
+		if(debug) System.out.println(s);
 	}
 
 	private glp_iocp new_iocp(glp_iocp old) {
 		glp_iocp iocp = new glp_iocp();
 		GLPK.glp_init_iocp(iocp);
 		iocp.setMip_gap(old.getMip_gap());
+		calls += 3;
 		return iocp;
 	}
 
 	@Override
-	public void build(IModel mipInstance) {
+	public void build(IModel mipInstance) throws SolverException {
 		assert(mipInstance instanceof MIP);
+		long start = metrics == null ? 0 : System.nanoTime();
+		calls = 0;
 		mip = (MIP) mipInstance;
+		lpSolved = false;
 		dispose();
 		debug("build model");
+		matrix = ModelMatrix.compile(mip);
+		matrixStale = false;
+		debug("compile: done");
+		// the separated rows refer to the columns of the model
+		presolved = presolve && separator == null ? Presolve.apply(mip, matrix, minimize) : null;
+		builtPresolve = presolve;
+		if(presolved != null) {
+			debug(presolved.toString());
+			matrix = presolved.getReducedMatrix();
+		}
 		prob = GLPK.glp_create_prob();
 		iocp = new_iocp(iocp);
 		iocp.setTm_lim((int) (mip.getTimeLimit() * 1000)); //milliseconds
-		varMap = new HashMap<Variable, Integer>();
+		registry = mip.getVariableRegistry();
 		// Create variables
-		nVariables = mip.getVars().size();
+		nVariables = matrix.getColumns();
 		GLPK.glp_add_cols(prob, nVariables);
-		int i = 1;
-		for(Variable v: mip.getVars()) {
-			varMap.put(v, i);
-			GLPK.glp_set_col_name(prob, i, v.getName());
-			if (v.getType() == VarType.PositiveContinuous) {
-				GLPK.glp_set_col_kind(prob, i, GLPKConstants.GLP_CV);
-				GLPK.glp_set_col_bnds(prob, i, GLPKConstants.GLP_LO, 0, 0);
-			} else if (v.getType() == VarType.NegativeContinuous) {
-				GLPK.glp_set_col_kind(prob, i, GLPKConstants.GLP_CV);
-				GLPK.glp_set_col_bnds(prob, i, GLPKConstants.GLP_UP, 0, 0);
-			} else if (v.getType() == VarType.Binary && !relaxed) {
-				GLPK.glp_set_col_kind(prob, i, GLPKConstants.GLP_BV);
-			} else if (v.getType() == VarType.BinaryContinuous || (v.getType() == VarType.Binary && relaxed)) {
-				GLPK.glp_set_col_kind(prob, i, GLPKConstants.GLP_CV);
-				GLPK.glp_set_col_bnds(prob, i, GLPKConstants.GLP_DB, 0, 1);
-			} else {
-				GLPK.glp_set_col_kind(prob, i, GLPKConstants.GLP_CV);
-				GLPK.glp_set_col_bnds(prob, i, GLPKConstants.GLP_FR, 0, 0);
-			}
-			i++;
+		calls += 3;
+		for(int j=0; j<nVariables; j++) {
+			setColumn(matrix, j);
 		}
 		debug("variables: done");
 		
-		ind = GLPK.new_intArray(nVariables+1);
-		val = GLPK.new_doubleArray(nVariables+1);
-		GLPK.glp_add_rows(prob, mip.getConstraints().size());
-		i = 1;
-		for(Constraint c: mip.getConstraints()) {
-			addConstraint(i,c);
-			i++;
+		int nRows = matrix.getRows();
+		GLPK.glp_add_rows(prob, nRows);
+		calls++;
+		for(int i=0; i<nRows; i++) {
+			setRow(matrix, i, i+1);
+			setMatrixRow(matrix, i, i+1);
 		}
 		debug("constraints: done");
-		setObjectiveFunction();
+		setObjective();
 		debug("objective: done");
-		
+		builtRelaxed = relaxed;
+		mip.getChanges().reset(this, mip);
 		debug("Done building");
+		if(metrics != null) {
+			metrics.size(this, matrix.getRows(), matrix.getColumns(), matrix.getNonzeros());
+			report(Phase.Build, start);
+		}
 	}
 	
-	private void addConstraint(int i, Constraint c) {
-		debug("add constraint "+c.getName());
-		GLPK.glp_set_row_name(prob, i, c.getName());
-		double b = - c.getLeft().get(Variable.CONST) + c.getRight().get(Variable.CONST);
-		if(c.getComparator() == CMP.EQ)
-			GLPK.glp_set_row_bnds(prob, i, GLPKConstants.GLP_FX, b, b);
-		else if(c.getComparator() == CMP.LARGEREQ)
-			GLPK.glp_set_row_bnds(prob, i, GLPKConstants.GLP_LO, b, b);
+	@Override
+	public void update(IModel mipInstance) throws SolverException {
+		assert(mipInstance instanceof MIP);
+		MIP m = (MIP) mipInstance;
+		ModelChanges changes = m.getChanges();
+		if(m != mip || prob == null || builtRelaxed != relaxed || builtPresolve != presolve
+				|| presolved != null || !changes.isTrackedFor(this)) {
+			build(m);
+			return;
+		}
+		debug("update model");
+		long start = metrics == null ? 0 : System.nanoTime();
+		lpSolved = false;
+		calls = 1;
+		iocp.setTm_lim((int) (mip.getTimeLimit() * 1000)); //milliseconds
+		// Changed right hand sides, by row index of the built model
+		for(int i: changes.getChangedRows()) {
+			Constraint c = changes.getRowConstraint(i);
+			setRowBounds(i+1, c.getComparator(), c.getRhs());
+		}
+		// Removed rows
+		int[] removed = changes.getRemovedRows();
+		if(removed.length > 0) {
+			SWIGTYPE_p_int num = GLPK.new_intArray(removed.length+1);
+			for(int k=0; k<removed.length; k++)
+				GLPK.intArray_setitem(num, k+1, removed[k]+1);
+			GLPK.glp_del_rows(prob, removed.length, num);
+			GLPK.delete_intArray(num);
+			calls += removed.length + 3;
+		}
+		// New columns and rows
+		List<Constraint> addedRows = changes.getAddedConstraints(mip);
+		ModelMatrix added = ModelMatrix.compile(mip, addedRows);
+		if(added.getColumns() > nVariables) {
+			GLPK.glp_add_cols(prob, added.getColumns() - nVariables);
+			calls++;
+			for(int j=nVariables; j<added.getColumns(); j++)
+				setColumn(added, j);
+			nVariables = added.getColumns();
+		}
+		// Coefficients of the columns that were added with MIP.addColumn in the remaining built rows
+		for(int k=0; k<changes.getAddedColumns().size(); k++) {
+			int[] rows = changes.getAddedColumnRows(k);
+			double[] values = changes.getAddedColumnValues(k);
+			ensureBuffers(rows.length);
+			for(int t=0; t<rows.length; t++) {
+				// the row number shifts by the number of removed rows before it
+				int shift = -Arrays.binarySearch(removed, rows[t]) - 1;
+				GLPK.intArray_setitem(ind, t+1, rows[t] - shift + 1);
+				GLPK.doubleArray_setitem(val, t+1, values[t]);
+			}
+			GLPK.glp_set_mat_col(prob, column(changes.getAddedColumns().get(k)), rows.length, ind, val);
+			calls += 2*rows.length + 1;
+		}
+		if(!addedRows.isEmpty()) {
+			int first = GLPK.glp_add_rows(prob, added.getRows());
+			calls++;
+			for(int i=0; i<added.getRows(); i++) {
+				setRow(added, i, first+i);
+				setMatrixRow(added, i, first+i);
+			}
+		}
+		// Objective
+		if(changes.isObjectiveChanged()) {
+			for(int j=1; j<=nVariables; j++)
+				GLPK.glp_set_obj_coef(prob, j, 0);
+			calls += nVariables;
+			setObjective();
+		} else {
+			LinExp obj = (LinExp) mip.getObjectiveFunction();
+			for(Variable v: changes.getChangedObjectiveVariables())
+				GLPK.glp_set_obj_coef(prob, column(v), obj.getCoefficient(v));
+			calls += changes.getChangedObjectiveVariables().size();
+		}
+		// Bounds
+		for(Variable v: changes.getChangedBoundVariables()) {
+			double lb = mip.getLowerBound(v), ub = mip.getUpperBound(v);
+			GLPK.glp_set_col_bnds(prob, column(v), boundType(lb, ub), lb, ub);
+		}
+		calls += changes.getChangedBoundVariables().size();
+		changes.reset(this, mip);
+		matrixStale = true;
+		debug("Done updating");
+		if(metrics != null) report(Phase.Update, start);
+	}
+	
+	/**
+	 * Report the GLPK calls and the time of a phase to the metrics listener
+	 * @param phase the phase
+	 * @param start the start time of the phase, in nanoseconds
+	 */
+	private void report(Phase phase, long start) {
+		metrics.nativeCalls(this, phase, calls);
+		metrics.time(this, phase, System.nanoTime() - start);
+		calls = 0;
+	}
+	
+	/**
+	 * Get the GLPK bound type for a lower and upper bound
+	 * @param lb the lower bound
+	 * @param ub the upper bound
+	 * @return the GLPK bound type
+	 */
+	private static int boundType(double lb, double ub) {
+		boolean hasLower = lb != Double.NEGATIVE_INFINITY;
+		boolean hasUpper = ub != Double.POSITIVE_INFINITY;
+		if(hasLower && hasUpper)
+			return lb == ub ? GLPKConstants.GLP_FX : GLPKConstants.GLP_DB;
+		else if(hasLower)
+			return GLPKConstants.GLP_LO;
+		else if(hasUpper)
+			return GLPKConstants.GLP_UP;
+		return GLPKConstants.GLP_FR;
+	}
+	
+	/**
+	 * Set the name, kind and bounds of column j of a compiled model in the GLPK problem
+	 * @param m the compiled model
+	 * @param j the (0-based) column index
+	 */
+	private void setColumn(ModelMatrix m, int j) {
+		if(useNames)
+			GLPK.glp_set_col_name(prob, j+1, m.getColumnName(j));
+		// new columns are continuous by default
+		if(m.isInteger(j) && !relaxed)
+			GLPK.glp_set_col_kind(prob, j+1, GLPKConstants.GLP_IV);
+		double lb = m.getLowerBounds()[j];
+		double ub = m.getUpperBounds()[j];
+		GLPK.glp_set_col_bnds(prob, j+1, boundType(lb, ub), lb, ub);
+		calls += (useNames ? 2 : 1) + (m.isInteger(j) && !relaxed ? 1 : 0);
+	}
+	
+	/**
+	 * Set the name and bounds of row i of a compiled model in the GLPK problem
+	 * @param m the compiled model
+	 * @param i the (0-based) row index in m
+	 * @param row the (1-based) row number in the GLPK problem
+	 */
+	private void setRow(ModelMatrix m, int i, int row) {
+		if(useNames) {
+			GLPK.glp_set_row_name(prob, row, m.getRowName(i));
+			calls++;
+		}
+		setRowBounds(row, m.getSenses()[i], m.getRhs()[i]);
+	}
+	
+	/**
+	 * Set the bounds of a row in the GLPK problem
+	 * @param row the (1-based) row number
+	 * @param cmp the comparator of the row
+	 * @param b the right hand side of the row
+	 */
+	private void setRowBounds(int row, CMP cmp, double b) {
+		if(cmp == CMP.EQ)
+			GLPK.glp_set_row_bnds(prob, row, GLPKConstants.GLP_FX, b, b);
+		else if(cmp == CMP.LARGEREQ)
+			GLPK.glp_set_row_bnds(prob, row, GLPKConstants.GLP_LO, b, b);
 		else 
-			GLPK.glp_set_row_bnds(prob, i, GLPKConstants.GLP_UP, b, b);
-		debug("bound set");
-		Set<Variable> vars = new HashSet<Variable>(c.getLeft().getVariables());
-		vars.addAll(c.getRight().getVariables());
-		debug("union of variables");
-		
-		
-		debug("init arrays");
-
+			GLPK.glp_set_row_bnds(prob, row, GLPKConstants.GLP_UP, b, b);
+		calls++;
+	}
+	
+	/**
+	 * Set the coefficients of row i of a compiled model in the GLPK problem
+	 * @param m the compiled model
+	 * @param i the (0-based) row index in m
+	 * @param row the (1-based) row number in the GLPK problem
+	 */
+	private void setMatrixRow(ModelMatrix m, int i, int row) {
+		int[] start = m.getRowStarts();
+		int[] colIndex = m.getColumnIndices();
+		double[] values = m.getValues();
+		ensureBuffers(start[i+1] - start[i]);
 		int j = 1;
-		for(Variable v: vars) {
-			if(v.equals(Variable.CONST)) continue;
-			GLPK.intArray_setitem(ind, j, varMap.get(v));
-			GLPK.doubleArray_setitem(val, j, c.getLeft().get(v) - c.getRight().get(v));
+		for(int k=start[i]; k<start[i+1]; k++) {
+			GLPK.intArray_setitem(ind, j, colIndex[k]+1);
+			GLPK.doubleArray_setitem(val, j, values[k]);
 			j++;
 		}
-        GLPK.glp_set_mat_row(prob, i, j-1, ind, val);
-        debug("matrix build");
+		GLPK.glp_set_mat_row(prob, row, j-1, ind, val);
+		calls += 2*(j-1) + 1;
+	}
+	
+	/**
+	 * Make sure that the row buffers can hold a row of the given length
+	 * @param length the row length
+	 */
+	private void ensureBuffers(int length) {
+		if(ind != null && length < bufferSize) return;
+		if (ind != null) GLPK.delete_intArray(ind);
+		if (val != null) GLPK.delete_doubleArray(val);
+		bufferSize = Math.max(length+1, 2*bufferSize);
+		ind = GLPK.new_intArray(bufferSize);
+		val = GLPK.new_doubleArray(bufferSize);
+		calls += 4;
+	}
+	
+	/**
+	 * Get the GLPK column number of a variable
+	 * @param v the variable
+	 * @return the (1-based) column number of v
+	 * @throws SolverException when v is not a variable of the model
+	 */
+	private int column(Variable v) throws SolverException {
+		int index = registry.indexOf(v);
+		if(index < 0)
+			throw new SolverException("adding unknown variable " + v.getName());
+		return index + 1;
 	}
 
 	@Override
-	public void setObjectiveFunction() {
+	public void setObjectiveFunction() throws SolverException {
+		// the presolve depends on the objective
+		if(presolved != null) build(mip);
+		else setObjective();
+	}
+	
+	/**
+	 * Set the objective of the GLPK problem, from the objective of the model, or from the presolved model
+	 * @throws SolverException when the objective contains a variable that is not in the model
+	 */
+	private void setObjective() throws SolverException {
 		// Define objective
         GLPK.glp_set_obj_name(prob, "obj");
         if(minimize)
         	GLPK.glp_set_obj_dir(prob, GLPKConstants.GLP_MIN);
         else 
             GLPK.glp_set_obj_dir(prob, GLPKConstants.GLP_MAX);
+        calls += 2;
+        if(presolved != null) {
+        	double[] c = matrix.getObjective();
+        	GLPK.glp_set_obj_coef(prob, 0, matrix.getObjectiveConstant());
+        	for(int j=0; j<nVariables; j++)
+        		GLPK.glp_set_obj_coef(prob, j+1, c[j]);
+        	calls += nVariables + 1;
+        	return;
+        }
         LinExp obj = (LinExp) mip.getObjectiveFunction();
-        for(Variable v: obj.getVariables()) {
-        	if(v.equals(Variable.CONST))
-        		GLPK.glp_set_obj_coef(prob, 0, obj.get(v));
-        	else if (Math.abs(obj.get(v)) > 1e-4){
-        		GLPK.glp_set_obj_coef(prob, varMap.get(v), obj.get(v));
+        for(int k=0; k<obj.size(); k++) {
+        	Variable v = obj.getVariableAt(k);
+        	double c = obj.getCoefficientAt(k);
+        	if(v == Variable.CONST) {
+        		GLPK.glp_set_obj_coef(prob, 0, c);
+        		calls++;
+        	} else if (Math.abs(c) > 1e-4){
+        		GLPK.glp_set_obj_coef(prob, column(v), c);
+        		calls++;
         	}
         }
 	}
@@ -176,35 +431,128 @@ public class GLPKSolver implements IMIPSolver {
 		return result;
 	}
 
+	/**
+	 * Solve the model. With a separator, the search separates the LP solutions of its subproblems in its callback.
+	 * Models without integer columns are solved again until their solution violates no separated constraint.
+	 */
 	@Override
 	public double solve() throws SolverException {
+		if(!terminateReset) terminated = false;
+		terminateReset = false;
+		if(separator == null) return solveModel(null);
+		if(presolved != null) build(mip);
+		Separation s = new Separation(mip, separator);
+		separation = s;
+		if(terminated) s.stop();
+		try {
+			if(relaxed || !matrix.hasIntegers()) return s.solve(this, () -> solveModel(null));
+			return solveModel(s);
+		} finally {
+			separation = null;
+			s.addToModel();
+			debug(s.toString());
+		}
+	}
+
+	/**
+	 * Solve the model once, and set the solution in the variables
+	 * @param separation the separation of the search, or null
+	 * @return the objective value
+	 * @throws SolverException when the model is infeasible, or no solution was found
+	 */
+	private double solveModel(Separation separation) throws SolverException {
+		if(presolved != null && presolved.isInfeasible())
+			throw new InfeasibleException("Model is infeasible (presolve)");
+		long start = metrics == null ? 0 : System.nanoTime();
+		calls = 5;
 		GLPK.glp_term_out(1);
 		iocp.setMsg_lev(3);
 		iocp.setPresolve(GLPKConstants.GLP_ON);
-		redirectOutput();
+		// the rounding heuristic accepts integer solutions that were not separated
+		iocp.setSr_heur(separation == null ? GLPKConstants.GLP_ON : GLPKConstants.GLP_OFF);
+		int rows = GLPK.glp_get_num_rows(prob);
+		lpSolved = false;
+		Terminal terminal = redirectOutput();
 		double ret;
+		Callback callback = new Callback();
+		callback.setMeasureGap(metrics != null);
+		this.callback = callback;
+		if(terminated) callback.terminate();
+		SolveEvents events = listener == null ? null : new SolveEvents(this, listener, presolved);
 		try {
+			// the values of the incumbents are only known, and rows can only be added, in the search without the GLPK presolver.
+			// The duals of an LP are only known after the simplex method.
+			boolean lp = isLP();
+			boolean presolveOff = (warmStart || basis != null || events != null && events.needsValues() || separation != null || lp)
+					&& solveRoot();
+			lpSolved = lp && presolveOff;
+			if(presolveOff) {
+				iocp.setPresolve(GLPKConstants.GLP_OFF);
+				calls++;
+			}
+			if(events != null)
+				callback.setEvents(events, presolveOff ? nVariables : 0, minimize);
+			if(separation != null && presolveOff)
+				callback.setSeparation(separation, getIntegerColumns(), this::addLazyRows);
+			if(startPending || warmStart) {
+				double[] values = getStartValues();
+				// GLPK does not separate heuristic solutions
+				if(values != null && (separation == null || separation.separate(values, true) == null))
+					callback.setStart(values);
+			}
+			// the LP solve of glp_intopt cannot be terminated, so a terminated root solve ends the solve
+			if(terminated) throw new SolverException("Terminated without a solution");
+			GlpkCallback.addListener(callback);
 			ret = GLPK.glp_intopt(prob, iocp);
 		} catch (GlpkException e) {
 			throw new InfeasibleException();
 		} finally {
+			this.callback = null;
+			GlpkCallback.removeListener(callback);
+			callback.dispose();
+			removeRows(rows);
+			startPending = false;
+			mipStart = null;
+			basis = null;
 			GLPK.glp_term_out(0);
+			GlpkTerminal.removeListener(terminal);
 			closeOutput();
 		}
 
+		if(callback.error != null) throw callback.error;
 		int mipstatus = GLPK.glp_mip_status(prob);
+		if(events != null) {
+			boolean found = mipstatus == GLPK.GLP_OPT || mipstatus == GLPK.GLP_FEAS;
+			double obj = found ? GLPK.glp_mip_obj_val(prob) : Double.NaN;
+			events.progress(callback.nodes, obj, ret == 0 && mipstatus == GLPK.GLP_OPT ? obj : callback.bound, true);
+		}
+		if(metrics != null) {
+			calls += callback.calls + 3;
+			report(Phase.Optimize, start);
+			// the search is complete when glp_intopt returns 0, otherwise the last gap of the search is reported
+			metrics.progress(this, -1, callback.nodes, ret == 0 && mipstatus == GLPK.GLP_OPT ? 0 : callback.gap);
+			start = System.nanoTime();
+		}
 		// Retrieve solution
 		if (ret == 0 || mipstatus == GLPK.GLP_OPT || mipstatus == GLPK.GLP_FEAS) {
 			if (ret == GLPK.GLP_EMIPGAP) debug("GLP_EMIPGAP - solver stopped because minimum mip gap reached.");
 			if (ret == GLPK.GLP_ETMLIM) debug("GLP_ETMLIM - Time limit exceeded.");
 			if (mipstatus == GLPK.GLP_FEAS) debug("GLP_FEAS - (non-)optimality not yet proven.");
 			if (mipstatus == GLPK.GLP_OPT) debug("GLP_OPT - Optimal solution.");
-			for (Variable v : mip.getVars()) {
-				double val = GLPK.glp_mip_col_val(prob, varMap.get(v));
-				v.setSolution(val);
+			double[] x = new double[nVariables];
+			for (int j = 0; j < nVariables; j++)
+				x[j] = GLPK.glp_mip_col_val(prob, j+1);
+			if(presolved != null) x = presolved.postsolve(x);
+			mip.setSolution(x);
+			double obj = GLPK.glp_mip_obj_val(prob);
+			if(metrics != null) {
+				calls = nVariables + 1;
+				report(Phase.Extract, start);
+				start = System.nanoTime();
 			}
 			mip.writeSolution();
-			return GLPK.glp_mip_obj_val(prob);
+			if(metrics != null) metrics.time(this, Phase.WriteSolution, System.nanoTime() - start);
+			return obj;
 		} else {
 			debug("The problem could not be solved.");
 			if (ret == GLPK.GLP_EBOUND)
@@ -225,6 +573,205 @@ public class GLPKSolver implements IMIPSolver {
 		}
 	}
 
+	/**
+	 * @return for every column, whether it is integer in the problem
+	 */
+	private boolean[] getIntegerColumns() {
+		boolean[] integer = new boolean[nVariables];
+		for(int j=0; j<nVariables; j++) {
+			VarType type = registry.get(j).getType();
+			integer[j] = !relaxed && (type == VarType.Binary || type == VarType.Integer);
+		}
+		return integer;
+	}
+
+	/**
+	 * @return true if the problem has no integer columns, or they are relaxed
+	 */
+	private boolean isLP() {
+		calls++;
+		return relaxed || GLPK.glp_get_num_int(prob) == 0;
+	}
+
+	/**
+	 * Add the rows of separated lazy constraints to the problem, during the search
+	 * @param m the compiled constraints
+	 */
+	private void addLazyRows(ModelMatrix m) {
+		int first = GLPK.glp_add_rows(prob, m.getRows());
+		calls++;
+		for(int i=0; i<m.getRows(); i++) {
+			setRow(m, i, first+i);
+			setMatrixRow(m, i, first+i);
+		}
+	}
+
+	/**
+	 * Remove the rows that were added during a search, if GLPK did not remove them.
+	 * The lazy constraints are added to the model after the solve, and to the problem on the next update.
+	 * @param rows the number of rows of the problem before the search
+	 */
+	private void removeRows(int rows) {
+		int n = GLPK.glp_get_num_rows(prob) - rows;
+		calls++;
+		if(n <= 0) return;
+		SWIGTYPE_p_int num = GLPK.new_intArray(n+1);
+		for(int k=1; k<=n; k++)
+			GLPK.intArray_setitem(num, k, rows+k);
+		GLPK.glp_del_rows(prob, n, num);
+		GLPK.delete_intArray(num);
+		calls += n + 3;
+	}
+
+	/**
+	 * Solve the LP relaxation with the simplex method, starting from the given basis, or else from the basis of the last solve.
+	 * After this, the branch-and-cut search can start from the optimal basis without presolve.
+	 * @return true if the LP relaxation was solved to optimality
+	 */
+	private boolean solveRoot() {
+		Basis b = basis != null ? basis : lastBasis;
+		if(b != null && b.fits(nVariables, GLPK.glp_get_num_rows(prob)))
+			setBasisStatus(b);
+		glp_smcp smcp = new glp_smcp();
+		GLPK.glp_init_smcp(smcp);
+		smcp.setMsg_lev(GLPKConstants.GLP_MSG_OFF);
+		int ret = simplex(smcp);
+		calls += 5;
+		if(ret == GLPKConstants.GLP_EBADB || ret == GLPKConstants.GLP_ESING || ret == GLPKConstants.GLP_ECOND) {
+			// the basis became invalid, for example because basic rows were removed
+			debug("invalid starting basis, use an advanced basis instead");
+			GLPK.glp_adv_basis(prob, 0);
+			ret = simplex(smcp);
+			calls++;
+		}
+		if(ret != 0 || GLPK.glp_get_status(prob) != GLPKConstants.GLP_OPT) return false;
+		if(warmStart) lastBasis = getBasis();
+		return true;
+	}
+	
+	/**
+	 * Run the simplex method in slices of SIMPLEX_SLICE milliseconds within the time limit of the model. 
+	 * Every slice continues from the basis of the previous one, and terminate stops the simplex method between two slices,
+	 * because GLPK has no callback in glp_simplex.
+	 * @param smcp the simplex parameters
+	 * @return the return code of the last glp_simplex call, or GLP_ESTOP if the solve was terminated
+	 */
+	private int simplex(glp_smcp smcp) {
+		long limit = iocp.getTm_lim();
+		long start = System.currentTimeMillis();
+		while(true) {
+			if(terminated) return GLPKConstants.GLP_ESTOP;
+			long remaining = limit - (System.currentTimeMillis() - start);
+			smcp.setTm_lim((int) Math.max(1, Math.min(SIMPLEX_SLICE, remaining)));
+			int ret = GLPK.glp_simplex(prob, smcp);
+			calls += 2;
+			if(ret != GLPKConstants.GLP_ETMLIM || remaining <= SIMPLEX_SLICE) return ret;
+		}
+	}
+
+	/**
+	 * Get the MIP start for GLPK. glp_ios_heur_sol only checks that the integer columns are integral and that
+	 * the objective improves, so a start without a value for every column, or that violates a bound or a row
+	 * of the model, is not used
+	 * @return the start value of every column, or null if there is no complete and feasible start
+	 * @throws SolverException when the changed model cannot be compiled
+	 */
+	private double[] getStartValues() throws SolverException {
+		double[] start = mip.getStartValues(startPending ? mipStart : null);
+		if(presolved != null) start = presolved.reduce(start);
+		// update does not compile the model again, so the matrix of the last build can miss changed rows and bounds
+		if(matrixStale) {
+			matrix = ModelMatrix.compile(mip);
+			matrixStale = false;
+		}
+		if(!matrix.isFeasible(start, START_TOL)) return null;
+		// glp_ios_heur_sol only accepts integer columns with an exactly integral value
+		for(int j=0; j<start.length; j++)
+			if(matrix.isInteger(j)) start[j] = Math.rint(start[j]);
+		return start;
+	}
+	
+	/**
+	 * GLPK has no bulk call for the duals, so this takes one call per row
+	 */
+	@Override
+	public double[] getDuals() {
+		if(!lpSolved || presolved != null) return null;
+		double[] duals = new double[GLPK.glp_get_num_rows(prob)];
+		for(int i=0; i<duals.length; i++)
+			duals[i] = GLPK.glp_get_row_dual(prob, i+1);
+		return duals;
+	}
+	
+	@Override
+	public void setWarmStart(boolean value) {
+		warmStart = value;
+		if(!value) lastBasis = null;
+	}
+	
+	@Override
+	public void setMipStart(Map<Variable, Double> start) {
+		mipStart = start;
+		startPending = true;
+	}
+	
+	@Override
+	public Basis getBasis() {
+		if(prob == null) return null;
+		Basis.Status[] columns = new Basis.Status[nVariables];
+		Basis.Status[] rows = new Basis.Status[GLPK.glp_get_num_rows(prob)];
+		for(int j=0; j<columns.length; j++)
+			columns[j] = toStatus(GLPK.glp_get_col_stat(prob, j+1));
+		for(int i=0; i<rows.length; i++)
+			rows[i] = toStatus(GLPK.glp_get_row_stat(prob, i+1));
+		return new Basis(columns, rows);
+	}
+	
+	@Override
+	public void setBasis(Basis basis) {
+		this.basis = basis;
+	}
+	
+	/**
+	 * Set the basis status of all columns and rows in the GLPK problem
+	 * @param b the basis
+	 */
+	private void setBasisStatus(Basis b) {
+		Basis.Status[] columns = b.getColumnStatus();
+		Basis.Status[] rows = b.getRowStatus();
+		for(int j=0; j<columns.length; j++)
+			GLPK.glp_set_col_stat(prob, j+1, toGLPKStatus(columns[j]));
+		for(int i=0; i<rows.length; i++)
+			GLPK.glp_set_row_stat(prob, i+1, toGLPKStatus(rows[i]));
+		calls += columns.length + rows.length;
+	}
+	
+	/**
+	 * Convert a GLPK status to a basis status
+	 * @param stat the GLPK status
+	 * @return the basis status
+	 */
+	private static Basis.Status toStatus(int stat) {
+		if(stat == GLPKConstants.GLP_BS) return Basis.Status.Basic;
+		if(stat == GLPKConstants.GLP_NU) return Basis.Status.AtUpper;
+		if(stat == GLPKConstants.GLP_NF) return Basis.Status.Free;
+		return Basis.Status.AtLower; // GLP_NL and GLP_NS (fixed)
+	}
+	
+	/**
+	 * Convert a basis status to a GLPK status. GLPK replaces a non-basic status that does not fit the bounds
+	 * @param status the basis status
+	 * @return the GLPK status
+	 */
+	private static int toGLPKStatus(Basis.Status status) {
+		switch(status) {
+		case Basic: return GLPKConstants.GLP_BS;
+		case AtUpper: return GLPKConstants.GLP_NU;
+		case Free: return GLPKConstants.GLP_NF;
+		default: return GLPKConstants.GLP_NL;
+		}
+	}
+
 	private void closeOutput() throws SolverException {
 		if (outputStream != null) {
 			try {
@@ -236,27 +783,41 @@ public class GLPKSolver implements IMIPSolver {
 		}
 	}
 
-	private void redirectOutput() {
-		GlpkTerminal.removeAllListeners();
-		GlpkTerminal.addListener(new GlpkTerminalListener() {
-			@Override
-			public boolean output(String str) {
-				try {
-					if (outputStream == null) {
-						File file = new File(logFile);
-						if (!file.exists()) file.createNewFile();
-						outputStream = new FileOutputStream(file, true);
-					}
-					if (outputStream != null) {
-						outputStream.write(str.getBytes());
-						outputStream.flush();
-					}
-				} catch (Exception e) {
-					throw new RuntimeException("Error in writing to GLPK log file: " + e.getLocalizedMessage(), e);
+	/**
+	 * Write the GLPK output of the current thread to the log file of this solver
+	 * @return the terminal listener, which should be removed after solving
+	 */
+	private Terminal redirectOutput() {
+		Terminal terminal = new Terminal();
+		GlpkTerminal.addListener(terminal);
+		return terminal;
+	}
+	
+	/**
+	 * Terminal listener that writes the output of the solving thread to the log file.
+	 * GLPK terminal listeners are global, so output of other threads is ignored (and left to their own listeners)
+	 */
+	private class Terminal implements GlpkTerminalListener {
+		final Thread thread = Thread.currentThread();
+		
+		@Override
+		public boolean output(String str) {
+			if(Thread.currentThread() != thread) return false;
+			try {
+				if (outputStream == null) {
+					File file = new File(logFile);
+					if (!file.exists()) file.createNewFile();
+					outputStream = new FileOutputStream(file, true);
 				}
-				return DEBUG;
+				if (outputStream != null) {
+					outputStream.write(str.getBytes());
+					outputStream.flush();
+				}
+			} catch (Exception e) {
+				throw new RuntimeException("Error in writing to GLPK log file: " + e.getLocalizedMessage(), e);
 			}
-		});
+			return debug;
+		}
 	}
 
 	@Override
@@ -264,15 +825,83 @@ public class GLPKSolver implements IMIPSolver {
 		GLPK.glp_write_lp(prob, null, file);
 	}
 
+	@Override
+	public void reset() {
+		iocp = new glp_iocp();
+		GLPK.glp_init_iocp(iocp);
+		minimize = true;
+		fileOutput = true;
+		relaxed = false;
+		setWarmStart(false);
+		mipStart = null;
+		startPending = false;
+		basis = null;
+		presolve = false;
+		useNames = true;
+		separator = null;
+		listener = null;
+		metrics = null;
+	}
+
+	@Override
+	public void resetTerminate() {
+		terminated = false;
+		terminateReset = true;
+	}
+
+	/**
+	 * Terminate the solve from another thread. The branch-and-cut search stops at its next callback, and the simplex method
+	 * of an LP or of the root relaxation stops after its current time slice (see SIMPLEX_SLICE).
+	 * The root relaxation that glp_intopt solves with the GLPK presolver has no callback, and runs to completion.
+	 * The solve then returns the incumbent, or throws a SolverException if there is none.
+	 */
+	@Override
+	public void terminate() {
+		terminated = true;
+		Separation s = separation;
+		if(s != null) s.stop();
+		Callback c = callback;
+		if(c != null) c.terminate();
+	}
+
 	@Override
 	public void dispose() {
 		// free memory
 		if (prob != null) GLPK.glp_delete_prob(prob);
 		if (ind != null) GLPK.delete_intArray(ind);
 		if (val != null) GLPK.delete_doubleArray(val);
+		calls += (prob != null ? 1 : 0) + (ind != null ? 1 : 0) + (val != null ? 1 : 0);
+		prob = null;
+		ind = null;
+		val = null;
+		bufferSize = 0;
         debug("clear memory");
 	}
 
+	@Override
+	public void setMetrics(SolveMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public SolveMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the listener of the solve events, which is called from the search callback of GLPK
+	 * @param listener the listener, or null to remove it
+	 */
+	@Override
+	public void setSolveListener(SolveListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void setPresolve(boolean value) {
+		presolve = value;
+	}
+
 	@Override
 	public void setSolveAsLP(boolean value) {
 		relaxed = value;
@@ -288,6 +917,26 @@ public class GLPKSolver implements IMIPSolver {
 		fileOutput = value;
 	}
 
+	/**
+	 * Set whether the rows and columns get the names of the constraints and variables (default).
+	 * Skipping the names saves a native call per row and column. Saved models then get generic names.
+	 * @param value true to set the names, false to skip them
+	 */
+	@Override
+	public void setUseNames(boolean value) {
+		useNames = value;
+	}
+
+	/**
+	 * Set the separator. The search runs without the GLPK presolver and without its rounding heuristic,
+	 * and the model is not presolved by the core.
+	 * @param separator the separator, or null to remove it
+	 */
+	@Override
+	public void setSeparator(Separator separator) {
+		this.separator = separator;
+	}
+
 	@Override
 	public void setLogFile(String mipLogFile) throws SolverException {
 		logFile = mipLogFile;
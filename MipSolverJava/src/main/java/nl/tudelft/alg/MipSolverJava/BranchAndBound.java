@@ -0,0 +1,231 @@
+package nl.tudelft.alg.MipSolverJava;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * A depth-first branch and bound on the integer columns of an LP, using the dual simplex.
+ * A child node starts from the final basis of its parent, so after a branching bound change
+ * the dual simplex only needs a few iterations.
+ */
+class BranchAndBound {
+	static final double INTEGER_TOL = 1e-6;
+
+	/**
+	 * A node of the search tree: the bounds of the structural columns, the basis of the parent and the parent's LP bound
+	 */
+	static class Node {
+		final double[] lo, up;
+		final int[] basis;
+		final double bound;
+
+		Node(double[] lo, double[] up, int[] basis, double bound) {
+			this.lo = lo;
+			this.up = up;
+			this.basis = basis;
+			this.bound = bound;
+		}
+	}
+
+	final LPModel lp;
+	final DualSimplex simplex;
+	final double mipGap;
+	final int n;
+	double[] incumbent;
+	int[] rootBasis;
+	double incumbentObj = Double.POSITIVE_INFINITY;
+	double bestBound = Double.NEGATIVE_INFINITY;
+	long nodes;
+	boolean timeLimitReached;
+	Consumer<double[]> onIncumbent;
+
+	/**
+	 * @param lp the LP with integer columns
+	 * @param simplex the dual simplex of the LP, which starts from its current basis
+	 * @param mipGap the relative gap at which nodes are pruned
+	 */
+	BranchAndBound(LPModel lp, DualSimplex simplex, double mipGap) {
+		this.lp = lp;
+		this.simplex = simplex;
+		this.mipGap = mipGap;
+		this.n = lp.n;
+	}
+
+	/**
+	 * Set the listener of the new incumbents, which gets the values of the structural columns of every incumbent.
+	 * In a parallel search it is called from the worker threads.
+	 * @param onIncumbent the listener, or null
+	 */
+	void setIncumbentListener(Consumer<double[]> onIncumbent) {
+		this.onIncumbent = onIncumbent;
+	}
+
+	/**
+	 * Use a solution as the first incumbent, if it is feasible
+	 * @param x the values of the structural columns
+	 * @return true if x is feasible and became the incumbent
+	 */
+	boolean setStart(double[] x) {
+		if(x == null) return false;
+		for(int j=0; j<n; j++)
+			if(Double.isNaN(x[j])) return false;
+		if(!lp.isFeasible(x, DualSimplex.PRIMAL_TOL)) return false;
+		double obj = 0;
+		for(int j=0; j<n; j++)
+			obj += lp.cost[j] * x[j];
+		incumbent = Arrays.copyOf(x, n);
+		incumbentObj = obj;
+		if(onIncumbent != null) onIncumbent.accept(incumbent);
+		return true;
+	}
+
+	/**
+	 * @param bound the LP bound of a node (minimization form)
+	 * @return true if the node cannot improve the incumbent by more than the mip gap
+	 */
+	boolean canPrune(double bound) {
+		if(incumbent == null) return false;
+		return bound >= incumbentObj - Math.max(1e-9, mipGap * Math.abs(incumbentObj));
+	}
+
+	/**
+	 * Run the branch and bound
+	 * @return the status of the root LP, or Optimal if the search finished or stopped at the time limit
+	 */
+	DualSimplex.Status solve() {
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(new Node(Arrays.copyOf(simplex.lo, n), Arrays.copyOf(simplex.up, n), null, Double.NEGATIVE_INFINITY));
+		boolean root = true;
+		int[] current = null; // the basis of the last solved node, of which the simplex still has the factorization
+		while(!stack.isEmpty()) {
+			Node node = stack.pop();
+			if(canPrune(node.bound)) continue;
+			for(int j=0; j<n; j++)
+				simplex.setBounds(j, node.lo[j], node.up[j]);
+			if(node.basis != null && node.basis != current) simplex.setBasis(node.basis);
+			DualSimplex.Status status = simplex.solve();
+			nodes++;
+			if(status == DualSimplex.Status.TimeLimit || status == DualSimplex.Status.Stopped) {
+				timeLimitReached = true;
+				stack.push(node);
+				break;
+			}
+			if(root && status != DualSimplex.Status.Optimal) return status;
+			if(root) rootBasis = simplex.getBasis();
+			root = false;
+			if(status != DualSimplex.Status.Optimal) continue;
+			double obj = simplex.getMinObjective();
+			if(canPrune(obj)) continue;
+			int branch = selectBranch(simplex);
+			if(branch < 0) {
+				incumbent = getSolution(simplex);
+				incumbentObj = obj;
+				if(onIncumbent != null) onIncumbent.accept(incumbent);
+				continue;
+			}
+			Node[] children = branch(node, simplex, branch, obj);
+			current = children[0].basis;
+			stack.push(children[1]);
+			stack.push(children[0]);
+		}
+		bestBound = incumbentObj;
+		for(Node node: stack)
+			bestBound = Math.min(bestBound, node.bound);
+		return DualSimplex.Status.Optimal;
+	}
+
+	/**
+	 * Select the most fractional integer column of the LP solution
+	 * @param simplex the simplex with an optimal solution
+	 * @return the column to branch on, or -1 if the solution is integer
+	 */
+	int selectBranch(DualSimplex simplex) {
+		int branch = -1;
+		double maxFrac = INTEGER_TOL;
+		for(int j=0; j<n; j++) {
+			if(!lp.integer[j]) continue;
+			double v = simplex.getValue(j);
+			double frac = Math.abs(v - Math.rint(v));
+			if(frac > maxFrac) {
+				maxFrac = frac;
+				branch = j;
+			}
+		}
+		return branch;
+	}
+
+	/**
+	 * @param simplex the simplex with an optimal, integer solution
+	 * @return the values of the structural columns, with the integer columns rounded
+	 */
+	double[] getSolution(DualSimplex simplex) {
+		double[] x = new double[n];
+		for(int j=0; j<n; j++)
+			x[j] = lp.integer[j] ? Math.rint(simplex.getValue(j)) : simplex.getValue(j);
+		return x;
+	}
+
+	/**
+	 * Create the two children of a node, which start from the final basis of the node
+	 * @param node the node
+	 * @param simplex the simplex with the optimal solution of the node
+	 * @param branch the column to branch on
+	 * @param obj the LP bound of the node
+	 * @return the child in the rounding direction of the column, which should be explored first, and the other child
+	 */
+	Node[] branch(Node node, DualSimplex simplex, int branch, double obj) {
+		double v = simplex.getValue(branch);
+		int[] basis = simplex.getBasis();
+		Node down = new Node(Arrays.copyOf(node.lo, n), Arrays.copyOf(node.up, n), basis, obj);
+		down.up[branch] = Math.floor(v);
+		Node up = new Node(Arrays.copyOf(node.lo, n), Arrays.copyOf(node.up, n), basis, obj);
+		up.lo[branch] = Math.ceil(v);
+		return v - Math.floor(v) >= 0.5 ? new Node[] {up, down} : new Node[] {down, up};
+	}
+
+	/**
+	 * @return the best integer solution found, or null if none was found
+	 */
+	double[] getIncumbent() {
+		return incumbent;
+	}
+
+	/**
+	 * @return the optimal basis of the root LP, or null if the root was not solved
+	 */
+	int[] getRootBasis() {
+		return rootBasis;
+	}
+
+	/**
+	 * @return the relative gap between the incumbent and the best bound of the open nodes
+	 */
+	double getGap() {
+		if(incumbent == null) return Double.POSITIVE_INFINITY;
+		if(bestBound >= incumbentObj) return 0;
+		return (incumbentObj - bestBound) / Math.max(1e-10, Math.abs(incumbentObj));
+	}
+
+	/**
+	 * @return the number of solved nodes
+	 */
+	long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Stop the search from another thread. The search stops like at the time limit, and keeps its incumbent
+	 */
+	void stop() {
+		simplex.stop = true;
+	}
+
+	/**
+	 * @return the number of simplex iterations of the search with other simplex instances than the one of the search
+	 */
+	long getWorkerIterations() {
+		return 0;
+	}
+}
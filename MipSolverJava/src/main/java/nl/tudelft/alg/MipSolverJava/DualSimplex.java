@@ -0,0 +1,529 @@
+package nl.tudelft.alg.MipSolverJava;
+
+import java.util.Arrays;
+
+/**
+ * A bounded dual simplex method on an LPModel, with dual steepest edge pricing and a Harris ratio test.
+ * The simplex keeps its own bounds, basis and factorization, so the bounds can be changed (for example by branching)
+ * and the next solve starts from the last basis.
+ * If the starting basis is not dual feasible, a dual feasible basis is found first by solving an auxiliary problem
+ * in which every variable gets a small box (phase 1). An optimal basis of that problem is dual feasible for the LP
+ * if the LP has a dual feasible basis at all.
+ */
+class DualSimplex {
+	enum Status {
+		Optimal,
+		Infeasible,
+		Unbounded,
+		IterationLimit,
+		TimeLimit,
+		Stopped,
+		NumericalFailure
+	}
+
+	static final int BASIC = 0, AT_LOWER = 1, AT_UPPER = 2, FREE = 3;
+	static final double PRIMAL_TOL = 1e-7, DUAL_TOL = 1e-7, PIVOT_TOL = 1e-7;
+	static final int REFACTOR_FREQUENCY = 100;
+
+	final LPModel lp;
+	final int n, m, N;
+	final double[] lo, up;
+	final int[] status;
+	final int[] head;
+	final double[] x, d, weight;
+	final LUFactor lu;
+	double[] cost;
+	boolean factorized, primalValid, dualValid;
+	int iterations;
+	int maxIterations = Integer.MAX_VALUE;
+	long deadline = Long.MAX_VALUE;
+	volatile boolean stop;
+	// Work arrays
+	final double[] rowWork, posWork, alphaRow, alphaCol, tau;
+
+	/**
+	 * Create a dual simplex for an LP, starting from the slack basis
+	 * @param lp the LP
+	 */
+	DualSimplex(LPModel lp) {
+		this.lp = lp;
+		this.n = lp.n;
+		this.m = lp.m;
+		this.N = n + m;
+		lo = Arrays.copyOf(lp.lo, N);
+		up = Arrays.copyOf(lp.up, N);
+		status = new int[N];
+		head = new int[m];
+		x = new double[N];
+		d = new double[N];
+		weight = new double[m];
+		lu = new LUFactor(lp);
+		rowWork = new double[m];
+		posWork = new double[m];
+		alphaRow = new double[N];
+		alphaCol = new double[m];
+		tau = new double[m];
+		cost = lp.cost;
+		setSlackBasis();
+	}
+
+	/**
+	 * Create a copy of a dual simplex, with the same bounds and basis, that can be solved independently
+	 * @param other the simplex to copy
+	 */
+	DualSimplex(DualSimplex other) {
+		this(other.lp);
+		System.arraycopy(other.lo, 0, lo, 0, N);
+		System.arraycopy(other.up, 0, up, 0, N);
+		setBasis(other.status);
+		System.arraycopy(other.weight, 0, weight, 0, m);
+		maxIterations = other.maxIterations;
+		deadline = other.deadline;
+	}
+
+	/**
+	 * Start from the basis of all logical variables
+	 */
+	void setSlackBasis() {
+		for(int j=0; j<n; j++)
+			status[j] = AT_LOWER;
+		for(int i=0; i<m; i++) {
+			status[n+i] = BASIC;
+			head[i] = n+i;
+		}
+		Arrays.fill(weight, 1);
+		factorized = false;
+		primalValid = false;
+		dualValid = false;
+	}
+
+	/**
+	 * Start from a given basis. If the basis does not have a basic variable for every row, the slack basis is used instead.
+	 * The status of nonbasic variables is corrected for dual feasibility at the start of the solve.
+	 * @param basis the status of every variable (structural and logical)
+	 * @return true if the basis was used
+	 */
+	boolean setBasis(int[] basis) {
+		int count = 0;
+		for(int j=0; j<N; j++)
+			if(basis[j] == BASIC) count++;
+		if(count != m) {
+			setSlackBasis();
+			return false;
+		}
+		int pos = 0;
+		for(int j=0; j<N; j++) {
+			status[j] = basis[j];
+			if(basis[j] == BASIC) head[pos++] = j;
+		}
+		Arrays.fill(weight, 1);
+		factorized = false;
+		primalValid = false;
+		dualValid = false;
+		return true;
+	}
+
+	/**
+	 * @return the status of every variable
+	 */
+	int[] getBasis() {
+		return Arrays.copyOf(status, N);
+	}
+
+	/**
+	 * Change the bounds of a variable. The basis stays valid, so the next solve continues from it.
+	 * @param j the variable
+	 * @param lower the new lower bound
+	 * @param upper the new upper bound
+	 */
+	void setBounds(int j, double lower, double upper) {
+		lo[j] = lower;
+		up[j] = upper;
+		if(status[j] != BASIC) primalValid = false;
+	}
+
+	/**
+	 * Restore the bounds of all variables from the LP
+	 */
+	void resetBounds() {
+		System.arraycopy(lp.lo, 0, lo, 0, N);
+		System.arraycopy(lp.up, 0, up, 0, N);
+		primalValid = false;
+	}
+
+	/**
+	 * @param j a variable
+	 * @return the value of variable j in the current solution
+	 */
+	double getValue(int j) {
+		return x[j];
+	}
+
+	/**
+	 * Get the dual values of the rows in the current basis: the change of the minimized objective per unit increase
+	 * of the right hand side of every row, which is the reduced cost of its logical variable
+	 * @return the dual value of every row
+	 */
+	double[] getRowDuals() {
+		if(!factorized) refactor();
+		for(int i=0; i<m; i++)
+			posWork[i] = cost[head[i]];
+		double[] y = new double[m];
+		lu.btran(posWork, y);
+		return y;
+	}
+
+	/**
+	 * @return the objective value of the current solution, in the direction of the original model
+	 */
+	double getObjective() {
+		double obj = 0;
+		for(int j=0; j<n; j++)
+			obj += lp.cost[j] * x[j];
+		return lp.objSign * obj + lp.objConstant;
+	}
+
+	/**
+	 * @return the objective value of the current solution as minimized by the simplex (without constant)
+	 */
+	double getMinObjective() {
+		double obj = 0;
+		for(int j=0; j<n; j++)
+			obj += lp.cost[j] * x[j];
+		return obj;
+	}
+
+	/**
+	 * @return the number of simplex iterations so far
+	 */
+	int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Set the deadline of the solve
+	 * @param deadline the deadline as System.nanoTime() value
+	 */
+	void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	/**
+	 * The value of a nonbasic variable, given its status
+	 */
+	private double nonbasicValue(int j) {
+		switch(status[j]) {
+		case AT_LOWER: return lo[j];
+		case AT_UPPER: return up[j];
+		default: return 0;
+		}
+	}
+
+	/**
+	 * Factorize the basis. Dependent columns are replaced by logicals, and become nonbasic.
+	 */
+	private void refactor() {
+		int[] replaced = lu.factorize(head);
+		for(int j: replaced)
+			status[j] = AT_LOWER;
+		for(int i=0; i<m; i++)
+			status[head[i]] = BASIC;
+		if(replaced.length > 0) Arrays.fill(weight, 1);
+		factorized = true;
+		primalValid = false;
+		dualValid = false;
+	}
+
+	/**
+	 * Compute the values of the basic variables from the nonbasic ones: x_B = -B^-1 N x_N
+	 */
+	private void computePrimal() {
+		Arrays.fill(rowWork, 0);
+		for(int j=0; j<N; j++) {
+			if(status[j] == BASIC) continue;
+			double v = nonbasicValue(j);
+			x[j] = v;
+			if(v == 0) continue;
+			if(j < n) {
+				for(int t=lp.colStart[j]; t<lp.colStart[j+1]; t++)
+					rowWork[lp.rowIndex[t]] -= lp.colValues[t] * v;
+			} else rowWork[j-n] += v;
+		}
+		lu.ftran(rowWork, posWork);
+		for(int i=0; i<m; i++)
+			x[head[i]] = posWork[i];
+		primalValid = true;
+	}
+
+	/**
+	 * Compute the reduced costs: d = c - A^T y with B^T y = c_B
+	 */
+	private void computeDual() {
+		for(int i=0; i<m; i++)
+			posWork[i] = cost[head[i]];
+		lu.btran(posWork, rowWork);
+		for(int j=0; j<n; j++) {
+			if(status[j] == BASIC) {
+				d[j] = 0;
+				continue;
+			}
+			double v = cost[j];
+			for(int t=lp.colStart[j]; t<lp.colStart[j+1]; t++)
+				v -= lp.colValues[t] * rowWork[lp.rowIndex[t]];
+			d[j] = v;
+		}
+		for(int i=0; i<m; i++)
+			d[n+i] = status[n+i] == BASIC ? 0 : rowWork[i];
+		dualValid = true;
+	}
+
+	/**
+	 * @return true if every nonbasic variable with a nonzero reduced cost has a finite bound on the side where it is dual feasible
+	 */
+	private boolean isDualFeasible() {
+		for(int j=0; j<N; j++) {
+			if(status[j] == BASIC) continue;
+			if(d[j] > DUAL_TOL && lo[j] == Double.NEGATIVE_INFINITY) return false;
+			if(d[j] < -DUAL_TOL && up[j] == Double.POSITIVE_INFINITY) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Put every nonbasic variable at the bound where its reduced cost is dual feasible.
+	 * Variables without reduced cost go to a finite bound, or are free at zero.
+	 */
+	private void makeDualFeasible() {
+		for(int j=0; j<N; j++) {
+			if(status[j] == BASIC) continue;
+			boolean hasLower = lo[j] != Double.NEGATIVE_INFINITY, hasUpper = up[j] != Double.POSITIVE_INFINITY;
+			int s;
+			if(hasLower && hasUpper) {
+				if(lo[j] == up[j] || d[j] > DUAL_TOL) s = AT_LOWER;
+				else if(d[j] < -DUAL_TOL) s = AT_UPPER;
+				else s = status[j] == AT_UPPER ? AT_UPPER : AT_LOWER;
+			} else if(hasLower) s = AT_LOWER;
+			else if(hasUpper) s = AT_UPPER;
+			else s = FREE;
+			if(s != status[j]) {
+				status[j] = s;
+				primalValid = false;
+			}
+		}
+	}
+
+	/**
+	 * Solve the LP from the current basis
+	 * @return the status of the solve
+	 */
+	Status solve() {
+		if(!factorized) refactor();
+		if(!dualValid) computeDual();
+		if(!isDualFeasible()) {
+			Status status = phase1();
+			if(status != Status.Optimal) return status;
+			if(!isDualFeasible()) return solveDualInfeasible();
+		}
+		makeDualFeasible();
+		if(!primalValid) computePrimal();
+		return iterate();
+	}
+
+	/**
+	 * Find a dual feasible basis by solving the auxiliary problem in which free variables are boxed in [-1, 1],
+	 * variables with only a lower (upper) bound in [0, 1] ([-1, 0]), and variables with two bounds are fixed at zero.
+	 * Its optimal objective is minus the total dual infeasibility of the basis (all rows have a zero right hand side),
+	 * so its optimal basis is dual feasible for the LP if the LP has a dual feasible basis.
+	 * @return the status of the auxiliary solve
+	 */
+	private Status phase1() {
+		double[] lower = Arrays.copyOf(lo, N), upper = Arrays.copyOf(up, N);
+		for(int j=0; j<N; j++) {
+			boolean hasLower = lower[j] != Double.NEGATIVE_INFINITY, hasUpper = upper[j] != Double.POSITIVE_INFINITY;
+			lo[j] = hasLower ? 0 : -1;
+			up[j] = hasUpper ? 0 : 1;
+		}
+		makeDualFeasible();
+		computePrimal();
+		Status status = iterate();
+		System.arraycopy(lower, 0, lo, 0, N);
+		System.arraycopy(upper, 0, up, 0, N);
+		primalValid = false;
+		return status;
+	}
+
+	/**
+	 * The LP has no dual feasible basis, so it is either unbounded or infeasible.
+	 * Find out which by solving it with a zero objective: then it is unbounded if it is feasible.
+	 * @return Unbounded or Infeasible, or the status of the feasibility solve if that did not finish
+	 */
+	private Status solveDualInfeasible() {
+		cost = new double[N];
+		computeDual();
+		makeDualFeasible();
+		computePrimal();
+		Status status = iterate();
+		cost = lp.cost;
+		dualValid = false;
+		if(status == Status.Optimal) return Status.Unbounded;
+		return status;
+	}
+
+	/**
+	 * Run dual simplex iterations from a dual feasible basis until the basis is primal feasible
+	 * @return the status of the solve
+	 */
+	private Status iterate() {
+		while(true) {
+			if(stop) return Status.Stopped;
+			if(iterations >= maxIterations) return Status.IterationLimit;
+			if((iterations & 63) == 0 && System.nanoTime() > deadline) return Status.TimeLimit;
+			if(lu.getUpdates() >= REFACTOR_FREQUENCY) recompute();
+			// Pricing: the basic variable with the largest weighted infeasibility leaves
+			int r = -1;
+			double best = 0;
+			for(int i=0; i<m; i++) {
+				int j = head[i];
+				double infeas = x[j] < lo[j] - PRIMAL_TOL ? lo[j] - x[j] : x[j] > up[j] + PRIMAL_TOL ? x[j] - up[j] : 0;
+				if(infeas == 0) continue;
+				double score = infeas * infeas / weight[i];
+				if(score > best) {
+					best = score;
+					r = i;
+				}
+			}
+			if(r < 0) return Status.Optimal;
+			int p = head[r];
+			boolean toLower = x[p] < lo[p];
+			double s = toLower ? 1 : -1;
+			// BTRAN: rho = e_r^T B^-1, and the pivot row alpha_r = rho^T A
+			Arrays.fill(posWork, 0);
+			posWork[r] = 1;
+			lu.btran(posWork, rowWork);
+			computePivotRow(rowWork);
+			// Ratio test
+			int q = ratioTest(s);
+			if(q < 0) {
+				// The dual is unbounded, unless the infeasibility is caused by an inaccurate factorization
+				if(lu.getUpdates() == 0) return Status.Infeasible;
+				recompute();
+				continue;
+			}
+			// FTRAN: the column of the entering variable
+			Arrays.fill(tau, 0);
+			if(q < n) {
+				for(int t=lp.colStart[q]; t<lp.colStart[q+1]; t++)
+					tau[lp.rowIndex[t]] = lp.colValues[t];
+			} else tau[q-n] = -1;
+			lu.ftran(tau, alphaCol);
+			double pivot = alphaCol[r];
+			if(Math.abs(pivot - alphaRow[q]) > 1e-6 * (1 + Math.abs(pivot)) || Math.abs(pivot) < PIVOT_TOL) {
+				// The factorization lost accuracy: refactor and try again
+				if(lu.getUpdates() == 0) return Status.NumericalFailure;
+				recompute();
+				continue;
+			}
+			// Dual update
+			double theta = d[q] / (-s * alphaRow[q]);
+			if(theta < 0) theta = 0;
+			for(int j=0; j<N; j++) {
+				if(status[j] != BASIC && alphaRow[j] != 0)
+					d[j] += theta * s * alphaRow[j];
+			}
+			d[q] = 0;
+			d[p] = s * theta;
+			// Primal update
+			double bound = toLower ? lo[p] : up[p];
+			double step = (x[p] - bound) / pivot;
+			for(int i=0; i<m; i++)
+				if(alphaCol[i] != 0) x[head[i]] -= step * alphaCol[i];
+			x[q] += step;
+			x[p] = bound;
+			// Dual steepest edge weights, with tau = B^-1 rho
+			double wr = weight[r];
+			System.arraycopy(rowWork, 0, posWork, 0, m);
+			lu.ftran(posWork, tau);
+			for(int i=0; i<m; i++) {
+				if(i == r || alphaCol[i] == 0) continue;
+				double ratio = alphaCol[i] / pivot;
+				weight[i] = Math.max(weight[i] + ratio * (ratio * wr - 2 * tau[i]), 1e-4);
+			}
+			weight[r] = Math.max(wr / (pivot * pivot), 1e-4);
+			// Basis change
+			lu.update(r, alphaCol);
+			head[r] = q;
+			status[q] = BASIC;
+			status[p] = toLower ? AT_LOWER : AT_UPPER;
+			if(lo[p] == up[p]) status[p] = AT_LOWER;
+			iterations++;
+		}
+	}
+
+	/**
+	 * Factorize the basis again, and recompute the primal and dual solution from it
+	 */
+	private void recompute() {
+		refactor();
+		computeDual();
+		makeDualFeasible();
+		computePrimal();
+	}
+
+	/**
+	 * Compute alpha_r,j = rho^T a_j for all nonbasic variables, using the rows of the constraint matrix
+	 * @param rho the row of the basis inverse, in row space
+	 */
+	private void computePivotRow(double[] rho) {
+		Arrays.fill(alphaRow, 0);
+		for(int i=0; i<m; i++) {
+			double v = rho[i];
+			if(v == 0) continue;
+			for(int t=lp.rowStart[i]; t<lp.rowStart[i+1]; t++)
+				alphaRow[lp.colIndex[t]] += v * lp.rowValues[t];
+			alphaRow[n+i] = -v;
+		}
+	}
+
+	/**
+	 * Harris two-pass ratio test
+	 * @param s 1 if the leaving variable goes to its lower bound, -1 if it goes to its upper bound
+	 * @return the entering variable, or -1 if the dual is unbounded
+	 */
+	private int ratioTest(double s) {
+		// pass 1: the maximum step with relaxed dual feasibility
+		double maxStep = Double.POSITIVE_INFINITY;
+		for(int j=0; j<N; j++) {
+			double a = -s * alphaRow[j];
+			if(!isCandidate(j, a)) continue;
+			double step = (Math.abs(d[j]) + DUAL_TOL) / Math.abs(a);
+			if(step < maxStep) maxStep = step;
+		}
+		if(maxStep == Double.POSITIVE_INFINITY) return -1;
+		// pass 2: the largest pivot within that step
+		int q = -1;
+		double largest = 0;
+		for(int j=0; j<N; j++) {
+			double a = -s * alphaRow[j];
+			if(!isCandidate(j, a)) continue;
+			if(Math.abs(d[j]) / Math.abs(a) <= maxStep && Math.abs(a) > largest) {
+				largest = Math.abs(a);
+				q = j;
+			}
+		}
+		return q;
+	}
+
+	/**
+	 * @param j a variable
+	 * @param a the pivot row entry of j, in the direction of the leaving variable
+	 * @return true if j can enter the basis: its reduced cost moves towards dual infeasibility
+	 */
+	private boolean isCandidate(int j, double a) {
+		if(status[j] == BASIC || lo[j] == up[j] || Math.abs(a) < PIVOT_TOL) return false;
+		switch(status[j]) {
+		case AT_LOWER: return a > 0;
+		case AT_UPPER: return a < 0;
+		default: return true;
+		}
+	}
+}
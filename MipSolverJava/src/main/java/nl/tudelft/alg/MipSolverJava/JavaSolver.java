@@ -0,0 +1,569 @@
+package nl.tudelft.alg.MipSolverJava;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import nl.tudelft.alg.MipSolverCore.Basis;
+import nl.tudelft.alg.MipSolverCore.IMIPSolver;
+import nl.tudelft.alg.MipSolverCore.IModel;
+import nl.tudelft.alg.MipSolverCore.InfeasibleException;
+import nl.tudelft.alg.MipSolverCore.MIP;
+import nl.tudelft.alg.MipSolverCore.ModelChanges;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+import nl.tudelft.alg.MipSolverCore.ModelWriter;
+import nl.tudelft.alg.MipSolverCore.Presolve;
+import nl.tudelft.alg.MipSolverCore.SolveEvents;
+import nl.tudelft.alg.MipSolverCore.SolveListener;
+import nl.tudelft.alg.MipSolverCore.SolveMetrics;
+import nl.tudelft.alg.MipSolverCore.SolveMetrics.Phase;
+import nl.tudelft.alg.MipSolverCore.Separation;
+import nl.tudelft.alg.MipSolverCore.Separator;
+import nl.tudelft.alg.MipSolverCore.SolverException;
+import nl.tudelft.alg.MipSolverCore.Variable;
+
+/**
+ * A mip solver in pure Java, without native libraries: a bounded dual simplex method with a sparse LU factorization
+ * for linear programs, and a branch and bound for integer variables that can explore the tree with several threads
+ * (see setThreads).
+ * It is meant for small and medium models, and for environments where Gurobi or GLPK cannot be installed.
+ * All state belongs to the instance, so instances can solve models from different threads at the same time.
+ * Such instances can share one fork-join pool for their branch and bound (see setPool).
+ * The methods are synchronized, except terminate, which stops a solve from another thread.
+ */
+public class JavaSolver implements IMIPSolver {
+	private boolean debug = false;
+	private String logFile = null;
+	MIP mip;
+	ModelMatrix matrix;
+	LPModel lp;
+	volatile DualSimplex simplex;
+	boolean minimize;
+	boolean relaxed;
+	double mipgap;
+	boolean warmStart;
+	boolean startPending;
+	Map<Variable, Double> mipStart;
+	Basis basis;
+	boolean presolve;
+	boolean builtPresolve;
+	boolean useNames;
+	Presolve presolved;
+	int threads;
+	ForkJoinPool pool;
+	boolean ownPool;
+	long nodes;
+	double nodeRate;
+	// True if the last solve solved an LP, so the simplex has its duals
+	boolean lpSolved;
+	SolveMetrics metrics;
+	volatile boolean terminated;
+	// True if resetTerminate was called for the next solve, which then keeps the terminate flag
+	boolean terminateReset;
+	volatile BranchAndBound search;
+	SolveListener listener;
+	Separator separator;
+	// The separation of the running solve, which terminate stops
+	volatile Separation separation;
+
+	public JavaSolver() {
+		minimize = true;
+		relaxed = false;
+		mipgap = 1e-4;
+		threads = 1;
+		useNames = true;
+	}
+
+	private void debug(String s) {
+		if(debug) System.out.println(s);
+	}
+
+	@Override
+	public synchronized void build(IModel mipInstance) throws SolverException {
+		assert(mipInstance instanceof MIP);
+		long start = metrics == null ? 0 : System.nanoTime();
+		mip = (MIP) mipInstance;
+		debug("build model");
+		ModelMatrix compiled = compile(mip);
+		presolved = presolve ? Presolve.apply(mip, compiled, minimize) : null;
+		builtPresolve = presolve;
+		if(presolved != null) {
+			log(presolved.toString());
+			compiled = presolved.getReducedMatrix();
+		}
+		load(compiled, null);
+		mip.getChanges().reset(this, mip);
+		debug("Done building");
+		if(metrics != null) {
+			metrics.size(this, matrix.getRows(), matrix.getColumns(), matrix.getNonzeros());
+			metrics.time(this, Phase.Build, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public synchronized void update(IModel mipInstance) throws SolverException {
+		assert(mipInstance instanceof MIP);
+		MIP m = (MIP) mipInstance;
+		ModelChanges changes = m.getChanges();
+		if(m != mip || lp == null || builtPresolve != presolve || presolved != null || !changes.isTrackedFor(this)) {
+			build(m);
+			return;
+		}
+		debug("update model");
+		long start = metrics == null ? 0 : System.nanoTime();
+		// The matrix is compiled again, but the basis is kept: the remaining rows keep their status and the new rows
+		// start with their logical variable in the basis.
+		int[] old = simplex.getBasis();
+		int oldColumns = changes.getBuiltColumns();
+		int[] removed = changes.getRemovedRows();
+		ModelMatrix compiled = compile(mip);
+		int nCols = compiled.getColumns(), nRows = compiled.getRows();
+		int[] status = new int[nCols + nRows];
+		for(int j=0; j<nCols; j++)
+			status[j] = j < oldColumns ? old[j] : DualSimplex.AT_LOWER;
+		int i = 0, r = 0;
+		for(int k=0; k<changes.getBuiltRows(); k++) {
+			if(r < removed.length && removed[r] == k) {
+				r++;
+				continue;
+			}
+			status[nCols + i++] = old[oldColumns + k];
+		}
+		for(; i<nRows; i++)
+			status[nCols + i] = DualSimplex.BASIC;
+		load(compiled, warmStart ? status : null);
+		changes.reset(this, mip);
+		debug("Done updating");
+		if(metrics != null) metrics.time(this, Phase.Update, System.nanoTime() - start);
+	}
+
+	/**
+	 * Compile a model for this solver
+	 * @param mip the model
+	 * @return the model matrix of mip
+	 * @throws SolverException when the model has a quadratic objective, or contains unknown variables
+	 */
+	private static ModelMatrix compile(MIP mip) throws SolverException {
+		ModelMatrix matrix = ModelMatrix.compile(mip);
+		if(matrix.hasQuadraticObjective())
+			throw new SolverException("The Java solver does not support quadratic objectives");
+		return matrix;
+	}
+
+	/**
+	 * Create the LP and the simplex for a compiled model
+	 * @param compiled the compiled model
+	 * @param status the status of every variable to start from, or null to start from the slack basis
+	 */
+	private void load(ModelMatrix compiled, int[] status) {
+		lpSolved = false;
+		matrix = compiled;
+		lp = new LPModel(matrix, minimize);
+		simplex = new DualSimplex(lp);
+		if(status != null) simplex.setBasis(status);
+	}
+
+	@Override
+	public synchronized void setObjectiveFunction() throws SolverException {
+		if(mip == null) return;
+		if(presolved != null) build(mip);
+		else load(compile(mip), simplex.getBasis());
+	}
+
+	@Override
+	public synchronized void setMinimize(boolean value) {
+		minimize = value;
+	}
+
+	/**
+	 * The unbounded ray is not computed by this solver
+	 * @return null
+	 */
+	@Override
+	public double[] getUnboundedRay() {
+		return null;
+	}
+
+	/**
+	 * Solve the model. With a separator, the model is solved again until its solution violates no separated constraint
+	 * (see Separation.solve): this solver has no callbacks in its branch and bound.
+	 */
+	@Override
+	public synchronized double solve() throws SolverException {
+		if(!terminateReset) terminated = false;
+		terminateReset = false;
+		if(separator == null) return solveModel();
+		Separation s = new Separation(mip, separator);
+		separation = s;
+		if(terminated) s.stop();
+		try {
+			return s.solve(this, this::solveModel);
+		} finally {
+			separation = null;
+			debug(s.toString());
+		}
+	}
+
+	/**
+	 * Solve the model once, and set the solution in the variables
+	 * @return the objective value
+	 * @throws SolverException when the model is infeasible, or no solution was found
+	 */
+	private double solveModel() throws SolverException {
+		simplex.stop = false;
+		if(lp.objSign != (minimize ? 1 : -1)) {
+			// the presolve depends on the direction of the objective
+			if(presolved != null) build(mip);
+			else load(matrix, simplex.getBasis());
+		}
+		if(terminated) simplex.stop = true;
+		if(presolved != null && presolved.isInfeasible())
+			throw new InfeasibleException("Model is infeasible (presolve)");
+		long start = System.nanoTime();
+		double timeLimit = mip.getTimeLimit();
+		simplex.setDeadline(timeLimit * 1e9 >= Long.MAX_VALUE - start ? Long.MAX_VALUE : start + (long) (timeLimit * 1e9));
+		simplex.resetBounds();
+		if(basis != null && basis.fits(lp.n, lp.m))
+			simplex.setBasis(toStatus(basis));
+		else if(!warmStart)
+			simplex.setSlackBasis();
+		double[] x;
+		double gap = 0;
+		long startIterations = simplex.getIterations(), workerIterations = 0;
+		lpSolved = false;
+		try {
+			nodes = 0;
+			nodeRate = 0;
+			if(relaxed || !lp.hasIntegers()) {
+				DualSimplex.Status status = simplex.solve();
+				checkStatus(status, "the LP");
+				lpSolved = true;
+				x = new double[lp.n];
+				for(int j=0; j<lp.n; j++)
+					x[j] = simplex.getValue(j);
+			} else {
+				BranchAndBound bb = threads > 1 || pool != null ? new ParallelBranchAndBound(lp, simplex, mipgap, getPool())
+						: new BranchAndBound(lp, simplex, mipgap);
+				search = bb;
+				if(terminated) bb.stop();
+				SolveEvents events = listener == null ? null : new SolveEvents(this, listener, presolved);
+				if(events != null)
+					bb.setIncumbentListener(v -> events.incumbent(lp.getObjective(v), events.needsValues() ? v.clone() : null, minimize));
+				long bbStart = System.nanoTime();
+				if(startPending || warmStart) {
+					double[] values = mip.getStartValues(startPending ? mipStart : null);
+					bb.setStart(presolved != null ? presolved.reduce(values) : values);
+				}
+				checkStatus(bb.solve(), "the root LP");
+				x = bb.getIncumbent();
+				if(x == null)
+					throw bb.timeLimitReached ? new SolverException(terminated ? "Terminated without a solution"
+							: "Time limit reached without a solution")
+							: new InfeasibleException("Model is infeasible");
+				if(bb.timeLimitReached)
+					debug((terminated ? "Terminated" : "Time limit reached") + " with mip gap " + bb.getGap());
+				gap = bb.getGap();
+				nodes = bb.getNodes();
+				if(events != null)
+					events.progress(nodes, lp.getObjective(x), lp.objSign * bb.bestBound + lp.objConstant, true);
+				workerIterations = bb.getWorkerIterations();
+				nodeRate = nodes / Math.max(1e-9, (System.nanoTime() - bbStart) / 1e9);
+				// Start the next solve from the root basis instead of the basis of the last node
+				if(bb.getRootBasis() != null) simplex.setBasis(bb.getRootBasis());
+				log("branch and bound: " + nodes + " nodes (" + Math.round(nodeRate) + " per second), gap " + gap);
+			}
+		} finally {
+			search = null;
+			startPending = false;
+			mipStart = null;
+			basis = null;
+		}
+		log("solved in " + simplex.getIterations() + " simplex iterations and " + (System.nanoTime() - start) / 1e6 + " ms");
+		if(metrics != null) {
+			metrics.time(this, Phase.Optimize, System.nanoTime() - start);
+			metrics.progress(this, simplex.getIterations() - startIterations + workerIterations, nodes, gap);
+			start = System.nanoTime();
+		}
+		mip.setMipGap(gap);
+		double obj = lp.getObjective(x);
+		if(presolved != null) x = presolved.postsolve(x);
+		mip.setSolution(x);
+		if(metrics != null) {
+			metrics.time(this, Phase.Extract, System.nanoTime() - start);
+			start = System.nanoTime();
+		}
+		mip.writeSolution();
+		if(metrics != null) metrics.time(this, Phase.WriteSolution, System.nanoTime() - start);
+		return obj;
+	}
+
+	/**
+	 * @return the pool for the branch and bound, which is created if this solver does not have one yet
+	 */
+	private ForkJoinPool getPool() {
+		if(pool == null) {
+			pool = new ForkJoinPool(threads);
+			ownPool = true;
+		}
+		return pool;
+	}
+
+	/**
+	 * Set the number of threads of the branch and bound (default 1). With more than one thread, the nodes are
+	 * explored in parallel on a fork-join pool of this solver.
+	 * @param threads the number of threads
+	 */
+	public synchronized void setThreads(int threads) {
+		if(threads < 1) throw new IllegalArgumentException("The number of threads should be positive");
+		if(threads != this.threads) closePool();
+		this.threads = threads;
+	}
+
+	/**
+	 * Explore the branch and bound nodes in parallel on the given pool, for example a pool that is shared by
+	 * several solvers that solve at the same time. The pool is not shut down by this solver.
+	 * @param pool the pool, or null to use a pool of this solver with the number of threads of setThreads
+	 */
+	public synchronized void setPool(ForkJoinPool pool) {
+		closePool();
+		this.pool = pool;
+	}
+
+	/**
+	 * Shut down the pool of this solver, if it has one
+	 */
+	private void closePool() {
+		if(ownPool) pool.shutdown();
+		pool = null;
+		ownPool = false;
+	}
+
+	/**
+	 * @return the number of branch and bound nodes of the last solve
+	 */
+	public synchronized long getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * @return the number of branch and bound nodes per second in the last solve
+	 */
+	public synchronized double getNodeRate() {
+		return nodeRate;
+	}
+
+	/**
+	 * Throw an exception if the simplex did not find an optimal solution
+	 * @param status the status of the simplex
+	 * @param what the description of the solved LP
+	 * @throws SolverException when the status is not optimal
+	 */
+	private static void checkStatus(DualSimplex.Status status, String what) throws SolverException {
+		switch(status) {
+		case Optimal: return;
+		case Infeasible: throw new InfeasibleException("Model is infeasible");
+		case Unbounded: throw new InfeasibleException("Model is unbounded");
+		case TimeLimit: throw new SolverException("Time limit reached while solving " + what);
+		case Stopped: throw new SolverException("Solving " + what + " was stopped");
+		case IterationLimit: throw new SolverException("Iteration limit reached while solving " + what);
+		default: throw new SolverException("Numerical failure while solving " + what);
+		}
+	}
+
+	/**
+	 * Append a line to the log file, if there is one
+	 * @param line the line to log
+	 * @throws SolverException when the log file cannot be written
+	 */
+	private void log(String line) throws SolverException {
+		debug(line);
+		if(logFile == null) return;
+		try(FileWriter writer = new FileWriter(logFile, true)) {
+			writer.write(line + System.lineSeparator());
+		} catch (IOException e) {
+			throw new SolverException(e);
+		}
+	}
+
+	/**
+	 * The duals are computed from the last basis of the simplex, in the direction of the objective of the model
+	 */
+	@Override
+	public synchronized double[] getDuals() {
+		if(!lpSolved || presolved != null) return null;
+		double[] y = simplex.getRowDuals();
+		for(int i=0; i<y.length; i++)
+			y[i] *= lp.objSign;
+		return y;
+	}
+
+	@Override
+	public synchronized void setWarmStart(boolean value) {
+		warmStart = value;
+	}
+
+	@Override
+	public synchronized void setMipStart(Map<Variable, Double> start) {
+		mipStart = start;
+		startPending = true;
+	}
+
+	@Override
+	public synchronized Basis getBasis() {
+		if(simplex == null) return null;
+		int[] status = simplex.getBasis();
+		Basis.Status[] values = Basis.Status.values();
+		Basis.Status[] columns = new Basis.Status[lp.n];
+		Basis.Status[] rows = new Basis.Status[lp.m];
+		for(int j=0; j<lp.n; j++)
+			columns[j] = values[status[j]];
+		for(int i=0; i<lp.m; i++)
+			rows[i] = values[status[lp.n + i]];
+		return new Basis(columns, rows);
+	}
+
+	@Override
+	public synchronized void setBasis(Basis basis) {
+		this.basis = basis;
+	}
+
+	/**
+	 * Convert a basis to the status of every variable in the simplex.
+	 * The ordinals of Basis.Status are the status codes of the simplex.
+	 * @param b the basis
+	 * @return the status of every structural and logical variable
+	 */
+	private int[] toStatus(Basis b) {
+		int[] status = new int[lp.n + lp.m];
+		Basis.Status[] columns = b.getColumnStatus();
+		Basis.Status[] rows = b.getRowStatus();
+		for(int j=0; j<lp.n; j++)
+			status[j] = columns[j].ordinal();
+		for(int i=0; i<lp.m; i++)
+			status[lp.n + i] = rows[i].ordinal();
+		return status;
+	}
+
+	/**
+	 * Save the model in LP or MPS format (see ModelWriter)
+	 * @param file the file name, ending with .lp or .mps, and optionally .gz
+	 * @throws SolverException when no model was built, or the file cannot be written
+	 */
+	@Override
+	public synchronized void save(String file) throws SolverException {
+		if(mip == null) throw new SolverException("No model to save");
+		new ModelWriter(mip).setMinimize(minimize).setUseNames(useNames).write(file);
+	}
+
+	@Override
+	public synchronized void reset() {
+		minimize = true;
+		relaxed = false;
+		mipgap = 1e-4;
+		debug = false;
+		setWarmStart(false);
+		mipStart = null;
+		startPending = false;
+		basis = null;
+		presolve = false;
+		useNames = true;
+		separator = null;
+		listener = null;
+		metrics = null;
+	}
+
+	@Override
+	public void resetTerminate() {
+		terminated = false;
+		terminateReset = true;
+	}
+
+	/**
+	 * Stop the solve from another thread. The branch and bound stops like at the time limit, and the solve returns
+	 * its incumbent. This method is not synchronized, because a solve holds the lock of this solver.
+	 */
+	@Override
+	public void terminate() {
+		terminated = true;
+		Separation sep = separation;
+		if(sep != null) sep.stop();
+		DualSimplex s = simplex;
+		if(s != null) s.stop = true;
+		BranchAndBound bb = search;
+		if(bb != null) bb.stop();
+	}
+
+	@Override
+	public synchronized void dispose() {
+		lp = null;
+		simplex = null;
+		matrix = null;
+		closePool();
+		debug("clear memory");
+	}
+
+	/**
+	 * Set the metrics listener. This solver has no native calls, and reports the simplex iterations of all threads
+	 * @param metrics the listener, or null to disable the measurements
+	 */
+	@Override
+	public synchronized void setMetrics(SolveMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public synchronized SolveMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the listener of the solve events. The branch and bound reports its incumbents, from its worker threads
+	 * in a parallel search, and its nodes and bound at the end of the search
+	 * @param listener the listener, or null to remove it
+	 */
+	@Override
+	public synchronized void setSolveListener(SolveListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public synchronized void setPresolve(boolean value) {
+		presolve = value;
+	}
+
+	/**
+	 * Set whether save writes the names of the variables and constraints. The solver itself does not use names.
+	 * @param value true to write the names, false to write generic names
+	 */
+	@Override
+	public synchronized void setUseNames(boolean value) {
+		useNames = value;
+	}
+
+	@Override
+	public synchronized void setSeparator(Separator separator) {
+		this.separator = separator;
+	}
+
+	@Override
+	public synchronized void setSolveAsLP(boolean value) {
+		relaxed = value;
+	}
+
+	@Override
+	public synchronized void setMipGap(double value) {
+		mipgap = value;
+	}
+
+	@Override
+	public synchronized void setDebug(boolean value) {
+		debug = value;
+	}
+
+	@Override
+	public synchronized void setLogFile(String mipLogFile) {
+		logFile = mipLogFile;
+	}
+
+}
@@ -0,0 +1,129 @@
+package nl.tudelft.alg.MipSolverJava;
+
+import nl.tudelft.alg.MipSolverCore.CMP;
+import nl.tudelft.alg.MipSolverCore.ModelMatrix;
+
+/**
+ * The computational form of a linear program: minimize c^T x subject to A x - r = 0 and lo &lt;= (x, r) &lt;= up.
+ * Every row i gets a logical variable r_i (with index n+i), so the column of a logical variable is -e_i.
+ * The model is immutable, so it can be shared by several simplex instances (for example in branch and bound).
+ */
+public class LPModel {
+	final int n, m;
+	final int[] rowStart, colIndex;
+	final double[] rowValues;
+	final int[] colStart, rowIndex;
+	final double[] colValues;
+	final double[] cost;
+	final double[] lo, up;
+	final boolean[] integer;
+	final double objConstant;
+	final double objSign;
+
+	/**
+	 * Create the computational form of a compiled model
+	 * @param matrix the compiled model
+	 * @param minimize true to minimize the objective, false to maximize it (then the costs are negated)
+	 */
+	public LPModel(ModelMatrix matrix, boolean minimize) {
+		this.n = matrix.getColumns();
+		this.m = matrix.getRows();
+		this.rowStart = matrix.getRowStarts();
+		this.colIndex = matrix.getColumnIndices();
+		this.rowValues = matrix.getValues();
+		this.colStart = matrix.getColumnStarts();
+		this.rowIndex = matrix.getRowIndices();
+		this.colValues = matrix.getColumnValues();
+		this.objSign = minimize ? 1 : -1;
+		this.objConstant = matrix.getObjectiveConstant();
+		int N = n + m;
+		cost = new double[N];
+		lo = new double[N];
+		up = new double[N];
+		integer = new boolean[n];
+		double[] obj = matrix.getObjective();
+		for(int j=0; j<n; j++) {
+			cost[j] = objSign * obj[j];
+			lo[j] = matrix.getLowerBounds()[j];
+			up[j] = matrix.getUpperBounds()[j];
+			integer[j] = matrix.isInteger(j);
+		}
+		CMP[] senses = matrix.getSenses();
+		double[] rhs = matrix.getRhs();
+		for(int i=0; i<m; i++) {
+			lo[n+i] = senses[i] == CMP.SMALLEREQ ? Double.NEGATIVE_INFINITY : rhs[i];
+			up[n+i] = senses[i] == CMP.LARGEREQ ? Double.POSITIVE_INFINITY : rhs[i];
+		}
+	}
+
+	/**
+	 * @return the number of structural columns
+	 */
+	public int getColumns() {
+		return n;
+	}
+
+	/**
+	 * @return the number of rows
+	 */
+	public int getRows() {
+		return m;
+	}
+
+	/**
+	 * @param j a structural column
+	 * @return true if column j should be integer
+	 */
+	public boolean isInteger(int j) {
+		return integer[j];
+	}
+
+	/**
+	 * @return true if the model has integer columns
+	 */
+	public boolean hasIntegers() {
+		for(boolean b: integer)
+			if(b) return true;
+		return false;
+	}
+
+	/**
+	 * @param j a variable (structural or logical)
+	 * @return the number of nonzeros in the column of variable j
+	 */
+	int columnLength(int j) {
+		return j < n ? colStart[j+1] - colStart[j] : 1;
+	}
+
+	/**
+	 * Get the objective value of a solution, in the direction of the original model
+	 * @param x the values of the structural columns
+	 * @return the objective value
+	 */
+	public double getObjective(double[] x) {
+		double obj = 0;
+		for(int j=0; j<n; j++)
+			obj += cost[j] * x[j];
+		return objSign * obj + objConstant;
+	}
+
+	/**
+	 * Check whether a solution satisfies the bounds, the rows and the integrality of the model
+	 * @param x the values of the structural columns
+	 * @param tol the feasibility tolerance
+	 * @return true if x is feasible
+	 */
+	public boolean isFeasible(double[] x, double tol) {
+		for(int j=0; j<n; j++) {
+			if(x[j] < lo[j] - tol || x[j] > up[j] + tol) return false;
+			if(integer[j] && Math.abs(x[j] - Math.rint(x[j])) > tol) return false;
+		}
+		for(int i=0; i<m; i++) {
+			double r = 0;
+			for(int k=rowStart[i]; k<rowStart[i+1]; k++)
+				r += rowValues[k] * x[colIndex[k]];
+			if(r < lo[n+i] - tol || r > up[n+i] + tol) return false;
+		}
+		return true;
+	}
+}
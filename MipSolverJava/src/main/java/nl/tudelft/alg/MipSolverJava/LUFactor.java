@@ -0,0 +1,344 @@
+package nl.tudelft.alg.MipSolverJava;
+
+import java.util.Arrays;
+
+/**
+ * A sparse LU factorization of a simplex basis, with product form (eta) updates for basis changes.
+ * The basis columns are factorized left-looking: column by column, the previous elimination steps are applied
+ * (in pivot order, with a heap over the nonzeros) and a pivot is chosen among the remaining rows.
+ * Logical columns are factorized first and sparse columns before dense ones, to limit fill-in.
+ * Vectors in row space are indexed by row, vectors in basis space by basis position.
+ */
+class LUFactor {
+	static final double PIVOT_TOLERANCE = 1e-9;
+	final LPModel lp;
+	final int m;
+	// The k-th pivot: the basis position of its column, its row, and the diagonal of U
+	int[] pivotPos, pivotRow;
+	double[] diag;
+	// The rank of every row in the pivot order, -1 if the row is not pivoted yet
+	int[] rank;
+	// Column k of L (below the diagonal) and of U (above the diagonal), by row
+	int[] lStart, lIndex, uStart, uIndex;
+	double[] lValue, uValue;
+	int lSize, uSize;
+	// The eta file: eta e replaced basis position etaPos[e] with a column with pivot etaPivot[e]
+	int nEta;
+	int[] etaPos, etaStart, etaIndex;
+	double[] etaPivot, etaValue;
+	int etaSize;
+	// Work arrays
+	double[] work;
+	int[] heap, nonzeros;
+	boolean[] marked;
+
+	LUFactor(LPModel lp) {
+		this.lp = lp;
+		this.m = lp.m;
+		pivotPos = new int[m];
+		pivotRow = new int[m];
+		diag = new double[m];
+		rank = new int[m];
+		lStart = new int[m+1];
+		uStart = new int[m+1];
+		lIndex = new int[16];
+		lValue = new double[16];
+		uIndex = new int[16];
+		uValue = new double[16];
+		etaPos = new int[16];
+		etaStart = new int[17];
+		etaPivot = new double[16];
+		etaIndex = new int[16];
+		etaValue = new double[16];
+		work = new double[m];
+		heap = new int[m];
+		nonzeros = new int[m];
+		marked = new boolean[m];
+	}
+
+	/**
+	 * @return the number of basis changes since the last factorization
+	 */
+	int getUpdates() {
+		return nEta;
+	}
+
+	/**
+	 * Factorize the basis. Columns that turn out to be (numerically) dependent on the others are replaced by
+	 * logical columns of the rows that remain without pivot.
+	 * @param head the variable of every basis position, which is changed for replaced columns
+	 * @return the variables that were replaced, or an empty array if the basis is not singular
+	 */
+	int[] factorize(int[] head) {
+		int n = lp.n;
+		nEta = 0;
+		etaSize = 0;
+		lSize = 0;
+		uSize = 0;
+		Arrays.fill(rank, -1);
+		// Order the columns: logicals first, then structurals by increasing length
+		Integer[] order = new Integer[m];
+		for(int p=0; p<m; p++) order[p] = p;
+		Arrays.sort(order, (a, b) -> Integer.compare(lp.columnLength(head[a]) + (head[a] < n ? 1 : 0),
+				lp.columnLength(head[b]) + (head[b] < n ? 1 : 0)));
+		int k = 0;
+		int[] singular = new int[m];
+		int nSingular = 0;
+		for(int o=0; o<m; o++) {
+			int pos = order[o];
+			int j = head[pos];
+			lStart[k] = lSize;
+			uStart[k] = uSize;
+			if(j >= n && rank[j-n] < 0) {
+				// A logical column -e_i of a row without pivot needs no elimination
+				setPivot(k++, pos, j-n, -1);
+				continue;
+			}
+			int nnz = scatter(j);
+			eliminate(k, nnz);
+			// Choose the largest remaining entry as pivot, and store the rest in U and L
+			int best = -1;
+			double max = PIVOT_TOLERANCE;
+			int count = this.count;
+			for(int t=0; t<count; t++) {
+				int i = nonzeros[t];
+				if(rank[i] < 0 && Math.abs(work[i]) > max) {
+					max = Math.abs(work[i]);
+					best = i;
+				}
+			}
+			if(best < 0) {
+				singular[nSingular++] = pos;
+				clear(count);
+				continue;
+			}
+			double pivot = work[best];
+			for(int t=0; t<count; t++) {
+				int i = nonzeros[t];
+				double v = work[i];
+				if(v == 0 || i == best) continue;
+				if(rank[i] >= 0) addU(i, v);
+				else addL(i, v / pivot);
+			}
+			clear(count);
+			setPivot(k++, pos, best, pivot);
+		}
+		// Replace the singular columns by the logicals of the rows without pivot
+		int[] replaced = new int[nSingular];
+		int row = 0;
+		for(int s=0; s<nSingular; s++) {
+			while(rank[row] >= 0) row++;
+			int pos = singular[s];
+			replaced[s] = head[pos];
+			head[pos] = n + row;
+			lStart[k] = lSize;
+			uStart[k] = uSize;
+			setPivot(k++, pos, row, -1);
+		}
+		lStart[m] = lSize;
+		uStart[m] = uSize;
+		etaStart[0] = 0;
+		return replaced;
+	}
+
+	private int count;
+
+	/**
+	 * Scatter column j of the constraint matrix into the work array
+	 * @param j the variable
+	 * @return the number of nonzeros
+	 */
+	private int scatter(int j) {
+		count = 0;
+		if(j >= lp.n) {
+			mark(j - lp.n, -1);
+		} else {
+			for(int t=lp.colStart[j]; t<lp.colStart[j+1]; t++)
+				mark(lp.rowIndex[t], lp.colValues[t]);
+		}
+		return count;
+	}
+
+	private void mark(int i, double v) {
+		if(!marked[i]) {
+			marked[i] = true;
+			nonzeros[count++] = i;
+		}
+		work[i] += v;
+	}
+
+	/**
+	 * Apply the elimination steps of the first k pivots to the work array, in pivot order.
+	 * Only the pivots of which the row has a nonzero are applied; a heap on the rank keeps them in order.
+	 * @param k the number of pivots so far
+	 * @param nnz the number of nonzeros in the work array
+	 */
+	private void eliminate(int k, int nnz) {
+		int size = 0;
+		for(int t=0; t<nnz; t++) {
+			int i = nonzeros[t];
+			if(rank[i] >= 0) size = heapPush(size, rank[i]);
+		}
+		while(size > 0) {
+			int r = heap[0];
+			size = heapPop(size);
+			double v = work[pivotRow[r]];
+			if(v == 0) continue;
+			for(int t=lStart[r]; t<lStart[r+1]; t++) {
+				int i = lIndex[t];
+				boolean fill = !marked[i];
+				mark(i, -lValue[t] * v);
+				// Fill-in in a row that was pivoted after r must be eliminated as well
+				if(fill && rank[i] > r) size = heapPush(size, rank[i]);
+			}
+		}
+	}
+
+	private int heapPush(int size, int value) {
+		int i = size++;
+		heap[i] = value;
+		while(i > 0) {
+			int parent = (i - 1) >> 1;
+			if(heap[parent] <= heap[i]) break;
+			int tmp = heap[parent]; heap[parent] = heap[i]; heap[i] = tmp;
+			i = parent;
+		}
+		return size;
+	}
+
+	private int heapPop(int size) {
+		heap[0] = heap[--size];
+		int i = 0;
+		while(true) {
+			int l = 2*i + 1, smallest = i;
+			if(l < size && heap[l] < heap[smallest]) smallest = l;
+			if(l + 1 < size && heap[l+1] < heap[smallest]) smallest = l + 1;
+			if(smallest == i) break;
+			int tmp = heap[smallest]; heap[smallest] = heap[i]; heap[i] = tmp;
+			i = smallest;
+		}
+		return size;
+	}
+
+	private void clear(int count) {
+		for(int t=0; t<count; t++) {
+			int i = nonzeros[t];
+			work[i] = 0;
+			marked[i] = false;
+		}
+	}
+
+	private void setPivot(int k, int pos, int row, double pivot) {
+		pivotPos[k] = pos;
+		pivotRow[k] = row;
+		diag[k] = pivot;
+		rank[row] = k;
+		lStart[k+1] = lSize;
+		uStart[k+1] = uSize;
+	}
+
+	private void addL(int i, double v) {
+		if(lSize == lIndex.length) {
+			lIndex = Arrays.copyOf(lIndex, 2*lSize);
+			lValue = Arrays.copyOf(lValue, 2*lSize);
+		}
+		lIndex[lSize] = i;
+		lValue[lSize++] = v;
+	}
+
+	private void addU(int i, double v) {
+		if(uSize == uIndex.length) {
+			uIndex = Arrays.copyOf(uIndex, 2*uSize);
+			uValue = Arrays.copyOf(uValue, 2*uSize);
+		}
+		uIndex[uSize] = i;
+		uValue[uSize++] = v;
+	}
+
+	/**
+	 * Add a basis change to the eta file
+	 * @param pos the basis position that gets a new column
+	 * @param alpha the new column in basis space (B^-1 a_q, before the change)
+	 */
+	void update(int pos, double[] alpha) {
+		if(nEta == etaPos.length) {
+			etaPos = Arrays.copyOf(etaPos, 2*nEta);
+			etaPivot = Arrays.copyOf(etaPivot, 2*nEta);
+			etaStart = Arrays.copyOf(etaStart, 2*nEta+1);
+		}
+		etaPos[nEta] = pos;
+		etaPivot[nEta] = alpha[pos];
+		for(int i=0; i<m; i++) {
+			if(i == pos || alpha[i] == 0) continue;
+			if(etaSize == etaIndex.length) {
+				etaIndex = Arrays.copyOf(etaIndex, 2*etaSize);
+				etaValue = Arrays.copyOf(etaValue, 2*etaSize);
+			}
+			etaIndex[etaSize] = i;
+			etaValue[etaSize++] = alpha[i];
+		}
+		etaStart[++nEta] = etaSize;
+	}
+
+	/**
+	 * Solve B z = a
+	 * @param a the right hand side, in row space. It is overwritten.
+	 * @param z the solution, in basis space
+	 */
+	void ftran(double[] a, double[] z) {
+		// L
+		for(int k=0; k<m; k++) {
+			double v = a[pivotRow[k]];
+			if(v == 0) continue;
+			for(int t=lStart[k]; t<lStart[k+1]; t++)
+				a[lIndex[t]] -= lValue[t] * v;
+		}
+		// U
+		for(int k=m-1; k>=0; k--) {
+			double v = a[pivotRow[k]] / diag[k];
+			z[pivotPos[k]] = v;
+			if(v == 0) continue;
+			for(int t=uStart[k]; t<uStart[k+1]; t++)
+				a[uIndex[t]] -= uValue[t] * v;
+		}
+		// Etas
+		for(int e=0; e<nEta; e++) {
+			int r = etaPos[e];
+			double v = z[r] / etaPivot[e];
+			z[r] = v;
+			if(v == 0) continue;
+			for(int t=etaStart[e]; t<etaStart[e+1]; t++)
+				z[etaIndex[t]] -= etaValue[t] * v;
+		}
+	}
+
+	/**
+	 * Solve B^T y = c
+	 * @param c the right hand side, in basis space. It is overwritten.
+	 * @param y the solution, in row space
+	 */
+	void btran(double[] c, double[] y) {
+		// Etas, in reverse order
+		for(int e=nEta-1; e>=0; e--) {
+			int r = etaPos[e];
+			double v = c[r];
+			for(int t=etaStart[e]; t<etaStart[e+1]; t++)
+				v -= etaValue[t] * c[etaIndex[t]];
+			c[r] = v / etaPivot[e];
+		}
+		// U^T
+		for(int k=0; k<m; k++) {
+			double v = c[pivotPos[k]];
+			for(int t=uStart[k]; t<uStart[k+1]; t++)
+				v -= uValue[t] * y[uIndex[t]];
+			y[pivotRow[k]] = v / diag[k];
+		}
+		// L^T
+		for(int k=m-1; k>=0; k--) {
+			double v = 0;
+			for(int t=lStart[k]; t<lStart[k+1]; t++)
+				v += lValue[t] * y[lIndex[t]];
+			y[pivotRow[k]] -= v;
+		}
+	}
+}
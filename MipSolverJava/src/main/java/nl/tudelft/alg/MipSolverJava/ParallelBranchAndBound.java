@@ -0,0 +1,225 @@
+package nl.tudelft.alg.MipSolverJava;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A branch and bound that explores the tree in parallel on a fork-join pool.
+ * Every worker thread dives depth-first with its own copy of the dual simplex, so every child it explores starts
+ * from the factorized basis of its parent. The other child of every branching is forked. Idle workers steal the
+ * oldest forked nodes of other workers, which are the nodes closest to the root and usually have the best bounds.
+ * So the search is depth-first within a worker (to find incumbents early), and close to best-bound over the workers.
+ * The incumbent is shared by all workers and replaced without locks.
+ */
+class ParallelBranchAndBound extends BranchAndBound {
+
+	/**
+	 * An integer solution and its objective value (minimization form)
+	 */
+	static class Solution {
+		final double obj;
+		final double[] x;
+
+		Solution(double obj, double[] x) {
+			this.obj = obj;
+			this.x = x;
+		}
+	}
+
+	/**
+	 * The simplex of a worker thread, and the basis of which it has the factorization
+	 */
+	static class Worker {
+		final DualSimplex simplex;
+		int[] current;
+
+		Worker(DualSimplex simplex) {
+			this.simplex = simplex;
+		}
+	}
+
+	/**
+	 * The task of exploring a node and, by diving, one of its children at every level.
+	 * It completes when all the nodes it forked are completed.
+	 */
+	class NodeTask extends CountedCompleter<Void> {
+		private static final long serialVersionUID = 1L;
+		Node node, sibling;
+
+		NodeTask(CountedCompleter<?> parent, Node node, Node sibling) {
+			super(parent);
+			this.node = node;
+			this.sibling = sibling;
+		}
+
+		@Override
+		public void compute() {
+			if(sibling != null) fork(sibling);
+			Worker worker = workers.computeIfAbsent(Thread.currentThread(), t -> createWorker());
+			while(node != null)
+				node = solveNode(worker, node, this);
+			tryComplete();
+		}
+
+		void fork(Node child) {
+			addToPendingCount(1);
+			new NodeTask(this, child, null).fork();
+		}
+	}
+
+	final ForkJoinPool pool;
+	final AtomicReference<Solution> best = new AtomicReference<Solution>();
+	final LongAdder nodeCount = new LongAdder();
+	final Map<Thread, Worker> workers = new ConcurrentHashMap<Thread, Worker>();
+	// The nodes that were not explored because of the time limit
+	final Queue<Node> open = new ConcurrentLinkedQueue<Node>();
+	volatile boolean stopped;
+	long workerIterations;
+
+	/**
+	 * @param lp the LP with integer columns
+	 * @param simplex the dual simplex of the LP, which solves the root and is copied for every worker thread
+	 * @param mipGap the relative gap at which nodes are pruned
+	 * @param pool the pool of the worker threads
+	 */
+	ParallelBranchAndBound(LPModel lp, DualSimplex simplex, double mipGap, ForkJoinPool pool) {
+		super(lp, simplex, mipGap);
+		this.pool = pool;
+	}
+
+	@Override
+	boolean setStart(double[] x) {
+		if(!super.setStart(x)) return false;
+		best.set(new Solution(incumbentObj, incumbent));
+		return true;
+	}
+
+	@Override
+	boolean canPrune(double bound) {
+		Solution b = best.get();
+		if(b == null) return false;
+		return bound >= b.obj - Math.max(1e-9, mipGap * Math.abs(b.obj));
+	}
+
+	/**
+	 * Replace the incumbent if a solution is better
+	 * @param solution the new solution
+	 */
+	void offer(Solution solution) {
+		Solution current;
+		do {
+			current = best.get();
+			if(current != null && current.obj <= solution.obj) return;
+		} while(!best.compareAndSet(current, solution));
+		if(onIncumbent != null) onIncumbent.accept(solution.x);
+	}
+
+	@Override
+	void stop() {
+		stopped = true;
+		super.stop();
+		for(Worker worker: workers.values())
+			worker.simplex.stop = true;
+	}
+
+	@Override
+	long getWorkerIterations() {
+		return workerIterations;
+	}
+
+	/**
+	 * @return a worker with a copy of the root simplex
+	 */
+	Worker createWorker() {
+		return new Worker(new DualSimplex(simplex));
+	}
+
+	/**
+	 * Solve the root with the simplex of this search, then explore the tree in the pool
+	 * @return the status of the root LP, or Optimal if the search finished or stopped at the time limit
+	 */
+	@Override
+	DualSimplex.Status solve() {
+		Node root = new Node(Arrays.copyOf(simplex.lo, n), Arrays.copyOf(simplex.up, n), null, Double.NEGATIVE_INFINITY);
+		DualSimplex.Status status = simplex.solve();
+		nodeCount.increment();
+		if(status == DualSimplex.Status.TimeLimit || status == DualSimplex.Status.Stopped) {
+			timeLimitReached = true;
+			open.add(root);
+		} else if(status != DualSimplex.Status.Optimal) {
+			return status;
+		} else {
+			rootBasis = simplex.getBasis();
+			double obj = simplex.getMinObjective();
+			int branch = selectBranch(simplex);
+			if(canPrune(obj)) {
+				// the start solution is good enough
+			} else if(branch < 0) {
+				offer(new Solution(obj, getSolution(simplex)));
+			} else {
+				Node[] children = branch(root, simplex, branch, obj);
+				pool.invoke(new NodeTask(null, children[0], children[1]));
+			}
+		}
+		Solution b = best.get();
+		if(b != null) {
+			incumbent = b.x;
+			incumbentObj = b.obj;
+		}
+		bestBound = incumbentObj;
+		for(Node node: open)
+			bestBound = Math.min(bestBound, node.bound);
+		nodes = nodeCount.sum();
+		for(Worker worker: workers.values())
+			workerIterations += worker.simplex.getIterations();
+		workers.clear();
+		return DualSimplex.Status.Optimal;
+	}
+
+	/**
+	 * Solve a node with the simplex of a worker, and branch on it
+	 * @param worker the worker
+	 * @param node the node
+	 * @param task the task that forks the second child
+	 * @return the first child to explore next, or null if the node was pruned
+	 */
+	private Node solveNode(Worker worker, Node node, NodeTask task) {
+		if(stopped) {
+			open.add(node);
+			return null;
+		}
+		if(canPrune(node.bound)) return null;
+		DualSimplex simplex = worker.simplex;
+		for(int j=0; j<n; j++)
+			simplex.setBounds(j, node.lo[j], node.up[j]);
+		if(node.basis != worker.current) simplex.setBasis(node.basis);
+		worker.current = null;
+		DualSimplex.Status status = simplex.solve();
+		nodeCount.increment();
+		if(status == DualSimplex.Status.TimeLimit || status == DualSimplex.Status.Stopped) {
+			stopped = true;
+			timeLimitReached = true;
+			open.add(node);
+			return null;
+		}
+		if(status != DualSimplex.Status.Optimal) return null;
+		double obj = simplex.getMinObjective();
+		if(canPrune(obj)) return null;
+		int branch = selectBranch(simplex);
+		if(branch < 0) {
+			offer(new Solution(obj, getSolution(simplex)));
+			return null;
+		}
+		Node[] children = branch(node, simplex, branch, obj);
+		worker.current = children[0].basis;
+		task.fork(children[1]);
+		return children[0];
+	}
+}